@@ -0,0 +1,169 @@
+package com.arm.legv8simulator.benchmark;
+
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.ExecutionEngine;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+
+/**
+ * <code>BenchmarkRunner</code> measures the average time of every <code>Phase</code> on every 
+ * <code>Workload</code>. It runs on the JVM only and is not part of the GWT module.
+ * <p>
+ * Each benchmark runs a number of warmup iterations, whose results are discarded, then a number of 
+ * measured iterations. An iteration repeats the operation until the iteration time has elapsed, timing 
+ * only <code>Phase.run</code>. The result of each benchmark is written as one line of JSON holding the 
+ * mean time per operation in nanoseconds, its 99.9% confidence interval and, for phases executing the 
+ * workload, the simulated instructions per second; so results can be compared across versions.
+ * <p>
+ * Usage: <code>BenchmarkRunner [--warmup N] [--iterations N] [--time-ms N] [--filter REGEX] [--out FILE]</code>. 
+ * The filter is matched against the benchmark name, <code>phase/workload</code> in lower case.
+ * 
+ * @see Phase
+ * @see Workload
+ */
+public class BenchmarkRunner {
+	
+	public static final int DEFAULT_WARMUP_ITERATIONS = 3;
+	public static final int DEFAULT_ITERATIONS = 5;
+	public static final long DEFAULT_ITERATION_MILLIS = 1000;
+	
+	// two-tailed Student's t for a 99.9% confidence interval, indexed by degrees of freedom
+	private static final double[] T_999 = {
+		Double.NaN, 636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587, 
+		4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850
+	};
+	private static final double T_999_LIMIT = 3.291;
+	
+	/**
+	 * @param warmupIterations	the number of unmeasured iterations of each benchmark
+	 * @param iterations		the number of measured iterations of each benchmark
+	 * @param iterationMillis	the minimum duration of each iteration
+	 */
+	public BenchmarkRunner(int warmupIterations, int iterations, long iterationMillis) {
+		this.warmupIterations = warmupIterations;
+		this.iterations = iterations;
+		this.iterationMillis = iterationMillis;
+	}
+	
+	/**
+	 * Runs every benchmark whose name matches <code>filter</code>
+	 * 
+	 * @param filter	a pattern matched against <code>phase/workload</code> in lower case
+	 * @param out		the destination of the results, one JSON object per line
+	 * @throws Exception
+	 */
+	public void run(Pattern filter, PrintWriter out) throws Exception {
+		for (Phase phase : Phase.values()) {
+			for (Workload workload : Workload.values()) {
+				String name = (phase.name() + "/" + workload.name()).toLowerCase();
+				if (!phase.supports(workload) || !filter.matcher(name).find()) continue;
+				out.println(measure(name, phase, workload));
+				out.flush();
+			}
+		}
+	}
+	
+	private String measure(String name, Phase phase, Workload workload) throws Exception {
+		for (int i=0; i<warmupIterations; i++) {
+			iteration(phase, workload);
+		}
+		double[] samples = new double[iterations];
+		for (int i=0; i<iterations; i++) {
+			samples[i] = iteration(phase, workload);
+		}
+		double mean = 0;
+		for (double sample : samples) {
+			mean += sample;
+		}
+		mean /= samples.length;
+		double error = Double.NaN;
+		if (samples.length > 1) {
+			double variance = 0;
+			for (double sample : samples) {
+				variance += (sample - mean) * (sample - mean);
+			}
+			variance /= samples.length - 1;
+			int df = samples.length - 1;
+			double t = df < T_999.length ? T_999[df] : T_999_LIMIT;
+			error = t * Math.sqrt(variance / samples.length);
+		}
+		StringBuilder json = new StringBuilder();
+		json.append("{\"benchmark\":\"").append(name).append('"');
+		json.append(",\"phase\":\"").append(phase.name()).append('"');
+		json.append(",\"workload\":\"").append(workload.name()).append('"');
+		json.append(",\"mode\":\"avgt\",\"unit\":\"ns/op\"");
+		json.append(",\"score\":").append(mean);
+		json.append(",\"error\":").append(Double.isNaN(error) ? "null" : String.valueOf(error));
+		json.append(",\"iterations\":").append(iterations);
+		if (phase.name().startsWith("EXECUTE")) {
+			long instructions = instructionCount(workload);
+			json.append(",\"instructions\":").append(instructions);
+			json.append(",\"instructionsPerSecond\":").append(instructions / mean * 1e9);
+		}
+		json.append(",\"jvm\":\"").append(System.getProperty("java.version")).append('"');
+		return json.append('}').toString();
+	}
+	
+	// returns the mean time per operation, in nanoseconds, of one iteration
+	private double iteration(Phase phase, Workload workload) throws Exception {
+		long deadline = System.nanoTime() + iterationMillis * 1000000L;
+		long elapsed = 0;
+		long operations = 0;
+		long sink = 0;
+		do {
+			Object state = phase.prepare(workload);
+			long start = System.nanoTime();
+			sink += phase.run(state);
+			elapsed += System.nanoTime() - start;
+			operations++;
+		} while (System.nanoTime() < deadline);
+		blackhole ^= sink;
+		return (double) elapsed / operations;
+	}
+	
+	private static long instructionCount(Workload workload) {
+		SingleCycleSimulator sim = Phase.simulator(workload, ExecutionEngine.PREDECODED);
+		return sim.runCPU(CPU.UNLIMITED, CPU.NO_DEADLINE).getInstructionsExecuted();
+	}
+	
+	public static void main(String[] args) throws Exception {
+		int warmup = DEFAULT_WARMUP_ITERATIONS;
+		int iterations = DEFAULT_ITERATIONS;
+		long iterationMillis = DEFAULT_ITERATION_MILLIS;
+		Pattern filter = Pattern.compile("");
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals("--warmup")) {
+				warmup = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--iterations")) {
+				iterations = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--time-ms")) {
+				iterationMillis = Long.parseLong(args[++i]);
+			} else if (args[i].equals("--filter")) {
+				filter = Pattern.compile(args[++i]);
+			} else if (args[i].equals("--out")) {
+				out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(args[++i]), StandardCharsets.UTF_8));
+			} else {
+				System.err.println("Unknown option " + args[i]);
+				System.exit(2);
+			}
+		}
+		new BenchmarkRunner(warmup, iterations, iterationMillis).run(filter, out);
+		out.close();
+		if (blackhole == 42) {
+			System.err.println();
+		}
+	}
+	
+	// consumes the results of every operation so that they cannot be optimised away
+	private static volatile long blackhole;
+	
+	private int warmupIterations;
+	private int iterations;
+	private long iterationMillis;
+}
@@ -0,0 +1,251 @@
+package com.arm.legv8simulator.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.ExecutionEngine;
+import com.arm.legv8simulator.client.cpu.TraceLevel;
+import com.arm.legv8simulator.client.executionmodes.LEGv8_Simulator;
+import com.arm.legv8simulator.client.executionmodes.PipelinedSimulator;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+import com.arm.legv8simulator.client.instruction.Decoder;
+import com.arm.legv8simulator.client.instruction.Instruction;
+import com.arm.legv8simulator.client.lexer.Lexer;
+import com.arm.legv8simulator.client.lexer.TextLine;
+import com.arm.legv8simulator.jit.BlockJit;
+
+/**
+ * The <code>Phase</code> enumeration defines the parts of the simulator that are benchmarked. 
+ * <p>
+ * Each operation of a phase processes a whole <code>Workload</code>. Anything the phase depends on, 
+ * e.g. the tokens for <code>PARSE</code> or a freshly assembled simulator for the execution phases, is 
+ * built by <code>prepare</code>, which is not timed. <code>run</code> returns a value derived from 
+ * its work so that the JVM cannot eliminate it.
+ * 
+ * @see BenchmarkRunner
+ */
+public enum Phase {
+	
+	/**
+	 * <code>Lexer.lex</code> on every line of the workload
+	 */
+	LEX {
+		@Override
+		Object prepare(Workload workload) {
+			return lines(workload);
+		}
+		@Override
+		long run(Object state) throws Exception {
+			long tokens = 0;
+			for (String line : (String[]) state) {
+				tokens += Lexer.lex(line).size();
+			}
+			return tokens;
+		}
+	},
+	
+	/**
+	 * <code>TextLine.parse</code>, and so <code>Parser.parseLine</code>, on every tokenized line
+	 */
+	PARSE {
+		@Override
+		Object prepare(Workload workload) {
+			ArrayList<TextLine> code = textLines(workload);
+			for (TextLine line : code) {
+				line.tokenize();
+			}
+			return code;
+		}
+		@SuppressWarnings("unchecked")
+		@Override
+		long run(Object state) throws Exception {
+			long errors = 0;
+			for (TextLine line : (ArrayList<TextLine>) state) {
+				if (line.parse() != null) errors++;
+			}
+			return errors;
+		}
+	},
+	
+	/**
+	 * <code>Decoder.getInstruction</code> on every parsed line
+	 */
+	DECODE {
+		@Override
+		Object prepare(Workload workload) {
+			ArrayList<TextLine> code = textLines(workload);
+			HashMap<String, Integer> branchTable = new HashMap<String, Integer>();
+			int instructionCount = 0;
+			for (TextLine line : code) {
+				line.tokenize();
+				line.parse();
+				if (line.getLabel() != null) {
+					branchTable.put(line.getLabel(), instructionCount);
+				}
+				if (line.getMnemonic() != null) {
+					instructionCount++;
+				}
+			}
+			return new Object[] {code, branchTable};
+		}
+		@SuppressWarnings("unchecked")
+		@Override
+		long run(Object state) throws Exception {
+			ArrayList<TextLine> code = (ArrayList<TextLine>) ((Object[]) state)[0];
+			HashMap<String, Integer> branchTable = (HashMap<String, Integer>) ((Object[]) state)[1];
+			long sum = 0;
+			for (int i=0; i<code.size(); i++) {
+				TextLine line = code.get(i);
+				Instruction ins = Decoder.getInstruction(line.getMnemonic(), line.getArgs(), i, branchTable);
+				sum += ins.getArgs()[0];
+			}
+			return sum;
+		}
+	},
+	
+	/**
+	 * Construction of a <code>SingleCycleSimulator</code>: lexing, parsing, the branch table and decoding
+	 */
+	ASSEMBLE {
+		@Override
+		Object prepare(Workload workload) {
+			return workload.source;
+		}
+		@Override
+		long run(Object state) throws Exception {
+			return new SingleCycleSimulator(textLines((String) state)).getCompileErrorMsgs().size();
+		}
+	},
+	
+	/**
+	 * <code>CPU.run</code> with the interpreter and the CPU log off
+	 */
+	EXECUTE_INTERPRETER {
+		@Override
+		Object prepare(Workload workload) {
+			return simulator(workload, ExecutionEngine.INTERPRETER);
+		}
+		@Override
+		long run(Object state) {
+			LEGv8_Simulator sim = (LEGv8_Simulator) state;
+			sim.runCPU();
+			return sim.getCPURegister(CPU.X1);
+		}
+	},
+	
+	/**
+	 * <code>CPU.run</code> on a <code>PredecodedProgram</code>, which is built in <code>run</code>
+	 */
+	EXECUTE_PREDECODED {
+		@Override
+		Object prepare(Workload workload) {
+			return simulator(workload, ExecutionEngine.PREDECODED);
+		}
+		@Override
+		long run(Object state) {
+			LEGv8_Simulator sim = (LEGv8_Simulator) state;
+			sim.runCPU();
+			return sim.getCPURegister(CPU.X1);
+		}
+	},
+	
+	/**
+	 * <code>BlockJit</code> with the default compile threshold. One tier is used for every operation, so the 
+	 * blocks are compiled during the warmup runs and reused by the measured ones.
+	 */
+	EXECUTE_JIT {
+		private final BlockJit jit = new BlockJit();
+		
+		@Override
+		Object prepare(Workload workload) {
+			return simulator(workload, ExecutionEngine.INTERPRETER);
+		}
+		@Override
+		long run(Object state) {
+			LEGv8_Simulator sim = (LEGv8_Simulator) state;
+			sim.runCPU(jit);
+			return sim.getCPURegister(CPU.X1);
+		}
+	},
+	
+	/**
+	 * <code>PipelinedSimulator.clock</code> until the program has left the pipeline
+	 */
+	PIPELINE {
+		@Override
+		boolean supports(Workload workload) {
+			return workload.pipelineSupported;
+		}
+		@Override
+		Object prepare(Workload workload) {
+			return new PipelinedSimulator(textLines(workload));
+		}
+		@Override
+		long run(Object state) {
+			PipelinedSimulator sim = (PipelinedSimulator) state;
+			int numInstructions = 0;
+			for (TextLine line : sim.getCode()) {
+				if (line.getMnemonic() != null) numInstructions++;
+			}
+			long cycles = 0;
+			while (sim.getInstructionIndex() < numInstructions && sim.getRuntimeErrorMsg() == null) {
+				sim.clock();
+				cycles++;
+			}
+			for (int i=0; i<PipelinedSimulator.PIPELINE_SIZE; i++) {
+				sim.clock();
+				cycles++;
+			}
+			return cycles;
+		}
+	};
+	
+	/**
+	 * @param workload	a workload
+	 * @return			<code>true</code> if this phase can run <code>workload</code>
+	 */
+	boolean supports(Workload workload) {
+		return true;
+	}
+	
+	/**
+	 * Builds the untimed input of a single operation
+	 * 
+	 * @param workload	the workload to process
+	 * @return			the input of <code>run</code>
+	 */
+	abstract Object prepare(Workload workload);
+	
+	/**
+	 * The timed operation
+	 * 
+	 * @param state	the value returned by <code>prepare</code>
+	 * @return		a value derived from the work done
+	 * @throws Exception
+	 */
+	abstract long run(Object state) throws Exception;
+	
+	static String[] lines(Workload workload) {
+		return workload.source.split("\n");
+	}
+	
+	static ArrayList<TextLine> textLines(Workload workload) {
+		return textLines(workload.source);
+	}
+	
+	static ArrayList<TextLine> textLines(String source) {
+		ArrayList<TextLine> code = new ArrayList<TextLine>();
+		for (String line : source.split("\n")) {
+			code.add(new TextLine(line.trim()));
+		}
+		return code;
+	}
+	
+	static SingleCycleSimulator simulator(Workload workload, ExecutionEngine engine) {
+		SingleCycleSimulator sim = new SingleCycleSimulator(textLines(workload));
+		sim.setTraceLevel(TraceLevel.OFF, 0);
+		sim.setExecutionEngine(engine);
+		return sim;
+	}
+}
@@ -0,0 +1,115 @@
+package com.arm.legv8simulator.benchmark;
+
+/**
+ * The <code>Workload</code> enumeration defines the LEGv8 programs used by the benchmarks. Each one 
+ * stresses a different part of the simulator and runs for roughly 100,000 instructions.
+ * <p>
+ * The programs only use instructions which the pipeline supports, apart from <code>RECURSION</code>, 
+ * and do not address memory through SP. The recursive workload keeps its stack frames in X27.
+ * 
+ * @see BenchmarkRunner
+ */
+public enum Workload {
+	
+	/**
+	 * A tight loop of register arithmetic and logical instructions, ending with a flag-setting 
+	 * subtraction and a conditional branch
+	 */
+	ARITHMETIC_LOOP(true,
+			"	MOVZ X1, #20000, LSL #0",
+			"loop:	ADD X2, X2, X1",
+			"	EOR X3, X3, X2",
+			"	LSL X4, X3, #3",
+			"	ORR X5, X5, X4",
+			"	SUBIS X1, X1, #1",
+			"	B.NE loop"),
+	
+	/**
+	 * Fills a 4KB buffer then copies it 40 times with LDUR and STUR, exercising <code>Memory</code>
+	 */
+	MEMCPY(true,
+			"	MOVZ X9, #4096, LSL #16",
+			"	MOVZ X1, #512, LSL #0",
+			"fill:	STUR X1, [X9, #0]",
+			"	ADDI X9, X9, #8",
+			"	SUBIS X1, X1, #1",
+			"	B.NE fill",
+			"	MOVZ X11, #40, LSL #0",
+			"outer:	MOVZ X9, #4096, LSL #16",
+			"	MOVZ X10, #4097, LSL #16",
+			"	MOVZ X1, #512, LSL #0",
+			"copy:	LDUR X2, [X9, #0]",
+			"	STUR X2, [X10, #0]",
+			"	ADDI X9, X9, #8",
+			"	ADDI X10, X10, #8",
+			"	SUBIS X1, X1, #1",
+			"	B.NE copy",
+			"	SUBIS X11, X11, #1",
+			"	B.NE outer"),
+	
+	/**
+	 * Computes fib(18) by naive recursion with BL and BR, saving the link register in memory
+	 */
+	RECURSION(false,
+			"	MOVZ X27, #4096, LSL #16",
+			"	MOVZ X0, #18, LSL #0",
+			"	BL fib",
+			"	B end",
+			"fib:	CBZ X0, zero",
+			"	SUBI X9, X0, #1",
+			"	CBZ X9, one",
+			"	STUR X30, [X27, #0]",
+			"	STUR X0, [X27, #8]",
+			"	ADDI X27, X27, #24",
+			"	SUBI X0, X0, #1",
+			"	BL fib",
+			"	SUBI X27, X27, #24",
+			"	STUR X1, [X27, #16]",
+			"	LDUR X0, [X27, #8]",
+			"	ADDI X27, X27, #24",
+			"	SUBI X0, X0, #2",
+			"	BL fib",
+			"	SUBI X27, X27, #24",
+			"	LDUR X9, [X27, #16]",
+			"	ADD X1, X1, X9",
+			"	LDUR X30, [X27, #0]",
+			"	BR X30",
+			"zero:	ADD X1, XZR, XZR",
+			"	BR X30",
+			"one:	ADDI X1, XZR, #1",
+			"	BR X30",
+			"end:	ADD X2, X1, XZR"),
+	
+	/**
+	 * An atomic increment retried until STXR succeeds, 20,000 times
+	 */
+	EXCLUSIVE_SPIN(true,
+			"	MOVZ X9, #4096, LSL #16",
+			"	MOVZ X1, #20000, LSL #0",
+			"loop:	LDXR X2, [X9, #0]",
+			"	ADDI X2, X2, #1",
+			"	STXR X2, X3, [X9, #0]",
+			"	CBNZ X3, loop",
+			"	SUBIS X1, X1, #1",
+			"	B.NE loop");
+	
+	private Workload(boolean pipelineSupported, String... lines) {
+		this.pipelineSupported = pipelineSupported;
+		StringBuilder text = new StringBuilder();
+		for (String line : lines) {
+			text.append(line).append('\n');
+		}
+		this.source = text.toString();
+	}
+	
+	/**
+	 * The LEGv8 source code of the workload, one instruction per line
+	 */
+	public final String source;
+	
+	/**
+	 * <code>false</code> if the workload uses instructions, such as BL and BR, which have no 
+	 * control unit configuration and so cannot be run in the pipeline
+	 */
+	public final boolean pipelineSupported;
+}
@@ -2,6 +2,7 @@ package com.arm.legv8simulator.client;
 
 import java.util.ArrayList;
 
+import com.arm.legv8simulator.client.executionmodes.IncrementalAssembler;
 import com.arm.legv8simulator.client.executionmodes.LEGv8_Simulator;
 import com.arm.legv8simulator.client.executionmodes.PipelinedSimulator;
 import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
@@ -495,6 +496,7 @@ public class WebApp implements EntryPoint {
 		initAssembleButt();
 		initExecModeDropdown();
 		initExecuteButt();
+		initStepBackButts();
 		initHelpButt();
 		buildControlPanel();
 	}
@@ -596,6 +598,41 @@ public class WebApp implements EntryPoint {
 		});
 	}
 	
+	// initialises the "Step Back" and "Run Back To Cursor" buttons in the control panel
+	private void initStepBackButts() {
+		stepBackButt = new Button("Step Back");
+		stepBackButt.setHeight("25px");
+		stepBackButt.setEnabled(false);
+		stepBackButt.addClickHandler(new ClickHandler() {
+			@Override
+			public void onClick(ClickEvent event) {
+				if (currentExMode.equals(executionModes.getSelectedItemText())) {
+					stepBack(-1);
+				} else {
+					setStepBackEnabled(false);
+				}
+			}
+		});
+		runBackButt = new Button("Run Back To Cursor");
+		runBackButt.setHeight("25px");
+		runBackButt.setEnabled(false);
+		runBackButt.addClickHandler(new ClickHandler() {
+			@Override
+			public void onClick(ClickEvent event) {
+				if (currentExMode.equals(executionModes.getSelectedItemText())) {
+					stepBack(editor.getCursorPosition().getRow());
+				} else {
+					setStepBackEnabled(false);
+				}
+			}
+		});
+	}
+	
+	private void setStepBackEnabled(boolean enabled) {
+		stepBackButt.setEnabled(enabled);
+		runBackButt.setEnabled(enabled);
+	}
+	
 	// adds all buttons and dropdown box to the control panel
 	private void buildControlPanel() {
 		controlPanel = new HorizontalPanel();
@@ -617,8 +654,16 @@ public class WebApp implements EntryPoint {
 		buttonPanel.add(padding2);
 		buttonPanel.add(executeButt);
 		HorizontalPanel padding3 = new HorizontalPanel();
-		padding3.setWidth("40px");
+		padding3.setWidth("10px");
 		buttonPanel.add(padding3);
+		buttonPanel.add(stepBackButt);
+		HorizontalPanel padding4 = new HorizontalPanel();
+		padding4.setWidth("10px");
+		buttonPanel.add(padding4);
+		buttonPanel.add(runBackButt);
+		HorizontalPanel padding5 = new HorizontalPanel();
+		padding5.setWidth("40px");
+		buttonPanel.add(padding5);
 		buttonPanel.add(helpButt);
 		controlPanel.add(buttonPanel);
 	}
@@ -689,8 +734,9 @@ public class WebApp implements EntryPoint {
 	// starts a new SingleCycleSimulator object
 	private void launchSingleCycleSim() {
 		editor.clearAnnotations();
-		splitIntoLines(editor.getText());
-		singleCycleSim = new SingleCycleSimulator(code);
+		assembler.assemble(splitIntoLines(editor.getText()));
+		code = assembler.getCode();
+		singleCycleSim = new SingleCycleSimulator(assembler);
 		String text = "";
 		for (int i=0; i<singleCycleSim.getCode().size(); i++) {
 			text += singleCycleSim.getCode().get(i).getLine() + "\n";
@@ -700,6 +746,7 @@ public class WebApp implements EntryPoint {
 		updateRegisterLabels(singleCycleSim);
 		updateFlagLabels(singleCycleSim);
 		compileErrors = singleCycleSim.getCompileErrorMsgs();
+		setStepBackEnabled(false);
 		if (compileErrors.size() != 0) {
 			executeButt.setEnabled(false);
 			setCompileErrors();
@@ -712,8 +759,9 @@ public class WebApp implements EntryPoint {
 	// starts a new PipleineSimulator object
 	private void launchPipelineSim() {
 		editor.clearAnnotations();
-		splitIntoLines(editor.getText());
-		pipelineSim = new PipelinedSimulator(code);
+		assembler.assemble(splitIntoLines(editor.getText()));
+		code = assembler.getCode();
+		pipelineSim = new PipelinedSimulator(assembler);
 		String text = "";
 		for (int i=0; i<pipelineSim.getCode().size(); i++) {
 			text += pipelineSim.getCode().get(i).getLine() + "\n";
@@ -723,6 +771,7 @@ public class WebApp implements EntryPoint {
 		updateRegisterLabels(pipelineSim);
 		updateFlagLabels(pipelineSim);
 		compileErrors = pipelineSim.getCompileErrorMsgs();
+		setStepBackEnabled(false);
 		if (compileErrors.size() != 0) {
 			executeButt.setEnabled(false);
 			setCompileErrors();
@@ -741,6 +790,7 @@ public class WebApp implements EntryPoint {
 		cpuLog.setText(singleCycleSim.getCpuLog());
 		updateRegisterLabels(singleCycleSim);
 		updateFlagLabels(singleCycleSim);
+		setStepBackEnabled(true);
 		if (visual) {
 			Timer t = new Timer() {
 				private double i = 100;
@@ -794,6 +844,7 @@ public class WebApp implements EntryPoint {
 		cpuLog.setText(pipelineSim.getPipelineLog());
 		updateRegisterLabels(pipelineSim);
 		updateFlagLabels(pipelineSim);
+		setStepBackEnabled(true);
 		runtimeError = pipelineSim.getRuntimeErrorMsg();
 		if (runtimeError != null) {
 			executeButt.setEnabled(false);
@@ -802,6 +853,46 @@ public class WebApp implements EntryPoint {
 		}
 	}
 	
+	// undoes the last instruction or clock, or if lineNumber is not -1 runs back to the last time the 
+	// next instruction was on that line, then shows the state reached
+	private void stepBack(int lineNumber) {
+		LEGv8_Simulator sim = singleCycleSim != null ? singleCycleSim : pipelineSim;
+		if (lineNumber == -1) {
+			sim.stepBack();
+		} else if (!sim.runBackTo(lineNumber)) {
+			return;
+		}
+		editor.removeAllMarkers();
+		if (sim.getStepCount() > 0 && sim.getCurrentLineNumber() != -1) {
+			editor.addMarker(AceRange.create(sim.getCurrentLineNumber(), 0, sim.getCurrentLineNumber(), 
+					41), "ace_selection", AceMarkerType.FULL_LINE, false);
+		}
+		updateRegisterLabels(sim);
+		updateFlagLabels(sim);
+		if (sim == singleCycleSim) {
+			cpuLog.setText(singleCycleSim.getCpuLog());
+			Instruction current = singleCycleSim.getCurrentInstruction();
+			scDatapath.getContext().setGlobalAlpha(1.0);
+			if (current == null) {
+				scDatapath.datapathInit();
+			} else {
+				scDatapath.updateDatapath(current, singleCycleSim.getBranchTaken(), singleCycleSim.getSTXRSucceed(),
+						singleCycleSim.getCurrentInsIndex(), code.get(current.getLineNumber()).getArgs().get(0));
+			}
+		} else {
+			cpuLog.setText(pipelineSim.getPipelineLog());
+		}
+		// the state shown is from before any runtime error
+		editor.clearAnnotations();
+		runtimeError = sim.getRuntimeErrorMsg();
+		if (runtimeError != null) {
+			setError(runtimeError.getMsg(), runtimeError.getLineNumber());
+		}
+		editor.setAnnotations();
+		executeButt.setEnabled(runtimeError == null);
+		setStepBackEnabled(sim.getStepCount() > 0);
+	}
+	
 	// adds the error messages the left side of the source code editor - seen as red box with white cross
 	private void setCompileErrors() {
 		for (int i=0; i<compileErrors.size(); i++) {
@@ -814,21 +905,22 @@ public class WebApp implements EntryPoint {
 	}
 	
 	// divides the string in the source code editor into individual lines
-	// the resulting list of text lines will be passed to a derivative of LEGv8_Simulator for processing
-	private void splitIntoLines(String editorText) {
-		code = new ArrayList<TextLine>();
+	// the resulting list of lines will be passed to the assembler for processing
+	private ArrayList<String> splitIntoLines(String editorText) {
+		ArrayList<String> lines = new ArrayList<String>();
 		int currentIndex = 0;
 		int indexNextNewLineChar;
 		while (currentIndex+"\n".length() < editorText.length()) {
 			indexNextNewLineChar = editorText.indexOf("\n", currentIndex);
 			if (indexNextNewLineChar == -1) {
-				code.add(new TextLine(editorText.substring(currentIndex, editorText.length()).trim()));
+				lines.add(editorText.substring(currentIndex, editorText.length()).trim());
 				currentIndex = editorText.length();
 			} else {
-				code.add(new TextLine(editorText.substring(currentIndex, indexNextNewLineChar).trim()));
+				lines.add(editorText.substring(currentIndex, indexNextNewLineChar).trim());
 				currentIndex = indexNextNewLineChar+1;
 			}
 		}
+		return lines;
 	}
 	
 	// panels
@@ -850,7 +942,10 @@ public class WebApp implements EntryPoint {
 	private Error runtimeError;
 	private ArrayList<Error> compileErrors;
 	private ArrayList<TextLine> code;
+	private IncrementalAssembler assembler = new IncrementalAssembler();
 	private Button executeButt;
+	private Button stepBackButt;
+	private Button runBackButt;
 	private Button assembleButt;
 	private Button helpButt;
 	private RegisterPanel[] regPanels = new RegisterPanel[32];
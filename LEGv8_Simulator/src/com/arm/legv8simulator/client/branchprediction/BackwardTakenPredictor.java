@@ -0,0 +1,23 @@
+package com.arm.legv8simulator.client.branchprediction;
+
+/**
+ * Predicts that branches backwards are taken and branches forwards are not (BTFN). Backward branches
+ * usually close loops, so are usually taken.
+ *
+ * @see BranchPredictor
+ */
+public class BackwardTakenPredictor implements BranchPredictor {
+
+	@Override
+	public int predict(int index, int target) {
+		return target >= 0 && target <= index ? target : NOT_TAKEN;
+	}
+
+	@Override
+	public void update(int index, boolean taken, int target) {}
+
+	@Override
+	public String getName() {
+		return "static backward taken, forward not taken";
+	}
+}
@@ -0,0 +1,44 @@
+package com.arm.legv8simulator.client.branchprediction;
+
+/**
+ * A <code>BranchPredictor</code> guesses the outcome of each branch as it is fetched by the pipelined
+ * simulator, so that the next instruction can be fetched before the branch is resolved. When the guess is
+ * wrong the instruction fetched is flushed from the pipeline.
+ * <p>
+ * Instructions are identified by their index in the program. The target of a PC-relative branch is taken
+ * to be known when it is fetched; the target of <code>BR</code> is held in a register and must be predicted
+ * too, e.g. by a <code>BranchTargetBuffer</code>.
+ *
+ * @see BranchPredictorModel
+ * @see BranchTargetBuffer
+ */
+public interface BranchPredictor {
+
+	/**
+	 * The prediction of a branch that is not taken
+	 */
+	int NOT_TAKEN = -1;
+
+	/**
+	 * @param index		the index of the branch instruction
+	 * @param target	the index of the instruction the branch goes to if taken, -1 if the target is held in
+	 * 					a register
+	 * @return			the predicted index of the instruction the branch goes to, <code>NOT_TAKEN</code> if the
+	 * 					branch is predicted not taken
+	 */
+	int predict(int index, int target);
+
+	/**
+	 * Trains the predictor with the outcome of a branch, once it has been resolved
+	 *
+	 * @param index		the index of the branch instruction
+	 * @param taken		whether the branch was taken
+	 * @param target	the index of the instruction the branch went to, if it was taken
+	 */
+	void update(int index, boolean taken, int target);
+
+	/**
+	 * @return	a short description of the predictor
+	 */
+	String getName();
+}
@@ -0,0 +1,87 @@
+package com.arm.legv8simulator.client.branchprediction;
+
+/**
+ * The <code>BranchPredictorModel</code> enumeration defines the built-in branch predictors of the pipelined
+ * simulator, in their default sizes.
+ *
+ * @see BranchPredictor
+ */
+public enum BranchPredictorModel {
+
+	/**
+	 * Every branch is predicted not taken
+	 *
+	 * @see NotTakenPredictor
+	 */
+	NOT_TAKEN {
+		@Override
+		public BranchPredictor create() {
+			return new NotTakenPredictor();
+		}
+	},
+
+	/**
+	 * Backward branches are predicted taken, forward branches not taken
+	 *
+	 * @see BackwardTakenPredictor
+	 */
+	BTFN {
+		@Override
+		public BranchPredictor create() {
+			return new BackwardTakenPredictor();
+		}
+	},
+
+	/**
+	 * Each branch is predicted to do what it did last time
+	 *
+	 * @see OneBitPredictor
+	 */
+	ONE_BIT {
+		@Override
+		public BranchPredictor create() {
+			return new OneBitPredictor(DEFAULT_ENTRIES);
+		}
+	},
+
+	/**
+	 * Each branch is predicted by a 2-bit saturating counter
+	 *
+	 * @see TwoBitPredictor
+	 */
+	TWO_BIT {
+		@Override
+		public BranchPredictor create() {
+			return new TwoBitPredictor(DEFAULT_ENTRIES);
+		}
+	},
+
+	/**
+	 * Each branch is predicted by a 2-bit saturating counter chosen by the branch and the recent outcomes
+	 *
+	 * @see GsharePredictor
+	 */
+	GSHARE {
+		@Override
+		public BranchPredictor create() {
+			return new GsharePredictor(DEFAULT_HISTORY_BITS);
+		}
+	};
+
+	public static final int DEFAULT_ENTRIES = 1024;
+	public static final int DEFAULT_HISTORY_BITS = 10;
+	public static final int DEFAULT_BTB_ENTRIES = 64;
+
+	/**
+	 * @return	a new, untrained predictor of this model
+	 */
+	public abstract BranchPredictor create();
+
+	/**
+	 * @return	a new, untrained predictor of this model which predicts the targets of <code>BR</code> with a
+	 * 			<code>BranchTargetBuffer</code>
+	 */
+	public BranchPredictor createWithTargetBuffer() {
+		return new BranchTargetBuffer(create(), DEFAULT_BTB_ENTRIES);
+	}
+}
@@ -0,0 +1,60 @@
+package com.arm.legv8simulator.client.branchprediction;
+
+/**
+ * A <code>BranchTargetBuffer</code> remembers where each taken branch went, so that a branch to an address
+ * held in a register (<code>BR</code>) can be predicted. It is direct mapped: each branch is held in the entry
+ * given by the low bits of its instruction index, replacing any other branch mapped to that entry.
+ * <p>
+ * A register branch found in the buffer is predicted taken to the target held; one that is not is predicted
+ * not taken. Every other branch is predicted by the direction predictor the buffer wraps.
+ *
+ * @see BranchPredictor
+ */
+public class BranchTargetBuffer implements BranchPredictor {
+
+	/**
+	 * @param direction	the predictor of branches whose target is known when they are fetched
+	 * @param entries	the number of entries in the buffer, a power of 2
+	 * @throws IllegalArgumentException	if <code>entries</code> is not a power of 2
+	 */
+	public BranchTargetBuffer(BranchPredictor direction, int entries) {
+		if (entries < 1 || (entries & (entries - 1)) != 0) {
+			throw new IllegalArgumentException("The number of entries must be a power of 2");
+		}
+		this.direction = direction;
+		tags = new int[entries];
+		targets = new int[entries];
+		for (int i=0; i<entries; i++) {
+			tags[i] = -1;
+		}
+	}
+
+	@Override
+	public int predict(int index, int target) {
+		if (target >= 0) {
+			return direction.predict(index, target);
+		}
+		int entry = index & (tags.length - 1);
+		return tags[entry] == index ? targets[entry] : NOT_TAKEN;
+	}
+
+	@Override
+	public void update(int index, boolean taken, int target) {
+		direction.update(index, taken, target);
+		if (taken) {
+			int entry = index & (tags.length - 1);
+			tags[entry] = index;
+			targets[entry] = target;
+		}
+	}
+
+	@Override
+	public String getName() {
+		return direction.getName() + " with a " + tags.length + " entry BTB";
+	}
+
+	private final BranchPredictor direction;
+	// the index of the branch held in each entry, -1 if empty
+	private final int[] tags;
+	private final int[] targets;
+}
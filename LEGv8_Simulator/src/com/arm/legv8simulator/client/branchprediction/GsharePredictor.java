@@ -0,0 +1,51 @@
+package com.arm.legv8simulator.client.branchprediction;
+
+/**
+ * A gshare predictor: a table of 2-bit saturating counters indexed by the instruction index XORed with the
+ * outcomes of the most recent branches. Branches whose outcome depends on the path taken to them, such as
+ * a branch correlated with an earlier one, get a counter for each path.
+ *
+ * @see TwoBitPredictor
+ * @see BranchPredictor
+ */
+public class GsharePredictor implements BranchPredictor {
+
+	/**
+	 * @param historyBits	the number of recent outcomes kept; the table has 2^<code>historyBits</code> counters
+	 * @throws IllegalArgumentException	if <code>historyBits</code> is not in the range 1-24
+	 */
+	public GsharePredictor(int historyBits) {
+		if (historyBits < 1 || historyBits > 24) {
+			throw new IllegalArgumentException("The history must be 1-24 bits");
+		}
+		counters = new byte[1 << historyBits];
+		for (int i=0; i<counters.length; i++) {
+			counters[i] = TwoBitPredictor.WEAKLY_NOT_TAKEN;
+		}
+	}
+
+	@Override
+	public int predict(int index, int target) {
+		return target >= 0 && counters[entry(index)] >= TwoBitPredictor.WEAKLY_TAKEN ? target : NOT_TAKEN;
+	}
+
+	@Override
+	public void update(int index, boolean taken, int target) {
+		int entry = entry(index);
+		counters[entry] = TwoBitPredictor.next(counters[entry], taken);
+		history = ((history << 1) | (taken ? 1 : 0)) & (counters.length - 1);
+	}
+
+	@Override
+	public String getName() {
+		return "gshare, " + Integer.numberOfTrailingZeros(counters.length) + " bits of history";
+	}
+
+	private int entry(int index) {
+		return (index ^ history) & (counters.length - 1);
+	}
+
+	private final byte[] counters;
+	// the outcomes of the most recent branches, most recent in bit 0
+	private int history;
+}
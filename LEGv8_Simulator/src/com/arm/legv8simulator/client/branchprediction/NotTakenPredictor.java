@@ -0,0 +1,24 @@
+package com.arm.legv8simulator.client.branchprediction;
+
+/**
+ * Predicts that no branch is taken, i.e. always fetches the next instruction in the program. This is the
+ * behaviour of the pipeline in Patterson and Hennessy ARM edition, which flushes the fetched instruction
+ * when a branch is taken.
+ *
+ * @see BranchPredictor
+ */
+public class NotTakenPredictor implements BranchPredictor {
+
+	@Override
+	public int predict(int index, int target) {
+		return NOT_TAKEN;
+	}
+
+	@Override
+	public void update(int index, boolean taken, int target) {}
+
+	@Override
+	public String getName() {
+		return "static not taken";
+	}
+}
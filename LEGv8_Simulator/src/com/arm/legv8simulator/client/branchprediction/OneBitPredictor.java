@@ -0,0 +1,39 @@
+package com.arm.legv8simulator.client.branchprediction;
+
+/**
+ * Predicts that each branch does what it did the last time it was executed. The outcomes are held in a
+ * table indexed by the low bits of the instruction index, so branches may share an entry.
+ *
+ * @see BranchPredictor
+ */
+public class OneBitPredictor implements BranchPredictor {
+
+	/**
+	 * @param entries	the number of entries in the table, a power of 2
+	 * @throws IllegalArgumentException	if <code>entries</code> is not a power of 2
+	 */
+	public OneBitPredictor(int entries) {
+		if (entries < 1 || (entries & (entries - 1)) != 0) {
+			throw new IllegalArgumentException("The number of entries must be a power of 2");
+		}
+		taken = new boolean[entries];
+	}
+
+	@Override
+	public int predict(int index, int target) {
+		return target >= 0 && taken[index & (taken.length - 1)] ? target : NOT_TAKEN;
+	}
+
+	@Override
+	public void update(int index, boolean taken, int target) {
+		this.taken[index & (this.taken.length - 1)] = taken;
+	}
+
+	@Override
+	public String getName() {
+		return "1-bit, " + taken.length + " entries";
+	}
+
+	// the last outcome of the branches mapped to each entry
+	private final boolean[] taken;
+}
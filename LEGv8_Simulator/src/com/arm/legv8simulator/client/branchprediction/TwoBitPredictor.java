@@ -0,0 +1,62 @@
+package com.arm.legv8simulator.client.branchprediction;
+
+/**
+ * Predicts each branch with a 2-bit saturating counter, which is incremented when the branch is taken and
+ * decremented when it is not; the branch is predicted taken if the counter is 2 or 3. A branch must be
+ * mispredicted twice in a row to change its prediction, so the exit of a loop costs one misprediction
+ * rather than two. The counters are held in a table indexed by the low bits of the instruction index, and
+ * start weakly not taken.
+ *
+ * @see BranchPredictor
+ */
+public class TwoBitPredictor implements BranchPredictor {
+
+	/**
+	 * @param entries	the number of counters, a power of 2
+	 * @throws IllegalArgumentException	if <code>entries</code> is not a power of 2
+	 */
+	public TwoBitPredictor(int entries) {
+		if (entries < 1 || (entries & (entries - 1)) != 0) {
+			throw new IllegalArgumentException("The number of entries must be a power of 2");
+		}
+		counters = new byte[entries];
+		for (int i=0; i<entries; i++) {
+			counters[i] = WEAKLY_NOT_TAKEN;
+		}
+	}
+
+	@Override
+	public int predict(int index, int target) {
+		return target >= 0 && counters[index & (counters.length - 1)] >= WEAKLY_TAKEN ? target : NOT_TAKEN;
+	}
+
+	@Override
+	public void update(int index, boolean taken, int target) {
+		counters[index & (counters.length - 1)] = next(counters[index & (counters.length - 1)], taken);
+	}
+
+	@Override
+	public String getName() {
+		return "2-bit, " + counters.length + " entries";
+	}
+
+	/**
+	 * @param counter	the value of a 2-bit saturating counter
+	 * @param taken		whether the branch was taken
+	 * @return			the value of the counter after the outcome
+	 */
+	static byte next(byte counter, boolean taken) {
+		if (taken) {
+			return counter < STRONGLY_TAKEN ? (byte) (counter + 1) : counter;
+		} else {
+			return counter > STRONGLY_NOT_TAKEN ? (byte) (counter - 1) : counter;
+		}
+	}
+
+	static final byte STRONGLY_NOT_TAKEN = 0;
+	static final byte WEAKLY_NOT_TAKEN = 1;
+	static final byte WEAKLY_TAKEN = 2;
+	static final byte STRONGLY_TAKEN = 3;
+
+	private final byte[] counters;
+}
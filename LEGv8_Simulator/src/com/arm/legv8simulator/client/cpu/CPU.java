@@ -1,9 +1,8 @@
 package com.arm.legv8simulator.client.cpu;
 
-import java.util.ArrayList;
-
 import com.arm.legv8simulator.client.Error;
-import com.arm.legv8simulator.client.instruction.Instruction;
+import com.arm.legv8simulator.client.instruction.InstructionTable;
+import com.arm.legv8simulator.client.instruction.Mnemonic;
 import com.arm.legv8simulator.client.memory.Memory;
 import com.arm.legv8simulator.client.memory.SegmentFaultException;
 
@@ -16,13 +15,6 @@ import com.arm.legv8simulator.client.memory.SegmentFaultException;
  * @author Jonathan Wright, 2016
  */
 
-/*
- * Ugly things...
- * 1) Hard coded strings for log message saying ignored attempt to assign to XZR 
- * 2) The strings in the cpuLog.append(...) code for each instruction are hideous. 
- * 	  This is because GWT does not support the java.util.Formatter class which provides C-style printf() string formatting
- */ 
-
 public class CPU {
 	
 	public static final int INSTRUCTION_SIZE = 4;
@@ -61,6 +53,14 @@ public class CPU {
 	public static final int X1 = 1;
 	public static final int X0 = 0;
 	
+	public static final long UNLIMITED = Long.MAX_VALUE;
+	public static final long NO_DEADLINE = Long.MAX_VALUE;
+	private static final int DEADLINE_CHECK_INTERVAL = 1024;
+	
+	private static final int FLAGS_EVALUATED = 0;
+	private static final int FLAGS_ADD = 1;
+	private static final int FLAGS_AND = 2;
+	
 	/**
 	 * Constructs a new <code>CPU</code> object, initialising registers and flags to 0 and false respectively.
 	 * The SP register is then set according the definition of the LEGv8 virtual address space in Patterson and Hennessy ARM Edition.
@@ -82,27 +82,27 @@ public class CPU {
 	/**
 	 * The <code>Instruction</code> executed is that pointed to by the PC.
 	 * 
-	 * @param cpuInstructions	the list of <code>Instruction</code>s in the LEGv8 assembly program
-	 * @param memory			a reference to the data memory used in data transfer instructions
-	 * @return					an <code>Error</code> object, <code>null</code> if no error occurs during execution
+	 * @param program	the instructions of the LEGv8 assembly program
+	 * @param memory	a reference to the data memory used in data transfer instructions
+	 * @return			an <code>Error</code> object, <code>null</code> if no error occurs during execution
 	 * 
-	 * @see Instruction
+	 * @see InstructionTable
 	 * @see Memory
 	 * @see Error
 	 */
 	/*
 	 * The PC value is derived from the internal variable 'instructionIndex', which denotes the next instruction to execute
-	 * in the cpuInstructions ArrayList
+	 * in the program
 	 */
-	public Error executeInstruction(ArrayList<Instruction> cpuInstructions, Memory memory) {
+	public Error executeInstruction(InstructionTable program, Memory memory) {
 		try {
-			execute(cpuInstructions.get(instructionIndex++), memory);
+			execute(program, instructionIndex++, memory);
 		} catch (SegmentFaultException sfe) {
-			return new Error(sfe.getMessage(), cpuInstructions.get(instructionIndex-1).getLineNumber());
+			return new Error(sfe.getMessage(), program.getLineNumber(instructionIndex-1));
 		} catch (PCAlignmentException pcae) {
-			return new Error(pcae.getMessage(), cpuInstructions.get(instructionIndex-1).getLineNumber());
+			return new Error(pcae.getMessage(), program.getLineNumber(instructionIndex-1));
 		} catch (SPAlignmentException spae) {
-			return new Error(spae.getMessage(), cpuInstructions.get(instructionIndex-1).getLineNumber());
+			return new Error(spae.getMessage(), program.getLineNumber(instructionIndex-1));
 		}
 		return null;
 	}
@@ -110,21 +110,217 @@ public class CPU {
 	/**
 	 * This method will execute the supplied LEGv8 assembly program in its entirety.
 	 * 
-	 * @param cpuInstructions	the list of <code>Instruction</code>s in the LEGv8 assembly program
+	 * @param program	the instructions of the LEGv8 assembly program
+	 * @param memory	a reference to the data memory used in data transfer instructions
+	 * @return			an <code>Error</code> object, <code>null</code> if no error occurs during execution
+	 */
+	public Error run(InstructionTable program, Memory memory) {
+		int size = program.size();
+		try {
+			while (instructionIndex < size) {
+				execute(program, instructionIndex++, memory);
+			}
+		} catch (SegmentFaultException sfe) {
+			return new Error(sfe.getMessage(), program.getLineNumber(instructionIndex-1));
+		} catch (PCAlignmentException pcae) {
+			return new Error(pcae.getMessage(), program.getLineNumber(instructionIndex-1));
+		} catch (SPAlignmentException spae) {
+			return new Error(spae.getMessage(), program.getLineNumber(instructionIndex-1));
+		}
+		return null;
+	}
+	
+	/**
+	 * Executes the next instruction of a <code>PredecodedProgram</code>. Nothing is written to the CPU log.
+	 * 
+	 * @param program	the pre-decoded LEGv8 assembly program
+	 * @param memory	a reference to the data memory used in data transfer instructions
+	 * @return			an <code>Error</code> object, <code>null</code> if no error occurs during execution
+	 * 
+	 * @see PredecodedProgram
+	 */
+	public Error executeInstruction(PredecodedProgram program, Memory memory) {
+		PredecodedProgram.Operation op = program.getOperation(instructionIndex++);
+		branchTaken = false;
+		try {
+			op.execute(this, registerFile, memory);
+		} catch (SegmentFaultException sfe) {
+			return new Error(sfe.getMessage(), op.lineNumber);
+		} catch (PCAlignmentException pcae) {
+			return new Error(pcae.getMessage(), op.lineNumber);
+		} catch (SPAlignmentException spae) {
+			return new Error(spae.getMessage(), op.lineNumber);
+		}
+		return null;
+	}
+	
+	/**
+	 * This method will execute the supplied <code>PredecodedProgram</code> in its entirety. 
+	 * Nothing is written to the CPU log.
+	 * 
+	 * @param program	the pre-decoded LEGv8 assembly program
+	 * @param memory	a reference to the data memory used in data transfer instructions
+	 * @return			an <code>Error</code> object, <code>null</code> if no error occurs during execution
+	 * 
+	 * @see PredecodedProgram
+	 */
+	public Error run(PredecodedProgram program, Memory memory) {
+		long[] x = registerFile;
+		int size = program.size();
+		try {
+			while (instructionIndex < size) {
+				PredecodedProgram.Operation op = program.getSuperinstruction(instructionIndex++);
+				branchTaken = false;
+				op.execute(this, x, memory);
+			}
+		} catch (SegmentFaultException sfe) {
+			return new Error(sfe.getMessage(), program.getLineNumber(instructionIndex-1));
+		} catch (PCAlignmentException pcae) {
+			return new Error(pcae.getMessage(), program.getLineNumber(instructionIndex-1));
+		} catch (SPAlignmentException spae) {
+			return new Error(spae.getMessage(), program.getLineNumber(instructionIndex-1));
+		}
+		return null;
+	}
+	
+	/**
+	 * Executes the supplied LEGv8 assembly program until it completes, faults or <code>maxInstructions</code> 
+	 * instructions have been executed. If the budget is exhausted, calling this method again resumes 
+	 * execution from the next instruction.
+	 * 
+	 * @param program			the instructions of the LEGv8 assembly program
+	 * @param memory			a reference to the data memory used in data transfer instructions
+	 * @param maxInstructions	the maximum number of instructions to execute, <code>UNLIMITED</code> for no limit
+	 * @return					the status of the run
+	 */
+	public RunResult run(InstructionTable program, Memory memory, long maxInstructions) {
+		return run(program, memory, maxInstructions, NO_DEADLINE);
+	}
+	
+	/**
+	 * Executes the supplied LEGv8 assembly program until it completes, faults, <code>maxInstructions</code> 
+	 * instructions have been executed or the deadline passes. If the budget is exhausted, calling this method 
+	 * again resumes execution from the next instruction.
+	 * 
+	 * @param program			the instructions of the LEGv8 assembly program
+	 * @param memory			a reference to the data memory used in data transfer instructions
+	 * @param maxInstructions	the maximum number of instructions to execute, <code>UNLIMITED</code> for no limit
+	 * @param deadline			the time, as returned by <code>System.currentTimeMillis</code>, after which 
+	 * 							execution stops, <code>NO_DEADLINE</code> for no deadline
+	 * @return					the status of the run
+	 */
+	/*
+	 * The clock is only read every DEADLINE_CHECK_INTERVAL instructions
+	 */
+	public RunResult run(InstructionTable program, Memory memory, long maxInstructions, long deadline) {
+		long executed = 0;
+		int size = program.size();
+		try {
+			while (instructionIndex < size) {
+				if (budgetExhausted(executed, maxInstructions, deadline)) {
+					return new RunResult(RunStatus.BUDGET_EXHAUSTED, null, executed);
+				}
+				executed++;
+				execute(program, instructionIndex++, memory);
+			}
+		} catch (SegmentFaultException sfe) {
+			return fault(sfe.getMessage(), program.getLineNumber(instructionIndex-1), executed);
+		} catch (PCAlignmentException pcae) {
+			return fault(pcae.getMessage(), program.getLineNumber(instructionIndex-1), executed);
+		} catch (SPAlignmentException spae) {
+			return fault(spae.getMessage(), program.getLineNumber(instructionIndex-1), executed);
+		}
+		return new RunResult(RunStatus.COMPLETED, null, executed);
+	}
+	
+	/**
+	 * Executes a <code>PredecodedProgram</code> until it completes, faults, <code>maxInstructions</code> 
+	 * instructions have been executed or the deadline passes. If the budget is exhausted, calling this method 
+	 * again resumes execution from the next instruction. Nothing is written to the CPU log.
+	 * 
+	 * @param program			the pre-decoded LEGv8 assembly program
 	 * @param memory			a reference to the data memory used in data transfer instructions
-	 * @return					an <code>Error</code> object, <code>null</code> if no error occurs during execution
+	 * @param maxInstructions	the maximum number of instructions to execute, <code>UNLIMITED</code> for no limit
+	 * @param deadline			the time, as returned by <code>System.currentTimeMillis</code>, after which 
+	 * 							execution stops, <code>NO_DEADLINE</code> for no deadline
+	 * @return					the status of the run
 	 */
-	public Error run(ArrayList<Instruction> cpuInstructions, Memory memory) {
+	public RunResult run(PredecodedProgram program, Memory memory, long maxInstructions, long deadline) {
+		long[] x = registerFile;
+		int size = program.size();
+		long executed = 0;
+		/*
+		 * Superinstructions execute several instructions in one dispatch, so the budget is only checked 
+		 * once the number executed reaches a checkpoint: at most DEADLINE_CHECK_INTERVAL instructions 
+		 * ahead, and far enough before maxInstructions that no superinstruction overruns it. From there 
+		 * on, one instruction is executed per dispatch.
+		 */
+		long checkpoint = 0;
+		long fusedLimit = maxInstructions - PredecodedProgram.MAX_SUPERINSTRUCTION_LENGTH + 1;
+		int start = 0;
+		PredecodedProgram.Operation op = null;
 		try {
-			while (instructionIndex < cpuInstructions.size()) {
-				execute(cpuInstructions.get(instructionIndex++), memory);
+			while (instructionIndex < size) {
+				start = instructionIndex;
+				if (executed < checkpoint) {
+					op = program.getSuperinstruction(start);
+				} else {
+					if (executed >= maxInstructions 
+							|| (deadline != NO_DEADLINE && System.currentTimeMillis() >= deadline)) {
+						return new RunResult(RunStatus.BUDGET_EXHAUSTED, null, executed);
+					}
+					checkpoint = Math.min(executed + DEADLINE_CHECK_INTERVAL, fusedLimit);
+					op = program.getOperation(start);
+				}
+				instructionIndex++;
+				executed += op.length;
+				branchTaken = false;
+				op.execute(this, x, memory);
 			}
 		} catch (SegmentFaultException sfe) {
-			return new Error(sfe.getMessage(), cpuInstructions.get(instructionIndex-1).getLineNumber());
+			return fault(sfe.getMessage(), program.getLineNumber(instructionIndex-1), 
+					executed - op.length + instructionIndex - start);
+		} catch (PCAlignmentException pcae) {
+			return fault(pcae.getMessage(), program.getLineNumber(instructionIndex-1), 
+					executed - op.length + instructionIndex - start);
+		} catch (SPAlignmentException spae) {
+			return fault(spae.getMessage(), program.getLineNumber(instructionIndex-1), 
+					executed - op.length + instructionIndex - start);
+		}
+		return new RunResult(RunStatus.COMPLETED, null, executed);
+	}
+	
+	private static boolean budgetExhausted(long executed, long maxInstructions, long deadline) {
+		if (executed >= maxInstructions) return true;
+		return deadline != NO_DEADLINE 
+				&& executed % DEADLINE_CHECK_INTERVAL == 0 
+				&& System.currentTimeMillis() >= deadline;
+	}
+	
+	private static RunResult fault(String message, int lineNumber, long executed) {
+		return new RunResult(RunStatus.FAULT, new Error(message, lineNumber), executed);
+	}
+	
+	/**
+	 * Executes a <code>CompiledBlock</code> starting at the current instruction. Nothing is written to the CPU log.
+	 * 
+	 * @param block		the compiled basic block starting at the current instruction
+	 * @param program	the pre-decoded LEGv8 assembly program the block was compiled from
+	 * @param memory	a reference to the data memory used in data transfer instructions
+	 * @return			an <code>Error</code> object, <code>null</code> if no error occurs during execution
+	 * 
+	 * @see CompiledBlock
+	 */
+	public Error executeBlock(CompiledBlock block, PredecodedProgram program, Memory memory) {
+		branchTaken = false;
+		try {
+			instructionIndex = block.execute(this, registerFile, memory);
+		} catch (SegmentFaultException sfe) {
+			return new Error(sfe.getMessage(), program.getLineNumber(instructionIndex-1));
 		} catch (PCAlignmentException pcae) {
-			return new Error(pcae.getMessage(), cpuInstructions.get(instructionIndex-1).getLineNumber());
+			return new Error(pcae.getMessage(), program.getLineNumber(instructionIndex-1));
 		} catch (SPAlignmentException spae) {
-			return new Error(spae.getMessage(), cpuInstructions.get(instructionIndex-1).getLineNumber());
+			return new Error(spae.getMessage(), program.getLineNumber(instructionIndex-1));
 		}
 		return null;
 	}
@@ -138,12 +334,32 @@ public class CPU {
 	}
 	
 	/**
-	 * @return a string showing full CPU execution history
+	 * @return a string showing the CPU execution history kept at the current trace level
 	 */
 	public String getCpuLog() {
 		return cpuLog.toString();
 	}
 	
+	/**
+	 * Sets how much execution history is kept in the CPU log, clearing the log. 
+	 * The log is formatted as text only when <code>getCpuLog</code> is called.
+	 * 
+	 * @param level		the amount of execution history to keep
+	 * @param capacity	the number of most recent entries kept at <code>TraceLevel.RING</code>
+	 * 
+	 * @see TraceLevel
+	 */
+	public void setTraceLevel(TraceLevel level, int capacity) {
+		cpuLog.setTraceLevel(level, capacity);
+	}
+	
+	/**
+	 * @return	the amount of execution history kept in the CPU log
+	 */
+	public TraceLevel getTraceLevel() {
+		return cpuLog.getTraceLevel();
+	}
+	
 	/**
 	 * @return	<code>true</code> if the last instruction executed was a branch instruction and 
 	 * the branch was taken. <code>false</code> otherwise.
@@ -160,6 +376,40 @@ public class CPU {
 		return STXRSucceed;
 	}
 	
+	/**
+	 * Returns the <code>CPU</code> to the state held in a snapshot. The CPU log is left unchanged.
+	 * 
+	 * @param snapshot	the state to restore
+	 * @see CPUSnapshot
+	 */
+	public void restore(CPUSnapshot snapshot) {
+		for (int i=0; i<NUM_REGISTERS; i++) {
+			registerFile[i] = snapshot.getRegister(i);
+		}
+		flagOperation = FLAGS_EVALUATED;
+		Nflag = snapshot.getNflag();
+		Zflag = snapshot.getZflag();
+		Cflag = snapshot.getCflag();
+		Vflag = snapshot.getVflag();
+		instructionIndex = snapshot.getInstructionIndex();
+		taggedAddress = snapshot.getTaggedAddress();
+		branchTaken = snapshot.getBranchTaken();
+		STXRSucceed = snapshot.getSTXRSucceed();
+	}
+	
+	// used by UndoLog to put back the values a step overwrote
+	void setRegister(int index, long value) {
+		registerFile[index] = value;
+	}
+	
+	void setFlags(boolean N, boolean Z, boolean C, boolean V) {
+		flagOperation = FLAGS_EVALUATED;
+		Nflag = N;
+		Zflag = Z;
+		Cflag = C;
+		Vflag = V;
+	}
+	
 	/**
 	 * @return	the current value of PC.
 	 */
@@ -178,248 +428,253 @@ public class CPU {
 	 * @return	the value of the N flag.
 	 */
 	public boolean getNflag() {
-		return Nflag;
+		return flagOperation == FLAGS_EVALUATED ? Nflag : flagResult < 0;
 	}
 	
 	/**
 	 * @return	 the value of the Z flag.
 	 */
 	public boolean getZflag() {
-		return Zflag;
+		return flagOperation == FLAGS_EVALUATED ? Zflag : flagResult == 0;
 	}
 	
 	/**
 	 * @return	the value of the C flag.
 	 */
 	public boolean getCflag() {
-		return Cflag;
+		switch (flagOperation) {
+		case FLAGS_ADD :
+			return carry(flagResult, flagOperand1, flagOperand2);
+		case FLAGS_AND :
+			return false;
+		default :
+			return Cflag;
+		}
 	}
 	
 	/**
 	 * @return	the value of the V flag.
 	 */
 	public boolean getVflag() {
-		return Vflag;
-	}
-	
-	private void setNflag(boolean set) {
-		Nflag = set;
-	}
-	
-	private void setZflag(boolean set) {
-		Zflag = set;
-	}
-	
-	private void setCflag(boolean set) {
-		Cflag = set;
-	}
-	
-	private void setCflag(long result, long op1, long op2) {
-		Cflag = ((MSB(~result) + MSB(op1) + MSB(op2)) & 2L) != 0;
+		switch (flagOperation) {
+		case FLAGS_ADD :
+			return overflow(flagResult, flagOperand1, flagOperand2);
+		case FLAGS_AND :
+			return false;
+		default :
+			return Vflag;
+		}
 	}
 	
-	private void setVflag(boolean set) {
-		Vflag = set;
+	private static boolean carry(long result, long op1, long op2) {
+		return ((MSB(~result) + MSB(op1) + MSB(op2)) & 2L) != 0;
 	}
 	
-	private void setVflag(long result, long op1, long op2) {
-		Vflag = (((op1^~op2) & (op1^result)) & (1<<63)) != 0;
+	private static boolean overflow(long result, long op1, long op2) {
+		return (((op1^~op2) & (op1^result)) & (1<<63)) != 0;
 	}
 	
 	// returns most significant bit of value passed in
-	private long MSB(long value) {
+	private static long MSB(long value) {
 		return value >>> 63;
 	}
 	
-	private void ADDSetFlags(long result, long op1, long op2) {
-		setNflag(result < 0);
-		setZflag(result == 0);
-		setCflag(result, op1, op2);
-		setVflag(result, op1, op2);
+	/*
+	 * The flags are not computed when set, as most are overwritten before being read. Only the operands 
+	 * and result of the last flag-setting operation are recorded, and each flag is derived from them 
+	 * when read. 
+	 */
+	void ADDSetFlags(long result, long op1, long op2) {
+		flagOperation = FLAGS_ADD;
+		flagResult = result;
+		flagOperand1 = op1;
+		flagOperand2 = op2;
 	}
 	
-	private void SUBSetFlags(long result, long op1, long op2) {
+	void SUBSetFlags(long result, long op1, long op2) {
 		ADDSetFlags(result, op1, op2);
 	}
 	
-	private void ANDSetFlags(long result) {
-		setNflag(result < 0);
-		setZflag(result == 0);
-		setCflag(false);
-		setVflag(false);
+	void ANDSetFlags(long result) {
+		flagOperation = FLAGS_AND;
+		flagResult = result;
 	}
 	
 	private void clearExclusiveAccessTag(long address, int figureSize) {
-		if (taggedAddress == 0) return;
-		if ((address >= taggedAddress 
-				&& address < taggedAddress+Memory.DOUBLEWORD_SIZE) 
-				|| (address+figureSize-1 >= taggedAddress 
-				&& address+figureSize-1 < taggedAddress+Memory.DOUBLEWORD_SIZE)) {
+		if (clearsExclusiveAccessTag(address, figureSize)) {
 			taggedAddress = 0;
-			cpuLog.append("Exclusive access address tag cleared \n");
+			cpuLog.message(CPULog.TAG_CLEARED);
 		}
 	}
 	
+	// returns true if a store to the specified address overlaps the doubleword tagged by LDXR
+	boolean clearsExclusiveAccessTag(long address, int figureSize) {
+		if (taggedAddress == 0) return false;
+		return (address >= taggedAddress 
+				&& address < taggedAddress+Memory.DOUBLEWORD_SIZE) 
+				|| (address+figureSize-1 >= taggedAddress 
+				&& address+figureSize-1 < taggedAddress+Memory.DOUBLEWORD_SIZE);
+	}
+	
 	private void checkSPAlignment() throws SPAlignmentException {
 		if (registerFile[SP]%16 != 0) {
-			cpuLog.append("SP misaligned\n");
+			cpuLog.message(CPULog.SP_MISALIGNED);
 			throw new SPAlignmentException(registerFile[SP]);
 		}
-		cpuLog.append("SP aligned correctly\n");
+		cpuLog.message(CPULog.SP_ALIGNED);
 	}
 	
-	private void execute(Instruction ins, Memory memory) 
+	private void execute(InstructionTable program, int index, Memory memory) 
 			throws SegmentFaultException, PCAlignmentException, SPAlignmentException {
-		int[] args = ins.getArgs();
 		branchTaken = false; // rather ugly but... set to false by default as most instructions are not branches. 
 		//if a branch instruction is executed and the branch is taken, will be set to true in that instruction method 
-		switch (ins.getMnemonic()) {
+		switch (program.getMnemonic(index)) {
 		case ADD :
-			ADD(args[0], args[1], args[2]);
+			ADD(program.getRd(index), program.getRn(index), program.getRm(index));
 			break;
 		case ADDS :
-			ADDS(args[0], args[1], args[2]);
+			ADDS(program.getRd(index), program.getRn(index), program.getRm(index));
 			break;
 		case ADDI :
-			ADDI(args[0], args[1], args[2]);
+			ADDI(program.getRd(index), program.getRn(index), program.getImmediate(index));
 			break;
 		case ADDIS :
-			ADDIS(args[0], args[1], args[2]);
+			ADDIS(program.getRd(index), program.getRn(index), program.getImmediate(index));
 			break;
 		case SUB :
-			SUB(args[0], args[1], args[2]);
+			SUB(program.getRd(index), program.getRn(index), program.getRm(index));
 			break;
 		case SUBS :
-			SUBS(args[0], args[1], args[2]);
+			SUBS(program.getRd(index), program.getRn(index), program.getRm(index));
 			break;
 		case SUBI :
-			SUBI(args[0], args[1], args[2]);
+			SUBI(program.getRd(index), program.getRn(index), program.getImmediate(index));
 			break;
 		case SUBIS :
-			SUBIS(args[0], args[1], args[2]);
+			SUBIS(program.getRd(index), program.getRn(index), program.getImmediate(index));
 			break;
 		case AND :
-			AND(args[0], args[1], args[2]);
+			AND(program.getRd(index), program.getRn(index), program.getRm(index));
 			break;
 		case ANDS :
-			ANDS(args[0], args[1], args[2]);
+			ANDS(program.getRd(index), program.getRn(index), program.getRm(index));
 			break;
 		case ANDI :
-			ANDI(args[0], args[1], args[2]);
+			ANDI(program.getRd(index), program.getRn(index), program.getImmediate(index));
 			break;
 		case ANDIS :
-			ANDIS(args[0], args[1], args[2]);
+			ANDIS(program.getRd(index), program.getRn(index), program.getImmediate(index));
 			break;
 		case ORR :
-			ORR(args[0], args[1], args[2]);
+			ORR(program.getRd(index), program.getRn(index), program.getRm(index));
 			break;
 		case ORRI :
-			ORRI(args[0], args[1], args[2]);
+			ORRI(program.getRd(index), program.getRn(index), program.getImmediate(index));
 			break;
 		case EOR :
-			EOR(args[0], args[1], args[2]);
+			EOR(program.getRd(index), program.getRn(index), program.getRm(index));
 			break;
 		case EORI :
-			EORI(args[0], args[1], args[2]);
+			EORI(program.getRd(index), program.getRn(index), program.getImmediate(index));
 			break;
 		case LSL :
-			LSL(args[0], args[1], args[2]);
+			LSL(program.getRd(index), program.getRn(index), program.getShiftAmount(index));
 			break;
 		case LSR :
-			LSR(args[0], args[1], args[2]);
+			LSR(program.getRd(index), program.getRn(index), program.getShiftAmount(index));
 			break;
 		case LDUR :
-			LDUR(args[0], args[1], args[2], memory);
+			LDUR(program.getRd(index), program.getRn(index), program.getImmediate(index), memory);
 			break;
 		case STUR :
-			STUR(args[0], args[1], args[2], memory);
+			STUR(program.getRd(index), program.getRn(index), program.getImmediate(index), memory);
 			break;
 		case LDURSW :
-			LDURSW(args[0], args[1], args[2], memory);
+			LDURSW(program.getRd(index), program.getRn(index), program.getImmediate(index), memory);
 			break;
 		case STURW :
-			STURW(args[0], args[1], args[2], memory);
+			STURW(program.getRd(index), program.getRn(index), program.getImmediate(index), memory);
 			break;
 		case LDURH :
-			LDURH(args[0], args[1], args[2], memory);
+			LDURH(program.getRd(index), program.getRn(index), program.getImmediate(index), memory);
 			break;
 		case STURH :
-			STURH(args[0], args[1], args[2], memory);
+			STURH(program.getRd(index), program.getRn(index), program.getImmediate(index), memory);
 			break;
 		case LDURB :
-			LDURB(args[0], args[1], args[2], memory);
+			LDURB(program.getRd(index), program.getRn(index), program.getImmediate(index), memory);
 			break;
 		case STURB :
-			STURB(args[0], args[1], args[2], memory);
+			STURB(program.getRd(index), program.getRn(index), program.getImmediate(index), memory);
 			break;
 		case LDXR :
-			LDXR(args[0], args[1], args[2], memory);
+			LDXR(program.getRd(index), program.getRn(index), program.getImmediate(index), memory);
 			break;
 		case STXR :
-			STXR(args[0], args[1], args[2], args[3], memory);
+			STXR(program.getRd(index), program.getRm(index), program.getRn(index), program.getImmediate(index), memory);
 			break;
 		case MOVZ :
-			MOVZ(args[0], args[1], args[2]);
+			MOVZ(program.getRd(index), program.getImmediate(index), program.getShiftAmount(index));
 			break;
 		case MOVK :
-			MOVK(args[0], args[1], args[2]);
+			MOVK(program.getRd(index), program.getImmediate(index), program.getShiftAmount(index));
 			break;
 		case CBZ :
-			CBZ(args[0], args[1]);
+			CBZ(program.getRd(index), program.getImmediate(index));
 			break;
 		case CBNZ :
-			CBNZ(args[0], args[1]);
+			CBNZ(program.getRd(index), program.getImmediate(index));
 			break;
 		case BEQ :
-			BEQ(args[0]);
+			BEQ(program.getImmediate(index));
 			break;
 		case BNE :
-			BNE(args[0]);
+			BNE(program.getImmediate(index));
 			break;
 		case BHS :
-			BHS(args[0]);
+			BHS(program.getImmediate(index));
 			break;
 		case BLO :
-			BLO(args[0]);
+			BLO(program.getImmediate(index));
 			break;
 		case BHI :
-			BHI(args[0]);
+			BHI(program.getImmediate(index));
 			break;
 		case BLS :
-			BLS(args[0]);
+			BLS(program.getImmediate(index));
 			break;
 		case BGE :
-			BGE(args[0]);
+			BGE(program.getImmediate(index));
 			break;
 		case BLT :
-			BLT(args[0]);
+			BLT(program.getImmediate(index));
 			break;
 		case BGT :
-			BGT(args[0]);
+			BGT(program.getImmediate(index));
 			break;
 		case BLE :
-			BLE(args[0]);
+			BLE(program.getImmediate(index));
 			break;
 		case BMI :
-			BMI(args[0]);
+			BMI(program.getImmediate(index));
 			break;
 		case BPL :
-			BPL(args[0]);
+			BPL(program.getImmediate(index));
 			break;
 		case BVS :
-			BVS(args[0]);
+			BVS(program.getImmediate(index));
 			break;
 		case BVC :
-			BVC(args[0]);
+			BVC(program.getImmediate(index));
 			break;
 		case B :
-			B(args[0]);
+			B(program.getImmediate(index));
 			break;
 		case BR :
-			BR(args[0], memory);
+			BR(program.getRn(index), memory);
 			break;
 		case BL :
-			BL(args[0]);
+			BL(program.getImmediate(index));
 			break;
 		default : {}
 		}
@@ -427,181 +682,181 @@ public class CPU {
 
 	private void ADD(int destReg, int op1Reg, int op2Reg) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] + registerFile[op2Reg];
-			cpuLog.append("ADD \t X" + destReg + ", X" + op1Reg + ", X" + op2Reg + "\n");
+			cpuLog.instruction(Mnemonic.ADD, destReg, op1Reg, op2Reg);
 		}
 	}
 
 	private void ADDS(int destReg, int op1Reg, int op2Reg) {
 		long result = registerFile[op1Reg] + registerFile[op2Reg];
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = result;
-			cpuLog.append("ADDS \t X" + destReg + ", X" + op1Reg + ", X" + op2Reg + "\n");
+			cpuLog.instruction(Mnemonic.ADDS, destReg, op1Reg, op2Reg);
 		}
 		ADDSetFlags(result, registerFile[op1Reg], registerFile[op2Reg]);
-		cpuLog.append("Set flags + \n");
+		cpuLog.message(CPULog.FLAGS_SET);
 	}
 
 	private void ADDI(int destReg, int op1Reg, int op2Imm) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] + op2Imm;
-			cpuLog.append("ADDI \t X" + destReg + ", X" + op1Reg + ", #" + op2Imm + "\n");
+			cpuLog.instruction(Mnemonic.ADDI, destReg, op1Reg, op2Imm);
 		}
 	}
 
 	private void ADDIS(int destReg, int op1Reg, int op2Imm) {
 		long result = registerFile[op1Reg] + op2Imm;
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = result;
-			cpuLog.append("ADDIS \t X" + destReg + ", X" + op1Reg + ", #" + op2Imm + "\n");
+			cpuLog.instruction(Mnemonic.ADDIS, destReg, op1Reg, op2Imm);
 		}
 		ADDSetFlags(result, registerFile[op1Reg], op2Imm);
-		cpuLog.append("Set flags + \n");
+		cpuLog.message(CPULog.FLAGS_SET);
 	}
 
 	private void SUB(int destReg, int op1Reg, int op2Reg) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] - registerFile[op2Reg];
-			cpuLog.append("SUB \t X" + destReg + ", X" + op1Reg + ", X" + op2Reg + "\n");
+			cpuLog.instruction(Mnemonic.SUB, destReg, op1Reg, op2Reg);
 		}
 	}
 
 	private void SUBS(int destReg, int op1Reg, int op2Reg) {
 		long result = registerFile[op1Reg] - registerFile[op2Reg];
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = result;
-			cpuLog.append("SUBS \t X" + destReg + ", X" + op1Reg + ", X" + op2Reg + "\n");
+			cpuLog.instruction(Mnemonic.SUBS, destReg, op1Reg, op2Reg);
 		}
 		SUBSetFlags(result, registerFile[op1Reg], registerFile[op2Reg]);
-		cpuLog.append("Set flags + \n");
+		cpuLog.message(CPULog.FLAGS_SET);
 	}
 
 	private void SUBI(int destReg, int op1Reg, int op2Imm) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] - op2Imm;
-			cpuLog.append("SUBI \t X" + destReg + ", X" + op1Reg + ", #" + op2Imm + "\n");
+			cpuLog.instruction(Mnemonic.SUBI, destReg, op1Reg, op2Imm);
 		}
 	}
 
 	private void SUBIS(int destReg, int op1Reg, int op2Imm) {
 		long result = registerFile[op1Reg] - op2Imm;
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = result;
-			cpuLog.append("SUBIS \t X" + destReg + ", X" + op1Reg + ", #" + op2Imm + "\n");
+			cpuLog.instruction(Mnemonic.SUBIS, destReg, op1Reg, op2Imm);
 		}
 		SUBSetFlags(result, registerFile[op1Reg], op2Imm);
-		cpuLog.append("Set flags + \n");
+		cpuLog.message(CPULog.FLAGS_SET);
 	}
 
 	private void AND(int destReg, int op1Reg, int op2Reg) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] & registerFile[op2Reg];
-			cpuLog.append("AND \t X" + destReg + ", X" + op1Reg + ", X" + op2Reg + "\n");
+			cpuLog.instruction(Mnemonic.AND, destReg, op1Reg, op2Reg);
 		}
 	}
 
 	private void ANDS(int destReg, int op1Reg, int op2Reg) {
 		long result = registerFile[op1Reg] & registerFile[op2Reg];
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = result;
-			cpuLog.append("ANDS \t X" + destReg + ", X" + op1Reg + ", X" + op2Reg + "\n");
+			cpuLog.instruction(Mnemonic.ANDS, destReg, op1Reg, op2Reg);
 		}
 		ANDSetFlags(result);
-		cpuLog.append("Set flags + \n");
+		cpuLog.message(CPULog.FLAGS_SET);
 	}
 
 	private void ANDI(int destReg, int op1Reg, int op2Imm) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] & op2Imm;
-			cpuLog.append("ANDI \t X" + destReg + ", X" + op1Reg + ", #" + op2Imm + "\n");
+			cpuLog.instruction(Mnemonic.ANDI, destReg, op1Reg, op2Imm);
 		}
 	}
 
 	private void ANDIS(int destReg, int op1Reg, int op2Imm) {
 		long result = registerFile[op1Reg] & op2Imm;
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = result;
-			cpuLog.append("ANDIS \t X" + destReg + ", X" + op1Reg + ", #" + op2Imm + "\n");
+			cpuLog.instruction(Mnemonic.ANDIS, destReg, op1Reg, op2Imm);
 		}
 		ANDSetFlags(result);
-		cpuLog.append("Set flags + \n");
+		cpuLog.message(CPULog.FLAGS_SET);
 	}
 
 	private void ORR(int destReg, int op1Reg, int op2Reg) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] | registerFile[op2Reg];
-			cpuLog.append("ORR \t X" + destReg + ", X" + op1Reg + ", X" + op2Reg + "\n");
+			cpuLog.instruction(Mnemonic.ORR, destReg, op1Reg, op2Reg);
 		}
 	}
 
 	private void ORRI(int destReg, int op1Reg, int op2Imm) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] | op2Imm;
-			cpuLog.append("ORRI \t X" + destReg + ", X" + op1Reg + ", #" + op2Imm + "\n");
+			cpuLog.instruction(Mnemonic.ORRI, destReg, op1Reg, op2Imm);
 		}
 	}
 
 	private void EOR(int destReg, int op1Reg, int op2Reg) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] ^ registerFile[op2Reg];
-			cpuLog.append("EOR \t X" + destReg + ", X" + op1Reg + ", X" + op2Reg + "\n");
+			cpuLog.instruction(Mnemonic.EOR, destReg, op1Reg, op2Reg);
 		}
 	}
 
 	private void EORI(int destReg, int op1Reg, int op2Imm) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] ^ op2Imm;
-			cpuLog.append("EORI \t X" + destReg + ", X" + op1Reg + ", #" + op2Imm + "\n");
+			cpuLog.instruction(Mnemonic.EORI, destReg, op1Reg, op2Imm);
 		}
 	}
 
 	private void LSL(int destReg, int op1Reg, int op2Imm) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] << op2Imm;
-			cpuLog.append("LSL \t X" + destReg + ", X" + op1Reg + ", #" + op2Imm + "\n");
+			cpuLog.instruction(Mnemonic.LSL, destReg, op1Reg, op2Imm);
 		}
 	}
 
 	private void LSR(int destReg, int op1Reg, int op2Imm) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[op1Reg] >>> op2Imm;
-			cpuLog.append("LSR \t X" + destReg + ", X" + op1Reg + ", #" + op2Imm + "\n");
+			cpuLog.instruction(Mnemonic.LSR, destReg, op1Reg, op2Imm);
 		}
 	}
 
@@ -609,10 +864,10 @@ public class CPU {
 			throws SegmentFaultException, SPAlignmentException {
 		if (baseAddressReg == SP) checkSPAlignment();
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = memory.loadDoubleword(registerFile[baseAddressReg]+offset);
-			cpuLog.append("LDUR \t X" + destReg + ", [X" + baseAddressReg + ", #" + offset + "] \n");
+			cpuLog.instruction(Mnemonic.LDUR, destReg, baseAddressReg, offset);
 		}
 	}
 
@@ -621,17 +876,17 @@ public class CPU {
 		if (baseAddressReg == SP) checkSPAlignment();
 		memory.storeDoubleword(registerFile[baseAddressReg]+offset, registerFile[valReg]);
 		clearExclusiveAccessTag(registerFile[baseAddressReg]+offset, Memory.DOUBLEWORD_SIZE);
-		cpuLog.append("STUR \t X" + valReg + ", [X" + baseAddressReg + ", #" + offset + "] \n");
+		cpuLog.instruction(Mnemonic.STUR, valReg, baseAddressReg, offset);
 	}
 
 	private void LDURSW(int destReg, int baseAddressReg, int offset, Memory memory) 
 			throws SegmentFaultException, SPAlignmentException {
 		if (baseAddressReg == SP) checkSPAlignment();
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = memory.loadSignedWord(registerFile[baseAddressReg]+offset);
-			cpuLog.append("LDURSW \t X" + destReg + ", [X" + baseAddressReg + ", #" + offset + "] \n");
+			cpuLog.instruction(Mnemonic.LDURSW, destReg, baseAddressReg, offset);
 		}
 	}
 
@@ -640,17 +895,17 @@ public class CPU {
 		if (baseAddressReg == SP) checkSPAlignment();
 		memory.storeWord(registerFile[baseAddressReg]+offset, registerFile[valReg]);
 		clearExclusiveAccessTag(registerFile[baseAddressReg]+offset, Memory.WORD_SIZE);
-		cpuLog.append("STURW \t X" + valReg + ", [X" + baseAddressReg + ", #" + offset + "] \n");
+		cpuLog.instruction(Mnemonic.STURW, valReg, baseAddressReg, offset);
 	}
 
 	private void LDURH(int destReg, int baseAddressReg, int offset, Memory memory) 
 			throws SegmentFaultException, SPAlignmentException {
 		if (baseAddressReg == SP) checkSPAlignment();
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = memory.loadHalfword(registerFile[destReg]+offset);
-			cpuLog.append("LDURH \t X" + destReg + ", [X" + baseAddressReg + ", #" + offset + "] \n");
+			cpuLog.instruction(Mnemonic.LDURH, destReg, baseAddressReg, offset);
 		}
 	}
 
@@ -659,17 +914,17 @@ public class CPU {
 		if (baseAddressReg == SP) checkSPAlignment();
 		memory.storeHalfword(registerFile[baseAddressReg]+offset, registerFile[valReg]);
 		clearExclusiveAccessTag(registerFile[baseAddressReg]+offset, Memory.HALFWORD_SIZE);
-		cpuLog.append("STURH \t X" + valReg + ", [X" + baseAddressReg + ", #" + offset + "] \n");
+		cpuLog.instruction(Mnemonic.STURH, valReg, baseAddressReg, offset);
 	}
 
 	private void LDURB(int destReg, int baseAddressReg, int offset, Memory memory) 
 			throws SegmentFaultException, SPAlignmentException {
 		if (baseAddressReg == SP) checkSPAlignment();
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = memory.loadByte(registerFile[baseAddressReg]+offset);
-			cpuLog.append("LDURB \t X" + destReg + ", [X" + baseAddressReg + ", #" + offset + "] \n");
+			cpuLog.instruction(Mnemonic.LDURB, destReg, baseAddressReg, offset);
 		}
 	}
 
@@ -678,7 +933,7 @@ public class CPU {
 		if (baseAddressReg == SP) checkSPAlignment();
 		memory.storeByte(registerFile[baseAddressReg]+offset, registerFile[valReg]);
 		clearExclusiveAccessTag(registerFile[baseAddressReg]+offset, Memory.BYTE_SIZE);
-		cpuLog.append("STURB \t X" + valReg + ", [X" + baseAddressReg + ", #" + offset + "] \n");
+		cpuLog.instruction(Mnemonic.STURB, valReg, baseAddressReg, offset);
 	}
 
 	private void LDXR(int destReg, int baseAddressReg, int offset, Memory memory) 
@@ -686,11 +941,11 @@ public class CPU {
 		if (baseAddressReg == SP) checkSPAlignment();
 		long address = registerFile[baseAddressReg] + offset;
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = memory.loadDoubleword(address);
 			taggedAddress = address;
-			cpuLog.append("LDXR \t X" + destReg + ", [X" + baseAddressReg + ", #" + offset + "] \n");
+			cpuLog.instruction(Mnemonic.LDXR, destReg, baseAddressReg, offset);
 		}
 	}
 
@@ -707,24 +962,24 @@ public class CPU {
 			registerFile[outcomeReg] = 1;
 			STXRSucceed = false;
 		}
-		cpuLog.append("STXR \t X" + valReg + ", X" + outcomeReg + ", [X" + baseAddressReg + ", #" + offset + "] \n");
+		cpuLog.instruction(Mnemonic.STXR, valReg, outcomeReg, baseAddressReg, offset);
 	}
 
 	private void MOVZ(int destReg, int immediate, int quadrantShift) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = immediate << quadrantShift;
-			cpuLog.append("MOVZ \t X" + destReg + ", #" + immediate + ", LSL #" + quadrantShift + " \n");
+			cpuLog.instruction(Mnemonic.MOVZ, destReg, immediate, quadrantShift);
 		}
 	}
 
 	private void MOVK(int destReg, int immediate, int quadrantShift) {
 		if (destReg == XZR) {
-			cpuLog.append("Ignored attempted assignment to XZR. \n");
+			cpuLog.message(CPULog.XZR_IGNORED);
 		} else {
 			registerFile[destReg] = registerFile[destReg] | (immediate << quadrantShift);
-			cpuLog.append("MOVK \t X" + destReg + ", #" + immediate + ", LSL #" + quadrantShift + " \n");
+			cpuLog.instruction(Mnemonic.MOVK, destReg, immediate, quadrantShift);
 		}
 	}
 
@@ -732,7 +987,7 @@ public class CPU {
 		if (registerFile[conditionReg] == 0) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("CBZ \t X" + conditionReg + ", " + "0x" + Long.toHexString(getPC()) + " \n");
+		cpuLog.instruction(Mnemonic.CBZ, conditionReg, getPC());
 		branchTaken = (registerFile[conditionReg] == 0);
 	}
 
@@ -740,153 +995,165 @@ public class CPU {
 		if (registerFile[conditionReg] != 0) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("CBNZ \t X" + conditionReg + ", " + "0x" + Long.toHexString(getPC()) + " \n");
+		cpuLog.instruction(Mnemonic.CBNZ, conditionReg, getPC());
 		branchTaken = (registerFile[conditionReg] != 0);
 	}
 
 	private void BEQ(int branchIndex) {
-		if (Zflag) {
+		if (getZflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.EQ \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (Zflag);
+		cpuLog.instruction(Mnemonic.BEQ, getPC());
+		branchTaken = (getZflag());
 	}
 
 	private void BNE(int branchIndex) {
-		if (!Zflag) {
+		if (!getZflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.NE \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (!Zflag);
+		cpuLog.instruction(Mnemonic.BNE, getPC());
+		branchTaken = (!getZflag());
 	}
 
 	private void BHS(int branchIndex) {
-		if (Cflag) {
+		if (getCflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.HS \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (Cflag);
+		cpuLog.instruction(Mnemonic.BHS, getPC());
+		branchTaken = (getCflag());
 	}
 
 	private void BLO(int branchIndex) {
-		if (!Cflag) {
+		if (!getCflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.LO \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (!Cflag);
+		cpuLog.instruction(Mnemonic.BLO, getPC());
+		branchTaken = (!getCflag());
 	}
 
 	private void BHI(int branchIndex) {
-		if (!Zflag && Cflag) {
+		if (!getZflag() && getCflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.HI \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (!Zflag && Cflag);
+		cpuLog.instruction(Mnemonic.BHI, getPC());
+		branchTaken = (!getZflag() && getCflag());
 	}
 
 	private void BLS(int branchIndex) {
-		if (!(!Zflag && Cflag)) {
+		if (!(!getZflag() && getCflag())) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.LS \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (!(!Zflag && Cflag));
+		cpuLog.instruction(Mnemonic.BLS, getPC());
+		branchTaken = (!(!getZflag() && getCflag()));
 	}
 
 	private void BGE(int branchIndex) {
-		if (Nflag == Vflag) {
+		if (getNflag() == getVflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.GE \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (Nflag == Vflag);
+		cpuLog.instruction(Mnemonic.BGE, getPC());
+		branchTaken = (getNflag() == getVflag());
 	}
 
 	private void BLT(int branchIndex) {
-		if (Cflag != Vflag) {
+		if (getCflag() != getVflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.LT \t" + "0x" + Long.toHexString(getPC()) + " \n");
+		cpuLog.instruction(Mnemonic.BLT, getPC());
 	}
 
 	private void BGT(int branchIndex) {
-		if (!Zflag && Nflag == Vflag) {
+		if (!getZflag() && getNflag() == getVflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.GT \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (!Zflag && Nflag == Vflag);
+		cpuLog.instruction(Mnemonic.BGT, getPC());
+		branchTaken = (!getZflag() && getNflag() == getVflag());
 	}
 
 	private void BLE(int branchIndex) {
-		if (!(!Zflag && Nflag == Vflag)) {
+		if (!(!getZflag() && getNflag() == getVflag())) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.LE \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (!(!Zflag && Nflag == Vflag));
+		cpuLog.instruction(Mnemonic.BLE, getPC());
+		branchTaken = (!(!getZflag() && getNflag() == getVflag()));
 	}
 
 	private void BMI(int branchIndex) {
-		if (Nflag) {
+		if (getNflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.MI \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (Nflag);
+		cpuLog.instruction(Mnemonic.BMI, getPC());
+		branchTaken = (getNflag());
 	}
 
 	private void BPL(int branchIndex) {
-		if (!Nflag) {
+		if (!getNflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.PL \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (!Nflag);
+		cpuLog.instruction(Mnemonic.BPL, getPC());
+		branchTaken = (!getNflag());
 	}
 
 	private void BVS(int branchIndex) {
-		if (Vflag) {
+		if (getVflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.VS \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (Vflag);
+		cpuLog.instruction(Mnemonic.BVS, getPC());
+		branchTaken = (getVflag());
 	}
 
 	private void BVC(int branchIndex) {
-		if (!Vflag) {
+		if (!getVflag()) {
 			instructionIndex = branchIndex;
 		}
-		cpuLog.append("B.VC \t" + "0x" + Long.toHexString(getPC()) + " \n");
-		branchTaken = (!Vflag);
+		cpuLog.instruction(Mnemonic.BVC, getPC());
+		branchTaken = (!getVflag());
 	}
 
 	private void B(int branchIndex) {
 		instructionIndex = branchIndex;
-		cpuLog.append("B \t" + "0x" + Long.toHexString(getPC()) + " \n");
+		cpuLog.instruction(Mnemonic.B, getPC());
 		branchTaken = true;
 	}
 
 	private void BR(int branchReg, Memory memory) throws SegmentFaultException, PCAlignmentException {
-		if (registerFile[branchReg]%Memory.WORD_SIZE != 0) {
-			throw new PCAlignmentException(registerFile[branchReg]);
+		branchToRegister(registerFile[branchReg], memory);
+		cpuLog.instruction(Mnemonic.BR, getPC());
+	}
+
+	// sets the PC to the specified address, which must be word aligned and within the text segment
+	void branchToRegister(long address, Memory memory) throws SegmentFaultException, PCAlignmentException {
+		if (address%Memory.WORD_SIZE != 0) {
+			throw new PCAlignmentException(address);
 		}
-		if (registerFile[branchReg] < Memory.TEXT_SEGMENT_OFFSET 
-				|| registerFile[branchReg] > memory.getStaticDataSegmentOffset()-Memory.WORD_SIZE) {
-			throw new SegmentFaultException(registerFile[branchReg], "text");
+		if (address < Memory.TEXT_SEGMENT_OFFSET 
+				|| address > memory.getStaticDataSegmentOffset()-Memory.WORD_SIZE) {
+			throw new SegmentFaultException(address, "text");
 		}
-		instructionIndex = (int) (registerFile[branchReg] - Memory.TEXT_SEGMENT_OFFSET) / INSTRUCTION_SIZE;
-		cpuLog.append("BR \t X" + "0x" + Long.toHexString(getPC()) + " \n");
+		instructionIndex = (int) (address - Memory.TEXT_SEGMENT_OFFSET) / INSTRUCTION_SIZE;
 	}
 
+	// the link register holds the address of the instruction after BL
 	private void BL(int branchIndex) {
-		instructionIndex = branchIndex;
 		registerFile[LR] = instructionIndex * INSTRUCTION_SIZE + Memory.TEXT_SEGMENT_OFFSET;
-		cpuLog.append("BL \t" + "0x" + Long.toHexString(registerFile[LR]) + " \n");
+		instructionIndex = branchIndex;
+		cpuLog.instruction(Mnemonic.BL, getPC());
 	}
 
-	private boolean branchTaken = false;
-	private boolean STXRSucceed = false;
-	private StringBuilder cpuLog = new StringBuilder("");
+	// package-private state is also updated by PredecodedProgram operations and CompiledBlocks
+	boolean branchTaken = false;
+	boolean STXRSucceed = false;
+	private CPULog cpuLog = new CPULog();
 	private long[] registerFile;
-	private long taggedAddress;
-	private int instructionIndex;
+	long taggedAddress;
+	int instructionIndex;
 	private boolean Nflag;
 	private boolean Zflag;
 	private boolean Cflag;
 	private boolean Vflag;
+	// the kind of the last flag-setting operation, FLAGS_EVALUATED if the flags are held in the fields above
+	private int flagOperation = FLAGS_EVALUATED;
+	private long flagResult;
+	private long flagOperand1;
+	private long flagOperand2;
 }
@@ -0,0 +1,224 @@
+package com.arm.legv8simulator.client.cpu;
+
+import com.arm.legv8simulator.client.instruction.Mnemonic;
+
+/**
+ * <code>CPULog</code> records the execution history of a <code>CPU</code>.
+ * <p>
+ * Each entry is stored as primitive fields - a code and up to four operands - in parallel arrays, and 
+ * is only formatted as text when <code>toString</code> is called. Depending on the <code>TraceLevel</code>, 
+ * entries are discarded, kept in a ring buffer of the most recent entries, or all kept. Recording an 
+ * entry allocates nothing, except to grow the arrays of a full log.
+ * 
+ * @see CPU
+ * @see TraceLevel
+ */
+public class CPULog {
+	
+	public static final int DEFAULT_RING_CAPACITY = 1024;
+	
+	// message codes; instructions are recorded with the code FIRST_INSTRUCTION + mnemonic ordinal
+	static final int XZR_IGNORED = 0;
+	static final int FLAGS_SET = 1;
+	static final int TAG_CLEARED = 2;
+	static final int SP_MISALIGNED = 3;
+	static final int SP_ALIGNED = 4;
+	private static final int FIRST_INSTRUCTION = 5;
+	
+	private static final int OPERANDS_PER_ENTRY = 4;
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private static final Mnemonic[] MNEMONICS = Mnemonic.values();
+	
+	/**
+	 * Constructs a new <code>CPULog</code> which keeps the full execution history
+	 */
+	public CPULog() {
+		setTraceLevel(TraceLevel.FULL, DEFAULT_RING_CAPACITY);
+	}
+	
+	/**
+	 * Sets the trace level and clears the log
+	 * 
+	 * @param level		the amount of execution history to keep
+	 * @param capacity	the number of entries kept by a <code>RING</code> log. Ignored for other levels.
+	 */
+	public void setTraceLevel(TraceLevel level, int capacity) {
+		this.level = level;
+		switch (level) {
+		case OFF :
+			allocate(0);
+			break;
+		case RING :
+			allocate(Math.max(capacity, 1));
+			break;
+		default :
+			allocate(INITIAL_CAPACITY);
+		}
+	}
+	
+	/**
+	 * @return	the current trace level
+	 */
+	public TraceLevel getTraceLevel() {
+		return level;
+	}
+	
+	/**
+	 * @return	the number of entries currently held in the log
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Discards every entry, keeping the trace level
+	 */
+	public void clear() {
+		start = 0;
+		count = 0;
+	}
+	
+	/**
+	 * @return	the log formatted as text, one line per entry
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (int i=0; i<count; i++) {
+			int entry = (start + i) % codes.length;
+			format(text, codes[entry], entry * OPERANDS_PER_ENTRY);
+		}
+		return text.toString();
+	}
+	
+	void message(int code) {
+		add(code);
+	}
+	
+	void instruction(Mnemonic mnemonic, long op0) {
+		int op = add(FIRST_INSTRUCTION + mnemonic.ordinal());
+		if (op < 0) return;
+		operands[op] = op0;
+	}
+	
+	void instruction(Mnemonic mnemonic, long op0, long op1) {
+		int op = add(FIRST_INSTRUCTION + mnemonic.ordinal());
+		if (op < 0) return;
+		operands[op] = op0;
+		operands[op+1] = op1;
+	}
+	
+	void instruction(Mnemonic mnemonic, long op0, long op1, long op2) {
+		int op = add(FIRST_INSTRUCTION + mnemonic.ordinal());
+		if (op < 0) return;
+		operands[op] = op0;
+		operands[op+1] = op1;
+		operands[op+2] = op2;
+	}
+	
+	void instruction(Mnemonic mnemonic, long op0, long op1, long op2, long op3) {
+		int op = add(FIRST_INSTRUCTION + mnemonic.ordinal());
+		if (op < 0) return;
+		operands[op] = op0;
+		operands[op+1] = op1;
+		operands[op+2] = op2;
+		operands[op+3] = op3;
+	}
+	
+	/*
+	 * Appends an entry with the specified code, returning the index of its first operand, 
+	 * or -1 if the log is off.
+	 */
+	private int add(int code) {
+		int entry;
+		if (level == TraceLevel.OFF) {
+			return -1;
+		} else if (count < codes.length) {
+			entry = (start + count) % codes.length;
+			count++;
+		} else if (level == TraceLevel.RING) {
+			// overwrite the oldest entry
+			entry = start;
+			start = (start + 1) % codes.length;
+		} else {
+			grow();
+			entry = count++;
+		}
+		codes[entry] = code;
+		return entry * OPERANDS_PER_ENTRY;
+	}
+	
+	// only a full log grows, and its entries always start at index 0
+	private void grow() {
+		int[] newCodes = new int[codes.length * 2];
+		long[] newOperands = new long[newCodes.length * OPERANDS_PER_ENTRY];
+		System.arraycopy(codes, 0, newCodes, 0, count);
+		System.arraycopy(operands, 0, newOperands, 0, count * OPERANDS_PER_ENTRY);
+		codes = newCodes;
+		operands = newOperands;
+	}
+	
+	private void allocate(int capacity) {
+		codes = new int[capacity];
+		operands = new long[capacity * OPERANDS_PER_ENTRY];
+		start = 0;
+		count = 0;
+	}
+	
+	// formats a single entry exactly as the CPU has always written it
+	private void format(StringBuilder text, int code, int op) {
+		switch (code) {
+		case XZR_IGNORED :
+			text.append("Ignored attempted assignment to XZR. \n");
+			return;
+		case FLAGS_SET :
+			text.append("Set flags + \n");
+			return;
+		case TAG_CLEARED :
+			text.append("Exclusive access address tag cleared \n");
+			return;
+		case SP_MISALIGNED :
+			text.append("SP misaligned\n");
+			return;
+		case SP_ALIGNED :
+			text.append("SP aligned correctly\n");
+			return;
+		}
+		Mnemonic mnemonic = MNEMONICS[code - FIRST_INSTRUCTION];
+		long[] o = operands;
+		text.append(mnemonic.nameUpper).append(" \t");
+		switch (mnemonic.type) {
+		case MNEMONIC_RRR :
+			text.append(" X").append(o[op]).append(", X").append(o[op+1]).append(", X").append(o[op+2]).append("\n");
+			break;
+		case MNEMONIC_RRI :
+			text.append(" X").append(o[op]).append(", X").append(o[op+1]).append(", #").append(o[op+2]).append("\n");
+			break;
+		case MNEMONIC_RM :
+			text.append(" X").append(o[op]).append(", [X").append(o[op+1]).append(", #").append(o[op+2]).append("] \n");
+			break;
+		case MNEMONIC_RRM :
+			text.append(" X").append(o[op]).append(", X").append(o[op+1])
+				.append(", [X").append(o[op+2]).append(", #").append(o[op+3]).append("] \n");
+			break;
+		case MNEMONIC_RISI :
+			text.append(" X").append(o[op]).append(", #").append(o[op+1]).append(", LSL #").append(o[op+2]).append(" \n");
+			break;
+		case MNEMONIC_RL :
+			text.append(" X").append(o[op]).append(", 0x").append(Long.toHexString(o[op+1])).append(" \n");
+			break;
+		case MNEMONIC_R :
+			text.append(" X0x").append(Long.toHexString(o[op])).append(" \n");
+			break;
+		default :
+			text.append("0x").append(Long.toHexString(o[op])).append(" \n");
+		}
+	}
+	
+	private TraceLevel level;
+	private int[] codes;
+	private long[] operands;
+	private int start;
+	private int count;
+}
@@ -2,6 +2,9 @@ package com.arm.legv8simulator.client.cpu;
 
 /**
  * <code>CPUSnpashot</code> provides a deep copy of the <code>CPU</code> state for use in the pipeline simulator.
+ * <p>
+ * A snapshot holds the whole architectural state of the <code>CPU</code>, so the CPU can be returned to it 
+ * with <code>CPU.restore</code>. The CPU log is not part of the state.
  * 
  * @see CPU
  * 
@@ -20,6 +23,40 @@ public class CPUSnapshot {
 		Zflag = cpu.getZflag();
 		Cflag = cpu.getCflag();
 		Vflag = cpu.getVflag();
+		instructionIndex = cpu.instructionIndex;
+		taggedAddress = cpu.taggedAddress;
+		branchTaken = cpu.branchTaken;
+		STXRSucceed = cpu.STXRSucceed;
+	}
+	
+	/**
+	 * Creates a snapshot holding the supplied state, e.g. one read back from a serialized checkpoint
+	 * 
+	 * @param registerFile		the values of the 32 registers
+	 * @param Nflag				the value of the N flag
+	 * @param Zflag				the value of the Z flag
+	 * @param Cflag				the value of the C flag
+	 * @param Vflag				the value of the V flag
+	 * @param instructionIndex	the index of the next instruction to execute
+	 * @param taggedAddress		the address tagged for exclusive access by LDXR, 0 if none is tagged
+	 * @param branchTaken		<code>true</code> if the last instruction executed was a branch that was taken
+	 * @param STXRSucceed		<code>true</code> if the last STXR executed succeeded
+	 * @throws IllegalArgumentException	if <code>registerFile</code> does not hold 32 values
+	 */
+	public CPUSnapshot(long[] registerFile, boolean Nflag, boolean Zflag, boolean Cflag, boolean Vflag, 
+			int instructionIndex, long taggedAddress, boolean branchTaken, boolean STXRSucceed) {
+		if (registerFile.length != CPU.NUM_REGISTERS) {
+			throw new IllegalArgumentException("Expected " + CPU.NUM_REGISTERS + " registers, found " + registerFile.length);
+		}
+		System.arraycopy(registerFile, 0, this.registerFile, 0, CPU.NUM_REGISTERS);
+		this.Nflag = Nflag;
+		this.Zflag = Zflag;
+		this.Cflag = Cflag;
+		this.Vflag = Vflag;
+		this.instructionIndex = instructionIndex;
+		this.taggedAddress = taggedAddress;
+		this.branchTaken = branchTaken;
+		this.STXRSucceed = STXRSucceed;
 	}
 	
 	/**
@@ -58,9 +95,41 @@ public class CPUSnapshot {
 		return Vflag;
 	}
 	
+	/**
+	 * @return	the index of the next instruction to execute
+	 */
+	public int getInstructionIndex() {
+		return instructionIndex;
+	}
+	
+	/**
+	 * @return	the address tagged for exclusive access by LDXR, 0 if none is tagged
+	 */
+	public long getTaggedAddress() {
+		return taggedAddress;
+	}
+	
+	/**
+	 * @return	<code>true</code> if the last instruction executed was a branch that was taken
+	 */
+	public boolean getBranchTaken() {
+		return branchTaken;
+	}
+	
+	/**
+	 * @return	<code>true</code> if the last STXR executed succeeded
+	 */
+	public boolean getSTXRSucceed() {
+		return STXRSucceed;
+	}
+	
 	private long[] registerFile = new long[CPU.NUM_REGISTERS];
 	private boolean Nflag;
 	private boolean Zflag;
 	private boolean Cflag;
 	private boolean Vflag;
+	private int instructionIndex;
+	private long taggedAddress;
+	private boolean branchTaken;
+	private boolean STXRSucceed;
 }
@@ -0,0 +1,120 @@
+package com.arm.legv8simulator.client.cpu;
+
+import com.arm.legv8simulator.client.instruction.Mnemonic;
+import com.arm.legv8simulator.client.memory.Memory;
+import com.arm.legv8simulator.client.memory.SegmentFaultException;
+
+/**
+ * A <code>CompiledBlock</code> executes a basic block of a LEGv8 program - a run of instructions 
+ * entered only at its first instruction and left only after its last - in a single call. Blocks are 
+ * generated by an <code>ExecutionTier</code> and run by <code>CPU.executeBlock</code>.
+ * <p>
+ * The protected helpers give generated subclasses, which need not be in this package, the 
+ * same access to the CPU state as a <code>PredecodedProgram</code>. Before any instruction 
+ * which can throw, a block must set the instruction index to the index of the following 
+ * instruction, as the interpreter does, so that runtime errors report the correct line.
+ * 
+ * @see CPU
+ * @see ExecutionTier
+ */
+public abstract class CompiledBlock {
+	
+	protected CompiledBlock() {}
+	
+	/**
+	 * @param cpu		the <code>CPU</code> executing this block
+	 * @param x			the register file of <code>cpu</code>
+	 * @param memory	a reference to the data memory used in data transfer instructions
+	 * @return			the index of the next instruction to execute
+	 * 
+	 * @throws SegmentFaultException
+	 * @throws PCAlignmentException
+	 * @throws SPAlignmentException
+	 */
+	public abstract int execute(CPU cpu, long[] x, Memory memory) 
+			throws SegmentFaultException, PCAlignmentException, SPAlignmentException;
+	
+	protected static void setInstructionIndex(CPU cpu, int index) {
+		cpu.instructionIndex = index;
+	}
+	
+	protected static void setBranchTaken(CPU cpu) {
+		cpu.branchTaken = true;
+	}
+	
+	protected static void ADDSetFlags(CPU cpu, long result, long op1, long op2) {
+		cpu.ADDSetFlags(result, op1, op2);
+	}
+	
+	protected static void SUBSetFlags(CPU cpu, long result, long op1, long op2) {
+		cpu.SUBSetFlags(result, op1, op2);
+	}
+	
+	protected static void ANDSetFlags(CPU cpu, long result) {
+		cpu.ANDSetFlags(result);
+	}
+	
+	protected static void checkSPAlignment(long[] x) throws SPAlignmentException {
+		if (x[CPU.SP]%16 != 0) {
+			throw new SPAlignmentException(x[CPU.SP]);
+		}
+	}
+	
+	protected static void clearExclusiveAccessTag(CPU cpu, long address, int figureSize) {
+		if (cpu.clearsExclusiveAccessTag(address, figureSize)) {
+			cpu.taggedAddress = 0;
+		}
+	}
+	
+	// LDXR with a destination register other than XZR
+	protected static void loadExclusive(CPU cpu, long[] x, int destReg, long address, Memory memory) 
+			throws SegmentFaultException {
+		x[destReg] = memory.loadDoubleword(address);
+		cpu.taggedAddress = address;
+	}
+	
+	protected static void storeExclusive(CPU cpu, long[] x, int valReg, int outcomeReg, long address, 
+			Memory memory) throws SegmentFaultException {
+		if (cpu.taggedAddress == address) {
+			memory.storeDoubleword(address, x[valReg]);
+			x[outcomeReg] = 0;
+			cpu.taggedAddress = 0;
+			cpu.STXRSucceed = true;
+		} else {
+			x[outcomeReg] = 1;
+			cpu.STXRSucceed = false;
+		}
+	}
+	
+	// BR, returning the index of the branch target
+	protected static int branchToRegister(CPU cpu, long address, Memory memory) 
+			throws SegmentFaultException, PCAlignmentException {
+		cpu.branchToRegister(address, memory);
+		return cpu.instructionIndex;
+	}
+	
+	// whether the branch of a B.cond instruction is taken, evaluated exactly as by the CPU
+	protected static boolean conditionHolds(CPU cpu, Mnemonic condition) {
+		boolean N = cpu.getNflag();
+		boolean Z = cpu.getZflag();
+		boolean C = cpu.getCflag();
+		boolean V = cpu.getVflag();
+		switch (condition) {
+		case BEQ : return Z;
+		case BNE : return !Z;
+		case BHS : return C;
+		case BLO : return !C;
+		case BHI : return !Z && C;
+		case BLS : return !(!Z && C);
+		case BGE : return N == V;
+		case BLT : return C != V;
+		case BGT : return !Z && N == V;
+		case BLE : return !(!Z && N == V);
+		case BMI : return N;
+		case BPL : return !N;
+		case BVS : return V;
+		case BVC : return !V;
+		default : return false;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.arm.legv8simulator.client.cpu;
+
+/**
+ * The <code>ExecutionEngine</code> enumeration defines the ways in which the <code>CPU</code> 
+ * can execute a complete LEGv8 program.
+ * 
+ * @see CPU
+ */
+public enum ExecutionEngine {
+	
+	/**
+	 * Each <code>Instruction</code> is dispatched on its mnemonic as it is executed and every 
+	 * instruction is recorded in the CPU log.
+	 */
+	INTERPRETER,
+	
+	/**
+	 * The program is first translated into a <code>PredecodedProgram</code>, which is then run 
+	 * without writing to the CPU log.
+	 * 
+	 * @see PredecodedProgram
+	 */
+	PREDECODED;
+}
@@ -0,0 +1,27 @@
+package com.arm.legv8simulator.client.cpu;
+
+import java.util.HashMap;
+
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.instruction.InstructionTable;
+import com.arm.legv8simulator.client.memory.Memory;
+
+/**
+ * An <code>ExecutionTier</code> runs a complete LEGv8 program on a <code>CPU</code>, in place of 
+ * <code>CPU.run</code>. Tiers which are not translatable by GWT, such as those generating JVM 
+ * bytecode, implement this interface outside the <code>client</code> package.
+ * 
+ * @see CPU
+ * @see CompiledBlock
+ */
+public interface ExecutionTier {
+	
+	/**
+	 * @param cpu				the <code>CPU</code> on which to run the program
+	 * @param program		the instructions of the LEGv8 assembly program
+	 * @param branchTable	table mapping labels to instruction indices
+	 * @param memory		a reference to the data memory used in data transfer instructions
+	 * @return				an <code>Error</code> object, <code>null</code> if no error occurs during execution
+	 */
+	Error run(CPU cpu, InstructionTable program, HashMap<String, Integer> branchTable, Memory memory);
+}
@@ -0,0 +1,978 @@
+package com.arm.legv8simulator.client.cpu;
+
+import com.arm.legv8simulator.client.instruction.Instruction;
+import com.arm.legv8simulator.client.instruction.InstructionTable;
+import com.arm.legv8simulator.client.instruction.Mnemonic;
+import com.arm.legv8simulator.client.memory.Memory;
+import com.arm.legv8simulator.client.memory.SegmentFaultException;
+
+/**
+ * A <code>PredecodedProgram</code> is a LEGv8 program translated, before execution, into an array of 
+ * operations: one per <code>Instruction</code>, each holding its register indices and immediates in 
+ * final fields. The <code>CPU</code> runs it by calling each operation in turn, so there is no 
+ * mnemonic switch and no argument array to read on every instruction.
+ * <p>
+ * Some common sequences of instructions are also fused into superinstructions, which execute the whole 
+ * sequence in a single dispatch when the program is run:
+ * <ul>
+ * <li>a flag-setting instruction, including CMP and CMPI, followed by a B.cond</li>
+ * <li>ADDI or SUBI followed by CBZ or CBNZ</li>
+ * <li>LDUR, an ADD of the loaded register and STUR of the sum to the same address</li>
+ * </ul>
+ * A superinstruction is held at the index of the first instruction of its sequence only. Every other 
+ * instruction keeps its own operation, so a branch to a label inside a sequence executes from there on 
+ * as usual. Executing one instruction at a time never uses superinstructions.
+ * <p>
+ * Executing a <code>PredecodedProgram</code> updates registers, flags, the PC and memory exactly as 
+ * executing the original <code>Instruction</code>s would; but nothing is written to the CPU log.
+ * 
+ * @see CPU
+ * @see Instruction
+ */
+public class PredecodedProgram {
+
+	/**
+	 * @param program	the decoded instructions of the LEGv8 assembly program
+	 */
+	public PredecodedProgram(InstructionTable program) {
+		operations = new Operation[program.size()];
+		for (int i=0; i<operations.length; i++) {
+			operations[i] = predecode(program.getMnemonic(i), program.getArgs(i), program.getLineNumber(i));
+		}
+		superinstructions = new Operation[operations.length];
+		for (int i=0; i<operations.length; i++) {
+			superinstructions[i] = fuse(program, i);
+		}
+	}
+	
+	/**
+	 * The largest number of instructions fused into one superinstruction
+	 */
+	static final int MAX_SUPERINSTRUCTION_LENGTH = 3;
+	
+	/**
+	 * @return	the number of instructions in this program
+	 */
+	public int size() {
+		return operations.length;
+	}
+	
+	/**
+	 * @param index	the index of an instruction in this program
+	 * @return		the line in the code editor of that instruction
+	 */
+	public int getLineNumber(int index) {
+		return operations[index].lineNumber;
+	}
+	
+	Operation getOperation(int index) {
+		return operations[index];
+	}
+	
+	/*
+	 * Returns the superinstruction starting at index, or the operation of that instruction if no 
+	 * sequence is fused there
+	 */
+	Operation getSuperinstruction(int index) {
+		return superinstructions[index];
+	}
+	
+	private Operation fuse(InstructionTable program, int index) {
+		Mnemonic first = program.getMnemonic(index);
+		if (index+1 < operations.length) {
+			Mnemonic second = program.getMnemonic(index+1);
+			int[] a = program.getArgs(index);
+			int[] b = program.getArgs(index+1);
+			if (index+2 < operations.length && first == Mnemonic.LDUR && second == Mnemonic.ADD 
+					&& program.getMnemonic(index+2) == Mnemonic.STUR 
+					&& isReadModifyWrite(a, b, program.getArgs(index+2))) {
+				return new Fused3(operations[index], operations[index+1], operations[index+2]);
+			}
+			int line = program.getLineNumber(index);
+			if ((first == Mnemonic.SUBS || first == Mnemonic.SUBIS) && isConditionalBranch(second)) {
+				return new SubtractBranch(line, a[0], a[1], a[2], first == Mnemonic.SUBIS, operations[index+1]);
+			}
+			if (setsFlags(first) && isConditionalBranch(second)) {
+				return new Fused2(operations[index], operations[index+1]);
+			}
+			if ((first == Mnemonic.ADDI || first == Mnemonic.SUBI) 
+					&& (second == Mnemonic.CBZ || second == Mnemonic.CBNZ)) {
+				return new AddImmediateBranch(line, a[0], a[1], first == Mnemonic.SUBI ? -a[2] : a[2], 
+						b[0], b[1], second == Mnemonic.CBZ);
+			}
+		}
+		return operations[index];
+	}
+	
+	/*
+	 * True if the ADD uses the register loaded by the LDUR and the STUR stores the sum to the address 
+	 * loaded from. Neither the LDUR nor the ADD may write the base register, so the address is the same.
+	 */
+	private static boolean isReadModifyWrite(int[] load, int[] add, int[] store) {
+		int loaded = load[0];
+		int sum = add[0];
+		int base = load[1];
+		return loaded != CPU.XZR && sum != CPU.XZR && loaded != base && sum != base 
+				&& (add[1] == loaded || add[2] == loaded) 
+				&& store[0] == sum && store[1] == base && store[2] == load[2];
+	}
+	
+	private static boolean setsFlags(Mnemonic m) {
+		switch (m) {
+		case ADDS : case ADDIS : case SUBS : case SUBIS : case ANDS : case ANDIS :
+			return true;
+		default :
+			return false;
+		}
+	}
+	
+	private static boolean isConditionalBranch(Mnemonic m) {
+		switch (m) {
+		case BEQ : case BNE : case BHS : case BLO : case BHI : case BLS : case BGE : 
+		case BLT : case BGT : case BLE : case BMI : case BPL : case BVS : case BVC :
+			return true;
+		default :
+			return false;
+		}
+	}
+	
+	/*
+	 * Selects the operation class for an instruction. Register writes to XZR are ignored by the CPU, 
+	 * so arithmetic and logical instructions targeting XZR which do not set flags become a NOP.
+	 */
+	private static Operation predecode(Mnemonic m, int[] a, int line) {
+		switch (m) {
+		case ADD :
+			return a[0] == CPU.XZR ? new NOP(line) : new ADD(line, a[0], a[1], a[2]);
+		case ADDI :
+			return a[0] == CPU.XZR ? new NOP(line) : new ADDI(line, a[0], a[1], a[2]);
+		case SUB :
+			return a[0] == CPU.XZR ? new NOP(line) : new SUB(line, a[0], a[1], a[2]);
+		case SUBI :
+			return a[0] == CPU.XZR ? new NOP(line) : new SUBI(line, a[0], a[1], a[2]);
+		case AND :
+			return a[0] == CPU.XZR ? new NOP(line) : new AND(line, a[0], a[1], a[2]);
+		case ANDI :
+			return a[0] == CPU.XZR ? new NOP(line) : new ANDI(line, a[0], a[1], a[2]);
+		case ORR :
+			return a[0] == CPU.XZR ? new NOP(line) : new ORR(line, a[0], a[1], a[2]);
+		case ORRI :
+			return a[0] == CPU.XZR ? new NOP(line) : new ORRI(line, a[0], a[1], a[2]);
+		case EOR :
+			return a[0] == CPU.XZR ? new NOP(line) : new EOR(line, a[0], a[1], a[2]);
+		case EORI :
+			return a[0] == CPU.XZR ? new NOP(line) : new EORI(line, a[0], a[1], a[2]);
+		case LSL :
+			return a[0] == CPU.XZR ? new NOP(line) : new LSL(line, a[0], a[1], a[2]);
+		case LSR :
+			return a[0] == CPU.XZR ? new NOP(line) : new LSR(line, a[0], a[1], a[2]);
+		case ADDS :
+			return new ADDS(line, a[0], a[1], a[2]);
+		case ADDIS :
+			return new ADDIS(line, a[0], a[1], a[2]);
+		case SUBS :
+			return new SUBS(line, a[0], a[1], a[2]);
+		case SUBIS :
+			return new SUBIS(line, a[0], a[1], a[2]);
+		case ANDS :
+			return new ANDS(line, a[0], a[1], a[2]);
+		case ANDIS :
+			return new ANDIS(line, a[0], a[1], a[2]);
+		case LDUR :
+			return new LDUR(line, a[0], a[1], a[2]);
+		case STUR :
+			return new STUR(line, a[0], a[1], a[2]);
+		case LDURSW :
+			return new LDURSW(line, a[0], a[1], a[2]);
+		case STURW :
+			return new STURW(line, a[0], a[1], a[2]);
+		case LDURH :
+			return new LDURH(line, a[0], a[1], a[2]);
+		case STURH :
+			return new STURH(line, a[0], a[1], a[2]);
+		case LDURB :
+			return new LDURB(line, a[0], a[1], a[2]);
+		case STURB :
+			return new STURB(line, a[0], a[1], a[2]);
+		case LDXR :
+			return new LDXR(line, a[0], a[1], a[2]);
+		case MOVZ :
+			return new MOVZ(line, a[0], a[1], a[2]);
+		case MOVK :
+			return new MOVK(line, a[0], a[1], a[2]);
+		case STXR :
+			return new STXR(line, a[0], a[1], a[2], a[3]);
+		case CBZ :
+			return new CBZ(line, a[0], a[1]);
+		case CBNZ :
+			return new CBNZ(line, a[0], a[1]);
+		case BEQ :
+			return new BEQ(line, a[0]);
+		case BNE :
+			return new BNE(line, a[0]);
+		case BHS :
+			return new BHS(line, a[0]);
+		case BLO :
+			return new BLO(line, a[0]);
+		case BHI :
+			return new BHI(line, a[0]);
+		case BLS :
+			return new BLS(line, a[0]);
+		case BGE :
+			return new BGE(line, a[0]);
+		case BLT :
+			return new BLT(line, a[0]);
+		case BGT :
+			return new BGT(line, a[0]);
+		case BLE :
+			return new BLE(line, a[0]);
+		case BMI :
+			return new BMI(line, a[0]);
+		case BPL :
+			return new BPL(line, a[0]);
+		case BVS :
+			return new BVS(line, a[0]);
+		case BVC :
+			return new BVC(line, a[0]);
+		case B :
+			return new B(line, a[0]);
+		case BR :
+			return new BR(line, a[0]);
+		case BL :
+			return new BL(line, a[0]);
+		default :
+			return new NOP(line);
+		}
+	}
+
+	/*
+	 * Base class of every operation. The register file is passed in directly so that operations 
+	 * do not have to read it from the CPU each time.
+	 */
+	static abstract class Operation {
+		
+		Operation(int lineNumber) {
+			this(lineNumber, 1);
+		}
+		
+		Operation(int lineNumber, int length) {
+			this.lineNumber = lineNumber;
+			this.length = length;
+		}
+		
+		abstract void execute(CPU cpu, long[] x, Memory memory) 
+				throws SegmentFaultException, PCAlignmentException, SPAlignmentException;
+		
+		final int lineNumber;
+		// the number of instructions executed by this operation
+		final int length;
+	}
+	
+	/*
+	 * Superinstructions advance the instruction index past each instruction before executing the next one, 
+	 * so that if an instruction faults the index is one past the faulting instruction as when executing 
+	 * one operation at a time. Only the last instruction of a sequence may branch.
+	 */
+	private static final class Fused2 extends Operation {
+		Fused2(Operation first, Operation second) {
+			super(first.lineNumber, 2);
+			this.first = first;
+			this.second = second;
+		}
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) 
+				throws SegmentFaultException, PCAlignmentException, SPAlignmentException {
+			first.execute(cpu, x, memory);
+			cpu.instructionIndex++;
+			second.execute(cpu, x, memory);
+		}
+		final Operation first;
+		final Operation second;
+	}
+	
+	// SUBS, SUBIS, CMP or CMPI followed by a B.cond, the subtraction is done here rather than by a second call
+	private static final class SubtractBranch extends Operation {
+		SubtractBranch(int lineNumber, int a, int b, int c, boolean immediate, Operation branch) {
+			super(lineNumber, 2);
+			this.a = a;
+			this.b = b;
+			this.c = c;
+			this.immediate = immediate;
+			this.branch = branch;
+		}
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) 
+				throws SegmentFaultException, PCAlignmentException, SPAlignmentException {
+			long result = x[b] - (immediate ? c : x[c]);
+			if (a != CPU.XZR) {
+				x[a] = result;
+			}
+			cpu.SUBSetFlags(result, x[b], immediate ? c : x[c]);
+			cpu.instructionIndex++;
+			branch.execute(cpu, x, memory);
+		}
+		final int a;
+		final int b;
+		final int c;
+		final boolean immediate;
+		final Operation branch;
+	}
+	
+	// ADDI or SUBI followed by CBZ or CBNZ, a SUBI is held as an ADDI of the negated immediate
+	private static final class AddImmediateBranch extends Operation {
+		AddImmediateBranch(int lineNumber, int a, int b, int c, int conditionReg, int branchIndex, boolean branchIfZero) {
+			super(lineNumber, 2);
+			this.a = a;
+			this.b = b;
+			this.c = c;
+			this.conditionReg = conditionReg;
+			this.branchIndex = branchIndex;
+			this.branchIfZero = branchIfZero;
+		}
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (a != CPU.XZR) {
+				x[a] = x[b] + c;
+			}
+			cpu.instructionIndex++;
+			if ((x[conditionReg] == 0) == branchIfZero) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+		final int a;
+		final int b;
+		final int c;
+		final int conditionReg;
+		final int branchIndex;
+		final boolean branchIfZero;
+	}
+	
+	private static final class Fused3 extends Operation {
+		Fused3(Operation first, Operation second, Operation third) {
+			super(first.lineNumber, 3);
+			this.first = first;
+			this.second = second;
+			this.third = third;
+		}
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) 
+				throws SegmentFaultException, PCAlignmentException, SPAlignmentException {
+			first.execute(cpu, x, memory);
+			cpu.instructionIndex++;
+			second.execute(cpu, x, memory);
+			cpu.instructionIndex++;
+			third.execute(cpu, x, memory);
+		}
+		final Operation first;
+		final Operation second;
+		final Operation third;
+	}
+	
+	// operations with three integer operands: registers or immediates
+	private static abstract class Operation3 extends Operation {
+		
+		Operation3(int lineNumber, int a, int b, int c) {
+			super(lineNumber);
+			this.a = a;
+			this.b = b;
+			this.c = c;
+		}
+		
+		final int a;
+		final int b;
+		final int c;
+	}
+	
+	// data transfer operations check SP alignment when SP is the base register
+	private static abstract class MemoryOperation extends Operation3 {
+		
+		MemoryOperation(int lineNumber, int a, int b, int c) {
+			super(lineNumber, a, b, c);
+			checkSP = (b == CPU.SP);
+		}
+		
+		final void checkSPAlignment(long[] x) throws SPAlignmentException {
+			if (checkSP && x[CPU.SP]%16 != 0) {
+				throw new SPAlignmentException(x[CPU.SP]);
+			}
+		}
+		
+		final boolean checkSP;
+	}
+	
+	// branch operations hold the index of the instruction to branch to
+	private static abstract class BranchOperation extends Operation {
+		
+		BranchOperation(int lineNumber, int branchIndex) {
+			super(lineNumber);
+			this.branchIndex = branchIndex;
+		}
+		
+		final int branchIndex;
+	}
+	
+	private static final class NOP extends Operation {
+		NOP(int lineNumber) { super(lineNumber); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {}
+	}
+	
+	private static final class ADD extends Operation3 {
+		ADD(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] + x[c];
+		}
+	}
+	
+	private static final class ADDI extends Operation3 {
+		ADDI(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] + c;
+		}
+	}
+	
+	private static final class SUB extends Operation3 {
+		SUB(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] - x[c];
+		}
+	}
+	
+	private static final class SUBI extends Operation3 {
+		SUBI(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] - c;
+		}
+	}
+	
+	private static final class AND extends Operation3 {
+		AND(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] & x[c];
+		}
+	}
+	
+	private static final class ANDI extends Operation3 {
+		ANDI(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] & c;
+		}
+	}
+	
+	private static final class ORR extends Operation3 {
+		ORR(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] | x[c];
+		}
+	}
+	
+	private static final class ORRI extends Operation3 {
+		ORRI(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] | c;
+		}
+	}
+	
+	private static final class EOR extends Operation3 {
+		EOR(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] ^ x[c];
+		}
+	}
+	
+	private static final class EORI extends Operation3 {
+		EORI(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] ^ c;
+		}
+	}
+	
+	private static final class LSL extends Operation3 {
+		LSL(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] << c;
+		}
+	}
+	
+	private static final class LSR extends Operation3 {
+		LSR(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[a] = x[b] >>> c;
+		}
+	}
+	
+	private static final class ADDS extends Operation3 {
+		ADDS(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			long result = x[b] + x[c];
+			if (a != CPU.XZR) {
+				x[a] = result;
+			}
+			cpu.ADDSetFlags(result, x[b], x[c]);
+		}
+	}
+	
+	private static final class ADDIS extends Operation3 {
+		ADDIS(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			long result = x[b] + c;
+			if (a != CPU.XZR) {
+				x[a] = result;
+			}
+			cpu.ADDSetFlags(result, x[b], c);
+		}
+	}
+	
+	private static final class SUBS extends Operation3 {
+		SUBS(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			long result = x[b] - x[c];
+			if (a != CPU.XZR) {
+				x[a] = result;
+			}
+			cpu.SUBSetFlags(result, x[b], x[c]);
+		}
+	}
+	
+	private static final class SUBIS extends Operation3 {
+		SUBIS(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			long result = x[b] - c;
+			if (a != CPU.XZR) {
+				x[a] = result;
+			}
+			cpu.SUBSetFlags(result, x[b], c);
+		}
+	}
+	
+	private static final class ANDS extends Operation3 {
+		ANDS(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			long result = x[b] & x[c];
+			if (a != CPU.XZR) {
+				x[a] = result;
+			}
+			cpu.ANDSetFlags(result);
+		}
+	}
+	
+	private static final class ANDIS extends Operation3 {
+		ANDIS(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			long result = x[b] & c;
+			if (a != CPU.XZR) {
+				x[a] = result;
+			}
+			cpu.ANDSetFlags(result);
+		}
+	}
+	
+	private static final class LDUR extends MemoryOperation {
+		LDUR(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory)
+				throws SegmentFaultException, SPAlignmentException {
+			checkSPAlignment(x);
+			if (a != CPU.XZR) {
+				x[a] = memory.loadDoubleword(x[b]+c);
+			}
+		}
+	}
+	
+	private static final class LDURSW extends MemoryOperation {
+		LDURSW(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory)
+				throws SegmentFaultException, SPAlignmentException {
+			checkSPAlignment(x);
+			if (a != CPU.XZR) {
+				x[a] = memory.loadSignedWord(x[b]+c);
+			}
+		}
+	}
+	
+	private static final class LDURH extends MemoryOperation {
+		LDURH(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory)
+				throws SegmentFaultException, SPAlignmentException {
+			checkSPAlignment(x);
+			// the CPU computes the LDURH address from the destination register
+			if (a != CPU.XZR) {
+				x[a] = memory.loadHalfword(x[a]+c);
+			}
+		}
+	}
+	
+	private static final class LDURB extends MemoryOperation {
+		LDURB(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory)
+				throws SegmentFaultException, SPAlignmentException {
+			checkSPAlignment(x);
+			if (a != CPU.XZR) {
+				x[a] = memory.loadByte(x[b]+c);
+			}
+		}
+	}
+	
+	private static final class STUR extends MemoryOperation {
+		STUR(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory)
+				throws SegmentFaultException, SPAlignmentException {
+			checkSPAlignment(x);
+			long address = x[b]+c;
+			memory.storeDoubleword(address, x[a]);
+			if (cpu.clearsExclusiveAccessTag(address, Memory.DOUBLEWORD_SIZE)) {
+				cpu.taggedAddress = 0;
+			}
+		}
+	}
+	
+	private static final class STURW extends MemoryOperation {
+		STURW(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory)
+				throws SegmentFaultException, SPAlignmentException {
+			checkSPAlignment(x);
+			long address = x[b]+c;
+			memory.storeWord(address, x[a]);
+			if (cpu.clearsExclusiveAccessTag(address, Memory.WORD_SIZE)) {
+				cpu.taggedAddress = 0;
+			}
+		}
+	}
+	
+	private static final class STURH extends MemoryOperation {
+		STURH(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory)
+				throws SegmentFaultException, SPAlignmentException {
+			checkSPAlignment(x);
+			long address = x[b]+c;
+			memory.storeHalfword(address, x[a]);
+			if (cpu.clearsExclusiveAccessTag(address, Memory.HALFWORD_SIZE)) {
+				cpu.taggedAddress = 0;
+			}
+		}
+	}
+	
+	private static final class STURB extends MemoryOperation {
+		STURB(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory)
+				throws SegmentFaultException, SPAlignmentException {
+			checkSPAlignment(x);
+			long address = x[b]+c;
+			memory.storeByte(address, x[a]);
+			if (cpu.clearsExclusiveAccessTag(address, Memory.BYTE_SIZE)) {
+				cpu.taggedAddress = 0;
+			}
+		}
+	}
+	
+	private static final class LDXR extends MemoryOperation {
+		LDXR(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory)
+				throws SegmentFaultException, SPAlignmentException {
+			checkSPAlignment(x);
+			long address = x[b]+c;
+			if (a != CPU.XZR) {
+				x[a] = memory.loadDoubleword(address);
+				cpu.taggedAddress = address;
+			}
+		}
+	}
+	
+	private static final class STXR extends Operation {
+		STXR(int lineNumber, int valReg, int outcomeReg, int baseAddressReg, int offset) {
+			super(lineNumber);
+			this.valReg = valReg;
+			this.outcomeReg = outcomeReg;
+			this.baseAddressReg = baseAddressReg;
+			this.offset = offset;
+		}
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) throws SegmentFaultException, SPAlignmentException {
+			if (baseAddressReg == CPU.SP && x[CPU.SP]%16 != 0) {
+				throw new SPAlignmentException(x[CPU.SP]);
+			}
+			long address = x[baseAddressReg] + offset;
+			if (cpu.taggedAddress == address) {
+				memory.storeDoubleword(address, x[valReg]);
+				x[outcomeReg] = 0;
+				cpu.taggedAddress = 0;
+				cpu.STXRSucceed = true;
+			} else {
+				x[outcomeReg] = 1;
+				cpu.STXRSucceed = false;
+			}
+		}
+		final int valReg;
+		final int outcomeReg;
+		final int baseAddressReg;
+		final int offset;
+	}
+	
+	private static final class MOVZ extends Operation3 {
+		MOVZ(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (a != CPU.XZR) {
+				x[a] = b << c;
+			}
+		}
+	}
+	
+	private static final class MOVK extends Operation3 {
+		MOVK(int lineNumber, int a, int b, int c) { super(lineNumber, a, b, c); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (a != CPU.XZR) {
+				x[a] = x[a] | (b << c);
+			}
+		}
+	}
+	
+	private static final class CBZ extends Operation {
+		CBZ(int lineNumber, int conditionReg, int branchIndex) {
+			super(lineNumber);
+			this.conditionReg = conditionReg;
+			this.branchIndex = branchIndex;
+		}
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (x[conditionReg] == 0) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+		final int conditionReg;
+		final int branchIndex;
+	}
+	
+	private static final class CBNZ extends Operation {
+		CBNZ(int lineNumber, int conditionReg, int branchIndex) {
+			super(lineNumber);
+			this.conditionReg = conditionReg;
+			this.branchIndex = branchIndex;
+		}
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (x[conditionReg] != 0) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+		final int conditionReg;
+		final int branchIndex;
+	}
+	
+	private static final class BEQ extends BranchOperation {
+		BEQ(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (cpu.getZflag()) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BNE extends BranchOperation {
+		BNE(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (!cpu.getZflag()) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BHS extends BranchOperation {
+		BHS(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (cpu.getCflag()) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BLO extends BranchOperation {
+		BLO(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (!cpu.getCflag()) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BHI extends BranchOperation {
+		BHI(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (!cpu.getZflag() && cpu.getCflag()) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BLS extends BranchOperation {
+		BLS(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (!(!cpu.getZflag() && cpu.getCflag())) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BGE extends BranchOperation {
+		BGE(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (cpu.getNflag() == cpu.getVflag()) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BLT extends BranchOperation {
+		BLT(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			// as in CPU, B.LT compares C with V and does not report the branch as taken
+			if (cpu.getCflag() != cpu.getVflag()) {
+				cpu.instructionIndex = branchIndex;
+			}
+		}
+	}
+	
+	private static final class BGT extends BranchOperation {
+		BGT(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (!cpu.getZflag() && cpu.getNflag() == cpu.getVflag()) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BLE extends BranchOperation {
+		BLE(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (!(!cpu.getZflag() && cpu.getNflag() == cpu.getVflag())) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BMI extends BranchOperation {
+		BMI(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (cpu.getNflag()) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BPL extends BranchOperation {
+		BPL(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (!cpu.getNflag()) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BVS extends BranchOperation {
+		BVS(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (cpu.getVflag()) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class BVC extends BranchOperation {
+		BVC(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			if (!cpu.getVflag()) {
+				cpu.instructionIndex = branchIndex;
+				cpu.branchTaken = true;
+			}
+		}
+	}
+	
+	private static final class B extends BranchOperation {
+		B(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			cpu.instructionIndex = branchIndex;
+			cpu.branchTaken = true;
+		}
+	}
+	
+	private static final class BR extends Operation {
+		BR(int lineNumber, int branchReg) {
+			super(lineNumber);
+			this.branchReg = branchReg;
+		}
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) throws SegmentFaultException, PCAlignmentException {
+			cpu.branchToRegister(x[branchReg], memory);
+		}
+		final int branchReg;
+	}
+	
+	private static final class BL extends BranchOperation {
+		BL(int lineNumber, int branchIndex) { super(lineNumber, branchIndex); }
+		@Override
+		void execute(CPU cpu, long[] x, Memory memory) {
+			x[CPU.LR] = cpu.instructionIndex * CPU.INSTRUCTION_SIZE + Memory.TEXT_SEGMENT_OFFSET;
+			cpu.instructionIndex = branchIndex;
+		}
+	}
+	
+	private Operation[] operations;
+	private Operation[] superinstructions;
+}
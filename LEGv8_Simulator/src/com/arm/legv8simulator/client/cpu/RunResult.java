@@ -0,0 +1,50 @@
+package com.arm.legv8simulator.client.cpu;
+
+import com.arm.legv8simulator.client.Error;
+
+/**
+ * A <code>RunResult</code> is returned by the bounded <code>run</code> methods of the <code>CPU</code>. 
+ * It records why the run stopped, the runtime error if there was one, and how many instructions were 
+ * executed.
+ * 
+ * @see CPU
+ * @see RunStatus
+ */
+public class RunResult {
+	
+	/**
+	 * @param status				why the run stopped
+	 * @param error					the runtime error, <code>null</code> unless <code>status</code> is <code>FAULT</code>
+	 * @param instructionsExecuted	the number of instructions executed in the run, including any faulting instruction
+	 */
+	public RunResult(RunStatus status, Error error, long instructionsExecuted) {
+		this.status = status;
+		this.error = error;
+		this.instructionsExecuted = instructionsExecuted;
+	}
+	
+	/**
+	 * @return	why the run stopped
+	 */
+	public RunStatus getStatus() {
+		return status;
+	}
+	
+	/**
+	 * @return	the runtime error, <code>null</code> unless the status is <code>FAULT</code>
+	 */
+	public Error getError() {
+		return error;
+	}
+	
+	/**
+	 * @return	the number of instructions executed in the run, including any faulting instruction
+	 */
+	public long getInstructionsExecuted() {
+		return instructionsExecuted;
+	}
+	
+	private RunStatus status;
+	private Error error;
+	private long instructionsExecuted;
+}
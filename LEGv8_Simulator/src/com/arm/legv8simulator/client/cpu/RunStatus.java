@@ -0,0 +1,25 @@
+package com.arm.legv8simulator.client.cpu;
+
+/**
+ * The <code>RunStatus</code> enumeration defines why a bounded run of the <code>CPU</code> stopped.
+ * 
+ * @see RunResult
+ */
+public enum RunStatus {
+	
+	/**
+	 * The program ran to completion
+	 */
+	COMPLETED,
+	
+	/**
+	 * The instruction budget or the deadline was reached before the program completed. 
+	 * Running the <code>CPU</code> again resumes from the next instruction.
+	 */
+	BUDGET_EXHAUSTED,
+	
+	/**
+	 * A runtime error occurred
+	 */
+	FAULT;
+}
@@ -0,0 +1,26 @@
+package com.arm.legv8simulator.client.cpu;
+
+/**
+ * The <code>TraceLevel</code> enumeration defines how much of its execution history a <code>CPU</code> 
+ * keeps in its log.
+ * 
+ * @see CPU
+ * @see CPULog
+ */
+public enum TraceLevel {
+	
+	/**
+	 * Nothing is recorded
+	 */
+	OFF,
+	
+	/**
+	 * Only the most recent entries are kept, up to the capacity of the log
+	 */
+	RING,
+	
+	/**
+	 * The full execution history is kept
+	 */
+	FULL;
+}
@@ -0,0 +1,243 @@
+package com.arm.legv8simulator.client.cpu;
+
+import com.arm.legv8simulator.client.instruction.InstructionTable;
+import com.arm.legv8simulator.client.memory.Memory;
+import com.arm.legv8simulator.client.memory.SegmentFaultException;
+
+/**
+ * An <code>UndoLog</code> records what each step of a simulator is about to overwrite so that the steps can be
+ * undone, most recent first. For each step it holds the instruction index, flags and exclusive access tag of
+ * the <code>CPU</code>, the register the instruction writes with its old value, and the bytes of memory the
+ * instruction stores to with their old contents. Undoing a step therefore costs the same whatever the size of
+ * the program or its memory.
+ * <p>
+ * Entries are held in parallel primitive arrays used as a ring, allocated on the first step recorded. Only the
+ * most recent <code>capacity</code> steps are kept; older steps are forgotten and can no longer be undone.
+ * The slot returned for each step lets a simulator keep its own state for the step in arrays of the same
+ * capacity. The CPU log is not recorded.
+ *
+ * @see CPU
+ * @see Memory
+ */
+public class UndoLog {
+
+	/**
+	 * @param capacity	the number of most recent steps that can be undone
+	 * @throws IllegalArgumentException	if <code>capacity</code> is less than 1
+	 */
+	public UndoLog(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The history must hold at least one step");
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Records the state that executing the instruction at the CPU's instruction index will overwrite. Calling
+	 * this for a step that does not execute the instruction is harmless, as undoing the step then rewrites
+	 * values that did not change.
+	 *
+	 * @param cpu		the CPU about to execute the next instruction
+	 * @param program	the instructions of the LEGv8 assembly program
+	 * @param memory	the data memory of the program
+	 * @return			the slot, in the range 0 to <code>capacity</code>-1, holding the step
+	 */
+	public int record(CPU cpu, InstructionTable program, Memory memory) {
+		if (instructionIndices == null) {
+			allocate();
+		}
+		int slot = (first + size) % capacity;
+		if (size == capacity) {
+			first = (first + 1) % capacity;
+		} else {
+			size++;
+		}
+		int index = cpu.instructionIndex;
+		instructionIndices[slot] = index;
+		int state = 0;
+		if (cpu.getNflag()) state |= N_FLAG;
+		if (cpu.getZflag()) state |= Z_FLAG;
+		if (cpu.getCflag()) state |= C_FLAG;
+		if (cpu.getVflag()) state |= V_FLAG;
+		if (cpu.branchTaken) state |= BRANCH_TAKEN;
+		if (cpu.STXRSucceed) state |= STXR_SUCCEED;
+		states[slot] = (byte) state;
+		taggedAddresses[slot] = cpu.taggedAddress;
+		registers[slot] = NO_REGISTER;
+		storeSizes[slot] = 0;
+		if (index < 0 || index >= program.size()) {
+			return slot;
+		}
+		int register = program.getDestinationRegister(index);
+		if (register >= 0) {
+			recordRegister(slot, cpu, register);
+		}
+		switch (program.getMnemonic(index)) {
+		case STUR :
+			recordStore(slot, cpu, memory, cpu.getRegister(program.getRn(index)) + program.getImmediate(index),
+					Memory.DOUBLEWORD_SIZE);
+			break;
+		case STURW :
+			recordStore(slot, cpu, memory, cpu.getRegister(program.getRn(index)) + program.getImmediate(index),
+					Memory.WORD_SIZE);
+			break;
+		case STURH :
+			recordStore(slot, cpu, memory, cpu.getRegister(program.getRn(index)) + program.getImmediate(index),
+					Memory.HALFWORD_SIZE);
+			break;
+		case STURB :
+			recordStore(slot, cpu, memory, cpu.getRegister(program.getRn(index)) + program.getImmediate(index),
+					Memory.BYTE_SIZE);
+			break;
+		case STXR :
+			recordStore(slot, cpu, memory, cpu.getRegister(program.getRn(index)) + program.getImmediate(index),
+					Memory.DOUBLEWORD_SIZE);
+			break;
+		default : {}
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the CPU and memory to their state before the most recently recorded step
+	 *
+	 * @param cpu		the CPU the step was recorded from
+	 * @param memory	the data memory the step was recorded from
+	 * @return			the slot that held the step, -1 if there are no steps to undo
+	 */
+	public int undo(CPU cpu, Memory memory) {
+		if (size == 0) {
+			return -1;
+		}
+		size--;
+		int slot = (first + size) % capacity;
+		try {
+			switch (storeSizes[slot]) {
+			case Memory.DOUBLEWORD_SIZE :
+				memory.storeDoubleword(storeAddresses[slot], storeValues[slot]);
+				break;
+			case Memory.WORD_SIZE :
+				memory.storeWord(storeAddresses[slot], storeValues[slot]);
+				break;
+			case Memory.HALFWORD_SIZE :
+				memory.storeHalfword(storeAddresses[slot], storeValues[slot]);
+				break;
+			case Memory.BYTE_SIZE :
+				memory.storeByte(storeAddresses[slot], storeValues[slot]);
+				break;
+			default : {}
+			}
+		} catch (SegmentFaultException sfe) {
+			// only addresses that could be loaded from are recorded
+		}
+		if (registers[slot] != NO_REGISTER) {
+			cpu.setRegister(registers[slot], registerValues[slot]);
+		}
+		int state = states[slot];
+		cpu.setFlags((state & N_FLAG) != 0, (state & Z_FLAG) != 0, (state & C_FLAG) != 0, (state & V_FLAG) != 0);
+		cpu.branchTaken = (state & BRANCH_TAKEN) != 0;
+		cpu.STXRSucceed = (state & STXR_SUCCEED) != 0;
+		cpu.taggedAddress = taggedAddresses[slot];
+		cpu.instructionIndex = instructionIndices[slot];
+		return slot;
+	}
+
+	/**
+	 * @return	the number of steps that can be undone
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param age	the number of steps recorded after the step, 0 for the most recent step
+	 * @return		the instruction index of the CPU before the step
+	 * @throws IllegalArgumentException	if <code>age</code> is not less than the number of steps that can be 
+	 * 									undone
+	 */
+	public int getInstructionIndex(int age) {
+		if (age < 0 || age >= size) {
+			throw new IllegalArgumentException("The step is not held in the history");
+		}
+		return instructionIndices[(first + size - 1 - age) % capacity];
+	}
+
+	/**
+	 * @return	the largest number of steps kept
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Forgets every recorded step, e.g. when the state has been changed by something other than a step
+	 */
+	public void clear() {
+		first = 0;
+		size = 0;
+	}
+
+	private void allocate() {
+		instructionIndices = new int[capacity];
+		states = new byte[capacity];
+		taggedAddresses = new long[capacity];
+		registers = new byte[capacity];
+		registerValues = new long[capacity];
+		storeSizes = new byte[capacity];
+		storeAddresses = new long[capacity];
+		storeValues = new long[capacity];
+	}
+
+	private void recordRegister(int slot, CPU cpu, int register) {
+		registers[slot] = (byte) register;
+		registerValues[slot] = cpu.getRegister(register);
+	}
+
+	// a store that would fault writes nothing, so there is nothing to record
+	private void recordStore(int slot, CPU cpu, Memory memory, long address, int figureSize) {
+		try {
+			switch (figureSize) {
+			case Memory.DOUBLEWORD_SIZE :
+				storeValues[slot] = memory.loadDoubleword(address);
+				break;
+			case Memory.WORD_SIZE :
+				storeValues[slot] = memory.loadSignedWord(address);
+				break;
+			case Memory.HALFWORD_SIZE :
+				storeValues[slot] = memory.loadHalfword(address);
+				break;
+			default :
+				storeValues[slot] = memory.loadByte(address);
+			}
+		} catch (SegmentFaultException sfe) {
+			return;
+		}
+		storeSizes[slot] = (byte) figureSize;
+		storeAddresses[slot] = address;
+	}
+
+	private static final byte NO_REGISTER = -1;
+
+	private static final int N_FLAG = 1;
+	private static final int Z_FLAG = 2;
+	private static final int C_FLAG = 4;
+	private static final int V_FLAG = 8;
+	private static final int BRANCH_TAKEN = 16;
+	private static final int STXR_SUCCEED = 32;
+
+	private final int capacity;
+	// the slot of the oldest step kept
+	private int first;
+	private int size;
+
+	private int[] instructionIndices;
+	// the flags, branchTaken and STXRSucceed
+	private byte[] states;
+	private long[] taggedAddresses;
+	private byte[] registers;
+	private long[] registerValues;
+	// 0 if the step stores nothing
+	private byte[] storeSizes;
+	private long[] storeAddresses;
+	private long[] storeValues;
+}
@@ -0,0 +1,38 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.instruction.Instruction;
+import com.arm.legv8simulator.client.lexer.TextLine;
+
+/**
+ * An <code>AssembledProgram</code> is the output of an assembler from which a <code>LEGv8_Simulator</code> 
+ * can be initialised without assembling the source code again.
+ * 
+ * @see LEGv8_Simulator
+ * @see IncrementalAssembler
+ */
+public interface AssembledProgram {
+
+	/**
+	 * @return	the lines of source code of the program; empty if the assembler does not retain them
+	 */
+	public ArrayList<TextLine> getCode();
+	
+	/**
+	 * @return	the compile errors found when assembling the program
+	 */
+	public ArrayList<Error> getCompileErrors();
+	
+	/**
+	 * @return	the table mapping labels to instruction indices
+	 */
+	public HashMap<String, Integer> getBranchTable();
+	
+	/**
+	 * @return	the decoded instructions of the program
+	 */
+	public ArrayList<Instruction> getInstructions();
+}
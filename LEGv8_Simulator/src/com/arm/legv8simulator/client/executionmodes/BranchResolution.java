@@ -0,0 +1,29 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+/**
+ * The <code>BranchResolution</code> enumeration defines where in the pipeline the outcome of a branch is
+ * known. Every instruction fetched after a mispredicted branch is flushed once the branch reaches this
+ * stage, so a later stage costs more cycles per misprediction.
+ *
+ * @see PipelineConfiguration
+ */
+public enum BranchResolution {
+
+	/**
+	 * Branches are resolved in the stage the registers are read in. Their operands cannot be forwarded,
+	 * so a branch waits there until the instructions it depends on have written back.
+	 */
+	DECODE,
+
+	/**
+	 * Branches are resolved in the last execute stage, with their operands forwarded like those of any
+	 * other instruction
+	 */
+	EXECUTE,
+
+	/**
+	 * Branches are resolved in the last memory access stage, with their operands forwarded like those of
+	 * any other instruction
+	 */
+	MEMORY
+}
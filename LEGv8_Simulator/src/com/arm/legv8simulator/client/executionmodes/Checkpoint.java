@@ -0,0 +1,242 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.CPUSnapshot;
+import com.arm.legv8simulator.client.memory.Memory;
+import com.arm.legv8simulator.client.memory.MemorySnapshot;
+
+/**
+ * A <code>Checkpoint</code> is the state of a running machine: the registers, flags, PC and exclusive access
+ * tag of the <code>CPU</code> and the contents of data memory. It is taken with
+ * <code>LEGv8_Simulator.saveCheckpoint</code> and may be restored any number of times, into the simulator it
+ * was taken from or any other simulator running the same program.
+ * <p>
+ * Taking a checkpoint copies the registers but no memory; memory pages are shared and only copied when
+ * they are next written to. A checkpoint can be serialized with <code>toByteArray</code>, which stores only
+ * the non-zero doublewords of each page.
+ *
+ * @see CPUSnapshot
+ * @see MemorySnapshot
+ */
+public class Checkpoint {
+
+	/**
+	 * @param cpu		the state of the CPU
+	 * @param memory	the contents of data memory
+	 */
+	public Checkpoint(CPUSnapshot cpu, MemorySnapshot memory) {
+		this.cpu = cpu;
+		this.memory = memory;
+	}
+
+	/**
+	 * @return	the state of the CPU
+	 */
+	public CPUSnapshot getCPUSnapshot() {
+		return cpu;
+	}
+
+	/**
+	 * @return	the contents of data memory
+	 */
+	public MemorySnapshot getMemorySnapshot() {
+		return memory;
+	}
+
+	/**
+	 * The checkpoint is stored big-endian as a header, the CPU state and then each page written to: its
+	 * page number, a bitmap of its non-zero doublewords and those doublewords.
+	 *
+	 * @return	the checkpoint serialized as a byte array
+	 */
+	public byte[] toByteArray() {
+		long[] pageNumbers = memory.getPageNumbers();
+		long[][] pages = new long[pageNumbers.length][];
+		int size = HEADER_SIZE + CPU_STATE_SIZE + 12;
+		for (int i=0; i<pageNumbers.length; i++) {
+			pages[i] = memory.getPage(pageNumbers[i]);
+			size += 8 + BITMAP_SIZE;
+			for (int j=0; j<pages[i].length; j++) {
+				if (pages[i][j] != 0) {
+					size += 8;
+				}
+			}
+		}
+		Writer out = new Writer(size);
+		out.putInt(MAGIC);
+		out.putInt(VERSION);
+		for (int i=0; i<CPU.NUM_REGISTERS; i++) {
+			out.putLong(cpu.getRegister(i));
+		}
+		int flags = 0;
+		if (cpu.getNflag()) flags |= N_FLAG;
+		if (cpu.getZflag()) flags |= Z_FLAG;
+		if (cpu.getCflag()) flags |= C_FLAG;
+		if (cpu.getVflag()) flags |= V_FLAG;
+		if (cpu.getBranchTaken()) flags |= BRANCH_TAKEN;
+		if (cpu.getSTXRSucceed()) flags |= STXR_SUCCEED;
+		out.putByte(flags);
+		out.putInt(cpu.getInstructionIndex());
+		out.putLong(cpu.getTaggedAddress());
+		out.putLong(memory.getStaticDataSegmentOffset());
+		out.putInt(pageNumbers.length);
+		for (int i=0; i<pageNumbers.length; i++) {
+			out.putLong(pageNumbers[i]);
+			long[] bitmap = new long[BITMAP_SIZE / 8];
+			for (int j=0; j<pages[i].length; j++) {
+				if (pages[i][j] != 0) {
+					bitmap[j >>> 6] |= 1L << (j & 63);
+				}
+			}
+			for (int j=0; j<bitmap.length; j++) {
+				out.putLong(bitmap[j]);
+			}
+			for (int j=0; j<pages[i].length; j++) {
+				if (pages[i][j] != 0) {
+					out.putLong(pages[i][j]);
+				}
+			}
+		}
+		return out.bytes;
+	}
+
+	/**
+	 * @param bytes	a checkpoint serialized by <code>toByteArray</code>
+	 * @return		the checkpoint
+	 * @throws IllegalArgumentException	if <code>bytes</code> is not a serialized checkpoint
+	 */
+	public static Checkpoint fromByteArray(byte[] bytes) {
+		Reader in = new Reader(bytes);
+		if (in.getInt() != MAGIC) {
+			throw new IllegalArgumentException("Not a checkpoint");
+		}
+		int version = in.getInt();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unsupported checkpoint version " + version);
+		}
+		long[] registerFile = new long[CPU.NUM_REGISTERS];
+		for (int i=0; i<registerFile.length; i++) {
+			registerFile[i] = in.getLong();
+		}
+		int flags = in.getByte();
+		int instructionIndex = in.getInt();
+		long taggedAddress = in.getLong();
+		CPUSnapshot cpu = new CPUSnapshot(registerFile, (flags & N_FLAG) != 0, (flags & Z_FLAG) != 0,
+				(flags & C_FLAG) != 0, (flags & V_FLAG) != 0, instructionIndex, taggedAddress,
+				(flags & BRANCH_TAKEN) != 0, (flags & STXR_SUCCEED) != 0);
+		long staticDataSegmentOffset = in.getLong();
+		int numPages = in.getInt();
+		if (numPages < 0 || numPages > in.remaining() / (8 + BITMAP_SIZE)) {
+			throw new IllegalArgumentException("Checkpoint truncated");
+		}
+		long[] pageNumbers = new long[numPages];
+		long[][] pages = new long[numPages][];
+		for (int i=0; i<numPages; i++) {
+			pageNumbers[i] = in.getLong();
+			long[] bitmap = new long[BITMAP_SIZE / 8];
+			for (int j=0; j<bitmap.length; j++) {
+				bitmap[j] = in.getLong();
+			}
+			pages[i] = new long[Memory.PAGE_SIZE / Memory.DOUBLEWORD_SIZE];
+			for (int j=0; j<pages[i].length; j++) {
+				if ((bitmap[j >>> 6] & (1L << (j & 63))) != 0) {
+					pages[i][j] = in.getLong();
+				}
+			}
+		}
+		if (in.remaining() != 0) {
+			throw new IllegalArgumentException("Unexpected data after checkpoint");
+		}
+		return new Checkpoint(cpu, new MemorySnapshot(staticDataSegmentOffset, pageNumbers, pages));
+	}
+
+	// writes big-endian values into a byte array of a known size
+	private static class Writer {
+
+		Writer(int size) {
+			bytes = new byte[size];
+		}
+
+		void putByte(int value) {
+			bytes[position++] = (byte) value;
+		}
+
+		void putInt(int value) {
+			for (int shift=24; shift>=0; shift-=8) {
+				bytes[position++] = (byte) (value >>> shift);
+			}
+		}
+
+		void putLong(long value) {
+			for (int shift=56; shift>=0; shift-=8) {
+				bytes[position++] = (byte) (value >>> shift);
+			}
+		}
+
+		final byte[] bytes;
+		private int position;
+	}
+
+	// reads big-endian values from a byte array, failing if it runs out
+	private static class Reader {
+
+		Reader(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		int getByte() {
+			require(1);
+			return bytes[position++] & 0xFF;
+		}
+
+		int getInt() {
+			require(4);
+			int value = 0;
+			for (int i=0; i<4; i++) {
+				value = (value << 8) | (bytes[position++] & 0xFF);
+			}
+			return value;
+		}
+
+		long getLong() {
+			require(8);
+			long value = 0L;
+			for (int i=0; i<8; i++) {
+				value = (value << 8) | (bytes[position++] & 0xFF);
+			}
+			return value;
+		}
+
+		int remaining() {
+			return bytes.length - position;
+		}
+
+		private void require(int length) {
+			if (remaining() < length) {
+				throw new IllegalArgumentException("Checkpoint truncated");
+			}
+		}
+
+		private final byte[] bytes;
+		private int position;
+	}
+
+	// "LGCK"
+	private static final int MAGIC = 0x4C47434B;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	// registers, flags, instruction index and tagged address
+	private static final int CPU_STATE_SIZE = CPU.NUM_REGISTERS * 8 + 1 + 4 + 8;
+	// one bit per doubleword of a page
+	private static final int BITMAP_SIZE = Memory.PAGE_SIZE / Memory.DOUBLEWORD_SIZE / 8;
+
+	private static final int N_FLAG = 1;
+	private static final int Z_FLAG = 2;
+	private static final int C_FLAG = 4;
+	private static final int V_FLAG = 8;
+	private static final int BRANCH_TAKEN = 16;
+	private static final int STXR_SUCCEED = 32;
+
+	private final CPUSnapshot cpu;
+	private final MemorySnapshot memory;
+}
@@ -0,0 +1,182 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.instruction.Decoder;
+import com.arm.legv8simulator.client.instruction.ImmediateOutOfBoundsException;
+import com.arm.legv8simulator.client.instruction.Instruction;
+import com.arm.legv8simulator.client.instruction.UndefinedLabelException;
+import com.arm.legv8simulator.client.lexer.TextLine;
+
+/**
+ * The <code>IncrementalAssembler</code> turns the lines of source code from the text editor into the
+ * list of instructions run by a <code>LEGv8_Simulator</code>, reusing the work done for the lines
+ * of the previous assembly that have not changed.
+ * <p>
+ * Lines are tokenized and parsed only when their content has not been seen in the previous assembly.
+ * An instruction is decoded again only when its line changed or, for a branch, when the instruction
+ * index its label refers to moved. The result is the same as that of assembling in the
+ * <code>LEGv8_Simulator</code> constructor.
+ *
+ * @see LEGv8_Simulator
+ * @see AssembledProgram
+ */
+public class IncrementalAssembler implements AssembledProgram {
+
+	/**
+	 * Assembles the program, replacing the result of any previous assembly
+	 *
+	 * @param lines	the individual lines of LEGv8 source code from the text editor, with surrounding whitespace removed
+	 */
+	public void assemble(ArrayList<String> lines) {
+		HashMap<String, AssembledLine> assembled = new HashMap<String, AssembledLine>();
+		code = new ArrayList<TextLine>();
+		compileErrors = new ArrayList<Error>();
+		AssembledLine[] programLines = new AssembledLine[lines.size()];
+		for (int i=0; i<lines.size(); i++) {
+			AssembledLine line = assembled.get(lines.get(i));
+			if (line == null) {
+				line = cache.get(lines.get(i));
+				if (line == null) {
+					line = new AssembledLine(lines.get(i));
+				}
+				assembled.put(lines.get(i), line);
+			}
+			programLines[i] = line;
+			code.add(line.textLine);
+			if (line.parseError != null) {
+				compileErrors.add(new Error(line.parseError, i));
+			}
+		}
+		// lines missing from this assembly are dropped so the cache never outgrows the program
+		cache = assembled;
+		populateBranchTable();
+		decodeInstructions(programLines);
+	}
+
+	/*
+	 * Identical to LEGv8_Simulator.populateBranchTable
+	 */
+	private void populateBranchTable() {
+		branchTable = new HashMap<String, Integer>();
+		int instructionCount = 0;
+		for (int i=0; i<code.size(); i++) {
+			if (code.get(i).getLabel() != null) {
+				branchTable.put(code.get(i).getLabel(), instructionCount);
+			}
+			if (code.get(i).getMnemonic() != null) {
+				instructionCount++;
+			}
+		}
+	}
+
+	private void decodeInstructions(AssembledLine[] programLines) {
+		cpuInstructions = new ArrayList<Instruction>();
+		for (int i=0; i<programLines.length; i++) {
+			AssembledLine line = programLines[i];
+			if (line.textLine.getMnemonic() == null) {
+				continue;
+			}
+			Integer labelTarget = line.label == null ? null : branchTable.get(line.label);
+			if (!line.decoded || !equal(labelTarget, line.labelTarget)) {
+				line.decode(branchTable, i);
+				line.labelTarget = labelTarget;
+			}
+			if (line.decodeError != null) {
+				compileErrors.add(new Error(line.decodeError, i));
+			} else if (line.instruction == null || line.instruction.getLineNumber() == i) {
+				cpuInstructions.add(line.instruction);
+			} else {
+				// the same line decoded elsewhere in the program, only the line number differs
+				Instruction moved = line.instruction;
+				line.instruction = new Instruction(moved.getMnemonic(), moved.getArgs(), i, moved.getControlSignals());
+				cpuInstructions.add(line.instruction);
+			}
+		}
+	}
+
+	private static boolean equal(Integer a, Integer b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * @return	the lines of source code from the last assembly
+	 */
+	@Override
+	public ArrayList<TextLine> getCode() {
+		return code;
+	}
+
+	/**
+	 * @return	the compile errors found in the last assembly
+	 */
+	@Override
+	public ArrayList<Error> getCompileErrors() {
+		return compileErrors;
+	}
+
+	/**
+	 * @return	the table mapping labels to instruction indices from the last assembly
+	 */
+	@Override
+	public HashMap<String, Integer> getBranchTable() {
+		return branchTable;
+	}
+
+	/**
+	 * @return	the instructions decoded in the last assembly
+	 */
+	@Override
+	public ArrayList<Instruction> getInstructions() {
+		return cpuInstructions;
+	}
+
+	/*
+	 * The parsed form of one distinct line of source code, and the instruction last decoded from it
+	 */
+	private static class AssembledLine {
+
+		AssembledLine(String line) {
+			textLine = new TextLine(line);
+			if (!textLine.getLine().isEmpty()) {
+				textLine.tokenize();
+				if (textLine.getNumTokens()>0) {
+					parseError = textLine.parse();
+				}
+			}
+			if (textLine.getMnemonic() != null) {
+				label = Decoder.getLabelArgument(textLine.getMnemonic(), textLine.getArgs());
+			}
+		}
+
+		void decode(HashMap<String, Integer> branchTable, int lineNumber) {
+			decoded = true;
+			instruction = null;
+			decodeError = null;
+			try {
+				instruction = Decoder.getInstruction(textLine.getMnemonic(), textLine.getArgs(), lineNumber, branchTable);
+			} catch (UndefinedLabelException ule) {
+				decodeError = ule.getMessage();
+			} catch (ImmediateOutOfBoundsException ioobe) {
+				decodeError = ioobe.getMessage();
+			}
+		}
+
+		final TextLine textLine;
+		String parseError;
+		// the label this line branches to and the instruction index it referred to when decoded
+		String label;
+		Integer labelTarget;
+		boolean decoded = false;
+		Instruction instruction;
+		String decodeError;
+	}
+
+	private HashMap<String, AssembledLine> cache = new HashMap<String, AssembledLine>();
+	private ArrayList<TextLine> code = new ArrayList<TextLine>();
+	private ArrayList<Error> compileErrors = new ArrayList<Error>();
+	private HashMap<String, Integer> branchTable = new HashMap<String, Integer>();
+	private ArrayList<Instruction> cpuInstructions = new ArrayList<Instruction>();
+}
@@ -5,9 +5,17 @@ import java.util.HashMap;
 
 import com.arm.legv8simulator.client.Error;
 import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.CPUSnapshot;
+import com.arm.legv8simulator.client.cpu.ExecutionEngine;
+import com.arm.legv8simulator.client.cpu.ExecutionTier;
+import com.arm.legv8simulator.client.cpu.PredecodedProgram;
+import com.arm.legv8simulator.client.cpu.RunResult;
+import com.arm.legv8simulator.client.cpu.TraceLevel;
+import com.arm.legv8simulator.client.cpu.UndoLog;
 import com.arm.legv8simulator.client.instruction.Decoder;
 import com.arm.legv8simulator.client.instruction.ImmediateOutOfBoundsException;
 import com.arm.legv8simulator.client.instruction.Instruction;
+import com.arm.legv8simulator.client.instruction.InstructionTable;
 import com.arm.legv8simulator.client.instruction.Mnemonic;
 import com.arm.legv8simulator.client.instruction.UndefinedLabelException;
 import com.arm.legv8simulator.client.lexer.TextLine;
@@ -19,6 +27,12 @@ import com.arm.legv8simulator.client.memory.Memory;
  * @author Jonathan Wright, 2016
  */
 public abstract class LEGv8_Simulator {
+	
+	public static final int DEFAULT_HISTORY_WINDOW = 10000;
+	public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+	
+	// once more checkpoints than this are held, every other one is dropped and the interval doubled
+	private static final int MAX_CHECKPOINTS = 64;
 
 	/**
 	 * Initialises all necessary components for the simulator to run. 
@@ -30,13 +44,27 @@ public abstract class LEGv8_Simulator {
 	public LEGv8_Simulator(ArrayList<TextLine> code) {
 		this.code = code; 
 		branchTable = new HashMap<String, Integer>();
-		cpuInstructions = new ArrayList<Instruction>();
 		cpu = new CPU();
 		compileErrors = new ArrayList<Error>();
 		parseCode();
 		populateBranchTable();
 		decodeInstructions();
-		memory = new Memory(cpuInstructions.size());
+		memory = new Memory(program.size());
+	}
+	
+	/**
+	 * Initialises the simulator with a program that has already been assembled.
+	 * 
+	 * @param program	the assembled program to run
+	 * @see AssembledProgram
+	 */
+	public LEGv8_Simulator(AssembledProgram program) {
+		code = program.getCode();
+		branchTable = program.getBranchTable();
+		compileErrors = program.getCompileErrors();
+		this.program = new InstructionTable(program.getInstructions());
+		cpu = new CPU();
+		memory = new Memory(this.program.size());
 	}
 	
 	/**
@@ -80,12 +108,13 @@ public abstract class LEGv8_Simulator {
 	}
 	
 	/**
-	 * Attempt to generate a list of instructions from the parsed lines of source code
+	 * Attempt to generate the table of instructions from the parsed lines of source code
 	 */
 	/*
 	 * Errors are stored in the compileErros arraylist
 	 */
 	public void decodeInstructions() {
+		ArrayList<Instruction> cpuInstructions = new ArrayList<Instruction>();
 		TextLine line;
 		for (int i=0; i<code.size(); i++) {
 			line = code.get(i);
@@ -100,13 +129,337 @@ public abstract class LEGv8_Simulator {
 				}
 			}
 		}
+		program = new InstructionTable(cpuInstructions);
 	}
 	
 	/**
-	 * Run the cpu with the generated list of instructions until completion (or not if infinite loop)
+	 * Run the cpu with the generated list of instructions until completion (or not if infinite loop), 
+	 * using the selected execution engine
+	 * 
+	 * @see ExecutionEngine
 	 */
 	public void runCPU() {
-		runtimeError = cpu.run(cpuInstructions, memory);
+		forgetSteps();
+		switch (executionEngine) {
+		case PREDECODED :
+			if (predecodedProgram == null) {
+				predecodedProgram = new PredecodedProgram(program);
+			}
+			runtimeError = cpu.run(predecodedProgram, memory);
+			break;
+		default :
+			runtimeError = cpu.run(program, memory);
+		}
+	}
+	
+	/**
+	 * Run the cpu with the generated list of instructions, using the selected execution engine, until the 
+	 * program completes, faults, <code>maxInstructions</code> instructions have been executed or the deadline 
+	 * passes. If the budget is exhausted, calling this method again resumes from the next instruction.
+	 * 
+	 * @param maxInstructions	the maximum number of instructions to execute, <code>CPU.UNLIMITED</code> for no limit
+	 * @param deadline			the time, as returned by <code>System.currentTimeMillis</code>, after which 
+	 * 							execution stops, <code>CPU.NO_DEADLINE</code> for no deadline
+	 * @return					the status of the run
+	 * 
+	 * @see RunResult
+	 */
+	public RunResult runCPU(long maxInstructions, long deadline) {
+		forgetSteps();
+		RunResult result;
+		switch (executionEngine) {
+		case PREDECODED :
+			if (predecodedProgram == null) {
+				predecodedProgram = new PredecodedProgram(program);
+			}
+			result = cpu.run(predecodedProgram, memory, maxInstructions, deadline);
+			break;
+		default :
+			result = cpu.run(program, memory, maxInstructions, deadline);
+		}
+		runtimeError = result.getError();
+		return result;
+	}
+	
+	/**
+	 * Run the program to completion (or not if infinite loop) using an external execution tier 
+	 * 
+	 * @param tier	the execution tier used to run the program
+	 * @see ExecutionTier
+	 */
+	public void runCPU(ExecutionTier tier) {
+		forgetSteps();
+		runtimeError = tier.run(cpu, program, branchTable, memory);
+	}
+	
+	/**
+	 * Saves the state of the CPU and data memory. Memory is not copied until it is next written to.
+	 * 
+	 * @return	a checkpoint of the machine state
+	 * @see Checkpoint
+	 */
+	public Checkpoint saveCheckpoint() {
+		return new Checkpoint(new CPUSnapshot(cpu), memory.snapshot());
+	}
+	
+	/**
+	 * Returns the CPU and data memory to the state saved in a checkpoint and clears any runtime error. 
+	 * The checkpoint may have been taken from another simulator running the same program.
+	 * 
+	 * @param checkpoint	the state to restore
+	 * @throws IllegalArgumentException	if the checkpoint was taken from a program of a different size
+	 * @see Checkpoint
+	 */
+	public void restoreCheckpoint(Checkpoint checkpoint) {
+		CPUSnapshot state = checkpoint.getCPUSnapshot();
+		if (checkpoint.getMemorySnapshot().getStaticDataSegmentOffset() != memory.getStaticDataSegmentOffset()
+				|| state.getInstructionIndex() < 0 || state.getInstructionIndex() > program.size()) {
+			throw new IllegalArgumentException("The checkpoint was not taken from this program");
+		}
+		cpu.restore(state);
+		memory.restore(checkpoint.getMemorySnapshot());
+		runtimeError = null;
+		forgetSteps();
+	}
+	
+	/**
+	 * Undoes the last step, returning the CPU, data memory and the state shown to the user to what they 
+	 * were before it. Running the program with <code>runCPU</code> or restoring a checkpoint forgets every 
+	 * step taken before it. The CPU log is not rewound.
+	 * 
+	 * @return	<code>true</code> if a step was undone, <code>false</code> if there are no steps to undo
+	 */
+	public abstract boolean stepBack();
+	
+	/**
+	 * Steps back to the most recent state in which the next instruction to execute is on the specified line. 
+	 * Steps within the history window are found in the history and undone one at a time. Only the history 
+	 * window and the checkpoints, which are taken automatically every <code>getCheckpointInterval</code> 
+	 * steps, are kept, so earlier steps are found by restoring each checkpoint in turn, latest first, and 
+	 * replaying the steps after it. The branch predictor and caches of a pipeline are not restored, and 
+	 * replayed steps are written to the CPU log again.
+	 * 
+	 * @param lineNumber	the line in the code editor to run back to
+	 * @return				<code>true</code> if the line was reached, <code>false</code> if no instruction 
+	 * 						on the line is to be executed in any earlier state, which is then left unchanged
+	 */
+	public boolean runBackTo(int lineNumber) {
+		for (int age=0; age<history.size(); age++) {
+			if (isOnLine(history.getInstructionIndex(age), lineNumber)) {
+				goBackTo(steps-1 - age);
+				return true;
+			}
+		}
+		int current = steps;
+		int end = steps - history.size();
+		for (int checkpoint=checkpointSteps.size()-1; checkpoint>=0; checkpoint--) {
+			int start = checkpointSteps.get(checkpoint);
+			if (start >= end) {
+				continue;
+			}
+			restoreCheckpointStep(checkpoint);
+			int found = -1;
+			while (steps < end) {
+				if (isOnLine(cpu.getInstructionIndex(), lineNumber)) {
+					found = steps;
+				}
+				replayStep();
+			}
+			if (found >= 0) {
+				goBackTo(found);
+				return true;
+			}
+			end = start;
+		}
+		// replays the rest of the steps from the earliest interval searched, which also refills the history
+		while (steps < current) {
+			replayStep();
+		}
+		return false;
+	}
+	
+	private boolean isOnLine(int index, int lineNumber) {
+		return index < program.size() && program.getLineNumber(index) == lineNumber;
+	}
+	
+	/*
+	 * Returns to the state before the specified step, which must be less than the number of steps taken
+	 */
+	private void goBackTo(int step) {
+		if (steps - step <= history.size()) {
+			while (steps > step) {
+				stepBack();
+			}
+			return;
+		}
+		int checkpoint = checkpointSteps.size()-1;
+		while (checkpointSteps.get(checkpoint) > step) {
+			checkpoint--;
+		}
+		restoreCheckpointStep(checkpoint);
+		dropCheckpointsAfter(steps);
+		while (steps < step) {
+			replayStep();
+		}
+	}
+	
+	// restores a checkpoint taken for runBackTo, leaving the checkpoints after it in place
+	private void restoreCheckpointStep(int checkpoint) {
+		Checkpoint state = checkpoints.get(checkpoint);
+		cpu.restore(state.getCPUSnapshot());
+		memory.restore(state.getMemorySnapshot());
+		restoreViewState(checkpointViews.get(checkpoint));
+		history.clear();
+		steps = checkpointSteps.get(checkpoint);
+	}
+	
+	/**
+	 * Records the state that the next step will overwrite, so that it can be undone, and takes a checkpoint 
+	 * if one is due. Each step of a derived class must call this before changing any state.
+	 * 
+	 * @return	the slot of the step in the history
+	 * @see UndoLog#record
+	 */
+	protected int recordStep() {
+		if (steps % checkpointInterval == 0 
+				&& (checkpointSteps.isEmpty() || checkpointSteps.get(checkpointSteps.size()-1) < steps)) {
+			checkpointSteps.add(steps);
+			checkpoints.add(saveCheckpoint());
+			checkpointViews.add(saveViewState());
+			if (checkpointSteps.size() > MAX_CHECKPOINTS) {
+				thinCheckpoints();
+			}
+		}
+		steps++;
+		return history.record(cpu, program, memory);
+	}
+	
+	/**
+	 * Returns the CPU and data memory to their state before the last step recorded
+	 * 
+	 * @return	the slot of the step in the history, -1 if there are no steps to undo
+	 * @see UndoLog#undo
+	 */
+	protected int undoStep() {
+		int slot = history.undo(cpu, memory);
+		if (slot >= 0) {
+			steps--;
+			dropCheckpointsAfter(steps);
+		}
+		return slot;
+	}
+	
+	/**
+	 * Takes a single step, as the user would, while replaying the steps after a checkpoint
+	 */
+	protected abstract void replayStep();
+	
+	/**
+	 * @return	a copy of the state shown to the user that is not held in the CPU or data memory
+	 */
+	protected abstract Object saveViewState();
+	
+	/**
+	 * @param state	a state returned by <code>saveViewState</code> to show to the user again
+	 */
+	protected abstract void restoreViewState(Object state);
+	
+	/**
+	 * Forgets every step taken, e.g. when the state has been changed by something other than a step
+	 */
+	protected void forgetSteps() {
+		history.clear();
+		steps = 0;
+		checkpointSteps.clear();
+		checkpoints.clear();
+		checkpointViews.clear();
+	}
+	
+	private void dropCheckpointsAfter(int step) {
+		for (int i=checkpointSteps.size()-1; i>=0 && checkpointSteps.get(i) > step; i--) {
+			checkpointSteps.remove(i);
+			checkpoints.remove(i);
+			checkpointViews.remove(i);
+		}
+	}
+	
+	// keeps the checkpoints taken at multiples of twice the interval, including the one before the first step
+	private void thinCheckpoints() {
+		checkpointInterval *= 2;
+		for (int i=checkpointSteps.size()-1; i>=0; i--) {
+			if (checkpointSteps.get(i) % checkpointInterval != 0) {
+				checkpointSteps.remove(i);
+				checkpoints.remove(i);
+				checkpointViews.remove(i);
+			}
+		}
+	}
+	
+	/**
+	 * @param steps	the number of steps between the checkpoints taken for <code>runBackTo</code>. Steps 
+	 * 				already taken are forgotten.
+	 * @throws IllegalArgumentException	if <code>steps</code> is less than 1
+	 */
+	public void setCheckpointInterval(int steps) {
+		if (steps < 1) {
+			throw new IllegalArgumentException("The checkpoint interval must be at least one step");
+		}
+		checkpointInterval = steps;
+		forgetSteps();
+	}
+	
+	/**
+	 * The interval is doubled, and every other checkpoint dropped, whenever more than 64 checkpoints are 
+	 * held, so that a long run does not use ever more memory.
+	 * 
+	 * @return	the number of steps between the checkpoints currently being taken
+	 */
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+	
+	/**
+	 * @return	the number of steps taken since the program was last run with <code>runCPU</code>, a checkpoint 
+	 * 			was restored or the history window was changed, less those undone
+	 */
+	public int getStepCount() {
+		return steps;
+	}
+	
+	/**
+	 * @param steps	the number of most recent steps that can be undone. Steps already taken are forgotten.
+	 * @throws IllegalArgumentException	if <code>steps</code> is less than 1
+	 * @see UndoLog
+	 */
+	public void setHistoryWindow(int steps) {
+		history = new UndoLog(steps);
+		forgetSteps();
+	}
+	
+	/**
+	 * @return	the number of steps that can currently be undone
+	 */
+	public int getHistorySize() {
+		return history.size();
+	}
+	
+	// the number of checkpoints held for runBackTo
+	int getCheckpointCount() {
+		return checkpoints.size();
+	}
+	
+	/**
+	 * @param engine	the engine used by <code>runCPU</code> to execute the program
+	 */
+	public void setExecutionEngine(ExecutionEngine engine) {
+		executionEngine = engine;
+	}
+	
+	/**
+	 * @return	the engine used by <code>runCPU</code> to execute the program
+	 */
+	public ExecutionEngine getExecutionEngine() {
+		return executionEngine;
 	}
 	
 	/**
@@ -116,6 +469,14 @@ public abstract class LEGv8_Simulator {
 		return code;
 	}
 	
+	/**
+	 * @return	the decoded instructions of the program
+	 * @see InstructionTable
+	 */
+	public InstructionTable getProgram() {
+		return program;
+	}
+	
 	/**
 	 * @return	the list of compile errors found when performing lexical, 
 	 * syntactic and semantic analysis on the user's code
@@ -183,6 +544,14 @@ public abstract class LEGv8_Simulator {
 		return cpu.getInstructionIndex();
 	}
 	
+	/**
+	 * @return	a digest of the contents of data memory
+	 * @see Memory#digest()
+	 */
+	public long getMemoryDigest() {
+		return memory.digest();
+	}
+	
 	/**
 	 * @return the contents of the CPU log
 	 */
@@ -190,6 +559,16 @@ public abstract class LEGv8_Simulator {
 		return cpu.getCpuLog();
 	}
 	
+	/**
+	 * @param level		the amount of execution history to keep in the CPU log
+	 * @param capacity	the number of most recent entries kept at <code>TraceLevel.RING</code>
+	 * 
+	 * @see TraceLevel
+	 */
+	public void setTraceLevel(TraceLevel level, int capacity) {
+		cpu.setTraceLevel(level, capacity);
+	}
+	
 	/**
 	 * @return	the line number in the text editor of the previously executed instruction
 	 */
@@ -203,6 +582,17 @@ public abstract class LEGv8_Simulator {
 	protected ArrayList<Error> compileErrors; 
 	protected Memory memory;
 	protected HashMap<String, Integer> branchTable;
-	protected ArrayList<Instruction> cpuInstructions;
+	protected InstructionTable program;
 	protected CPU cpu;
+	protected ExecutionEngine executionEngine = ExecutionEngine.INTERPRETER;
+	protected PredecodedProgram predecodedProgram;
+	protected UndoLog history = new UndoLog(DEFAULT_HISTORY_WINDOW);
+	
+	// the number of steps taken
+	private int steps = 0;
+	private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+	// the checkpoints taken, in step order, with the step they were taken before and the view state then
+	private ArrayList<Integer> checkpointSteps = new ArrayList<Integer>();
+	private ArrayList<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+	private ArrayList<Object> checkpointViews = new ArrayList<Object>();
 }
@@ -0,0 +1,200 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+/**
+ * A <code>PipelineConfiguration</code> describes the stages of the pipeline modelled by the
+ * <code>PipelinedSimulator</code>. The pipeline is made up of, in order, the fetch stages, the decode
+ * stages, one execute stage per cycle of ALU latency, one memory access stage per cycle of memory latency
+ * and a single write back stage. Every stage takes one cycle, so the execute and memory access units are
+ * themselves pipelined.
+ * <p>
+ * Instructions read the registers in one of the decode stages and wait there until their operands can be
+ * forwarded to the first execute stage in time. The result of an ALU operation can be forwarded once it
+ * has left the last execute stage, and that of a load once it has left the last memory access stage.
+ * The registers are written in the first half of the write back stage and read in the second half, so a
+ * result written back after an instruction has read the registers but before it reaches the first execute
+ * stage cannot reach it at all; reading the registers in an earlier decode stage can cause such stalls.
+ *
+ * @see PipelinedSimulator
+ * @see BranchResolution
+ */
+public class PipelineConfiguration {
+
+	/**
+	 * The five stage pipeline of Patterson and Hennessy ARM Edition, with branches resolved in the ID stage. 
+	 * The hazards of this, or any equal, configuration are detected from the pipeline registers, as before 
+	 * pipelines could be configured, rather than from the positions of its stages, so its timing is unchanged.
+	 */
+	public static final PipelineConfiguration FIVE_STAGE =
+			new PipelineConfiguration(1, 1, 0, 1, 1, BranchResolution.DECODE);
+
+	/**
+	 * @param fetchStages		the number of instruction fetch stages
+	 * @param decodeStages		the number of decode stages
+	 * @param registerReadStage	the decode stage the registers are read in, counting from 0
+	 * @param aluLatency		the number of cycles taken by the ALU, i.e. the number of execute stages
+	 * @param memoryLatency		the number of cycles taken by a memory access, i.e. the number of memory
+	 * 							access stages
+	 * @param branchResolution	the stage branches are resolved in
+	 * @throws IllegalArgumentException	if a number of stages or latency is less than 1, or the register
+	 * 									read stage is not one of the decode stages
+	 */
+	public PipelineConfiguration(int fetchStages, int decodeStages, int registerReadStage, int aluLatency,
+			int memoryLatency, BranchResolution branchResolution) {
+		if (fetchStages < 1 || decodeStages < 1 || aluLatency < 1 || memoryLatency < 1) {
+			throw new IllegalArgumentException("Every part of the pipeline must have at least one stage");
+		}
+		if (registerReadStage < 0 || registerReadStage >= decodeStages) {
+			throw new IllegalArgumentException("The registers must be read in one of the decode stages");
+		}
+		this.fetchStages = fetchStages;
+		this.decodeStages = decodeStages;
+		this.registerReadStage = registerReadStage;
+		this.aluLatency = aluLatency;
+		this.memoryLatency = memoryLatency;
+		this.branchResolution = branchResolution;
+	}
+
+	/**
+	 * @return	the total number of stages in the pipeline
+	 */
+	public int getStages() {
+		return fetchStages + decodeStages + aluLatency + memoryLatency + 1;
+	}
+
+	/**
+	 * @return	the number of instruction fetch stages
+	 */
+	public int getFetchStages() {
+		return fetchStages;
+	}
+
+	/**
+	 * @return	the number of decode stages
+	 */
+	public int getDecodeStages() {
+		return decodeStages;
+	}
+
+	/**
+	 * @return	the number of cycles taken by the ALU
+	 */
+	public int getALULatency() {
+		return aluLatency;
+	}
+
+	/**
+	 * @return	the number of cycles taken by a memory access
+	 */
+	public int getMemoryLatency() {
+		return memoryLatency;
+	}
+
+	/**
+	 * @return	the stage branches are resolved in
+	 */
+	public BranchResolution getBranchResolution() {
+		return branchResolution;
+	}
+
+	/**
+	 * @return	the position of the first decode stage, counting from 0 for the first fetch stage, which holds the values of the IF/ID pipeline register
+	 */
+	public int getDecodeStage() {
+		return fetchStages;
+	}
+
+	/**
+	 * @return	the position of the stage the registers are read in
+	 */
+	public int getRegisterReadStage() {
+		return fetchStages + registerReadStage;
+	}
+
+	/**
+	 * @return	the position of the first execute stage, which holds the values of the ID/EX pipeline register
+	 */
+	public int getExecuteStage() {
+		return fetchStages + decodeStages;
+	}
+
+	/**
+	 * @return	the position of the stage the result of an ALU operation is ready at the end of
+	 */
+	public int getALUResultStage() {
+		return getExecuteStage() + aluLatency - 1;
+	}
+
+	/**
+	 * @return	the position of the first memory access stage, which holds the values of the EX/MEM pipeline
+	 * 			register
+	 */
+	public int getMemoryStage() {
+		return getExecuteStage() + aluLatency;
+	}
+
+	/**
+	 * @return	the position of the stage the result of a load is ready at the end of
+	 */
+	public int getMemoryResultStage() {
+		return getMemoryStage() + memoryLatency - 1;
+	}
+
+	/**
+	 * @return	the position of the write back stage, which holds the values of the MEM/WB pipeline register
+	 */
+	public int getWriteBackStage() {
+		return getStages() - 1;
+	}
+
+	/**
+	 * @return	the position of the stage branches are resolved in
+	 */
+	public int getBranchStage() {
+		switch (branchResolution) {
+		case EXECUTE :
+			return getALUResultStage();
+		case MEMORY :
+			return getMemoryResultStage();
+		default :
+			return getRegisterReadStage();
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof PipelineConfiguration)) {
+			return false;
+		}
+		PipelineConfiguration other = (PipelineConfiguration) obj;
+		return fetchStages == other.fetchStages && decodeStages == other.decodeStages 
+				&& registerReadStage == other.registerReadStage && aluLatency == other.aluLatency 
+				&& memoryLatency == other.memoryLatency && branchResolution == other.branchResolution;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = fetchStages;
+		hash = 31 * hash + decodeStages;
+		hash = 31 * hash + registerReadStage;
+		hash = 31 * hash + aluLatency;
+		hash = 31 * hash + memoryLatency;
+		hash = 31 * hash + branchResolution.hashCode();
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return getStages() + " stages: " + fetchStages + " IF, " + decodeStages + " ID, " + aluLatency + " EX, "
+				+ memoryLatency + " MEM, 1 WB, branches resolved in " + branchResolution;
+	}
+
+	private final int fetchStages;
+	private final int decodeStages;
+	private final int registerReadStage;
+	private final int aluLatency;
+	private final int memoryLatency;
+	private final BranchResolution branchResolution;
+}
@@ -0,0 +1,159 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.cpu.RunStatus;
+
+/**
+ * A <code>PipelineStatistics</code> is returned by <code>PipelinedSimulator.runToCompletion</code>. It records
+ * why the run stopped and counts the cycles, instructions, hazards, memory stalls and branch mispredictions of
+ * the run.
+ *
+ * @see PipelinedSimulator
+ * @see RunStatus
+ */
+public class PipelineStatistics {
+	
+	/**
+	 * @param status				why the run stopped
+	 * @param error					the runtime error, <code>null</code> unless <code>status</code> is <code>FAULT</code>
+	 * @param cycles				the number of clock cycles
+	 * @param instructions			the number of instructions executed, including any faulting instruction
+	 * @param dataHazardStalls		the number of bubbles inserted because of data hazards
+	 * @param loadUseStalls			the number of those bubbles inserted because an instruction uses the result of a load
+	 * 								in the EX stage
+	 * @param memoryStalls			the number of cycles the pipeline was stalled waiting for the data caches
+	 * @param controlHazardFlushes	the number of instructions flushed because a branch was mispredicted
+	 * @param EXForwards			the number of operands forwarded from the EX/MEM pipeline register
+	 * @param MEMForwards			the number of operands forwarded from the MEM/WB pipeline register
+	 * @param branches				the number of branches executed
+	 * @param mispredictions		the number of those branches whose outcome was mispredicted
+	 */
+	public PipelineStatistics(RunStatus status, Error error, long cycles, long instructions, long dataHazardStalls,
+			long loadUseStalls, long memoryStalls, long controlHazardFlushes, long EXForwards, long MEMForwards, long branches, 
+			long mispredictions) {
+		this.status = status;
+		this.error = error;
+		this.cycles = cycles;
+		this.instructions = instructions;
+		this.dataHazardStalls = dataHazardStalls;
+		this.loadUseStalls = loadUseStalls;
+		this.memoryStalls = memoryStalls;
+		this.controlHazardFlushes = controlHazardFlushes;
+		this.EXForwards = EXForwards;
+		this.MEMForwards = MEMForwards;
+		this.branches = branches;
+		this.mispredictions = mispredictions;
+	}
+	
+	/**
+	 * @return	why the run stopped
+	 */
+	public RunStatus getStatus() {
+		return status;
+	}
+	
+	/**
+	 * @return	the runtime error, <code>null</code> unless the status is <code>FAULT</code>
+	 */
+	public Error getError() {
+		return error;
+	}
+	
+	/**
+	 * @return	the number of clock cycles
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+	
+	/**
+	 * @return	the number of instructions executed, including any faulting instruction
+	 */
+	public long getInstructions() {
+		return instructions;
+	}
+	
+	/**
+	 * @return	the number of bubbles inserted because of data hazards, including load-use stalls
+	 */
+	public long getDataHazardStalls() {
+		return dataHazardStalls;
+	}
+	
+	/**
+	 * @return	the number of bubbles inserted because an instruction uses the result of a load in the EX stage
+	 */
+	public long getLoadUseStalls() {
+		return loadUseStalls;
+	}
+	
+	/**
+	 * @return	the number of cycles the pipeline was stalled because a memory access took longer than the memory 
+	 * 			access stages, always 0 without data caches
+	 */
+	public long getMemoryStalls() {
+		return memoryStalls;
+	}
+	
+	/**
+	 * @return	the number of instructions flushed because a branch was mispredicted
+	 */
+	public long getControlHazardFlushes() {
+		return controlHazardFlushes;
+	}
+	
+	/**
+	 * @return	the number of operands forwarded from the EX/MEM pipeline register
+	 */
+	public long getEXForwards() {
+		return EXForwards;
+	}
+	
+	/**
+	 * @return	the number of operands forwarded from the MEM/WB pipeline register
+	 */
+	public long getMEMForwards() {
+		return MEMForwards;
+	}
+	
+	/**
+	 * @return	the number of branches executed
+	 */
+	public long getBranches() {
+		return branches;
+	}
+	
+	/**
+	 * @return	the number of branches whose outcome was mispredicted
+	 */
+	public long getMispredictions() {
+		return mispredictions;
+	}
+	
+	/**
+	 * @return	the fraction of branches whose outcome was predicted correctly, 1 if no branches were executed
+	 */
+	public double getPredictionAccuracy() {
+		return branches == 0 ? 1 : 1 - (double) mispredictions / branches;
+	}
+	
+	/**
+	 * @return	the average number of cycles per instruction, 0 if no instructions were executed
+	 */
+	public double getCPI() {
+		return instructions == 0 ? 0 : (double) cycles / instructions;
+	}
+	
+	private RunStatus status;
+	private Error error;
+	private long cycles;
+	private long instructions;
+	private long dataHazardStalls;
+	private long loadUseStalls;
+	private long memoryStalls;
+	private long controlHazardFlushes;
+	private long EXForwards;
+	private long MEMForwards;
+	private long branches;
+	private long mispredictions;
+}
@@ -2,43 +2,166 @@ package com.arm.legv8simulator.client.executionmodes;
 
 import java.util.ArrayList;
 
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.branchprediction.BranchPredictor;
+import com.arm.legv8simulator.client.branchprediction.BranchPredictorModel;
+import com.arm.legv8simulator.client.branchprediction.NotTakenPredictor;
 import com.arm.legv8simulator.client.cpu.CPU;
-import com.arm.legv8simulator.client.cpu.CPUSnapshot;
 import com.arm.legv8simulator.client.cpu.ControlUnitConfiguration;
+import com.arm.legv8simulator.client.cpu.RunStatus;
 import com.arm.legv8simulator.client.instruction.Instruction;
 import com.arm.legv8simulator.client.instruction.Mnemonic;
 import com.arm.legv8simulator.client.instruction.PipelineInstruction;
 import com.arm.legv8simulator.client.lexer.TextLine;
+import com.arm.legv8simulator.client.memory.CacheHierarchy;
+import com.arm.legv8simulator.client.memory.Memory;
 import com.arm.legv8simulator.client.lexer.TokenType;
 
 /**
  * The simulator used for the pipelined execution mode
- * 
+ * <p>
+ * The pipeline is the five stage pipeline of Patterson and Hennessy by default. It can be given more
+ * stages, longer ALU and memory latencies and a later branch resolution with a <code>PipelineConfiguration</code>;
+ * the stalls, forwarding and flushes are then derived from the positions of its stages. The default pipeline, 
+ * and any configuration equal to it, keeps its original hazard detection, so its timing does not depend on the 
+ * configuration code.
+ * <p>
+ * Every memory access takes as many cycles as there are memory access stages, unless the data caches are
+ * modelled with a <code>CacheHierarchy</code>. A load or store whose access takes longer then waits in the last
+ * memory access stage, stalling the instructions behind it, until the access completes.
+ *
  * @see LEGv8_Simulator
+ * @see PipelineConfiguration
  * @author Jonathan Wright, 2016
  */
 public class PipelinedSimulator extends LEGv8_Simulator {
-	
+
+	/**
+	 * The number of stages in the default, five stage pipeline
+	 */
 	public static final int PIPELINE_SIZE = 5;
 
 	/**
 	 * @param code	individual lines of source code from the text editor
 	 */
 	public PipelinedSimulator(ArrayList<TextLine> code) {
+		this(code, PipelineConfiguration.FIVE_STAGE);
+	}
+
+	/**
+	 * @param code			individual lines of source code from the text editor
+	 * @param configuration	the stages of the pipeline
+	 */
+	public PipelinedSimulator(ArrayList<TextLine> code, PipelineConfiguration configuration) {
 		super(code);
-		visibleState = new CPUSnapshot(cpu);
+		this.configuration = configuration;
+		fiveStage = configuration.equals(PipelineConfiguration.FIVE_STAGE);
+		pipeline = new PipelineInstruction[configuration.getStages()];
+		spare = new PipelineInstruction[configuration.getStages()];
+		programInstructions = new Instruction[program.size()];
+	}
+
+	/**
+	 * @param program	the assembled program to run
+	 * @see AssembledProgram
+	 */
+	public PipelinedSimulator(AssembledProgram program) {
+		this(program, PipelineConfiguration.FIVE_STAGE);
+	}
+
+	/**
+	 * @param program		the assembled program to run
+	 * @param configuration	the stages of the pipeline
+	 * @see AssembledProgram
+	 */
+	public PipelinedSimulator(AssembledProgram program, PipelineConfiguration configuration) {
+		super(program);
+		this.configuration = configuration;
+		fiveStage = configuration.equals(PipelineConfiguration.FIVE_STAGE);
+		pipeline = new PipelineInstruction[configuration.getStages()];
+		spare = new PipelineInstruction[configuration.getStages()];
+		programInstructions = new Instruction[this.program.size()];
+	}
+
+	/**
+	 * @return	the stages of the pipeline
+	 */
+	public PipelineConfiguration getConfiguration() {
+		return configuration;
 	}
 
 	/**
 	 * Clocks the pipeline
 	 */
 	public void clock() {
-		if (cpu.getInstructionIndex() == cpuInstructions.size()) {
+		recordClock();
+		advance();
+	}
+	
+	/**
+	 * Clocks the pipeline until the program has left it, a runtime error occurs or <code>maxCycles</code> 
+	 * cycles have passed, counting the cycles and hazards. Nothing is written to the pipeline log and the 
+	 * clocks cannot be undone. The CPU log is still kept unless its trace level is set to 
+	 * <code>TraceLevel.OFF</code>. If the budget is exhausted, calling this method again carries on from the 
+	 * next cycle.
+	 * 
+	 * @param maxCycles	the maximum number of cycles to clock, <code>CPU.UNLIMITED</code> for no limit
+	 * @return			the status and statistics of the cycles clocked by this call
+	 * 
+	 * @see PipelineStatistics
+	 */
+	public PipelineStatistics runToCompletion(long maxCycles) {
+		forgetSteps();
+		runtimeError = null;
+		cycles = 0;
+		instructions = 0;
+		dataHazardStalls = 0;
+		loadUseStalls = 0;
+		memoryStalls = 0;
+		controlHazardFlushes = 0;
+		EXForwards = 0;
+		MEMForwards = 0;
+		branches = 0;
+		mispredictions = 0;
+		RunStatus status = RunStatus.BUDGET_EXHAUSTED;
+		logging = false;
+		reusing = true;
+		try {
+			while (cycles < maxCycles) {
+				if (cpu.getInstructionIndex() >= program.size() && pipelineEmpty()) {
+					status = RunStatus.COMPLETED;
+					break;
+				}
+				advance();
+				if (runtimeError != null) {
+					status = RunStatus.FAULT;
+					break;
+				}
+			}
+			if (status == RunStatus.BUDGET_EXHAUSTED && cpu.getInstructionIndex() >= program.size() 
+					&& pipelineEmpty()) {
+				status = RunStatus.COMPLETED;
+			}
+		} finally {
+			logging = true;
+			reusing = false;
+		}
+		return new PipelineStatistics(status, runtimeError, cycles, instructions, dataHazardStalls, loadUseStalls, 
+				memoryStalls, controlHazardFlushes, EXForwards, MEMForwards, branches, mispredictions);
+	}
+	
+	// performs a single clock of the pipeline
+	private void advance() {
+		cycles++;
+		boolean memoryStalled = memoryStall > 0;
+		if (memoryStalled) {
+			stallMemory();
+		} else if (cpu.getInstructionIndex() == program.size()) {
 			// if no more new instructions to insert into pipeline execute those left in pipeline; or if empty, do nothing
-			currentLineNumber = cpuInstructions.get(cpuInstructions.size()-1).getLineNumber();
+			currentLineNumber = program.getLineNumber(program.size()-1);
 			if (!pipelineEmpty()) {
 				if (dataHazardStallRequired()) {
-					insertBubble(2);
+					insertBubble(configuration.getRegisterReadStage()+1);
 				} else {
 					// insert bubble at IF position - no more instructions to insert
 					updatePipeline(null);
@@ -47,38 +170,285 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 		} else {
 			// come here if still new instructions to enter pipeline
 			if (dataHazardStallRequired()) {
-				insertBubble(2);
+				insertBubble(configuration.getRegisterReadStage()+1);
 			} 
 			else {
-				if (pipeline[0] != null && pipeline[0].getBranchTaken()) {
-					// inserts branch delay instruction to pipeline - will be flushed on next clock cycle
-					updatePipeline(new PipelineInstruction(nextInstruction, null, null, pipeline[0].getPC()+4, false));
-				} else {
-					long currentPC = cpu.getPC();
-					Instruction currentInstruction = cpuInstructions.get(cpu.getInstructionIndex());
-					// keep track of next instruction incase needed as branch delay instruction
-					if (cpu.getInstructionIndex()+1 < cpuInstructions.size()) {
-						nextInstruction = cpuInstructions.get(cpu.getInstructionIndex()+1);
-					} else {
-						nextInstruction = null;
+				if (controlHazardStall) {
+					// flush the instructions fetched on the predicted path once the branch has been resolved
+					for (int i=0; i<configuration.getBranchStage(); i++) {
+						if (pipeline[i] != null) {
+							controlHazardFlushes++;
+						}
+						release(pipeline[i]);
+						pipeline[i] = null;
 					}
+					controlHazardStall = false;
+				}
+				if (pipeline[0] != null && (pipeline[0].getMispredicted() || !pipeline[0].getExecuted())) {
+					// inserts the next instruction on the predicted path to pipeline - will be flushed when the branch is resolved
+					int fetched = pipeline[0].getExecuted() ? pipeline[0].getFetchedIndex() : indexOf(pipeline[0])+1;
+					updatePipeline(fetch(fetched < program.size() ? instructionAt(fetched) : null,
+							Memory.TEXT_SEGMENT_OFFSET + (long) fetched * CPU.INSTRUCTION_SIZE));
+				} else {
+					int index = cpu.getInstructionIndex();
+					Instruction currentInstruction = instructionAt(index);
 					currentLineNumber = currentInstruction.getLineNumber();
-					// record state before instruction executed 
-					CPUSnapshot before = new CPUSnapshot(cpu);
+					// record the register and flags the instruction will overwrite
+					PipelineInstruction issued = issue(currentInstruction, cpu.getPC(), 
+							program.getDestinationRegister(index));
+					// the address of a load or store must be found before the instruction can change its base register
+					int accessSize = cacheHierarchy == null ? 0 : accessSize(program.getMnemonic(index));
+					long address = accessSize == 0 ? 0 
+							: cpu.getRegister(program.getRn(index)) + program.getImmediate(index);
 					// execute instruction and catch runtime error if present - will be displayed in editor
-					runtimeError = cpu.executeInstruction(cpuInstructions, memory);
-					if (controlHazardStall && !branchDataHazardStall) {
-						// flush IF stage of pipeline when branch taken
-						pipeline[0] = null;
-						controlHazardStall = false;
+					runtimeError = cpu.executeInstruction(program, memory);
+					issued.setExecuted(cpu);
+					instructions++;
+					if (runtimeError == null && accessSize > 0) {
+						issued.setMemoryLatency(accessCaches(index, address, accessSize));
+					}
+					if (runtimeError == null && isBranch(program.getMnemonic(index))) {
+						predictBranch(issued, index);
 					}
-					updatePipeline(new PipelineInstruction(currentInstruction, before, new CPUSnapshot(cpu), currentPC, cpu.getBranchTaken()));
+					updatePipeline(issued);
 				}
 			}
 		}
 		// check for hazards
+		if (!memoryStalled) {
+			detectMemoryStall();
+		}
 		detectControlHazard();
-		detectDataHazard();
+		// the pipeline did not move during a memory stall, so its forwards have already been counted
+		detectDataHazard(!memoryStalled);
+	}
+	
+	// an instruction entering the pipeline without being executed
+	private PipelineInstruction fetch(Instruction instruction, long PC) {
+		if (spareCount == 0) {
+			return new PipelineInstruction(instruction, PC);
+		}
+		PipelineInstruction fetched = spare[--spareCount];
+		fetched.reset(instruction, PC);
+		return fetched;
+	}
+	
+	// an instruction entering the pipeline which the CPU is about to execute
+	private PipelineInstruction issue(Instruction instruction, long PC, int register) {
+		if (spareCount == 0) {
+			return new PipelineInstruction(instruction, PC, register, cpu);
+		}
+		PipelineInstruction issued = spare[--spareCount];
+		issued.reset(instruction, PC, register, cpu);
+		return issued;
+	}
+	
+	/*
+	 * Keeps an instruction that has left the pipeline to be reused by fetch or issue. Only done while running 
+	 * to completion: otherwise the history of the clocks that can be undone still refers to it.
+	 */
+	private void release(PipelineInstruction ins) {
+		if (reusing && ins != null && spareCount < spare.length) {
+			spare[spareCount++] = ins;
+		}
+	}
+	
+	// the instruction at the given index of the program, created the first time it enters the pipeline
+	private Instruction instructionAt(int index) {
+		if (programInstructions[index] == null) {
+			programInstructions[index] = program.getInstruction(index);
+		}
+		return programInstructions[index];
+	}
+	
+	/*
+	 * Records the pipeline before a clock so that the clock can be undone. The CPU step is recorded even if 
+	 * no instruction is issued on this clock, undoing it then rewrites values that did not change.
+	 */
+	private void recordClock() {
+		int slot = recordStep();
+		int capacity = history.getCapacity();
+		int stages = pipeline.length;
+		if (pipelineHistory == null || pipelineHistory.length != capacity * stages) {
+			pipelineHistory = new PipelineInstruction[capacity * stages];
+			hazardHistory = new byte[capacity];
+			memoryStallHistory = new int[capacity];
+			lineNumberHistory = new int[capacity];
+			logLengthHistory = new int[capacity];
+			runtimeErrorHistory = new Error[capacity];
+		}
+		System.arraycopy(pipeline, 0, pipelineHistory, slot * stages, stages);
+		hazardHistory[slot] = (byte) hazards();
+		memoryStallHistory[slot] = memoryStall;
+		lineNumberHistory[slot] = currentLineNumber;
+		logLengthHistory[slot] = pipelineLog.length();
+		runtimeErrorHistory[slot] = runtimeError;
+	}
+	
+	/**
+	 * Undoes the last clock of the pipeline
+	 */
+	@Override
+	public boolean stepBack() {
+		int slot = undoStep();
+		if (slot < 0) {
+			return false;
+		}
+		int stages = pipeline.length;
+		System.arraycopy(pipelineHistory, slot * stages, pipeline, 0, stages);
+		setHazards(hazardHistory[slot]);
+		memoryStall = memoryStallHistory[slot];
+		currentLineNumber = lineNumberHistory[slot];
+		pipelineLog.setLength(logLengthHistory[slot]);
+		runtimeError = runtimeErrorHistory[slot];
+		// release the references held for the undone clock
+		for (int i=0; i<stages; i++) {
+			pipelineHistory[slot * stages + i] = null;
+		}
+		runtimeErrorHistory[slot] = null;
+		// the pipeline registers are derived from the instructions in the pipeline
+		updatePipelineRegisters();
+		return true;
+	}
+	
+	@Override
+	protected void replayStep() {
+		clock();
+	}
+	
+	@Override
+	protected Object saveViewState() {
+		return new ViewState(this);
+	}
+	
+	@Override
+	protected void restoreViewState(Object state) {
+		ViewState view = (ViewState) state;
+		System.arraycopy(view.pipeline, 0, pipeline, 0, pipeline.length);
+		setHazards(view.hazards);
+		memoryStall = view.memoryStall;
+		currentLineNumber = view.currentLineNumber;
+		pipelineLog.setLength(view.logLength);
+		runtimeError = view.runtimeError;
+		updatePipelineRegisters();
+	}
+	
+	// the hazard flags as a set of bits, kept for each clock that can be undone
+	private int hazards() {
+		int hazards = 0;
+		if (dataHazardStall) hazards |= DATA_HAZARD_STALL;
+		if (branchDataHazardStall) hazards |= BRANCH_DATA_HAZARD_STALL;
+		if (loadUseStall) hazards |= LOAD_USE_STALL;
+		if (controlHazardStall) hazards |= CONTROL_HAZARD_STALL;
+		if (EXHazard) hazards |= EX_HAZARD;
+		if (MEMHazard) hazards |= MEM_HAZARD;
+		if (forwardA) hazards |= FORWARD_A;
+		if (forwardB) hazards |= FORWARD_B;
+		return hazards;
+	}
+	
+	private void setHazards(int hazards) {
+		dataHazardStall = (hazards & DATA_HAZARD_STALL) != 0;
+		branchDataHazardStall = (hazards & BRANCH_DATA_HAZARD_STALL) != 0;
+		loadUseStall = (hazards & LOAD_USE_STALL) != 0;
+		controlHazardStall = (hazards & CONTROL_HAZARD_STALL) != 0;
+		EXHazard = (hazards & EX_HAZARD) != 0;
+		MEMHazard = (hazards & MEM_HAZARD) != 0;
+		forwardA = (hazards & FORWARD_A) != 0;
+		forwardB = (hazards & FORWARD_B) != 0;
+	}
+	
+	/*
+	 * Predicts the branch just executed as if it was being fetched, then trains the predictor with its 
+	 * outcome. The CPU has already taken the correct path; a misprediction is modelled by fetching the 
+	 * instructions on the predicted path and flushing them once the branch is resolved, in the stage given 
+	 * by configuration.getBranchStage().
+	 */
+	private void predictBranch(PipelineInstruction branch, int index) {
+		int target = program.getMnemonic(index) == Mnemonic.BR ? -1 : program.getImmediate(index);
+		int predicted = branchPredictor.predict(index, target);
+		int next = cpu.getInstructionIndex();
+		// BL, BR and B.LT do not set branchTaken, but still change the PC
+		boolean taken = cpu.getBranchTaken() || next != index+1;
+		branchPredictor.update(index, taken, next);
+		branches++;
+		if (taken ? predicted != next : predicted != BranchPredictor.NOT_TAKEN) {
+			branch.setMispredicted(predicted == BranchPredictor.NOT_TAKEN ? index+1 : predicted);
+			mispredictions++;
+		}
+	}
+	
+	// returns true if the instruction may change the flow of the program
+	private static boolean isBranch(Mnemonic m) {
+		return m.type == TokenType.MNEMONIC_L || m.type == TokenType.MNEMONIC_RL || m.type == TokenType.MNEMONIC_R;
+	}
+	
+	/**
+	 * Sets the predictor used for branches fetched from now on. Stepping back through the pipeline does 
+	 * not undo the training of the predictor.
+	 * 
+	 * @param predictor	the branch predictor, by default one which predicts every branch not taken
+	 * @see BranchPredictorModel
+	 */
+	public void setBranchPredictor(BranchPredictor predictor) {
+		branchPredictor = predictor;
+	}
+	
+	/**
+	 * @return	the predictor used for branches
+	 */
+	public BranchPredictor getBranchPredictor() {
+		return branchPredictor;
+	}
+	
+	/**
+	 * Sets the data caches that time the loads and stores executed from now on. Stepping back through the 
+	 * pipeline does not undo the changes to the caches or their counters.
+	 * 
+	 * @param caches	the data caches, <code>null</code>, the default, for every access to take as many cycles 
+	 * 					as there are memory access stages
+	 * @see CacheHierarchy
+	 */
+	public void setCacheHierarchy(CacheHierarchy caches) {
+		cacheHierarchy = caches;
+	}
+	
+	/**
+	 * @return	the data caches that time the loads and stores, <code>null</code> if none
+	 */
+	public CacheHierarchy getCacheHierarchy() {
+		return cacheHierarchy;
+	}
+	
+	// returns the number of bytes accessed by a load or store, 0 for any other instruction
+	private static int accessSize(Mnemonic m) {
+		switch (m) {
+		case LDUR : case STUR : case LDXR : case STXR :
+			return Memory.DOUBLEWORD_SIZE;
+		case LDURSW : case STURW :
+			return Memory.WORD_SIZE;
+		case LDURH : case STURH :
+			return Memory.HALFWORD_SIZE;
+		case LDURB : case STURB :
+			return Memory.BYTE_SIZE;
+		default :
+			return 0;
+		}
+	}
+	
+	/*
+	 * Times the memory access of the load or store just executed in the data caches, returning the cycles it 
+	 * took. A load to XZR and a failed STXR do not access memory.
+	 */
+	private int accessCaches(int index, long address, int accessSize) {
+		switch (program.getMnemonic(index)) {
+		case STUR : case STURW : case STURH : case STURB :
+			return cacheHierarchy.store(address, accessSize);
+		case STXR :
+			return cpu.getSTXRSucceed() ? cacheHierarchy.store(address, accessSize) : 0;
+		default :
+			return program.getRd(index) == CPU.XZR ? 0 : cacheHierarchy.load(address, accessSize);
+		}
 	}
 	
 	// tru if there is a data hazard present
@@ -89,7 +459,7 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 	// returns true if pipeline is empty
 	private boolean pipelineEmpty() {
 		boolean empty = true;
-		for (int i=0; i<PIPELINE_SIZE; i++) {
+		for (int i=0; i<pipeline.length; i++) {
 			if (pipeline[i] != null) {
 				empty = false;
 			} 
@@ -99,14 +469,11 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 	
 	// moves each instruction along one position in the pipeline and inserts the next instruction to the IF stage
 	private void updatePipeline(PipelineInstruction nextInstruction) {
-		for (int i=PIPELINE_SIZE-1; i>0; i--) {
+		release(pipeline[pipeline.length-1]);
+		for (int i=pipeline.length-1; i>0; i--) {
 			pipeline[i] = pipeline[i-1];
 		}
 		pipeline[0] = nextInstruction;
-		if (pipeline[4] != null) {
-			// update visible state to that of instruction in write-back stage
-			visibleState = pipeline[4].getSnapshotAfter();
-		}
 		updatePipelineRegisters();
 		logPipeline();
 	}
@@ -116,59 +483,159 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 	 * All instructions after this position move along one stage
 	 */
 	private void insertBubble(int pipelinePosition) {
-		for (int i=PIPELINE_SIZE-1; i>pipelinePosition; i--) {
+		release(pipeline[pipeline.length-1]);
+		for (int i=pipeline.length-1; i>pipelinePosition; i--) {
 			pipeline[i] = pipeline[i-1];
 		}
 		pipeline[pipelinePosition] = null;
-		if (pipeline[4] != null) {
-			visibleState = pipeline[4].getSnapshotAfter();
+		updatePipelineRegisters();
+		dataHazardStalls++;
+		if (loadUseStall) {
+			loadUseStalls++;
+		}
+		dataHazardStall = false;
+		branchDataHazardStall = false;
+		loadUseStall = false;
+		logPipeline();
+	}
+	
+	/*
+	 * Holds the load or store waiting for the data caches in the last memory access stage, and every instruction 
+	 * behind it, for a clock. The instructions after it move along one stage.
+	 */
+	private void stallMemory() {
+		int stage = configuration.getMemoryResultStage() + 1;
+		release(pipeline[pipeline.length-1]);
+		for (int i=pipeline.length-1; i>stage; i--) {
+			pipeline[i] = pipeline[i-1];
 		}
+		pipeline[stage] = null;
 		updatePipelineRegisters();
+		memoryStall--;
+		memoryStalls++;
+		// the data hazards are detected again at the end of the clock
 		dataHazardStall = false;
 		branchDataHazardStall = false;
+		loadUseStall = false;
 		logPipeline();
 	}
 	
 	/*
-	 * Detects whether a control hazards is present
+	 * Detects whether the instruction which has just entered the last memory access stage must wait there for 
+	 * its memory access to complete. If so, sets memoryStall to the number of clocks to wait.
+	 */
+	private void detectMemoryStall() {
+		PipelineInstruction ins = pipeline[configuration.getMemoryResultStage()];
+		if (ins != null && ins.getMemoryLatency() > configuration.getMemoryLatency()) {
+			memoryStall = ins.getMemoryLatency() - configuration.getMemoryLatency();
+			log("Cache miss: Stalling pipeline \n");
+		}
+	}
+	
+	/*
+	 * Detects whether a control hazards is present, i.e. the branch in the stage branches are resolved in was mispredicted
 	 * If hazard present, set controlHazardStall = true;
 	 */
 	private void detectControlHazard() {
-		if (pipeline[1] != null) {
-			if (pipeline[1].getInstruction().getMnemonic().equals(Mnemonic.B)) {
-				controlHazardStall = true;
-				pipelineLog.append("Control Hazard: Flushing pipeline \n");
-			} else if (pipeline[1].getInstruction().getMnemonic().type.equals(TokenType.MNEMONIC_L) || 
-					pipeline[1].getInstruction().getMnemonic().type.equals(TokenType.MNEMONIC_RL)) {
-				if (pipeline[1].getBranchTaken()) {
-					controlHazardStall = true;
-					pipelineLog.append("Control Hazard: Flushing pipeline \n");
+		int stage = configuration.getBranchStage();
+		if (pipeline[stage] != null && pipeline[stage].getMispredicted()) {
+			controlHazardStall = true;
+			log("Control Hazard: Flushing pipeline \n");
+		}
+	}
+	
+	/*
+	 * Detects whether a data hazard is present, i.e. the instruction in the stage the registers are read in 
+	 * cannot get its operands in time. If hazard present, set branchDataHazardStall = true for a branch or 
+	 * dataHazardStall = true for any other instruction. Then detects the operands forwarded to the first 
+	 * execute stage, which are added to the forwarding statistics if countForwards is true.
+	 */
+	private void detectDataHazard(boolean countForwards) {
+		if (fiveStage) {
+			detectFiveStageDataHazard(countForwards);
+			return;
+		}
+		int read = configuration.getRegisterReadStage();
+		// instructions on a mispredicted path are flushed before they use their operands
+		if (pipeline[read] != null && pipeline[read].getExecuted()) {
+			Instruction ins = pipeline[read].getInstruction();
+			boolean branch = isBranch(ins.getMnemonic());
+			// the operands of a branch resolved before the execute stage cannot be forwarded
+			boolean forwarded = !branch || configuration.getBranchStage() >= configuration.getExecuteStage();
+			boolean hazardPresent = waitsFor(writerOf(firstOperand(ins), read), forwarded);
+			hazardPresent |= waitsFor(writerOf(secondOperand(ins), read), forwarded);
+			if (readsFlags(ins.getMnemonic())) {
+				hazardPresent |= waitsFor(flagWriterOf(read), forwarded);
+			}
+			if (hazardPresent) {
+				if (branch) {
+					branchDataHazardStall = true;
+				} else {
+					dataHazardStall = true;
 				}
+				log("Data Hazard: Stalling pipeline \n");
+			}
+		}
+		EXHazard = false;
+		MEMHazard = false;
+		forwardA = false;
+		forwardB = false;
+		int execute = configuration.getExecuteStage();
+		if (pipeline[execute] != null && pipeline[execute].getExecuted()) {
+			// operands are forwarded from the write back stage through the MEM/WB pipeline register, or from an 
+			// earlier stage through the EX/MEM pipeline register
+			int writeBack = configuration.getWriteBackStage();
+			int writerA = writerOf(firstOperand(pipeline[execute].getInstruction()), execute);
+			int writerB = writerOf(secondOperand(pipeline[execute].getInstruction()), execute);
+			forwardA = writerA >= 0;
+			forwardB = writerB >= 0;
+			if (forwardA && writerA < writeBack) {
+				EXHazard = true;
+				if (countForwards) EXForwards++;
+				log("Data Hazard: EX, forward A \n");
+			}
+			if (forwardB && writerB < writeBack) {
+				EXHazard = true;
+				if (countForwards) EXForwards++;
+				log("Data Hazard: EX, forward B \n");
+			}
+			if (forwardA && writerA == writeBack) {
+				MEMHazard = true;
+				if (countForwards) MEMForwards++;
+				log("Data Hazard: MEM, forward A \n");
+			}
+			if (forwardB && writerB == writeBack) {
+				MEMHazard = true;
+				if (countForwards) MEMForwards++;
+				log("Data Hazard: MEM, forward B \n");
 			}
 		}
 	}
 	
 	/*
-	 * Detects whether a data hazard is present
-	 * If hazard present, set dataHazardStall = true 
+	 * Detects the data hazards of the default five stage pipeline from its pipeline registers, so that its 
+	 * timing is that of the pipeline before it could be configured. If hazard present, set 
+	 * branchDataHazardStall = true for a branch or dataHazardStall = true for a load-use hazard.
 	 */
-	private void detectDataHazard() {
+	private void detectFiveStageDataHazard(boolean countForwards) {
 		if (ConditionalBranchHazard()) {
 			branchDataHazardStall = true;
-			pipelineLog.append("Data Hazard: Stalling pipeline \n");
+			log("Data Hazard: Stalling pipeline \n");
 		}
 		if (BCondHazard()) {
 			branchDataHazardStall = true;
-			pipelineLog.append("Data Hazard: Stalling pipeline \n");
+			log("Data Hazard: Stalling pipeline \n");
 		}
 		if (loadHazard()) {
 			dataHazardStall = true;
-			pipelineLog.append("Data Hazard: Stalling pipeline \n");
+			loadUseStall = true;
+			log("Data Hazard: Stalling pipeline \n");
 		}
 		if (dataHazardEXRn()) {
 			EXHazard = true;
 			forwardA = true;
-			pipelineLog.append("Data Hazard: EX, forward A \n");
+			if (countForwards) EXForwards++;
+			log("Data Hazard: EX, forward A \n");
 		} else {
 			EXHazard = false;
 			forwardA = false;
@@ -176,7 +643,8 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 		if (dataHazardEXRm()) {
 			EXHazard = true;
 			forwardB = true;
-			pipelineLog.append("Data Hazard: EX, forward B \n");
+			if (countForwards) EXForwards++;
+			log("Data Hazard: EX, forward B \n");
 		} else {
 			EXHazard = false;
 			forwardB = false;
@@ -184,7 +652,8 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 		if (dataHazardMEMRn()) {
 			MEMHazard = true;
 			forwardA = true;
-			pipelineLog.append("Data Hazard: MEM, forward A \n");
+			if (countForwards) MEMForwards++;
+			log("Data Hazard: MEM, forward A \n");
 		} else {
 			MEMHazard = false;
 			forwardA = false;
@@ -192,7 +661,8 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 		if (dataHazardMEMRm()) {
 			MEMHazard = true;
 			forwardA = true;
-			pipelineLog.append("Data Hazard: MEM, forward B \n");
+			if (countForwards) MEMForwards++;
+			log("Data Hazard: MEM, forward B \n");
 		} else {
 			MEMHazard = false;
 			forwardA = false;
@@ -204,7 +674,7 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 	 */
 	private boolean ConditionalBranchHazard() {
 		boolean hazardPresent = false;
-		if (pipeline[1] != null) {
+		if (decoded(1)) {
 			if (pipeline[1].getInstruction().getMnemonic().type.equals(TokenType.MNEMONIC_RL)) {
 				hazardPresent = (pipeline[1].getInstruction().getArgs()[0] == IDEX_Rd || 
 						pipeline[1].getInstruction().getArgs()[0] == EXMEM_Rd);
@@ -220,13 +690,13 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 	 */
 	private boolean BCondHazard() {
 		boolean hazardPresent = false;
-		if (pipeline[1] != null) {
+		if (decoded(1)) {
 			if (pipeline[1].getInstruction().getMnemonic().type.equals(TokenType.MNEMONIC_L) && 
 					!pipeline[1].getInstruction().getMnemonic().equals(Mnemonic.B)) {
-				if (pipeline[2] != null) {
+				if (decoded(2)) {
 					hazardPresent = setsFlags(pipeline[2].getInstruction().getMnemonic());
 				}
-				if (pipeline[3] != null) {
+				if (decoded(3)) {
 					hazardPresent = setsFlags(pipeline[3].getInstruction().getMnemonic());
 				}
 			}
@@ -234,17 +704,11 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 		return hazardPresent;
 	}
 	
-	// returns true if the specified instruction sets the flag values
-	private boolean setsFlags (Mnemonic m) {
-		return (m.equals(Mnemonic.ADDS) || m.equals(Mnemonic.SUBS) || m.equals(Mnemonic.ANDS) || 
-				m.equals(Mnemonic.ADDIS) || m.equals(Mnemonic.SUBIS) || m.equals(Mnemonic.ANDIS));
-	}
-	
 	// returns true if register dependency exists for load instruction in EX stage of pipeline
 	private boolean loadHazard() {
 		boolean hazardPresent = false;
-		if (pipeline[2] != null) {
-			hazardPresent = pipeline[2].getInstruction().getControlSignals().equals(ControlUnitConfiguration.RM_LOAD) &&
+		if (decoded(2)) {
+			hazardPresent = pipeline[2].getInstruction().getControlSignals() == ControlUnitConfiguration.RM_LOAD &&
 					(IDEX_Rd == IFID_Rn || IDEX_Rd == IFID_Rm);
 		}
 		return hazardPresent;
@@ -267,27 +731,141 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 		return MEMWB_WB_RegWrite && MEMWB_Rd != CPU.XZR && !(EXMEM_WB_RegWrite && EXMEM_Rd != CPU.XZR && EXMEM_Rd == IDEX_Rm) && MEMWB_Rd == IDEX_Rm;
 	}
 	
+	/*
+	 * Returns true if the instruction in the stage the registers are read in must wait there for the result of 
+	 * the instruction at the given stage, which is -1 if there is none. If that instruction is a load, also sets 
+	 * loadUseStall = true.
+	 */
+	private boolean waitsFor(int writer, boolean forwarded) {
+		if (writer < 0) {
+			return false;
+		}
+		int writeBack = configuration.getWriteBackStage();
+		// the stage the writer will be in when the waiting instruction reaches the first execute stage
+		int arrival = writer + configuration.getExecuteStage() - configuration.getRegisterReadStage();
+		boolean hazardPresent;
+		if (!forwarded || arrival > writeBack) {
+			// the result must be read from the registers, which are written in the first half of the write back stage
+			hazardPresent = writer < writeBack;
+		} else {
+			// the result can be forwarded once it has left the stage it is ready at the end of
+			hazardPresent = arrival <= resultStage(pipeline[writer]);
+		}
+		if (hazardPresent && readsMemory(pipeline[writer])) {
+			loadUseStall = true;
+		}
+		return hazardPresent;
+	}
+	
+	// returns the stage of the nearest instruction after the given stage which writes to the register, -1 if none
+	private int writerOf(int register, int stage) {
+		if (register < 0 || register == CPU.XZR) {
+			return -1;
+		}
+		for (int i=stage+1; i<pipeline.length; i++) {
+			if (pipeline[i] != null && pipeline[i].getRegister() == register) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	// returns the stage of the nearest instruction after the given stage which sets the flags, -1 if none
+	private int flagWriterOf(int stage) {
+		for (int i=stage+1; i<pipeline.length; i++) {
+			if (pipeline[i] != null && pipeline[i].getExecuted() && setsFlags(pipeline[i].getInstruction().getMnemonic())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	// returns the stage the result of an instruction is ready at the end of
+	private int resultStage(PipelineInstruction ins) {
+		return readsMemory(ins) ? configuration.getMemoryResultStage() : configuration.getALUResultStage();
+	}
+	
+	// returns true if the result of the instruction is only known after the memory access, i.e. a load or STXR
+	private static boolean readsMemory(PipelineInstruction ins) {
+		ControlUnitConfiguration c = ins.getInstruction().getControlSignals();
+		return c == ControlUnitConfiguration.RM_LOAD || c == ControlUnitConfiguration.RRM;
+	}
+	
+	// returns true if the specified instruction is a B.cond instruction
+	private static boolean readsFlags(Mnemonic m) {
+		return m.type == TokenType.MNEMONIC_L && m != Mnemonic.B && m != Mnemonic.BL;
+	}
+	
+	// returns true if the specified instruction sets the flag values
+	private boolean setsFlags (Mnemonic m) {
+		return (m.equals(Mnemonic.ADDS) || m.equals(Mnemonic.SUBS) || m.equals(Mnemonic.ANDS) || 
+				m.equals(Mnemonic.ADDIS) || m.equals(Mnemonic.SUBIS) || m.equals(Mnemonic.ANDIS));
+	}
+	
+	// returns the register read through the first (Rn) read port by an instruction, -1 if none
+	private static int firstOperand(Instruction ins) {
+		int[] a = ins.getArgs();
+		switch (ins.getMnemonic().type) {
+		case MNEMONIC_RRR :
+		case MNEMONIC_RRI :
+		case MNEMONIC_RM :
+			return a[1];
+		case MNEMONIC_RRM :
+			return a[2];
+		case MNEMONIC_R :
+			return a[0];
+		default:
+			return -1;
+		}
+	}
+	
+	// returns the register read through the second (Rm) read port by an instruction, -1 if none
+	private static int secondOperand(Instruction ins) {
+		int[] a = ins.getArgs();
+		switch (ins.getMnemonic().type) {
+		case MNEMONIC_RRR :
+			return a[2];
+		case MNEMONIC_RM :
+			return ins.getControlSignals() == ControlUnitConfiguration.RM_LOAD ? -1 : a[0];
+		case MNEMONIC_RRM :
+		case MNEMONIC_RL :
+			return a[0];
+		default:
+			return -1;
+		}
+	}
+	
+	// returns the index in the program of an instruction in the pipeline
+	private static int indexOf(PipelineInstruction ins) {
+		return (int) ((ins.getPC() - Memory.TEXT_SEGMENT_OFFSET) / CPU.INSTRUCTION_SIZE);
+	}
+	
 	// Updates the values of all the data held in the four pipeline registers
 	private void updatePipelineRegisters() {
 		restoreDefaults();
-		if (pipeline[1] != null) {
+		if (decoded(configuration.getDecodeStage())) {
 			updateIFID();
 			//pipelineLog.append(logIFID());
 		}
-		if (pipeline[2] != null) {
+		if (decoded(configuration.getExecuteStage())) {
 			updateIDEX();
 			//pipelineLog.append(logIDEX());
 		}
-		if (pipeline[3] != null) {
+		if (decoded(configuration.getMemoryStage())) {
 			updateEXMEM();
 			//pipelineLog.append(logEXMEM());
 		}
-		if (pipeline[4] != null) {
+		if (decoded(configuration.getWriteBackStage())) {
 			updateMEMWB();
 			//pipelineLog.append(logMEMWB());
 		}
 	}
-	
+
+	// returns true if there is an instruction at the stage - one fetched past the end of the program on a mispredicted path is not
+	private boolean decoded(int stage) {
+		return pipeline[stage] != null && pipeline[stage].getInstruction() != null;
+	}
+
 	// Sets default values for all data held in the pipeline register
 	private void restoreDefaults() {
 		IFID_PC4 = -1;
@@ -299,10 +877,13 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 		IDEX_WB_MemToReg = false;
 		IDEX_M_MemRead = false;
 		IDEX_M_MemWrite = false;
-		IDEX_EX_ALUOp = null;
+		IDEX_EX_ALUOp = 0;
+		IDEX_EX_ALUOpValid = false;
 		IDEX_EX_ALUSrc = false;
-		IDEX_ReadData1 = null;
-		IDEX_ReadData2 = null;
+		IDEX_ReadData1 = 0;
+		IDEX_ReadData1Valid = false;
+		IDEX_ReadData2 = 0;
+		IDEX_ReadData2Valid = false;
 		IDEX_Rn = -1;
 		IDEX_Rm = -1;
 		IDEX_Rd = -1;
@@ -310,21 +891,26 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 		EXMEM_WB_MemToReg = false;
 		EXMEM_M_MemRead =  false;
 		EXMEM_M_MemWrite = false;
-		EXMEM_ALUResult = null;
-		EXMEM_WriteDataMem = null;
+		EXMEM_ALUResult = 0;
+		EXMEM_ALUResultValid = false;
+		EXMEM_WriteDataMem = 0;
+		EXMEM_WriteDataMemValid = false;
 		EXMEM_Rd = -1;
 		MEMWB_WB_RegWrite = false;
 		MEMWB_WB_MemToReg = false;
-		MEMWB_ReadDataMem = null;
-		MEMWB_ALUResult = null;
+		MEMWB_ReadDataMem = 0;
+		MEMWB_ReadDataMemValid = false;
+		MEMWB_ALUResult = 0;
+		MEMWB_ALUResultValid = false;
 		MEMWB_Rd = -1;
 	}
 	
 	// Updates the values held in the IFID pipeline register 
 	private void updateIFID() {
-		IFID_PC4 = pipeline[1].getPC();
-		TokenType insGroup = pipeline[1].getInstruction().getMnemonic().type;
-		int[] a = pipeline[1].getInstruction().getArgs();
+		int stage = configuration.getDecodeStage();
+		IFID_PC4 = pipeline[stage].getPC();
+		TokenType insGroup = pipeline[stage].getInstruction().getMnemonic().type;
+		int[] a = pipeline[stage].getInstruction().getArgs();
 		switch (insGroup) {
 		case MNEMONIC_RRR :
 			IFID_Rd = a[0];
@@ -336,7 +922,7 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 			IFID_Rn = a[1];
 			break;
 		case MNEMONIC_RM :
-			if (pipeline[1].getInstruction().getControlSignals().equals(ControlUnitConfiguration.RM_LOAD)) {
+			if (pipeline[stage].getInstruction().getControlSignals().equals(ControlUnitConfiguration.RM_LOAD)) {
 				IFID_Rd = a[0];
 				IFID_Rn = a[1];
 			} else {
@@ -360,48 +946,66 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 		}
 	}
 	
+	// a "don't care" (null) control signal is not asserted
+	private static boolean asserted(Boolean signal) {
+		return signal != null && signal;
+	}
+	
 	// Updates the values held in the IDEX pipeline register
 	private void updateIDEX() {
-		ControlUnitConfiguration c = pipeline[2].getInstruction().getControlSignals();
-		IDEX_WB_RegWrite = c.regWrite;
-		IDEX_WB_MemToReg = c.memToReg;
-		IDEX_M_MemRead = c.memRead;
-		IDEX_M_MemWrite = c.memWrite;
-		IDEX_EX_ALUOp = c.aluOp;
-		IDEX_EX_ALUSrc = c.aluSrc;
-		TokenType insGroup = pipeline[2].getInstruction().getMnemonic().type;
-		int[] a = pipeline[2].getInstruction().getArgs();
+		int stage = configuration.getExecuteStage();
+		ControlUnitConfiguration c = pipeline[stage].getInstruction().getControlSignals();
+		// BL, BR and the pseudo instructions have no control signals
+		if (c != null) {
+			IDEX_WB_RegWrite = asserted(c.regWrite);
+			IDEX_WB_MemToReg = asserted(c.memToReg);
+			IDEX_M_MemRead = asserted(c.memRead);
+			IDEX_M_MemWrite = asserted(c.memWrite);
+			IDEX_EX_ALUOpValid = c.aluOp != null;
+			IDEX_EX_ALUOp = IDEX_EX_ALUOpValid ? c.aluOp : 0;
+			IDEX_EX_ALUSrc = asserted(c.aluSrc);
+		}
+		TokenType insGroup = pipeline[stage].getInstruction().getMnemonic().type;
+		int[] a = pipeline[stage].getInstruction().getArgs();
 		switch (insGroup) {
 		case MNEMONIC_RRR :
 			IDEX_Rd = a[0];
 			IDEX_Rn = a[1];
 			IDEX_Rm = a[2];
-			IDEX_ReadData1 = pipeline[2].getSnapshotBefore().getRegister(a[1]);
-			IDEX_ReadData2 = pipeline[2].getSnapshotBefore().getRegister(a[2]);
+			IDEX_ReadData1 = registerBefore(stage, a[1]);
+			IDEX_ReadData1Valid = true;
+			IDEX_ReadData2 = registerBefore(stage, a[2]);
+			IDEX_ReadData2Valid = true;
 			break;
 		case MNEMONIC_RRI :
 			IDEX_Rd = a[0];
 			IDEX_Rn = a[1];
-			IDEX_ReadData1 = pipeline[2].getSnapshotBefore().getRegister(a[1]);
+			IDEX_ReadData1 = registerBefore(stage, a[1]);
+			IDEX_ReadData1Valid = true;
 			break;
 		case MNEMONIC_RM :
 			if (IDEX_WB_RegWrite) {
 				IDEX_Rd = a[0];
 				IDEX_Rn = a[1];
-				IDEX_ReadData1 = pipeline[2].getSnapshotBefore().getRegister(a[1])+a[2];
+				IDEX_ReadData1 = registerBefore(stage, a[1])+a[2];
+				IDEX_ReadData1Valid = true;
 			} else {
 				IDEX_Rn = a[1];
 				IDEX_Rm = a[0];
-				IDEX_ReadData1 = pipeline[2].getSnapshotBefore().getRegister(a[1]);
-				IDEX_ReadData2 = pipeline[2].getSnapshotBefore().getRegister(a[0]);
+				IDEX_ReadData1 = registerBefore(stage, a[1]);
+				IDEX_ReadData1Valid = true;
+				IDEX_ReadData2 = registerBefore(stage, a[0]);
+				IDEX_ReadData2Valid = true;
 			}
 			break;
 		case MNEMONIC_RRM :
 			IDEX_Rd = a[1];
 			IDEX_Rn = a[2];
 			IDEX_Rm = a[0];
-			IDEX_ReadData1 = pipeline[2].getSnapshotBefore().getRegister(a[1]);
-			IDEX_ReadData2 = pipeline[2].getSnapshotBefore().getRegister(a[0]);
+			IDEX_ReadData1 = registerBefore(stage, a[1]);
+			IDEX_ReadData1Valid = true;
+			IDEX_ReadData2 = registerBefore(stage, a[0]);
+			IDEX_ReadData2Valid = true;
 			break;
 		case MNEMONIC_RISI :
 			IDEX_Rd = a[0];
@@ -416,38 +1020,49 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 	
 	// Updates the values held in the EXMEM pipeline register
 	private void updateEXMEM() {
-		ControlUnitConfiguration c = pipeline[3].getInstruction().getControlSignals();
-		EXMEM_WB_RegWrite = c.regWrite;
-		EXMEM_WB_MemToReg = c.memToReg;
-		EXMEM_M_MemRead = c.memRead;
-		EXMEM_M_MemWrite = c.memWrite;
-		int[] a = pipeline[3].getInstruction().getArgs();
-		TokenType insGroup = pipeline[3].getInstruction().getMnemonic().type;
+		int stage = configuration.getMemoryStage();
+		ControlUnitConfiguration c = pipeline[stage].getInstruction().getControlSignals();
+		// BL, BR and the pseudo instructions have no control signals
+		if (c != null) {
+			EXMEM_WB_RegWrite = asserted(c.regWrite);
+			EXMEM_WB_MemToReg = asserted(c.memToReg);
+			EXMEM_M_MemRead = asserted(c.memRead);
+			EXMEM_M_MemWrite = asserted(c.memWrite);
+		}
+		int[] a = pipeline[stage].getInstruction().getArgs();
+		TokenType insGroup = pipeline[stage].getInstruction().getMnemonic().type;
 		switch (insGroup) {
 		case MNEMONIC_RRR :
 			EXMEM_Rd = a[0];
-			EXMEM_ALUResult = pipeline[3].getSnapshotAfter().getRegister(a[0]);
+			EXMEM_ALUResult = registerAfter(stage, a[0]);
+			EXMEM_ALUResultValid = true;
 			break;
 		case MNEMONIC_RRI :
 			EXMEM_Rd = a[0];
-			EXMEM_ALUResult = pipeline[3].getSnapshotAfter().getRegister(a[0]);
+			EXMEM_ALUResult = registerAfter(stage, a[0]);
+			EXMEM_ALUResultValid = true;
 			break;
 		case MNEMONIC_RM :
 			if (EXMEM_WB_RegWrite) {
 				EXMEM_Rd = a[0];
 			} else {
-				EXMEM_WriteDataMem = pipeline[3].getSnapshotBefore().getRegister(a[0]);
+				EXMEM_WriteDataMem = registerBefore(stage, a[0]);
+				EXMEM_WriteDataMemValid = true;
 			}
-			EXMEM_ALUResult = pipeline[3].getSnapshotBefore().getRegister(a[1])+a[2];
+			EXMEM_ALUResult = registerBefore(stage, a[1])+a[2];
+			EXMEM_ALUResultValid = true;
 			break;
 		case MNEMONIC_RRM :
-			EXMEM_ALUResult = pipeline[3].getSnapshotBefore().getRegister(a[2])+a[3];
-			EXMEM_WriteDataMem = pipeline[3].getSnapshotBefore().getRegister(a[0]);
+			EXMEM_ALUResult = registerBefore(stage, a[2])+a[3];
+			EXMEM_ALUResultValid = true;
+			EXMEM_WriteDataMem = registerBefore(stage, a[0]);
+			EXMEM_WriteDataMemValid = true;
 			EXMEM_Rd = a[1];
 			break;
 		case MNEMONIC_RISI :
 			EXMEM_Rd = a[0];
-			EXMEM_ALUResult = pipeline[3].getSnapshotAfter().getRegister(a[0]);
+			EXMEM_ALUResult = registerAfter(stage, a[0]);
+			EXMEM_ALUResultValid = true;
 			break;
 		default:
 			break;
@@ -456,69 +1071,119 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 	
 	// Updates the values held in the MEMWB pipeline register
 	private void updateMEMWB() {
-		ControlUnitConfiguration c = pipeline[4].getInstruction().getControlSignals();
-		MEMWB_WB_RegWrite = c.regWrite;
-		MEMWB_WB_MemToReg = c.memToReg;
-		int[] a = pipeline[4].getInstruction().getArgs();
-		TokenType insGroup = pipeline[4].getInstruction().getMnemonic().type;
+		int stage = configuration.getWriteBackStage();
+		ControlUnitConfiguration c = pipeline[stage].getInstruction().getControlSignals();
+		// BL, BR and the pseudo instructions have no control signals
+		if (c != null) {
+			MEMWB_WB_RegWrite = asserted(c.regWrite);
+			MEMWB_WB_MemToReg = asserted(c.memToReg);
+		}
+		int[] a = pipeline[stage].getInstruction().getArgs();
+		TokenType insGroup = pipeline[stage].getInstruction().getMnemonic().type;
 		switch (insGroup) {
 		case MNEMONIC_RRR :
 			MEMWB_Rd = a[0];
-			MEMWB_ALUResult = pipeline[4].getSnapshotAfter().getRegister(a[0]);
+			MEMWB_ALUResult = registerAfter(stage, a[0]);
+			MEMWB_ALUResultValid = true;
 			break;
 		case MNEMONIC_RRI :
 			MEMWB_Rd = a[0];
-			MEMWB_ALUResult = pipeline[4].getSnapshotAfter().getRegister(a[0]);
+			MEMWB_ALUResult = registerAfter(stage, a[0]);
+			MEMWB_ALUResultValid = true;
 			break;
 		case MNEMONIC_RM :
 			if (MEMWB_WB_RegWrite) {
 				MEMWB_Rd = a[0];
-				MEMWB_ReadDataMem = pipeline[4].getSnapshotAfter().getRegister(a[0]);
+				MEMWB_ReadDataMem = registerAfter(stage, a[0]);
+				MEMWB_ReadDataMemValid = true;
 			}
-			MEMWB_ALUResult = pipeline[4].getSnapshotBefore().getRegister(a[1])+a[2];
+			MEMWB_ALUResult = registerBefore(stage, a[1])+a[2];
+			MEMWB_ALUResultValid = true;
 			break;
 		case MNEMONIC_RRM :
-			MEMWB_ALUResult = pipeline[4].getSnapshotBefore().getRegister(a[2])+a[3];
-			MEMWB_ReadDataMem = pipeline[4].getSnapshotAfter().getRegister(a[1]);
+			MEMWB_ALUResult = registerBefore(stage, a[2])+a[3];
+			MEMWB_ALUResultValid = true;
+			MEMWB_ReadDataMem = registerAfter(stage, a[1]);
+			MEMWB_ReadDataMemValid = true;
 			MEMWB_Rd = a[1];
 			break;
 		case MNEMONIC_RISI :
 			MEMWB_Rd = a[0];
-			MEMWB_ALUResult = pipeline[4].getSnapshotAfter().getRegister(a[0]);
+			MEMWB_ALUResult = registerAfter(stage, a[0]);
+			MEMWB_ALUResultValid = true;
 			break;
 		default:
 			break;
 		}
 	}
 	
+	/*
+	 * The value of a register before the instruction at the given stage of the pipeline was executed. The CPU 
+	 * has already executed every instruction in the pipeline, so if the instruction or a later one writes to 
+	 * the register the value is the one the earliest of them overwrote.
+	 */
+	private long registerBefore(int stage, int register) {
+		for (int i=stage; i>=0; i--) {
+			if (pipeline[i] != null && pipeline[i].getRegister() == register) {
+				return pipeline[i].getRegisterBefore();
+			}
+		}
+		return cpu.getRegister(register);
+	}
+	
+	// the value of a register after the instruction at the given stage of the pipeline was executed
+	private long registerAfter(int stage, int register) {
+		if (pipeline[stage].getRegister() == register) {
+			return pipeline[stage].getRegisterAfter();
+		}
+		return registerBefore(stage, register);
+	}
+	
+	/*
+	 * The earliest executed instruction that has not reached the write-back stage. The visible state is the 
+	 * state before this instruction, or that of the CPU if there is none.
+	 */
+	private PipelineInstruction firstNotWrittenBack() {
+		for (int i=pipeline.length-2; i>=0; i--) {
+			if (pipeline[i] != null && pipeline[i].getExecuted()) {
+				return pipeline[i];
+			}
+		}
+		return null;
+	}
+	
 	@Override
 	public long getCPURegister(int index) {
-		return visibleState.getRegister(index);
+		return registerBefore(pipeline.length-2, index);
 	}
 	
 	@Override
 	public boolean getCPUZflag() {
-		return visibleState.getZflag();
+		PipelineInstruction ins = firstNotWrittenBack();
+		return ins == null ? cpu.getZflag() : ins.getZflagBefore();
 	}
 	
 	@Override
 	public boolean getCPUNflag() {
-		return visibleState.getNflag();
+		PipelineInstruction ins = firstNotWrittenBack();
+		return ins == null ? cpu.getNflag() : ins.getNflagBefore();
 	}
 	
 	@Override
 	public boolean getCPUCflag() {
-		return visibleState.getCflag();
+		PipelineInstruction ins = firstNotWrittenBack();
+		return ins == null ? cpu.getCflag() : ins.getCflagBefore();
 	}
 	
 	@Override
 	public boolean getCPUVflag() {
-		return visibleState.getVflag();
+		PipelineInstruction ins = firstNotWrittenBack();
+		return ins == null ? cpu.getVflag() : ins.getVflagBefore();
 	}
 	
 	@Override
 	public long getPC() {
-		if (pipeline[0] != null && pipeline[0].getSnapshotBefore() != null) {
+		if (pipeline[0] != null && pipeline[0].getExecuted()) {
 			return pipeline[0].getPC()+4;
 		} else {
 			return cpu.getPC();
@@ -548,11 +1213,21 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 		return "MEMWB_WB_RegWrite: " + MEMWB_WB_RegWrite + ", MEMWB_Rd: " + MEMWB_Rd + "\n";
 	}
 	
+	// appends a message to the pipeline log, unless running without the log
+	private void log(String message) {
+		if (logging) {
+			pipelineLog.append(message);
+		}
+	}
+	
 	// Creates a string representation of the pipeline
 	private void logPipeline() {
-		for (int i=0; i<PIPELINE_SIZE; i++) {
+		if (!logging) {
+			return;
+		}
+		for (int i=0; i<pipeline.length; i++) {
 			if (pipeline[i] != null && pipeline[i].getInstruction() != null) {
-				pipelineLog.append(pipeline[i].getInstruction().getMnemonic().nameUpper + " | ");
+				pipelineLog.append(pipeline[i].getInstruction().getMnemonic().nameUpper).append(" | ");
 			} else {
 				pipelineLog.append("bubble | ");
 			}
@@ -566,6 +1241,9 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 	// It could be argued strongly that each pipeline register should be represented by an 
 	// object to make this a cleaner, more hierarchical structure!
 	
+	// Values that not every instruction sets are held as primitives with a flag saying whether the value is 
+	// valid, so that clocking the pipeline does not box them
+	
 	// values stored in IFID pipeline register
 	private long IFID_PC4 = -1;
 	private long IFID_Instruction = -1;
@@ -578,10 +1256,13 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 	private boolean IDEX_WB_MemToReg = false;
 	private boolean IDEX_M_MemRead = false;
 	private boolean IDEX_M_MemWrite = false;
-	private Integer IDEX_EX_ALUOp = null;
+	private int IDEX_EX_ALUOp = 0;
+	private boolean IDEX_EX_ALUOpValid = false;
 	private boolean IDEX_EX_ALUSrc = false;
-	private Long IDEX_ReadData1 = null;
-	private Long IDEX_ReadData2 = null;
+	private long IDEX_ReadData1 = 0;
+	private boolean IDEX_ReadData1Valid = false;
+	private long IDEX_ReadData2 = 0;
+	private boolean IDEX_ReadData2Valid = false;
 	private int IDEX_Rn = -1;
 	private int IDEX_Rm = -1;
 	private int IDEX_Rd = -1;
@@ -591,30 +1272,98 @@ public class PipelinedSimulator extends LEGv8_Simulator {
 	private boolean EXMEM_WB_MemToReg = false;
 	private boolean EXMEM_M_MemRead =  false;
 	private boolean EXMEM_M_MemWrite = false;
-	private Long EXMEM_ALUResult = null;
-	private Long EXMEM_WriteDataMem = null;
+	private long EXMEM_ALUResult = 0;
+	private boolean EXMEM_ALUResultValid = false;
+	private long EXMEM_WriteDataMem = 0;
+	private boolean EXMEM_WriteDataMemValid = false;
 	private int EXMEM_Rd = -1;
 	
 	// values stored in the MEMWB pipeline refister
 	private boolean MEMWB_WB_RegWrite = false;
 	private boolean MEMWB_WB_MemToReg = false;
-	private Long MEMWB_ReadDataMem = null;
-	private Long MEMWB_ALUResult = null;
+	private long MEMWB_ReadDataMem = 0;
+	private boolean MEMWB_ReadDataMemValid = false;
+	private long MEMWB_ALUResult = 0;
+	private boolean MEMWB_ALUResultValid = false;
 	private int MEMWB_Rd = -1;
 	
 	// data hazard variables
 	private boolean dataHazardStall = false;
 	private boolean branchDataHazardStall = false;
+	private boolean loadUseStall = false;
 	private boolean EXHazard = false;
 	private boolean MEMHazard = false;
 	private boolean forwardA = false;
 	private boolean forwardB = false;
 	//control hazard variables
 	private boolean controlHazardStall = false;
-	private Instruction nextInstruction;
+	// the number of clocks the load or store in the last memory access stage has still to wait
+	private int memoryStall = 0;
 	
 	private StringBuilder pipelineLog = new StringBuilder("");
-	private CPUSnapshot visibleState;
-	// array representing the pipeline
-	private PipelineInstruction[] pipeline = new PipelineInstruction[PIPELINE_SIZE];
+	private boolean logging = true;
+	// whether instructions that leave the pipeline are reused, while running to completion
+	private boolean reusing = false;
+	private BranchPredictor branchPredictor = new NotTakenPredictor();
+	private CacheHierarchy cacheHierarchy;
+	
+	// counted on every clock, and reported for the cycles clocked by runToCompletion
+	private long cycles;
+	private long instructions;
+	private long dataHazardStalls;
+	private long loadUseStalls;
+	private long memoryStalls;
+	private long controlHazardFlushes;
+	private long EXForwards;
+	private long MEMForwards;
+	private long branches;
+	private long mispredictions;
+	// array representing the pipeline, one element per stage
+	private final PipelineInstruction[] pipeline;
+	private final PipelineConfiguration configuration;
+	// whether the configuration is the default pipeline, whose hazards are detected as before
+	private final boolean fiveStage;
+	// the instructions of the program, one per index, so that none is created again as it is fetched
+	private final Instruction[] programInstructions;
+	// instructions that have left the pipeline, to be reused by the next to enter it
+	private final PipelineInstruction[] spare;
+	private int spareCount;
+	
+	// the state of the pipeline before each clock that can be undone, indexed by the slot of the clock in 
+	// the history; the instructions in the pipeline are held one per stage per slot
+	private PipelineInstruction[] pipelineHistory;
+	private byte[] hazardHistory;
+	private int[] memoryStallHistory;
+	private int[] lineNumberHistory;
+	private int[] logLengthHistory;
+	private Error[] runtimeErrorHistory;
+	
+	private static final int DATA_HAZARD_STALL = 1;
+	private static final int BRANCH_DATA_HAZARD_STALL = 2;
+	private static final int CONTROL_HAZARD_STALL = 4;
+	private static final int EX_HAZARD = 8;
+	private static final int MEM_HAZARD = 16;
+	private static final int FORWARD_A = 32;
+	private static final int FORWARD_B = 64;
+	private static final int LOAD_USE_STALL = 128;
+	
+	// the pipeline when a checkpoint is taken
+	private static final class ViewState {
+		
+		ViewState(PipelinedSimulator sim) {
+			pipeline = sim.pipeline.clone();
+			hazards = sim.hazards();
+			memoryStall = sim.memoryStall;
+			currentLineNumber = sim.currentLineNumber;
+			logLength = sim.pipelineLog.length();
+			runtimeError = sim.runtimeError;
+		}
+		
+		final PipelineInstruction[] pipeline;
+		final int hazards;
+		final int memoryStall;
+		final int currentLineNumber;
+		final int logLength;
+		final Error runtimeError;
+	}
 }
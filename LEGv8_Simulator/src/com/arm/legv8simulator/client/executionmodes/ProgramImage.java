@@ -0,0 +1,139 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.instruction.Instruction;
+import com.arm.legv8simulator.client.instruction.MachineCode;
+import com.arm.legv8simulator.client.lexer.TextLine;
+
+/**
+ * A <code>ProgramImage</code> is an assembled LEGv8 program held as machine code, one 32-bit word per
+ * instruction, together with the editor line of each instruction, whether the <code>Decoder</code> gave it
+ * control signals, the branch table and the compile errors. An image can be stored and later loaded into a
+ * <code>LEGv8_Simulator</code> without lexing or parsing the source again. As when assembling from source, 
+ * the instructions which failed to decode are left out of the image of a program with compile errors.
+ * <p>
+ * The instructions are decoded from the machine code once, when the image is created. The pseudo
+ * instructions, <code>BR</code> and <code>BL</code> have no control signals, as when they are decoded from
+ * source. Since the source lines are not part of the image, <code>getCode</code> returns an empty list.
+ *
+ * @see MachineCode
+ * @see AssembledProgram
+ */
+public class ProgramImage implements AssembledProgram {
+
+	/**
+	 * @param text			the machine code of the program, as returned by <code>MachineCode.encode</code>
+	 * @param lineNumbers		the line in the code editor of each instruction
+	 * @param controlSignals	<code>true</code> for each instruction the <code>Decoder</code> gives control signals
+	 * @param branchTable		the table mapping labels to instruction indices
+	 * @throws IllegalArgumentException	if a word of <code>text</code> is not a supported instruction
+	 */
+	public ProgramImage(int[] text, int[] lineNumbers, boolean[] controlSignals, HashMap<String, Integer> branchTable) {
+		this(text, lineNumbers, controlSignals, branchTable, new ArrayList<Error>());
+	}
+
+	/**
+	 * @param text			the machine code of the program, as returned by <code>MachineCode.encode</code>
+	 * @param lineNumbers		the line in the code editor of each instruction
+	 * @param controlSignals	<code>true</code> for each instruction the <code>Decoder</code> gives control signals
+	 * @param branchTable		the table mapping labels to instruction indices
+	 * @param compileErrors	the compile errors found when assembling the program
+	 * @throws IllegalArgumentException	if a word of <code>text</code> is not a supported instruction
+	 */
+	public ProgramImage(int[] text, int[] lineNumbers, boolean[] controlSignals, HashMap<String, Integer> branchTable, 
+			ArrayList<Error> compileErrors) {
+		if (text.length != lineNumbers.length) {
+			throw new IllegalArgumentException("Expected " + text.length + " line numbers, found " + lineNumbers.length);
+		}
+		if (text.length != controlSignals.length) {
+			throw new IllegalArgumentException("Expected " + text.length + " control signal flags, found " 
+					+ controlSignals.length);
+		}
+		this.text = text;
+		this.lineNumbers = lineNumbers;
+		this.controlSignals = controlSignals;
+		this.branchTable = branchTable;
+		this.compileErrors = compileErrors;
+		cpuInstructions = MachineCode.decode(text, lineNumbers);
+		for (int i=0; i<cpuInstructions.size(); i++) {
+			Instruction ins = cpuInstructions.get(i);
+			if (ins == null) {
+				throw new IllegalArgumentException("Unsupported instruction word at index " + i);
+			}
+			if (!controlSignals[i]) {
+				cpuInstructions.set(i, new Instruction(ins.getMnemonic(), ins.getArgs(), ins.getLineNumber(), null));
+			}
+		}
+	}
+
+	/**
+	 * @param program	an assembled program
+	 * @return			the machine code image of <code>program</code>, with its compile errors
+	 * @throws IllegalArgumentException	if <code>program</code> has a branch target out of range of its format
+	 */
+	public static ProgramImage fromProgram(AssembledProgram program) {
+		ArrayList<Instruction> instructions = program.getInstructions();
+		int[] lineNumbers = new int[instructions.size()];
+		boolean[] controlSignals = new boolean[instructions.size()];
+		for (int i=0; i<lineNumbers.length; i++) {
+			lineNumbers[i] = instructions.get(i).getLineNumber();
+			controlSignals[i] = instructions.get(i).getControlSignals() != null;
+		}
+		return new ProgramImage(MachineCode.encode(instructions), lineNumbers, controlSignals,
+				new HashMap<String, Integer>(program.getBranchTable()), new ArrayList<Error>(program.getCompileErrors()));
+	}
+
+	/**
+	 * @return	the machine code of the program, one word per instruction
+	 */
+	public int[] getText() {
+		return text;
+	}
+
+	/**
+	 * @return	the line in the code editor of each instruction
+	 */
+	public int[] getLineNumbers() {
+		return lineNumbers;
+	}
+
+	/**
+	 * @return	<code>true</code> for each instruction with control signals
+	 */
+	public boolean[] getControlSignals() {
+		return controlSignals;
+	}
+
+	/**
+	 * @return	an empty list, the source lines are not part of the image
+	 */
+	@Override
+	public ArrayList<TextLine> getCode() {
+		return new ArrayList<TextLine>();
+	}
+
+	@Override
+	public ArrayList<Error> getCompileErrors() {
+		return compileErrors;
+	}
+
+	@Override
+	public HashMap<String, Integer> getBranchTable() {
+		return branchTable;
+	}
+
+	@Override
+	public ArrayList<Instruction> getInstructions() {
+		return cpuInstructions;
+	}
+
+	private final int[] text;
+	private final int[] lineNumbers;
+	private final boolean[] controlSignals;
+	private final HashMap<String, Integer> branchTable;
+	private final ArrayList<Error> compileErrors;
+	private final ArrayList<Instruction> cpuInstructions;
+}
@@ -2,6 +2,7 @@ package com.arm.legv8simulator.client.executionmodes;
 
 import java.util.ArrayList;
 
+import com.arm.legv8simulator.client.Error;
 import com.arm.legv8simulator.client.instruction.Instruction;
 import com.arm.legv8simulator.client.lexer.TextLine;
 
@@ -19,17 +20,70 @@ public class SingleCycleSimulator extends LEGv8_Simulator {
 	public SingleCycleSimulator(ArrayList<TextLine> code) {
 		super(code);
 	}
+	
+	/**
+	 * @param program	the assembled program to run
+	 * @see AssembledProgram
+	 */
+	public SingleCycleSimulator(AssembledProgram program) {
+		super(program);
+	}
 
 	/**
 	 * Executes a single instruction updating the CPU state and the current instruction index
 	 */
 	public void executeInstruction() {
+		int slot = recordStep();
+		if (previousIndices == null || previousIndices.length != history.getCapacity()) {
+			previousIndices = new int[history.getCapacity()];
+			currentIndices = new int[history.getCapacity()];
+			lineNumbers = new int[history.getCapacity()];
+			runtimeErrors = new Error[history.getCapacity()];
+		}
+		previousIndices[slot] = previousInstructionIndex;
+		currentIndices[slot] = currentInstructionIndex;
+		lineNumbers[slot] = currentLineNumber;
+		runtimeErrors[slot] = runtimeError;
 		previousInstructionIndex = currentInstructionIndex;
 		currentInstructionIndex = cpu.getInstructionIndex();
-		previousInstruction = currentInstruction;
-		currentInstruction = cpuInstructions.get(cpu.getInstructionIndex());
-		currentLineNumber = cpuInstructions.get(cpu.getInstructionIndex()).getLineNumber();
-		runtimeError = cpu.executeInstruction(cpuInstructions, memory);
+		executed++;
+		currentLineNumber = program.getLineNumber(currentInstructionIndex);
+		runtimeError = cpu.executeInstruction(program, memory);
+	}
+	
+	@Override
+	public boolean stepBack() {
+		int slot = undoStep();
+		if (slot < 0) {
+			return false;
+		}
+		previousInstructionIndex = previousIndices[slot];
+		currentInstructionIndex = currentIndices[slot];
+		currentLineNumber = lineNumbers[slot];
+		runtimeError = runtimeErrors[slot];
+		runtimeErrors[slot] = null;
+		executed--;
+		return true;
+	}
+	
+	@Override
+	protected void replayStep() {
+		executeInstruction();
+	}
+	
+	@Override
+	protected Object saveViewState() {
+		return new ViewState(this);
+	}
+	
+	@Override
+	protected void restoreViewState(Object state) {
+		ViewState view = (ViewState) state;
+		previousInstructionIndex = view.previousInstructionIndex;
+		currentInstructionIndex = view.currentInstructionIndex;
+		currentLineNumber = view.currentLineNumber;
+		runtimeError = view.runtimeError;
+		executed = view.executed;
 	}
 	
 	/**
@@ -53,7 +107,7 @@ public class SingleCycleSimulator extends LEGv8_Simulator {
 	 * <code>null</code> if never previously called.
 	 */
 	public Instruction getPreviousInstruction() {
-		return previousInstruction;
+		return executed < 2 ? null : program.getInstruction(previousInstructionIndex);
 	}
 	
 	/**
@@ -61,7 +115,7 @@ public class SingleCycleSimulator extends LEGv8_Simulator {
 	 * <code>null</code> if never previously called.
 	 */
 	public Instruction getCurrentInstruction() {
-		return currentInstruction;
+		return executed < 1 ? null : program.getInstruction(currentInstructionIndex);
 	}
 	
 	/**
@@ -82,6 +136,29 @@ public class SingleCycleSimulator extends LEGv8_Simulator {
 	
 	private int currentInstructionIndex = 0;
 	private int previousInstructionIndex = 0;
-	private Instruction currentInstruction;
-	private Instruction previousInstruction;
+	// the number of calls to executeInstruction, the instructions are created from the program when requested
+	private long executed = 0;
+	// the state above before each step that can be undone, indexed by the slot of the step in the history
+	private int[] previousIndices;
+	private int[] currentIndices;
+	private int[] lineNumbers;
+	private Error[] runtimeErrors;
+	
+	// the state above when a checkpoint is taken
+	private static final class ViewState {
+		
+		ViewState(SingleCycleSimulator sim) {
+			previousInstructionIndex = sim.previousInstructionIndex;
+			currentInstructionIndex = sim.currentInstructionIndex;
+			currentLineNumber = sim.currentLineNumber;
+			runtimeError = sim.runtimeError;
+			executed = sim.executed;
+		}
+		
+		final int previousInstructionIndex;
+		final int currentInstructionIndex;
+		final int currentLineNumber;
+		final Error runtimeError;
+		final long executed;
+	}
 }
@@ -155,6 +155,38 @@ public class Decoder {
 		}
 	}
 
+	/**
+	 * @param mnemonic	the instruction mnemonic
+	 * @param args		the array of arguments (in string form) for this instruction
+	 * @return			the label whose entry in the branch table is used to decode this instruction; 
+	 * 					<code>null</code> if the instruction does not branch to a label
+	 */
+	public static String getLabelArgument(Mnemonic mnemonic, ArrayList<String> args) {
+		switch (mnemonic) {
+		case CBZ :
+		case CBNZ :
+			return args.get(1);
+		case BEQ :
+		case BNE :
+		case BHS :
+		case BLO :
+		case BHI :
+		case BLS :
+		case BGE :
+		case BLT :
+		case BGT :
+		case BLE :
+		case BMI :
+		case BPL :
+		case BVS :
+		case BVC :
+		case B :
+		case BL :
+			return args.get(0);
+		default : return null;
+		}
+	}
+
 	private static int[] decodeRArgs(ArrayList<String> args) {
 		int[] operands = new int[1];
 		operands[0] = decodeRegister(args.get(0));
@@ -178,7 +210,7 @@ public class Decoder {
 	}
 	
 	private static int[] decodeRRRArgs(ArrayList<String> args) {
-		int[] operands = new int[2];
+		int[] operands = new int[3];
 		operands[0] = decodeRegister(args.get(0));
 		operands[1] = decodeRegister(args.get(1));
 		operands[2] = decodeRegister(args.get(2));
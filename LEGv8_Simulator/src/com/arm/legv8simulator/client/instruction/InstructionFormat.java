@@ -0,0 +1,53 @@
+package com.arm.legv8simulator.client.instruction;
+
+/**
+ * The <code>InstructionFormat</code> enumeration defines the LEGv8 machine code formats, 
+ * as defined in Patterson and Hennessy ARM Edition, and the width of the opcode of each.
+ * 
+ * @see MachineCode
+ */
+public enum InstructionFormat {
+	R(11),
+	I(10),
+	D(11),
+	B(6),
+	CB(8),
+	IW(9);
+	
+	private InstructionFormat(int opcodeWidth) {
+		this.opcodeWidth = opcodeWidth;
+	}
+	
+	/**
+	 * @param mnemonic	a LEGv8 instruction mnemonic
+	 * @return			the format of the instruction; <code>null</code> if <code>mnemonic</code> is a 
+	 * 					pseudo instruction
+	 */
+	public static InstructionFormat of(Mnemonic mnemonic) {
+		switch (mnemonic) {
+		case ADDI : case ADDIS : case SUBI : case SUBIS : 
+		case ANDI : case ANDIS : case ORRI : case EORI :
+			return I;
+		case LSL : case LSR : case BR :
+			return R;
+		case CMP : case CMPI : case MOV :
+			return null;
+		default :
+			break;
+		}
+		switch (mnemonic.type) {
+		case MNEMONIC_RRR : return R;
+		case MNEMONIC_RM : return D;
+		case MNEMONIC_RRM : return D;
+		case MNEMONIC_RISI : return IW;
+		case MNEMONIC_RL : return CB;
+		case MNEMONIC_L : return mnemonic == Mnemonic.B || mnemonic == Mnemonic.BL ? B : CB;
+		default : return null;
+		}
+	}
+	
+	/**
+	 * The number of bits in the opcode field, which is always at the top of the instruction word
+	 */
+	public final int opcodeWidth;
+}
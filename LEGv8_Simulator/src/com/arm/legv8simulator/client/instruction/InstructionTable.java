@@ -0,0 +1,289 @@
+package com.arm.legv8simulator.client.instruction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.ControlUnitConfiguration;
+
+/**
+ * An <code>InstructionTable</code> is a read-only view of the decoded instructions of a LEGv8 program,
+ * stored as parallel arrays of primitives indexed by instruction index rather than as one
+ * <code>Instruction</code> object per instruction. Executing the program reads consecutive elements of
+ * a few small arrays instead of following references to each instruction and its argument array.
+ * <p>
+ * The operands of each instruction are held in the fields of its machine code format:
+ * <ul>
+ * <li>Rd - the destination register, Rt of loads, stores, CBZ and CBNZ</li>
+ * <li>Rn - the first operand register, the base register of loads and stores, the target register of BR</li>
+ * <li>Rm - the second operand register, Rs of STXR</li>
+ * <li>immediate - the immediate operand or offset, the target instruction index of branches</li>
+ * <li>shift amount - the shift of LSL and LSR, the shift of the immediate of MOVZ and MOVK</li>
+ * </ul>
+ * Fields an instruction does not use are 0.
+ * <p>
+ * Two tables are equal if they hold the same instructions on the same lines, however they were built.
+ *
+ * @see Instruction
+ * @see InstructionFormat
+ */
+public class InstructionTable {
+
+	/**
+	 * @param cpuInstructions	the list of <code>Instruction</code>s in the LEGv8 assembly program
+	 */
+	public InstructionTable(ArrayList<Instruction> cpuInstructions) {
+		int size = cpuInstructions.size();
+		mnemonics = new byte[size];
+		rd = new byte[size];
+		rn = new byte[size];
+		rm = new byte[size];
+		immediates = new int[size];
+		shiftAmounts = new byte[size];
+		lineNumbers = new int[size];
+		controlSignals = new byte[size];
+		for (int i=0; i<size; i++) {
+			Instruction ins = cpuInstructions.get(i);
+			Mnemonic m = ins.getMnemonic();
+			int[] a = ins.getArgs();
+			mnemonics[i] = (byte) m.ordinal();
+			lineNumbers[i] = ins.getLineNumber();
+			controlSignals[i] = ins.getControlSignals() == null ? NO_CONTROL_SIGNALS : (byte) ins.getControlSignals().ordinal();
+			switch (layout(m)) {
+			case RRR :
+				rd[i] = (byte) a[0];
+				rn[i] = (byte) a[1];
+				rm[i] = (byte) a[2];
+				break;
+			case RRI :
+			case RM :
+				rd[i] = (byte) a[0];
+				rn[i] = (byte) a[1];
+				immediates[i] = a[2];
+				break;
+			case SHIFT :
+				rd[i] = (byte) a[0];
+				rn[i] = (byte) a[1];
+				shiftAmounts[i] = (byte) a[2];
+				break;
+			case RRM :
+				rd[i] = (byte) a[0];
+				rm[i] = (byte) a[1];
+				rn[i] = (byte) a[2];
+				immediates[i] = a[3];
+				break;
+			case RISI :
+				rd[i] = (byte) a[0];
+				immediates[i] = a[1];
+				shiftAmounts[i] = (byte) a[2];
+				break;
+			case RL :
+				rd[i] = (byte) a[0];
+				immediates[i] = a[1];
+				break;
+			case L :
+				immediates[i] = a[0];
+				break;
+			default :
+				rn[i] = (byte) a[0];
+			}
+		}
+	}
+
+	/**
+	 * @return	the number of instructions in the program
+	 */
+	public int size() {
+		return mnemonics.length;
+	}
+
+	/**
+	 * @param index	the index of an instruction in the program
+	 * @return		the mnemonic of that instruction
+	 */
+	public Mnemonic getMnemonic(int index) {
+		return MNEMONICS[mnemonics[index]];
+	}
+
+	/**
+	 * @param index	the index of an instruction in the program
+	 * @return		the Rd field of that instruction
+	 */
+	public int getRd(int index) {
+		return rd[index];
+	}
+
+	/**
+	 * @param index	the index of an instruction in the program
+	 * @return		the Rn field of that instruction
+	 */
+	public int getRn(int index) {
+		return rn[index];
+	}
+
+	/**
+	 * @param index	the index of an instruction in the program
+	 * @return		the Rm field of that instruction
+	 */
+	public int getRm(int index) {
+		return rm[index];
+	}
+
+	/**
+	 * @param index	the index of an instruction in the program
+	 * @return		the immediate of that instruction
+	 */
+	public int getImmediate(int index) {
+		return immediates[index];
+	}
+
+	/**
+	 * @param index	the index of an instruction in the program
+	 * @return		the shift amount of that instruction
+	 */
+	public int getShiftAmount(int index) {
+		return shiftAmounts[index];
+	}
+
+	/**
+	 * @param index	the index of an instruction in the program
+	 * @return		the line in the code editor of that instruction
+	 */
+	public int getLineNumber(int index) {
+		return lineNumbers[index];
+	}
+
+	/**
+	 * @param index	the index of an instruction in the program
+	 * @return		the control signals required to execute that instruction
+	 */
+	public ControlUnitConfiguration getControlSignals(int index) {
+		return controlSignals[index] == NO_CONTROL_SIGNALS ? null : CONFIGURATIONS[controlSignals[index]];
+	}
+
+	/**
+	 * @param index	the index of an instruction in the program
+	 * @return		the register that instruction writes to, -1 if it writes to no register
+	 */
+	public int getDestinationRegister(int index) {
+		switch (getMnemonic(index)) {
+		case STUR : case STURW : case STURH : case STURB :
+		case CBZ : case CBNZ : case B : case BR :
+		case BEQ : case BNE : case BHS : case BLO : case BHI : case BLS : case BGE :
+		case BLT : case BGT : case BLE : case BMI : case BPL : case BVS : case BVC :
+			return -1;
+		case STXR :
+			return rm[index];
+		case BL :
+			return CPU.LR;
+		default :
+			return rd[index];
+		}
+	}
+
+	/**
+	 * @param index	the index of an instruction in the program
+	 * @return		the arguments of that instruction, as returned by <code>Instruction.getArgs</code>
+	 */
+	public int[] getArgs(int index) {
+		switch (layout(getMnemonic(index))) {
+		case RRR :
+			return new int[]{rd[index], rn[index], rm[index]};
+		case RRI :
+		case RM :
+			return new int[]{rd[index], rn[index], immediates[index]};
+		case SHIFT :
+			return new int[]{rd[index], rn[index], shiftAmounts[index]};
+		case RRM :
+			return new int[]{rd[index], rm[index], rn[index], immediates[index]};
+		case RISI :
+			return new int[]{rd[index], immediates[index], shiftAmounts[index]};
+		case RL :
+			return new int[]{rd[index], immediates[index]};
+		case L :
+			return new int[]{immediates[index]};
+		default :
+			return new int[]{rn[index]};
+		}
+	}
+
+	/**
+	 * Creates an <code>Instruction</code> object equal to the one this table was built from,
+	 * for code that displays a single instruction
+	 *
+	 * @param index	the index of an instruction in the program
+	 * @return		the instruction at that index
+	 */
+	public Instruction getInstruction(int index) {
+		return new Instruction(getMnemonic(index), getArgs(index), lineNumbers[index], getControlSignals(index));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof InstructionTable)) {
+			return false;
+		}
+		InstructionTable other = (InstructionTable) obj;
+		return Arrays.equals(mnemonics, other.mnemonics) && Arrays.equals(rd, other.rd) 
+				&& Arrays.equals(rn, other.rn) && Arrays.equals(rm, other.rm) 
+				&& Arrays.equals(immediates, other.immediates) && Arrays.equals(shiftAmounts, other.shiftAmounts) 
+				&& Arrays.equals(lineNumbers, other.lineNumbers) && Arrays.equals(controlSignals, other.controlSignals);
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = Arrays.hashCode(mnemonics);
+		hash = 31 * hash + Arrays.hashCode(rd);
+		hash = 31 * hash + Arrays.hashCode(rn);
+		hash = 31 * hash + Arrays.hashCode(rm);
+		hash = 31 * hash + Arrays.hashCode(immediates);
+		hash = 31 * hash + Arrays.hashCode(shiftAmounts);
+		hash = 31 * hash + Arrays.hashCode(lineNumbers);
+		hash = 31 * hash + Arrays.hashCode(controlSignals);
+		return hash;
+	}
+
+	/*
+	 * The arrangement of the arguments of each instruction, named after its instruction group
+	 */
+	private enum Layout {
+		RRR, RRI, SHIFT, RM, RRM, RISI, RL, L, R
+	}
+
+	private static Layout layout(Mnemonic m) {
+		switch (m) {
+		case LSL : case LSR :
+			return Layout.SHIFT;
+		case BR :
+			return Layout.R;
+		case STXR :
+			return Layout.RRM;
+		default :
+			break;
+		}
+		switch (m.type) {
+		case MNEMONIC_RRR : return Layout.RRR;
+		case MNEMONIC_RRI : return Layout.RRI;
+		case MNEMONIC_RM : return Layout.RM;
+		case MNEMONIC_RISI : return Layout.RISI;
+		case MNEMONIC_RL : return Layout.RL;
+		default : return Layout.L;
+		}
+	}
+
+	private static final Mnemonic[] MNEMONICS = Mnemonic.values();
+	private static final ControlUnitConfiguration[] CONFIGURATIONS = ControlUnitConfiguration.values();
+	private static final byte NO_CONTROL_SIGNALS = -1;
+
+	private final byte[] mnemonics;
+	private final byte[] rd;
+	private final byte[] rn;
+	private final byte[] rm;
+	private final int[] immediates;
+	private final byte[] shiftAmounts;
+	private final int[] lineNumbers;
+	private final byte[] controlSignals;
+}
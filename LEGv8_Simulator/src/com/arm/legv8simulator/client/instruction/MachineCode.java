@@ -0,0 +1,230 @@
+package com.arm.legv8simulator.client.instruction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.arm.legv8simulator.client.cpu.ControlUnitConfiguration;
+
+/**
+ * <code>MachineCode</code> translates <code>Instruction</code>s to and from 32-bit LEGv8 machine code words
+ * in the R, I, D, B, CB and IW formats defined in Patterson and Hennessy ARM Edition.
+ * <p>
+ * Branch targets are encoded relative to the instruction, in instructions. The condition of a B.cond
+ * instruction is held in its Rt field and the outcome register of STXR in bits 16 to 20, as in ARMv8.
+ * Pseudo instructions are decoded by the <code>Decoder</code> to the instructions they stand for, so
+ * CMP, CMPI and MOV are encoded as SUBS, SUBIS and ORR and are decoded back as such.
+ *
+ * @see Instruction
+ * @see InstructionFormat
+ */
+public class MachineCode {
+
+	private static final int REGISTER_MASK = 0x1F;
+
+	// the condition codes of the B.cond instructions, indexed by their encoding
+	private static final Mnemonic[] CONDITIONS = {Mnemonic.BEQ, Mnemonic.BNE, Mnemonic.BHS, Mnemonic.BLO,
+			Mnemonic.BMI, Mnemonic.BPL, Mnemonic.BVS, Mnemonic.BVC, Mnemonic.BHI, Mnemonic.BLS,
+			Mnemonic.BGE, Mnemonic.BLT, Mnemonic.BGT, Mnemonic.BLE};
+
+	// the opcode widths in the order they are tried when decoding, shortest first, the R and D formats sharing one
+	private static final InstructionFormat[] DECODE_ORDER = {InstructionFormat.B, InstructionFormat.CB,
+			InstructionFormat.IW, InstructionFormat.I, InstructionFormat.R};
+
+	// maps the width and value of an opcode to its mnemonic, B.cond instructions are all mapped to BEQ
+	private static final HashMap<Integer, Mnemonic> OPCODES = new HashMap<Integer, Mnemonic>();
+
+	static {
+		for (Mnemonic m : Mnemonic.values()) {
+			InstructionFormat format = InstructionFormat.of(m);
+			if (format != null && !OPCODES.containsKey(opcodeKey(format.opcodeWidth, opcode(m)))) {
+				OPCODES.put(opcodeKey(format.opcodeWidth, opcode(m)), m);
+			}
+		}
+	}
+
+	/**
+	 * @param instructions	the instructions of a program, each without compile errors
+	 * @return				the machine code of the program, one word per instruction
+	 */
+	public static int[] encode(ArrayList<Instruction> instructions) {
+		int[] text = new int[instructions.size()];
+		for (int i=0; i<text.length; i++) {
+			text[i] = encode(instructions.get(i), i);
+		}
+		return text;
+	}
+
+	/**
+	 * @param instruction	the instruction to encode
+	 * @param index			the index of the instruction in the program, used to encode branch targets
+	 * @return				the 32-bit machine code word for <code>instruction</code>
+	 * @throws IllegalArgumentException	if a branch target is out of range of the format
+	 */
+	public static int encode(Instruction instruction, int index) {
+		Mnemonic m = instruction.getMnemonic();
+		int[] args = instruction.getArgs();
+		InstructionFormat format = InstructionFormat.of(m);
+		int word = opcode(m) << (32 - format.opcodeWidth);
+		switch (format) {
+		case R :
+			if (m == Mnemonic.BR) {
+				// Rm is all ones as in ARMv8
+				return word | REGISTER_MASK << 16 | args[0] << 5;
+			}
+			if (m == Mnemonic.LSL || m == Mnemonic.LSR) {
+				return word | args[2] << 10 | args[1] << 5 | args[0];
+			}
+			return word | args[2] << 16 | args[1] << 5 | args[0];
+		case I :
+			return word | args[2] << 10 | args[1] << 5 | args[0];
+		case D :
+			if (m == Mnemonic.STXR) {
+				return word | args[1] << 16 | args[2] << 5 | args[0];
+			}
+			return word | (args[2] & 0x1FF) << 12 | args[1] << 5 | args[0];
+		case IW :
+			return word | args[2] / 16 << 21 | args[1] << 5 | args[0];
+		case CB :
+			if (m == Mnemonic.CBZ || m == Mnemonic.CBNZ) {
+				return word | offset(args[1] - index, 19) << 5 | args[0];
+			}
+			return word | offset(args[0] - index, 19) << 5 | condition(m);
+		default :
+			return word | offset(args[0] - index, 26);
+		}
+	}
+
+	/**
+	 * @param text			the machine code of a program, as returned by <code>encode</code>
+	 * @param lineNumbers	the line in the code editor of each instruction
+	 * @return				the instructions of the program; an element is <code>null</code> if its word is not
+	 * 						a supported instruction
+	 */
+	public static ArrayList<Instruction> decode(int[] text, int[] lineNumbers) {
+		ArrayList<Instruction> instructions = new ArrayList<Instruction>(text.length);
+		for (int i=0; i<text.length; i++) {
+			instructions.add(decode(text[i], i, lineNumbers[i]));
+		}
+		return instructions;
+	}
+
+	/**
+	 * @param word			a 32-bit machine code word
+	 * @param index			the index of the instruction in the program, used to decode branch targets
+	 * @param lineNumber	the line in the code editor of the instruction
+	 * @return				the decoded instruction; <code>null</code> if <code>word</code> is not a supported instruction
+	 */
+	public static Instruction decode(int word, int index, int lineNumber) {
+		Mnemonic m = null;
+		for (InstructionFormat format : DECODE_ORDER) {
+			m = OPCODES.get(opcodeKey(format.opcodeWidth, word >>> (32 - format.opcodeWidth)));
+			if (m != null) {
+				break;
+			}
+		}
+		if (m == null) {
+			return null;
+		}
+		int rd = word & REGISTER_MASK;
+		int rn = (word >>> 5) & REGISTER_MASK;
+		int[] args;
+		switch (InstructionFormat.of(m)) {
+		case R :
+			if (m == Mnemonic.BR) {
+				args = new int[]{rn};
+			} else if (m == Mnemonic.LSL || m == Mnemonic.LSR) {
+				args = new int[]{rd, rn, (word >>> 10) & 0x3F};
+			} else {
+				args = new int[]{rd, rn, (word >>> 16) & REGISTER_MASK};
+			}
+			break;
+		case I :
+			args = new int[]{rd, rn, (word >>> 10) & 0xFFF};
+			break;
+		case IW :
+			args = new int[]{rd, (word >>> 5) & 0xFFFF, ((word >>> 21) & 0x3) * 16};
+			break;
+		case CB :
+			if (m == Mnemonic.CBZ || m == Mnemonic.CBNZ) {
+				args = new int[]{rd, index + signExtend(word >>> 5, 19)};
+			} else {
+				if (rd >= CONDITIONS.length) {
+					return null;
+				}
+				m = CONDITIONS[rd];
+				args = new int[]{index + signExtend(word >>> 5, 19)};
+			}
+			break;
+		case D :
+			if (m == Mnemonic.STXR) {
+				args = new int[]{rd, (word >>> 16) & REGISTER_MASK, rn, 0};
+			} else {
+				args = new int[]{rd, rn, signExtend(word >>> 12, 9)};
+			}
+			break;
+		default :
+			args = new int[]{index + signExtend(word, 26)};
+		}
+		return new Instruction(m, args, lineNumber, controlSignals(m));
+	}
+
+	/*
+	 * The control signals given to each instruction by the Decoder
+	 */
+	private static ControlUnitConfiguration controlSignals(Mnemonic m) {
+		switch (m) {
+		case ADD : case SUB : case AND : case ORR : case EOR :
+			return ControlUnitConfiguration.RRR;
+		case ADDS : case SUBS : case ANDS :
+			return ControlUnitConfiguration.RRR_FLAGS;
+		case ADDI : case SUBI : case ANDI : case ORRI : case EORI : case LSL : case LSR :
+			return ControlUnitConfiguration.RRI;
+		case ADDIS : case SUBIS : case ANDIS :
+			return ControlUnitConfiguration.RRI_FLAGS;
+		case LDUR : case LDURSW : case LDURH : case LDURB : case LDXR :
+			return ControlUnitConfiguration.RM_LOAD;
+		case STUR : case STURW : case STURH : case STURB :
+			return ControlUnitConfiguration.RM_STORE;
+		case STXR :
+			return ControlUnitConfiguration.RRM;
+		case MOVZ : case MOVK :
+			return ControlUnitConfiguration.RISI;
+		case CBZ : case CBNZ :
+			return ControlUnitConfiguration.RL;
+		case B :
+			return ControlUnitConfiguration.L;
+		case BR : case BL :
+			return null;
+		default :
+			return ControlUnitConfiguration.L_COND;
+		}
+	}
+
+	private static int opcode(Mnemonic m) {
+		return Integer.parseInt(m.opcode, 2);
+	}
+
+	private static Integer opcodeKey(int width, int opcode) {
+		return width << 16 | opcode;
+	}
+
+	private static int condition(Mnemonic m) {
+		for (int i=0; i<CONDITIONS.length; i++) {
+			if (CONDITIONS[i] == m) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException(m + " is not a conditional branch");
+	}
+
+	private static int offset(int offset, int width) {
+		if (offset < -(1 << (width-1)) || offset >= 1 << (width-1)) {
+			throw new IllegalArgumentException("Branch offset " + offset + " does not fit in " + width + " bits");
+		}
+		return offset & ((1 << width) - 1);
+	}
+
+	private static int signExtend(int value, int width) {
+		return value << (32 - width) >> (32 - width);
+	}
+}
@@ -1,37 +1,135 @@
 package com.arm.legv8simulator.client.instruction;
 
 import com.arm.legv8simulator.client.cpu.CPU;
-import com.arm.legv8simulator.client.cpu.CPUSnapshot;
 
 /**
- * <code>PipelineInstruction</code> is a wrapper class for <code>Instruction</code>, used when executing in the 
- * pipelined simulation mode. The extra state is required so that registers and flags can be updated in the 
- * write-back stage rather than when the underlying single cycle <code>CPU</code> executes the instruction. 
- * 
+ * <code>PipelineInstruction</code> is a wrapper class for <code>Instruction</code>, used when executing in the
+ * pipelined simulation mode. The extra state is required so that registers and flags can be updated in the
+ * write-back stage rather than when the underlying single cycle <code>CPU</code> executes the instruction.
+ * <p>
+ * Rather than a copy of the whole CPU state before and after the instruction, only what the instruction
+ * changes is kept: the register it writes to with its value before and after, and the flags before. The
+ * state seen at any stage of the pipeline can be rebuilt from the <code>CPU</code> by undoing the changes of
+ * the instructions in the earlier stages.
+ *
  * @see Instruction
- * @see CPUSnpashot
  * @see CPU
- * 
+ *
  * @author Jonathan Wright, 2016
  */
 public class PipelineInstruction {
 
 	/**
+	 * Creates an instruction that enters the pipeline without being executed by the <code>CPU</code>, i.e. a
+	 * branch delay instruction that will be flushed
+	 *
+	 * @param instruction	the <code>Instruction</code> in the pipeline
+	 * @param PC			the value of the PC, which points to <code>instruction</code>
+	 *
+	 * @see Instruction
+	 */
+	public PipelineInstruction(Instruction instruction, long PC) {
+		reset(instruction, PC);
+	}
+	
+	/**
+	 * Records the state of the <code>CPU</code> that <code>instruction</code> will overwrite. Must be
+	 * followed by <code>setExecuted</code> once the CPU has executed the instruction.
+	 *
 	 * @param instruction	the <code>Instruction</code> to be executed
-	 * @param before		the CPU state before <code>instruction</code> is executed
-	 * @param after			the CPU state after <code>instruction</code> is executed
 	 * @param PC			the value of the PC, which points to <code>instruction</code>
-	 * @param branchTaken	whether a branch was taken on this instruction			
-	 * 
+	 * @param register		the register <code>instruction</code> writes to, -1 if none
+	 * @param cpu			the <code>CPU</code> about to execute <code>instruction</code>
+	 *
 	 * @see Instruction
-	 * @see CPUSnapshot
+	 * @see InstructionTable#getDestinationRegister
+	 */
+	public PipelineInstruction(Instruction instruction, long PC, int register, CPU cpu) {
+		reset(instruction, PC, register, cpu);
+	}
+	
+	/**
+	 * Reuses this object for an instruction that enters the pipeline without being executed, as if it had 
+	 * just been created. It must have left the pipeline, and nothing may refer to it any more.
+	 *
+	 * @param instruction	the <code>Instruction</code> in the pipeline
+	 * @param PC			the value of the PC, which points to <code>instruction</code>
+	 * 
+	 * @see #PipelineInstruction(Instruction, long)
+	 */
+	public void reset(Instruction instruction, long PC) {
+		reset(instruction, PC, -1);
+		NflagBefore = false;
+		ZflagBefore = false;
+		CflagBefore = false;
+		VflagBefore = false;
+	}
+	
+	/**
+	 * Reuses this object for an instruction to be executed, as if it had just been created. It must have left 
+	 * the pipeline, and nothing may refer to it any more.
+	 *
+	 * @param instruction	the <code>Instruction</code> to be executed
+	 * @param PC			the value of the PC, which points to <code>instruction</code>
+	 * @param register		the register <code>instruction</code> writes to, -1 if none
+	 * @param cpu			the <code>CPU</code> about to execute <code>instruction</code>
+	 * 
+	 * @see #PipelineInstruction(Instruction, long, int, CPU)
 	 */
-	public PipelineInstruction(Instruction instruction, CPUSnapshot before, CPUSnapshot after, long PC, boolean branchTaken) {
+	public void reset(Instruction instruction, long PC, int register, CPU cpu) {
+		reset(instruction, PC, register);
+		if (register >= 0) {
+			registerBefore = cpu.getRegister(register);
+		}
+		NflagBefore = cpu.getNflag();
+		ZflagBefore = cpu.getZflag();
+		CflagBefore = cpu.getCflag();
+		VflagBefore = cpu.getVflag();
+	}
+	
+	private void reset(Instruction instruction, long PC, int register) {
 		this.instruction = instruction;
-		this.before = before;
-		this.after = after;
 		this.PC = PC;
-		this.branchTaken = branchTaken;
+		this.register = register;
+		executed = false;
+		registerBefore = 0;
+		registerAfter = 0;
+		branchTaken = false;
+		mispredicted = false;
+		fetchedIndex = 0;
+		memoryLatency = 0;
+	}
+	
+	/**
+	 * Records the result of the instruction
+	 *
+	 * @param cpu	the <code>CPU</code> that has just executed the instruction
+	 */
+	public void setExecuted(CPU cpu) {
+		executed = true;
+		if (register >= 0) {
+			registerAfter = cpu.getRegister(register);
+		}
+		branchTaken = cpu.getBranchTaken();
+	}
+	
+	/**
+	 * Marks this branch as mispredicted, so the instruction fetched after it must be flushed
+	 * 
+	 * @param fetchedIndex	the index of the instruction fetched after this branch, on the predicted path
+	 */
+	public void setMispredicted(int fetchedIndex) {
+		mispredicted = true;
+		this.fetchedIndex = fetchedIndex;
+	}
+	
+	/**
+	 * Records the time taken by the memory access of this load or store in the data caches
+	 * 
+	 * @param memoryLatency	the number of cycles taken by the access
+	 */
+	public void setMemoryLatency(int memoryLatency) {
+		this.memoryLatency = memoryLatency;
 	}
 	
 	/**
@@ -42,17 +140,59 @@ public class PipelineInstruction {
 	}
 	
 	/**
-	 * @return	 a reference to the <code>CPUSnapshot</code> before this instruction is executed
+	 * @return	whether the <code>CPU</code> has executed this instruction
 	 */
-	public CPUSnapshot getSnapshotBefore() {
-		return before;
+	public boolean getExecuted() {
+		return executed;
 	}
 	
 	/**
-	 * @return	a reference to the <code>CPUSnapshot</code> after this instruction is executed
+	 * @return	the register this instruction writes to, -1 if none or if it was not executed
 	 */
-	public CPUSnapshot getSnapshotAfter() {
-		return after;
+	public int getRegister() {
+		return executed ? register : -1;
+	}
+	
+	/**
+	 * @return	the value of the register this instruction writes to, before it is executed
+	 */
+	public long getRegisterBefore() {
+		return registerBefore;
+	}
+	
+	/**
+	 * @return	the value of the register this instruction writes to, after it is executed
+	 */
+	public long getRegisterAfter() {
+		return registerAfter;
+	}
+	
+	/**
+	 * @return	the value of the N flag before this instruction is executed
+	 */
+	public boolean getNflagBefore() {
+		return NflagBefore;
+	}
+	
+	/**
+	 * @return	the value of the Z flag before this instruction is executed
+	 */
+	public boolean getZflagBefore() {
+		return ZflagBefore;
+	}
+	
+	/**
+	 * @return	the value of the C flag before this instruction is executed
+	 */
+	public boolean getCflagBefore() {
+		return CflagBefore;
+	}
+	
+	/**
+	 * @return	the value of the V flag before this instruction is executed
+	 */
+	public boolean getVflagBefore() {
+		return VflagBefore;
 	}
 	
 	/**
@@ -63,15 +203,46 @@ public class PipelineInstruction {
 	}
 	
 	/**
-	 * @return	whether a branch was taken on this instruction 
+	 * @return	whether a branch was taken on this instruction
 	 */
 	public boolean getBranchTaken() {
 		return branchTaken;
 	}
 	
+	/**
+	 * @return	whether this instruction is a branch whose outcome was mispredicted
+	 */
+	public boolean getMispredicted() {
+		return mispredicted;
+	}
+	
+	/**
+	 * @return	the index of the instruction fetched after this branch if it was mispredicted
+	 */
+	public int getFetchedIndex() {
+		return fetchedIndex;
+	}
+	
+	/**
+	 * @return	the number of cycles taken by the memory access of this instruction in the data caches, 0 if it 
+	 * 			made none or was not timed by a cache
+	 */
+	public int getMemoryLatency() {
+		return memoryLatency;
+	}
+	
 	private Instruction instruction;
-	private CPUSnapshot before;
-	private CPUSnapshot after;
 	private long PC;
-	private boolean branchTaken; 
+	private boolean executed;
+	private int register;
+	private long registerBefore;
+	private long registerAfter;
+	private boolean NflagBefore;
+	private boolean ZflagBefore;
+	private boolean CflagBefore;
+	private boolean VflagBefore;
+	private boolean branchTaken;
+	private boolean mispredicted;
+	private int fetchedIndex;
+	private int memoryLatency;
 }
@@ -1,9 +1,7 @@
 package com.arm.legv8simulator.client.lexer;
 
 import java.util.ArrayList;
-
-import com.google.gwt.regexp.shared.MatchResult;
-import com.google.gwt.regexp.shared.RegExp;
+import java.util.HashMap;
 
 /**
  * <code>Lexer</code> is used to process individual lines of LEGv8 source code from the
@@ -16,33 +14,253 @@ import com.google.gwt.regexp.shared.RegExp;
  */
 public class Lexer {
 
+	/*
+	 * The scanner recognises exactly the language defined by the TokenType patterns in a single pass over
+	 * the line. At each position the first TokenType (in declaration order) that matches is chosen, just as
+	 * the alternation of the patterns would, so the first character of a token decides which TokenTypes
+	 * are tried:
+	 *
+	 * 	[ ] ,					the bracket and comma tokens
+	 * 	digit # -				IMMEDIATE, or ERROR if # and - are not followed by a number
+	 * 	letter					REGISTER, then MNEMONIC_*, then LABEL or IDENTIFIER
+	 * 	_						LABEL or IDENTIFIER
+	 * 	space tab				WHITESPACE, which is skipped
+	 * 	other whitespace		skipped, as no pattern matches it
+	 * 	anything else			ERROR, up to the next whitespace character
+	 */
+
 	/**
 	 * @param input	a line of LEGv8 source code
 	 * @return 		the list of lexical tokens found in the <code>input</code>. Whitespace tokens are omitted.
 	 */
 	public static ArrayList<Token> lex(String input) {
-		
+
 		ArrayList<Token> tokens = new ArrayList<Token>();
 
-		// build single regular expression from the groups defined in TokenType class
-		StringBuffer tokenPatternsBuffer = new StringBuffer();
-		for (TokenType type : TokenType.values()) {
-			tokenPatternsBuffer.append("|(" + type.pattern + ")");
-		}
-	
-		// compile the regular expression into GWT's regex engine
-		RegExp tokenPatterns = RegExp.compile(new String(tokenPatternsBuffer.substring(1)), "g");
-		
-		// every time the engine finds a match, add the token to the output arraylist. whitespace tokens are discarded
-		for (MatchResult matcher = tokenPatterns.exec(input); matcher != null; matcher = tokenPatterns.exec(input)) {
-			for (TokenType type: TokenType.values()) {
-				if (type == TokenType.WHITESPACE) { continue; }
-				if (matcher.getGroup(type.groupNumber) != null) {
-					tokens.add(new Token(type, matcher.getGroup(type.groupNumber)));
-					break;
-				} 
+		int length = input.length();
+		int position = 0;
+		while (position < length) {
+			char c = input.charAt(position);
+			int end;
+			TokenType type;
+			if (c == ' ' || c == '\t') {
+				position = skipBlanks(input, position);
+				continue;
+			} else if (c == '[') {
+				type = TokenType.LBRACKET;
+				end = position + 1;
+			} else if (c == ']') {
+				type = TokenType.RBRACKET;
+				end = position + 1;
+			} else if (c == ',') {
+				type = TokenType.COMMA;
+				end = position + 1;
+			} else if (isDigit(c) || c == '#' || c == '-') {
+				end = scanImmediate(input, position);
+				if (end == -1) {
+					type = TokenType.ERROR;
+					end = scanError(input, position);
+				} else {
+					type = TokenType.IMMEDIATE;
+				}
+			} else if (isWordCharacter(c)) {
+				int wordEnd = scanWord(input, position);
+				if ((end = scanRegister(input, position)) != -1) {
+					type = TokenType.REGISTER;
+				} else if ((type = mnemonicType(input, position, wordEnd)) != null) {
+					end = skipBlanks(input, mnemonicEnd(input, position, wordEnd));
+				} else if (wordEnd < length && input.charAt(wordEnd) == ':') {
+					type = TokenType.LABEL;
+					end = wordEnd + 1;
+				} else {
+					type = TokenType.IDENTIFIER;
+					end = wordEnd;
+				}
+			} else if (isWhitespace(c)) {
+				position++;
+				continue;
+			} else {
+				type = TokenType.ERROR;
+				end = scanError(input, position);
 			}
+			tokens.add(new Token(type, input.substring(position, end)));
+			position = end;
 		}
 		return tokens;
 	}
+
+	/*
+	 * Returns the end of the IMMEDIATE starting at position, or -1 if there is none
+	 */
+	private static int scanImmediate(String input, int position) {
+		int length = input.length();
+		if (position < length && input.charAt(position) == '#') {
+			position++;
+		}
+		if (position < length && input.charAt(position) == '-') {
+			position++;
+		}
+		if (position >= length || !isDigit(input.charAt(position))) {
+			return -1;
+		}
+		if (input.charAt(position) == '0' && position+2 < length
+				&& (input.charAt(position+1) == 'x' || input.charAt(position+1) == 'X')
+				&& isHexDigit(input.charAt(position+2))) {
+			position += 2;
+			while (position < length && isHexDigit(input.charAt(position))) {
+				position++;
+			}
+			return position;
+		}
+		while (position < length && isDigit(input.charAt(position))) {
+			position++;
+		}
+		return position;
+	}
+
+	/*
+	 * Returns the end of the REGISTER starting at position, or -1 if there is none. As with the pattern,
+	 * only a prefix of the word need be a register, e.g. X31 is scanned as X3 followed by 1
+	 */
+	private static int scanRegister(String input, int position) {
+		char c = input.charAt(position);
+		char next = charAt(input, position+1);
+		char last = charAt(input, position+2);
+		switch (c) {
+		case 'X' :
+		case 'x' :
+			if ((next == '1' || next == '2') && isDigit(last)) {
+				return position + 3;
+			}
+			if (next == '3' && last == '0') {
+				return position + 3;
+			}
+			if (isDigit(next)) {
+				return position + 2;
+			}
+			if (c == 'X' && next == 'Z' && last == 'R' || c == 'x' && next == 'z' && last == 'r') {
+				return position + 3;
+			}
+			return -1;
+		case 'S' :
+			return next == 'P' ? position + 2 : -1;
+		case 's' :
+			return next == 'p' ? position + 2 : -1;
+		case 'L' :
+			return next == 'R' ? position + 2 : -1;
+		case 'l' :
+			return next == 'r' ? position + 2 : -1;
+		case 'F' :
+			return next == 'P' ? position + 2 : -1;
+		case 'f' :
+			return next == 'p' ? position + 2 : -1;
+		case 'I' :
+			return next == 'P' && (last == '0' || last == '1') ? position + 3 : -1;
+		case 'i' :
+			return next == 'p' && (last == '0' || last == '1') ? position + 3 : -1;
+		default :
+			return -1;
+		}
+	}
+
+	/*
+	 * Returns the MNEMONIC_* type of the word starting at position, or null if it is not a mnemonic.
+	 * A mnemonic must be followed by at least one space or tab
+	 */
+	private static TokenType mnemonicType(String input, int position, int wordEnd) {
+		int end = mnemonicEnd(input, position, wordEnd);
+		char next = charAt(input, end);
+		if (next != ' ' && next != '\t') {
+			return null;
+		}
+		return MNEMONICS.get(input.substring(position, end));
+	}
+
+	/*
+	 * A conditional branch mnemonic continues past the word B with a full stop and two letters
+	 */
+	private static int mnemonicEnd(String input, int position, int wordEnd) {
+		if (wordEnd == position+1 && charAt(input, wordEnd) == '.'
+				&& (input.charAt(position) == 'B' || input.charAt(position) == 'b')) {
+			return Math.min(wordEnd + 3, input.length());
+		}
+		return wordEnd;
+	}
+
+	private static int scanWord(String input, int position) {
+		while (position < input.length() && isWordCharacter(input.charAt(position))) {
+			position++;
+		}
+		return position;
+	}
+
+	private static int scanError(String input, int position) {
+		while (position < input.length() && !isWhitespace(input.charAt(position))) {
+			position++;
+		}
+		return position;
+	}
+
+	private static int skipBlanks(String input, int position) {
+		while (position < input.length() && (input.charAt(position) == ' ' || input.charAt(position) == '\t')) {
+			position++;
+		}
+		return position;
+	}
+
+	private static char charAt(String input, int index) {
+		return index < input.length() ? input.charAt(index) : '\0';
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isHexDigit(char c) {
+		return isDigit(c) || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+	}
+
+	private static boolean isWordCharacter(char c) {
+		return isDigit(c) || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+	}
+
+	/*
+	 * The characters matched by \s in a JavaScript regular expression
+	 */
+	private static boolean isWhitespace(char c) {
+		switch (c) {
+		case ' ' : case '\t' : case '\n' : case '\u000B' : case '\f' : case '\r' :
+		case '\u00A0' : case '\u1680' : case '\u2028' : case '\u2029' :
+		case '\u202F' : case '\u205F' : case '\u3000' : case '\uFEFF' :
+			return true;
+		default :
+			return c >= '\u2000' && c <= '\u200A';
+		}
+	}
+
+	// the upper and lower case spelling of every mnemonic, mapped to the first MNEMONIC_* type whose pattern matches it
+	private static final HashMap<String, TokenType> MNEMONICS = new HashMap<String, TokenType>();
+
+	static {
+		addMnemonics(TokenType.MNEMONIC_R, "BR");
+		addMnemonics(TokenType.MNEMONIC_RISI, "MOVZ", "MOVK");
+		addMnemonics(TokenType.MNEMONIC_RI, "CMPI");
+		addMnemonics(TokenType.MNEMONIC_RR, "CMP", "MOV");
+		addMnemonics(TokenType.MNEMONIC_RRI, "ADDI", "ADDIS", "SUBI", "SUBIS", "ANDI", "ANDIS", "ORRI", "EORI", "LSL", "LSR");
+		addMnemonics(TokenType.MNEMONIC_RRR, "ADD", "ADDS", "SUB", "SUBS", "AND", "ANDS", "ORR", "EOR");
+		addMnemonics(TokenType.MNEMONIC_RM, "LDURSW", "LDUR", "LDURH", "LDURB", "LDXR", "STUR", "STURW", "STURH", "STURB");
+		addMnemonics(TokenType.MNEMONIC_RRM, "STXR");
+		addMnemonics(TokenType.MNEMONIC_L, "B.GE", "B.NE", "B.LE", "B.HS", "B.LS", "B.LT", "B.GT", "B.LO",
+				"B.MI", "B.HI", "B.EQ", "B.VS", "B.VC", "B.PL", "B", "BR", "BL");
+		addMnemonics(TokenType.MNEMONIC_RL, "CBZ", "CBNZ");
+	}
+
+	private static void addMnemonics(TokenType type, String... mnemonics) {
+		for (String mnemonic : mnemonics) {
+			if (!MNEMONICS.containsKey(mnemonic)) {
+				MNEMONICS.put(mnemonic, type);
+				MNEMONICS.put(mnemonic.toLowerCase(), type);
+			}
+		}
+	}
 }
@@ -10,6 +10,9 @@ package com.arm.legv8simulator.client.lexer;
 /* Instruction mnemonics and immediates which contain letters from the English alphabet 
  * must contain either all upper case letters or all lower case letters; a mixture 
  * is not permitted. 
+ * 
+ * Lexer does not match these patterns with a regular expression engine; its scanner recognises 
+ * the same tokens by hand, so any change to a pattern must be made to the scanner too.
  */
 public enum TokenType {
 	
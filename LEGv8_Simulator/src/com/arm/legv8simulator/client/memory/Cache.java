@@ -0,0 +1,262 @@
+package com.arm.legv8simulator.client.memory;
+
+/**
+ * A <code>Cache</code> is one level of a <code>CacheHierarchy</code>. It models the timing of the cache only:
+ * it holds the tags of the lines present, not their data, which always stays in <code>Memory</code>. It counts
+ * its own hits, misses and write backs.
+ * <p>
+ * The state of every line is held in primitive arrays indexed by <code>set*associativity + way</code>, allocated
+ * when the cache is created, so an access never allocates.
+ *
+ * @see CacheConfiguration
+ * @see CacheHierarchy
+ */
+public class Cache {
+
+	/**
+	 * Creates an empty cache
+	 *
+	 * @param configuration	the size, associativity, line size, latency and policies of the cache
+	 */
+	public Cache(CacheConfiguration configuration) {
+		this.configuration = configuration;
+		ways = configuration.getAssociativity();
+		setMask = configuration.getSets() - 1;
+		lineShift = log2(configuration.getLineSize());
+		treeLevels = log2(ways);
+		writeBack = configuration.getWritePolicy() == WritePolicy.WRITE_BACK;
+		replacementPolicy = configuration.getReplacementPolicy();
+		int lines = configuration.getSets() * ways;
+		tags = new long[lines];
+		dirty = new boolean[lines];
+		switch (replacementPolicy) {
+		case LRU :
+			lastUse = new long[lines];
+			break;
+		case PLRU :
+			trees = new long[configuration.getSets()];
+			break;
+		default : {}
+		}
+		clear();
+	}
+
+	/**
+	 * @return	the size, associativity, line size, latency and policies of the cache
+	 */
+	public CacheConfiguration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * @return	the number of accesses that found their line in the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return	the number of accesses that did not find their line in the cache
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return	the number of accesses, from the CPU or from the level above
+	 */
+	public long getAccesses() {
+		return hits + misses;
+	}
+
+	/**
+	 * @return	the fraction of accesses that missed, 0 if there were none
+	 */
+	public double getMissRate() {
+		return hits + misses == 0 ? 0 : (double) misses / (hits + misses);
+	}
+
+	/**
+	 * @return	the number of dirty lines written to the next level when they were evicted
+	 */
+	public long getWriteBacks() {
+		return writeBacks;
+	}
+
+	/**
+	 * Empties the cache, without writing back dirty lines, and resets its counters
+	 */
+	public void clear() {
+		for (int i=0; i<tags.length; i++) {
+			tags[i] = INVALID;
+			dirty[i] = false;
+		}
+		if (lastUse != null) {
+			for (int i=0; i<lastUse.length; i++) {
+				lastUse[i] = 0;
+			}
+		}
+		if (trees != null) {
+			for (int i=0; i<trees.length; i++) {
+				trees[i] = 0;
+			}
+		}
+		uses = 0;
+		seed = RANDOM_SEED;
+		hits = 0;
+		misses = 0;
+		writeBacks = 0;
+	}
+
+	/*
+	 * Returns the slot of the line holding the address, counting a hit and a use of the line, or -1 
+	 * counting a miss
+	 */
+	int lookup(long address) {
+		long line = address >>> lineShift;
+		int set = (int) line & setMask;
+		int first = set * ways;
+		for (int slot=first; slot<first+ways; slot++) {
+			if (tags[slot] == line) {
+				hits++;
+				touch(set, slot - first);
+				return slot;
+			}
+		}
+		misses++;
+		return -1;
+	}
+
+	/*
+	 * Brings the line holding the address into the cache, evicting a line of its set if the set is full. 
+	 * Returns the address of the evicted line if it was dirty and must be written back, NO_LINE otherwise.
+	 */
+	long fill(long address, boolean write) {
+		long line = address >>> lineShift;
+		int set = (int) line & setMask;
+		int first = set * ways;
+		int way = victim(set, first);
+		int slot = first + way;
+		long evicted = NO_LINE;
+		if (tags[slot] != INVALID && dirty[slot]) {
+			evicted = tags[slot] << lineShift;
+			writeBacks++;
+		}
+		tags[slot] = line;
+		dirty[slot] = write && writeBack;
+		touch(set, way);
+		return evicted;
+	}
+
+	// a store that hits writes the line in the cache, which must then be written back unless written through
+	void write(int slot) {
+		if (writeBack) {
+			dirty[slot] = true;
+		}
+	}
+
+	boolean isWriteBack() {
+		return writeBack;
+	}
+
+	int getLatency() {
+		return configuration.getLatency();
+	}
+
+	// an invalid way if there is one, otherwise the way chosen by the replacement policy
+	private int victim(int set, int first) {
+		for (int way=0; way<ways; way++) {
+			if (tags[first+way] == INVALID) {
+				return way;
+			}
+		}
+		switch (replacementPolicy) {
+		case LRU : {
+			int oldest = 0;
+			for (int way=1; way<ways; way++) {
+				if (lastUse[first+way] < lastUse[first+oldest]) {
+					oldest = way;
+				}
+			}
+			return oldest;
+		}
+		case PLRU : {
+			// follow the bits from the root, node n having children 2n and 2n+1, to a leaf
+			long tree = trees[set];
+			int node = 1;
+			while (node < ways) {
+				node = 2*node + (int) ((tree >>> node) & 1);
+			}
+			return node - ways;
+		}
+		default :
+			// 64-bit linear congruential generator, taking the high bits which are the most random
+			seed = seed * LCG_MULTIPLIER + LCG_INCREMENT;
+			return (int) (seed >>> 33) & (ways - 1);
+		}
+	}
+
+	// records a use of a way for the replacement policy
+	private void touch(int set, int way) {
+		switch (replacementPolicy) {
+		case LRU :
+			lastUse[set * ways + way] = ++uses;
+			break;
+		case PLRU : {
+			// point every node on the path to the way at the other child
+			long tree = trees[set];
+			int node = 1;
+			for (int level=treeLevels-1; level>=0; level--) {
+				int bit = (way >>> level) & 1;
+				if (bit == 0) {
+					tree |= 1L << node;
+				} else {
+					tree &= ~(1L << node);
+				}
+				node = 2*node + bit;
+			}
+			trees[set] = tree;
+			break;
+		}
+		default : {}
+		}
+	}
+
+	// n is a power of 2
+	private static int log2(int n) {
+		int log = 0;
+		while ((1 << log) < n) {
+			log++;
+		}
+		return log;
+	}
+
+	static final long NO_LINE = -1L;
+
+	private static final long INVALID = -1L;
+	private static final long RANDOM_SEED = 0x2545f4914f6cdd1dL;
+	private static final long LCG_MULTIPLIER = 6364136223846793005L;
+	private static final long LCG_INCREMENT = 1442695040888963407L;
+
+	private final CacheConfiguration configuration;
+	private final int ways;
+	private final int setMask;
+	private final int lineShift;
+	private final boolean writeBack;
+	private final ReplacementPolicy replacementPolicy;
+	// the line number, i.e. address >>> lineShift, of the line in each slot, INVALID if empty
+	private final long[] tags;
+	private final boolean[] dirty;
+	// LRU: the value of uses when each slot was last used
+	private long[] lastUse;
+	private long uses;
+	// PLRU: one tree of bits per set, node n held in bit n
+	private long[] trees;
+	private final int treeLevels;
+	// RANDOM
+	private long seed;
+
+	private long hits;
+	private long misses;
+	private long writeBacks;
+}
@@ -0,0 +1,131 @@
+package com.arm.legv8simulator.client.memory;
+
+/**
+ * A <code>CacheConfiguration</code> describes one level of a <code>CacheHierarchy</code>: its size,
+ * associativity, line size, latency and policies.
+ * <p>
+ * The latency is the number of cycles taken by an access that hits in the cache. An access that misses also
+ * takes the time to fetch the line from the next level.
+ *
+ * @see Cache
+ * @see CacheHierarchy
+ */
+public class CacheConfiguration {
+
+	/**
+	 * A 32KB, 8-way set associative, write-back level 1 data cache with 64 byte lines and a latency of 1 cycle
+	 */
+	public static final CacheConfiguration L1_DATA =
+			new CacheConfiguration(32*1024, 8, 64, 1, WritePolicy.WRITE_BACK, ReplacementPolicy.LRU);
+
+	/**
+	 * A 256KB, 8-way set associative, write-back level 2 cache with 64 byte lines and a latency of 10 cycles
+	 */
+	public static final CacheConfiguration L2 =
+			new CacheConfiguration(256*1024, 8, 64, 10, WritePolicy.WRITE_BACK, ReplacementPolicy.LRU);
+
+	/**
+	 * @param size				the capacity of the cache in bytes
+	 * @param associativity		the number of lines in each set, <code>size/lineSize</code> for a fully
+	 * 							associative cache
+	 * @param lineSize			the number of bytes in each line
+	 * @param latency			the number of cycles taken by a hit
+	 * @param writePolicy		what the cache does with a store
+	 * @param replacementPolicy	which line of a full set is evicted
+	 * @throws IllegalArgumentException	if the size, associativity or line size is not a power of 2, the
+	 * 									associativity and line size do not fit in the size, the latency is
+	 * 									less than 1 or the replacement policy does not support the
+	 * 									associativity
+	 */
+	public CacheConfiguration(int size, int associativity, int lineSize, int latency, WritePolicy writePolicy,
+			ReplacementPolicy replacementPolicy) {
+		if (!isPowerOfTwo(size) || !isPowerOfTwo(associativity) || !isPowerOfTwo(lineSize)) {
+			throw new IllegalArgumentException("The size, associativity and line size must be powers of 2");
+		}
+		if ((long) associativity * lineSize > size) {
+			throw new IllegalArgumentException("A set cannot be larger than the cache");
+		}
+		if (latency < 1) {
+			throw new IllegalArgumentException("The latency must be at least 1 cycle");
+		}
+		if (replacementPolicy == ReplacementPolicy.PLRU && associativity > MAX_PLRU_ASSOCIATIVITY) {
+			throw new IllegalArgumentException("Pseudo-LRU replacement supports at most "
+					+ MAX_PLRU_ASSOCIATIVITY + " ways");
+		}
+		this.size = size;
+		this.associativity = associativity;
+		this.lineSize = lineSize;
+		this.latency = latency;
+		this.writePolicy = writePolicy;
+		this.replacementPolicy = replacementPolicy;
+	}
+
+	/**
+	 * @return	the capacity of the cache in bytes
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return	the number of lines in each set
+	 */
+	public int getAssociativity() {
+		return associativity;
+	}
+
+	/**
+	 * @return	the number of bytes in each line
+	 */
+	public int getLineSize() {
+		return lineSize;
+	}
+
+	/**
+	 * @return	the number of sets
+	 */
+	public int getSets() {
+		return size / (associativity * lineSize);
+	}
+
+	/**
+	 * @return	the number of cycles taken by a hit
+	 */
+	public int getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return	what the cache does with a store
+	 */
+	public WritePolicy getWritePolicy() {
+		return writePolicy;
+	}
+
+	/**
+	 * @return	which line of a full set is evicted
+	 */
+	public ReplacementPolicy getReplacementPolicy() {
+		return replacementPolicy;
+	}
+
+	@Override
+	public String toString() {
+		return size + "B, " + associativity + "-way, " + lineSize + "B lines, latency " + latency + ", "
+				+ writePolicy + ", " + replacementPolicy;
+	}
+
+	private static boolean isPowerOfTwo(int n) {
+		return n > 0 && (n & (n-1)) == 0;
+	}
+
+	// the tree of a set is held in the bits of a long
+	private static final int MAX_PLRU_ASSOCIATIVITY = 64;
+
+	private final int size;
+	private final int associativity;
+	private final int lineSize;
+	private final int latency;
+	private final WritePolicy writePolicy;
+	private final ReplacementPolicy replacementPolicy;
+}
@@ -0,0 +1,184 @@
+package com.arm.legv8simulator.client.memory;
+
+/**
+ * A <code>CacheHierarchy</code> models the time taken by the loads and stores of a program when there are one
+ * or more levels of data cache between the CPU and <code>Memory</code>. It is told the address and size of each
+ * access, which <code>Memory</code> still carries out as before, and returns the number of cycles the access
+ * takes.
+ * <p>
+ * A load, or a store to a write-back cache, that misses at a level takes the latency of that level plus the
+ * time taken to fetch the line from the next level, and the line is then brought into the cache. A store to a
+ * write-through cache is passed on to the next level and takes the latency of the cache, as are dirty lines
+ * evicted from a write-back cache; the writes are assumed to be buffered. An access that is not naturally
+ * aligned and spans two lines of the first level takes as long as the two accesses.
+ * <p>
+ * The hierarchy counts the cycles taken by the accesses made through it and the reads and writes that reached
+ * <code>Memory</code>. Each level counts its own hits and misses.
+ *
+ * @see Cache
+ * @see CacheConfiguration
+ * @see Memory
+ */
+public class CacheHierarchy {
+
+	/**
+	 * Creates a hierarchy of empty caches
+	 *
+	 * @param memoryLatency	the number of cycles taken to read or write a line of <code>Memory</code>
+	 * @param levels		the caches, starting with the one closest to the CPU
+	 * @throws IllegalArgumentException	if the memory latency is less than 1
+	 */
+	public CacheHierarchy(int memoryLatency, CacheConfiguration... levels) {
+		if (memoryLatency < 1) {
+			throw new IllegalArgumentException("The memory latency must be at least 1 cycle");
+		}
+		this.memoryLatency = memoryLatency;
+		this.levels = new Cache[levels.length];
+		for (int i=0; i<levels.length; i++) {
+			this.levels[i] = new Cache(levels[i]);
+		}
+		firstLineSize = levels.length == 0 ? 1 : levels[0].getLineSize();
+	}
+
+	/**
+	 * @param address	the address of the first byte loaded
+	 * @param size		the number of bytes loaded
+	 * @return			the number of cycles taken by the load
+	 */
+	public int load(long address, int size) {
+		int latency = read(0, address);
+		long last = address + size - 1;
+		if (crossesLine(address, last)) {
+			latency += read(0, last);
+		}
+		cycles += latency;
+		return latency;
+	}
+
+	/**
+	 * @param address	the address of the first byte stored
+	 * @param size		the number of bytes stored
+	 * @return			the number of cycles taken by the store
+	 */
+	public int store(long address, int size) {
+		int latency = write(0, address);
+		long last = address + size - 1;
+		if (crossesLine(address, last)) {
+			latency += write(0, last);
+		}
+		cycles += latency;
+		return latency;
+	}
+
+	/**
+	 * @return	the number of levels of cache
+	 */
+	public int getLevels() {
+		return levels.length;
+	}
+
+	/**
+	 * @param level	the level, 0 for the cache closest to the CPU
+	 * @return		the cache at that level
+	 */
+	public Cache getLevel(int level) {
+		return levels[level];
+	}
+
+	/**
+	 * @return	the number of cycles taken to read or write a line of <code>Memory</code>
+	 */
+	public int getMemoryLatency() {
+		return memoryLatency;
+	}
+
+	/**
+	 * @return	the number of lines read from <code>Memory</code>
+	 */
+	public long getMemoryReads() {
+		return memoryReads;
+	}
+
+	/**
+	 * @return	the number of writes that reached <code>Memory</code>
+	 */
+	public long getMemoryWrites() {
+		return memoryWrites;
+	}
+
+	/**
+	 * @return	the total number of cycles taken by the loads and stores made through this hierarchy
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * Empties every level, without writing back dirty lines, and resets all the counters
+	 */
+	public void clear() {
+		for (int i=0; i<levels.length; i++) {
+			levels[i].clear();
+		}
+		memoryReads = 0;
+		memoryWrites = 0;
+		cycles = 0;
+	}
+
+	private boolean crossesLine(long first, long last) {
+		return first / firstLineSize != last / firstLineSize;
+	}
+
+	// reads the line holding the address into the given level, returning the cycles taken
+	private int read(int level, long address) {
+		if (level == levels.length) {
+			memoryReads++;
+			return memoryLatency;
+		}
+		Cache cache = levels[level];
+		if (cache.lookup(address) >= 0) {
+			return cache.getLatency();
+		}
+		int latency = cache.getLatency() + read(level+1, address);
+		allocate(level, address, false);
+		return latency;
+	}
+
+	// writes the address at the given level, returning the cycles taken
+	private int write(int level, long address) {
+		if (level == levels.length) {
+			memoryWrites++;
+			return memoryLatency;
+		}
+		Cache cache = levels[level];
+		int slot = cache.lookup(address);
+		if (cache.isWriteBack()) {
+			if (slot >= 0) {
+				cache.write(slot);
+				return cache.getLatency();
+			}
+			// write allocate
+			int latency = cache.getLatency() + read(level+1, address);
+			allocate(level, address, true);
+			return latency;
+		}
+		// written through the buffer, whether the line is present or not
+		write(level+1, address);
+		return cache.getLatency();
+	}
+
+	// brings a line into the given level, writing the line it evicts to the next level if it is dirty
+	private void allocate(int level, long address, boolean write) {
+		long evicted = levels[level].fill(address, write);
+		if (evicted != Cache.NO_LINE) {
+			write(level+1, evicted);
+		}
+	}
+
+	private final Cache[] levels;
+	private final int memoryLatency;
+	private final int firstLineSize;
+	private long memoryReads;
+	private long memoryWrites;
+	private long cycles;
+}
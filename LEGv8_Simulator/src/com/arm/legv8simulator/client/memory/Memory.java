@@ -1,7 +1,5 @@
 package com.arm.legv8simulator.client.memory;
 
-import java.util.HashMap;
-
 /**
  * <code>Memory</code> is the class used to implement the virtual address space of a LEGv8 program.
  * <p>
@@ -17,8 +15,11 @@ import java.util.HashMap;
  *
  */
 
-/* When data is stored in memory, it is put into the hashmap, keyed by its address.
- * Values at addresses not in the hashmap are assumed to be 0.
+/* Data is stored in fixed size pages of big-endian doublewords, allocated the first time any byte 
+ * within them is written. Addresses within pages that have never been written are assumed to be 0.
+ * 
+ * After a snapshot is taken or restored the page table is shared with the snapshot. The table is copied 
+ * on the next write, and each page on the first write to it, so that the snapshot never changes.
  */
 public class Memory {
 	
@@ -30,6 +31,15 @@ public class Memory {
 	public static final int HALFWORD_SIZE = 2;
 	public static final int BYTE_SIZE = 1;
 	public static final int BITS_IN_BYTE = 8;
+	public static final int PAGE_SIZE = 4096;
+	
+	private static final int PAGE_SHIFT = 12;
+	private static final int PAGE_OFFSET_MASK = PAGE_SIZE - 1;
+	private static final int DOUBLEWORD_SHIFT = 3;
+	private static final int DOUBLEWORD_OFFSET_MASK = DOUBLEWORD_SIZE - 1;
+	
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
 	
 	/**
 	 * Memory constructor with a specified number of instructions.
@@ -37,8 +47,8 @@ public class Memory {
 	 */
 	public Memory(int numInstructions) {
 		staticDataSegmentOffset = TEXT_SEGMENT_OFFSET + numInstructions * WORD_SIZE;
-		memory = new HashMap<Long, Byte>();
-		buffer = new ByteBuffer(DOUBLEWORD_SIZE);
+		pages = new PageTable();
+		lastPageNumber = -1L;
 	}
 
 	/**
@@ -48,15 +58,7 @@ public class Memory {
 	 */
 	public long loadDoubleword(long address) throws SegmentFaultException {
 		boundsCheck(address, DOUBLEWORD_SIZE);
-		for (int i=0; i<DOUBLEWORD_SIZE; i++) {
-			Byte b = memory.get(address+i);
-			if (b == null) {
-				buffer.put(i, (byte) 0);
-			} else {
-				buffer.put(i, b);
-			}
-		}
-		return buffer.getLong(0);
+		return load(address, DOUBLEWORD_SIZE);
 	}
 	
 	/**
@@ -66,10 +68,7 @@ public class Memory {
 	 */
 	public void storeDoubleword(long address, long value) throws SegmentFaultException {
 		boundsCheck(address, DOUBLEWORD_SIZE);
-		buffer.putLong(0, value);
-		for (int i=0; i<DOUBLEWORD_SIZE; i++) {
-			memory.put(address+i, buffer.get(i));
-		}
+		store(address, value, DOUBLEWORD_SIZE);
 	}
 	
 	/**
@@ -79,20 +78,8 @@ public class Memory {
 	 */
 	public long loadSignedWord(long address) throws SegmentFaultException {
 		boundsCheck(address, WORD_SIZE);
-		for (int i=0; i<WORD_SIZE; i++) {
-			Byte b = memory.get(address+i);
-			if (b == null) {
-				buffer.put(i+WORD_SIZE, (byte) 0);
-			} else {
-				buffer.put(i+WORD_SIZE, b);
-			}
-		}
-		// sign extend;
-		if (buffer.getInt(4) < 0) {
-			return buffer.getLong(0) | 0xffffffff00000000L;
-		} else {
-			return buffer.getLong(0) & 0x00000000ffffffffL;
-		}
+		// sign extend
+		return (long) (int) load(address, WORD_SIZE);
 	}
 	
 	/**
@@ -102,10 +89,7 @@ public class Memory {
 	 */
 	public void storeWord(long address, long value) throws SegmentFaultException {
 		boundsCheck(address, WORD_SIZE);
-		buffer.putLong(0, value);
-		for (int i=0; i<WORD_SIZE; i++) {
-			memory.put(address+i, buffer.get(i+WORD_SIZE));
-		}
+		store(address, value, WORD_SIZE);
 	}
 	
 	/**
@@ -115,18 +99,7 @@ public class Memory {
 	 */
 	public long loadHalfword(long address) throws SegmentFaultException {
 		boundsCheck(address, HALFWORD_SIZE);
-		for (int i=0; i<DOUBLEWORD_SIZE-HALFWORD_SIZE; i++) {
-			buffer.put(i, (byte) 0);
-		}
-		for (int i=0; i<HALFWORD_SIZE; i++) {
-			Byte b = memory.get(address+i);
-			if (b == null) {
-				buffer.put(i+DOUBLEWORD_SIZE-HALFWORD_SIZE, (byte) 0);
-			} else {
-				buffer.put(i+DOUBLEWORD_SIZE-HALFWORD_SIZE, b);
-			}
-		}
-		return buffer.getLong(0);
+		return load(address, HALFWORD_SIZE);
 	}
 	
 	/**
@@ -136,9 +109,7 @@ public class Memory {
 	 */
 	public void storeHalfword(long address, long value) throws SegmentFaultException {
 		boundsCheck(address, HALFWORD_SIZE);
-		buffer.putLong(0, value);
-		memory.put(address, buffer.get(DOUBLEWORD_SIZE-HALFWORD_SIZE));
-		memory.put(address+1, buffer.get(DOUBLEWORD_SIZE-BYTE_SIZE));
+		store(address, value, HALFWORD_SIZE);
 	}
 	
 	/**
@@ -148,16 +119,7 @@ public class Memory {
 	 */
 	public long loadByte(long address) throws SegmentFaultException {
 		boundsCheck(address, BYTE_SIZE);
-		for (int i=0; i<DOUBLEWORD_SIZE-BYTE_SIZE; i++) {
-			buffer.put(i, (byte) 0);
-		}
-		Byte b = memory.get(address);
-		if (b == null) {
-			buffer.put(DOUBLEWORD_SIZE-BYTE_SIZE, (byte) 0);
-		} else {
-			buffer.put(DOUBLEWORD_SIZE-BYTE_SIZE, b);
-		}
-		return buffer.getLong(0);
+		return readAligned(address, BYTE_SIZE);
 	}
 	
 	/**
@@ -167,8 +129,7 @@ public class Memory {
 	 */
 	public void storeByte(long address, long value) throws SegmentFaultException {
 		boundsCheck(address, BYTE_SIZE);
-		buffer.putLong(0, value);
-		memory.put(address, buffer.get(DOUBLEWORD_SIZE-BYTE_SIZE));
+		writeAligned(address, value, BYTE_SIZE);
 	}
 	
 	/* Checks to make sure the memory access is within the stack or heap segments
@@ -183,6 +144,170 @@ public class Memory {
 		}
 	}
 	
+	/* A naturally aligned figure always lies within a single doubleword of a single page, so it can be 
+	 * read or written with one array access. Anything else is handled a byte at a time.
+	 */
+	private long load(long address, int figureSize) {
+		if ((address & (figureSize-1)) == 0) {
+			return readAligned(address, figureSize);
+		}
+		long result = 0L;
+		for (int i=0; i<figureSize; i++) {
+			result = (result << BITS_IN_BYTE) | readAligned(address+i, BYTE_SIZE);
+		}
+		return result;
+	}
+	
+	private void store(long address, long value, int figureSize) {
+		if ((address & (figureSize-1)) == 0) {
+			writeAligned(address, value, figureSize);
+			return;
+		}
+		for (int i=0; i<figureSize; i++) {
+			writeAligned(address+i, value >>> (figureSize-1-i)*BITS_IN_BYTE, BYTE_SIZE);
+		}
+	}
+	
+	/* Returns the zero extended figure stored at the specified address, 0 if the page containing it 
+	 * has never been written. The address must be a multiple of figureSize.
+	 */
+	private long readAligned(long address, int figureSize) {
+		long[] page = findPage(address >>> PAGE_SHIFT);
+		if (page == null) {
+			return 0L;
+		}
+		int offset = (int) address & PAGE_OFFSET_MASK;
+		long doubleword = page[offset >>> DOUBLEWORD_SHIFT];
+		if (figureSize == DOUBLEWORD_SIZE) {
+			return doubleword;
+		}
+		return (doubleword >>> figureShift(offset, figureSize)) & figureMask(figureSize);
+	}
+	
+	/* Stores the low figureSize bytes of value at the specified address, allocating the page containing 
+	 * it if necessary. The address must be a multiple of figureSize.
+	 */
+	private void writeAligned(long address, long value, int figureSize) {
+		long[] page = findOrAllocatePage(address >>> PAGE_SHIFT);
+		int offset = (int) address & PAGE_OFFSET_MASK;
+		int index = offset >>> DOUBLEWORD_SHIFT;
+		if (figureSize == DOUBLEWORD_SIZE) {
+			page[index] = value;
+			return;
+		}
+		int shift = figureShift(offset, figureSize);
+		long mask = figureMask(figureSize) << shift;
+		page[index] = (page[index] & ~mask) | ((value << shift) & mask);
+	}
+	
+	// the shift of a figure within its big-endian doubleword
+	private static int figureShift(int offset, int figureSize) {
+		return (DOUBLEWORD_SIZE - figureSize - (offset & DOUBLEWORD_OFFSET_MASK)) * BITS_IN_BYTE;
+	}
+	
+	// figureSize is always less than DOUBLEWORD_SIZE here
+	private static long figureMask(int figureSize) {
+		return (1L << figureSize*BITS_IN_BYTE) - 1;
+	}
+	
+	// consecutive accesses nearly always fall in the same page so the last page found is cached
+	private long[] findPage(long pageNumber) {
+		if (pageNumber == lastPageNumber) {
+			return lastPage;
+		}
+		long[] page = pages.get(pageNumber);
+		if (page != null) {
+			lastPageNumber = pageNumber;
+			lastPage = page;
+			lastPageWritable = !pagesShared && pages.owns(pageNumber);
+		}
+		return page;
+	}
+	
+	private long[] findOrAllocatePage(long pageNumber) {
+		long[] page = findPage(pageNumber);
+		if (page != null && lastPageWritable) {
+			return page;
+		}
+		if (pagesShared) {
+			pages = pages.share();
+			pagesShared = false;
+		}
+		if (page == null) {
+			page = new long[PAGE_SIZE / DOUBLEWORD_SIZE];
+			pages.put(pageNumber, page);
+		} else if (!pages.owns(pageNumber)) {
+			long[] copy = new long[page.length];
+			System.arraycopy(page, 0, copy, 0, page.length);
+			page = copy;
+			pages.put(pageNumber, page);
+		}
+		lastPageNumber = pageNumber;
+		lastPage = page;
+		lastPageWritable = true;
+		return page;
+	}
+	
+	/**
+	 * Takes a snapshot of the contents of this <code>Memory</code>. No data is copied until this 
+	 * <code>Memory</code> is next written to, and then only the pages written.
+	 * 
+	 * @return	a snapshot of the contents of this <code>Memory</code>
+	 * @see MemorySnapshot
+	 */
+	public MemorySnapshot snapshot() {
+		pagesShared = true;
+		lastPageWritable = false;
+		return new MemorySnapshot(staticDataSegmentOffset, pages);
+	}
+	
+	/**
+	 * Replaces the contents of this <code>Memory</code> with those of a snapshot. No data is copied until 
+	 * this <code>Memory</code> is next written to, and then only the pages written.
+	 * 
+	 * @param snapshot	the snapshot to restore
+	 * @see MemorySnapshot
+	 */
+	public void restore(MemorySnapshot snapshot) {
+		staticDataSegmentOffset = snapshot.getStaticDataSegmentOffset();
+		pages = snapshot.pages;
+		pagesShared = true;
+		lastPageNumber = -1L;
+		lastPage = null;
+		lastPageWritable = false;
+	}
+	
+	/**
+	 * The digest is a 64-bit FNV-1a hash of the address and value of every non-zero doubleword, in 
+	 * ascending address order. Two memories holding the same data have the same digest, however 
+	 * that data was written.
+	 * 
+	 * @return	a digest of the contents of this <code>Memory</code>
+	 */
+	public long digest() {
+		long hash = FNV_OFFSET_BASIS;
+		long[] pageNumbers = pages.pageNumbers();
+		for (int i=0; i<pageNumbers.length; i++) {
+			long[] page = pages.get(pageNumbers[i]);
+			for (int j=0; j<page.length; j++) {
+				if (page[j] != 0) {
+					hash = digest(hash, (pageNumbers[i] << PAGE_SHIFT) + (j << DOUBLEWORD_SHIFT));
+					hash = digest(hash, page[j]);
+				}
+			}
+		}
+		return hash;
+	}
+	
+	// adds the bytes of a doubleword to an FNV-1a hash, most significant first
+	private static long digest(long hash, long doubleword) {
+		for (int i=DOUBLEWORD_SIZE-1; i>=0; i--) {
+			hash ^= (doubleword >>> i*BITS_IN_BYTE) & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+	
 	/**
 	 * @return the offset of the static data segment - calculated as the text segment offset 
 	 * added to the size of the text segment
@@ -191,7 +316,12 @@ public class Memory {
 		return staticDataSegmentOffset;
 	}
 	
-	ByteBuffer buffer;
 	private long staticDataSegmentOffset;
-	private HashMap<Long, Byte> memory;
+	private PageTable pages;
+	// true if pages is shared with a snapshot and must be copied before it is changed
+	private boolean pagesShared;
+	private long lastPageNumber;
+	private long[] lastPage;
+	// true if lastPage is owned by pages, which is not shared, so it can be written to directly
+	private boolean lastPageWritable;
 }
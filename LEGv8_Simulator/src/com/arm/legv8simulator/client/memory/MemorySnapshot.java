@@ -0,0 +1,78 @@
+package com.arm.legv8simulator.client.memory;
+
+/**
+ * A <code>MemorySnapshot</code> is an immutable copy of the contents of a <code>Memory</code>, taken by
+ * <code>Memory.snapshot</code> and loaded back with <code>Memory.restore</code>.
+ * <p>
+ * Taking a snapshot does not copy any data. The snapshot and the memory share their pages, and a page
+ * is only copied when the memory, or another memory restored from the snapshot, first writes to it
+ * afterwards. Any number of memories may be restored from one snapshot.
+ *
+ * @see Memory
+ */
+public class MemorySnapshot {
+
+	MemorySnapshot(long staticDataSegmentOffset, PageTable pages) {
+		this.staticDataSegmentOffset = staticDataSegmentOffset;
+		this.pages = pages;
+	}
+
+	/**
+	 * Creates a snapshot holding the supplied pages, e.g. ones read back from a serialized checkpoint
+	 *
+	 * @param staticDataSegmentOffset	the offset of the static data segment of the memory
+	 * @param pageNumbers				the number of each page, i.e. its address shifted right by
+	 * 									the page size
+	 * @param pages						the doublewords of each page, <code>Memory.PAGE_SIZE /
+	 * 									Memory.DOUBLEWORD_SIZE</code> per page
+	 * @throws IllegalArgumentException	if a page is the wrong size or a page number is repeated
+	 */
+	public MemorySnapshot(long staticDataSegmentOffset, long[] pageNumbers, long[][] pages) {
+		this.staticDataSegmentOffset = staticDataSegmentOffset;
+		this.pages = new PageTable();
+		for (int i=0; i<pageNumbers.length; i++) {
+			if (pages[i].length != Memory.PAGE_SIZE / Memory.DOUBLEWORD_SIZE) {
+				throw new IllegalArgumentException("Page " + pageNumbers[i] + " has " + pages[i].length
+						+ " doublewords");
+			}
+			if (this.pages.get(pageNumbers[i]) != null) {
+				throw new IllegalArgumentException("Page " + pageNumbers[i] + " is repeated");
+			}
+			long[] page = new long[pages[i].length];
+			System.arraycopy(pages[i], 0, page, 0, page.length);
+			this.pages.put(pageNumbers[i], page);
+		}
+	}
+
+	/**
+	 * @return	the offset of the static data segment of the memory the snapshot was taken of
+	 */
+	public long getStaticDataSegmentOffset() {
+		return staticDataSegmentOffset;
+	}
+
+	/**
+	 * @return	the numbers of every page that has been written to, in ascending order
+	 */
+	public long[] getPageNumbers() {
+		return pages.pageNumbers();
+	}
+
+	/**
+	 * @param pageNumber	the page number, i.e. the address shifted right by the page size
+	 * @return				a copy of the doublewords of the page, <code>null</code> if it has never been written
+	 */
+	public long[] getPage(long pageNumber) {
+		long[] page = pages.get(pageNumber);
+		if (page == null) {
+			return null;
+		}
+		long[] copy = new long[page.length];
+		System.arraycopy(page, 0, copy, 0, page.length);
+		return copy;
+	}
+
+	private final long staticDataSegmentOffset;
+	// never written to, a memory restored from the snapshot writes to a shared copy of it
+	final PageTable pages;
+}
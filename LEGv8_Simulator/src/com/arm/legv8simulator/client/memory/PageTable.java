@@ -0,0 +1,158 @@
+package com.arm.legv8simulator.client.memory;
+
+import java.util.Arrays;
+
+/**
+ * <code>PageTable</code> is a sparse map from page numbers to the pages of data backing <code>Memory</code>.
+ * <p>
+ * Keys and values are held in parallel primitive arrays using open addressing with linear probing, so
+ * no objects are allocated on a lookup. A page is only inserted the first time it is written to.
+ * <p>
+ * A table may share its pages with the tables of <code>MemorySnapshot</code>s. Each page is marked as owned 
+ * by this table or not, and a page that is not owned must be copied and put back before it is written to.
+ *
+ * @see Memory
+ */
+class PageTable {
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final long EMPTY = -1L;
+
+	PageTable() {
+		keys = new long[INITIAL_CAPACITY];
+		Arrays.fill(keys, EMPTY);
+		pages = new long[INITIAL_CAPACITY][];
+		owned = new boolean[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	private PageTable(long[] keys, long[][] pages, int size) {
+		this.keys = keys;
+		this.pages = pages;
+		this.owned = new boolean[keys.length];
+		this.size = size;
+	}
+
+	/**
+	 * @param pageNumber	the page number, i.e. the address shifted right by the page size
+	 * @return				the page stored under <code>pageNumber</code>, <code>null</code> if it has never been written
+	 */
+	long[] get(long pageNumber) {
+		int mask = keys.length - 1;
+		for (int i = hash(pageNumber) & mask; ; i = (i + 1) & mask) {
+			if (keys[i] == pageNumber) {
+				return pages[i];
+			}
+			if (keys[i] == EMPTY) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * @param pageNumber	the page number, i.e. the address shifted right by the page size
+	 * @return				<code>true</code> if the page stored under <code>pageNumber</code> is owned by this 
+	 * 						table and may be written to
+	 */
+	boolean owns(long pageNumber) {
+		int mask = keys.length - 1;
+		for (int i = hash(pageNumber) & mask; ; i = (i + 1) & mask) {
+			if (keys[i] == pageNumber) {
+				return owned[i];
+			}
+			if (keys[i] == EMPTY) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * @param pageNumber	the page number, i.e. the address shifted right by the page size
+	 * @param page			the page to be stored under <code>pageNumber</code>, which becomes owned by this table
+	 */
+	void put(long pageNumber, long[] page) {
+		if ((size + 1) * 2 > keys.length) {
+			grow();
+		}
+		if (insert(keys, pages, owned, pageNumber, page, true)) {
+			size++;
+		}
+	}
+
+	/**
+	 * @return	a new table holding the same pages as this one, none of which it owns
+	 */
+	PageTable share() {
+		long[] newKeys = new long[keys.length];
+		System.arraycopy(keys, 0, newKeys, 0, keys.length);
+		long[][] newPages = new long[pages.length][];
+		System.arraycopy(pages, 0, newPages, 0, pages.length);
+		return new PageTable(newKeys, newPages, size);
+	}
+
+	/**
+	 * @return	the number of pages held in this <code>PageTable</code>
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return	the numbers of every page held in this <code>PageTable</code>, in ascending order
+	 */
+	long[] pageNumbers() {
+		long[] pageNumbers = new long[size];
+		int n = 0;
+		for (int i=0; i<keys.length; i++) {
+			if (keys[i] != EMPTY) {
+				pageNumbers[n++] = keys[i];
+			}
+		}
+		Arrays.sort(pageNumbers);
+		return pageNumbers;
+	}
+
+	// doubles the capacity of the table and rehashes every page into it
+	private void grow() {
+		long[] newKeys = new long[keys.length * 2];
+		Arrays.fill(newKeys, EMPTY);
+		long[][] newPages = new long[newKeys.length][];
+		boolean[] newOwned = new boolean[newKeys.length];
+		for (int i=0; i<keys.length; i++) {
+			if (keys[i] != EMPTY) {
+				insert(newKeys, newPages, newOwned, keys[i], pages[i], owned[i]);
+			}
+		}
+		keys = newKeys;
+		pages = newPages;
+		owned = newOwned;
+	}
+
+	// returns true if a new key was added, false if an existing page was replaced
+	private static boolean insert(long[] keys, long[][] pages, boolean[] owned, long pageNumber, long[] page, 
+			boolean owns) {
+		int mask = keys.length - 1;
+		for (int i = hash(pageNumber) & mask; ; i = (i + 1) & mask) {
+			if (keys[i] == pageNumber) {
+				pages[i] = page;
+				owned[i] = owns;
+				return false;
+			}
+			if (keys[i] == EMPTY) {
+				keys[i] = pageNumber;
+				pages[i] = page;
+				owned[i] = owns;
+				return true;
+			}
+		}
+	}
+
+	private static int hash(long pageNumber) {
+		return (int) (pageNumber ^ (pageNumber >>> 32));
+	}
+
+	private long[] keys;
+	private long[][] pages;
+	private boolean[] owned;
+	private int size;
+}
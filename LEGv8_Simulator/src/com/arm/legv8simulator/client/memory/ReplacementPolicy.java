@@ -0,0 +1,26 @@
+package com.arm.legv8simulator.client.memory;
+
+/**
+ * The <code>ReplacementPolicy</code> enumeration defines which line of a set a <code>Cache</code> evicts when
+ * a line is brought into a full set. An invalid line is always filled first.
+ *
+ * @see CacheConfiguration
+ */
+public enum ReplacementPolicy {
+
+	/**
+	 * The least recently used line is evicted
+	 */
+	LRU,
+
+	/**
+	 * Tree pseudo-LRU: a binary tree of bits per set points away from the most recently used half at each
+	 * level, and the line it leads to is evicted. At most 64 ways are supported.
+	 */
+	PLRU,
+
+	/**
+	 * A line chosen by a pseudo-random number generator with a fixed seed is evicted, so runs are repeatable
+	 */
+	RANDOM
+}
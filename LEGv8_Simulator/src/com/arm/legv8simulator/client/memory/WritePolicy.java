@@ -0,0 +1,22 @@
+package com.arm.legv8simulator.client.memory;
+
+/**
+ * The <code>WritePolicy</code> enumeration defines what a <code>Cache</code> does with a store.
+ *
+ * @see CacheConfiguration
+ */
+public enum WritePolicy {
+
+	/**
+	 * A store writes only the cache, marking the line dirty, and the line is written to the next level when it
+	 * is evicted. A store that misses fetches the line first (write allocate).
+	 */
+	WRITE_BACK,
+
+	/**
+	 * A store is written to the cache, if the line is present, and to the next level. A store that misses does
+	 * not fetch the line (no write allocate). Stores are assumed to be buffered, so they take no longer than a
+	 * hit.
+	 */
+	WRITE_THROUGH
+}
@@ -19,17 +19,13 @@ public class Parser {
 	 */
 	public static String parseLine(ArrayList<Token> tokens) {
 		ParserState currentParserState = ParserState.INIT;
-		int i=0;
-		try {
-			for (i=0; i<tokens.size(); i++) {
-				currentParserState = currentParserState.transition(tokens.get(i));
+		for (int i=0; i<tokens.size(); i++) {
+			int next = currentParserState.transition(tokens.get(i));
+			if (next < 0) {
+				// messages are only built once parsing has failed
+				return errorMsg(next, currentParserState, tokens, i);
 			}
-		} catch (UnsupportedInstructionException uie) {
-			return handleUnsupportedInstructionException(uie, currentParserState, tokens, i);
-		} catch (InvalidTokenException ite) {
-			return handleInvalidTokenException(ite, currentParserState, tokens, i);
-		} catch (UnexpectedTokenException ute) {
-			return unexpectedTokenMsg(tokens.get(i));
+			currentParserState = ParserState.fromOrdinal(next);
 		}
 		if (currentParserState.accepting) {
 			return null;
@@ -44,48 +40,63 @@ public class Parser {
 	 * This is the reason for the code being rather ugly.
 	 */
 	
-	private static String handleUnsupportedInstructionException(UnsupportedInstructionException uie, 
-			ParserState parserState, ArrayList<Token> tokens, int tokenIndex) {
+	private static String errorMsg(int errorCode, ParserState parserState, ArrayList<Token> tokens, int tokenIndex) {
+		switch (errorCode) {
+		case ParserState.UNSUPPORTED_INSTRUCTION : 
+			return unsupportedInstructionErrorMsg(parserState, tokens, tokenIndex);
+		case ParserState.INVALID_TOKEN : 
+			return invalidTokenErrorMsg(parserState, tokens, tokenIndex);
+		default : 
+			return unexpectedTokenMsg(tokens.get(tokenIndex));
+		}
+	}
+	
+	private static String unsupportedInstructionErrorMsg(ParserState parserState, ArrayList<Token> tokens, int tokenIndex) {
 		// attempt to match mnemonic. If matched, set message containing missing args
-		Mnemonic m = null;
-		try {
-			if (tokenIndex != tokens.size()-1 && tokens.get(tokenIndex).getType() != TokenType.IDENTIFIER) {
-				return unsupportedInstructionMsg(tokens.get(tokenIndex), tokens.get(tokenIndex+1));
-			}
-			m = Mnemonic.fromString(tokens.get(tokenIndex).getData());
-		} catch (IllegalArgumentException iae) {
+		if (tokenIndex != tokens.size()-1 && tokens.get(tokenIndex).getType() != TokenType.IDENTIFIER) {
+			return unsupportedInstructionMsg(tokens.get(tokenIndex), tokens.get(tokenIndex+1));
+		}
+		Mnemonic m = findMnemonic(tokens.get(tokenIndex).getData());
+		if (m == null) {
 			return unsupportedInstructionMsg(tokens.get(tokenIndex));
 		}
-		try {
-			parserState = parserState.transition(new Token(m.type, null));
-			// will never fail
-		} catch (UnsupportedInstructionException e) {} 
-		catch (InvalidTokenException e) {} 
-		catch (UnexpectedTokenException e) {}
+		int next = parserState.transition(new Token(m.type, null));
+		if (next >= 0) {
+			parserState = ParserState.fromOrdinal(next);
+		}
 		return missingTokensMsg(parserState, 0);
 	}
 	
-	private static String handleInvalidTokenException(InvalidTokenException ite, 
-			 ParserState parserState, ArrayList<Token> tokens, int tokenIndex) {
-		Mnemonic expectedMne = ite.getExpectedMnemonic();
+	private static String invalidTokenErrorMsg(ParserState parserState, ArrayList<Token> tokens, int tokenIndex) {
 		Token currentToken = tokens.get(tokenIndex);
-		if (expectedMne == null) {
-			return invalidTokenMsg(ite.getExpectedTokenType().toString(), currentToken.getData());
+		// the only state expecting a particular mnemonic is the one expecting the LSL of a MOVZ or MOVK
+		if (parserState != ParserState.RISI5) {
+			return invalidTokenMsg(parserState.expected[0].toString(), currentToken.getData());
 		} else {
 			if (currentToken.getData().equals(Mnemonic.LSL.nameUpper) 
 					|| currentToken.getData().equals(Mnemonic.LSL.nameLower)) {
 				if (tokenIndex == tokens.size()-1) {
 					return missingTokensMsg(parserState, 1);
 				}
-				if (tokenIndex < tokens.size()-1) {
-					return invalidTokenMsg(expectedMne.toString(), 
+				return invalidTokenMsg(Mnemonic.LSL.toString(), 
 						currentToken.getData() + tokens.get(tokenIndex+1).getData());
-				} else {
-					return invalidTokenMsg(ite.getExpectedTokenType().toString(), currentToken.getData());
+			}
+			return invalidTokenMsg(Mnemonic.LSL.toString(), currentToken.getData());
+		}
+	}
+	
+	/*
+	 * Mnemonic.fromString without the exception when no mnemonic matches
+	 */
+	private static Mnemonic findMnemonic(String name) {
+		if (name != null) {
+			for (Mnemonic m : Mnemonic.values()) {
+				if (name.equals(m.nameUpper) || name.equals(m.nameLower)) {
+					return m;
 				}
 			}
-			return invalidTokenMsg(expectedMne.toString(), tokens.get(tokenIndex).getData());
 		}
+		return null;
 	}
 	
 	private static String unsupportedInstructionMsg(Token t) {
@@ -1,6 +1,7 @@
 package com.arm.legv8simulator.client.parser;
 
-import com.arm.legv8simulator.client.instruction.Mnemonic;
+import java.util.Arrays;
+
 import com.arm.legv8simulator.client.lexer.Token;
 import com.arm.legv8simulator.client.lexer.TokenType;
 
@@ -8,480 +9,193 @@ import com.arm.legv8simulator.client.lexer.TokenType;
  * The <code>ParserState</code> enumeration defines all states and transitions in the parser FSM
  * <p>
  * See the LEGv8_Grammar.ppt slides for a graphical description and explanation of the LEGv8 parser FSM 
+ * <p>
+ * The transitions are held in a table indexed by state and <code>TokenType</code>. An entry is either 
+ * the ordinal of the next state or a negative error code saying why the token cannot be accepted.
  * 
  * @see Parser
  * @author Jonathan Wright, 2016
  */
 public enum ParserState {
-	INIT(false, null) { 
-		@Override
-        public ParserState transition(Token t) throws UnsupportedInstructionException {
-            switch (t.getType()) {
-            	case MNEMONIC_R : return R1;
-            	case MNEMONIC_RR : return RR1;
-            	case MNEMONIC_RRR : return RRR1;
-            	case MNEMONIC_RI : return RI1;
-            	case MNEMONIC_RRI : return RRI1;
-            	case MNEMONIC_RM : return RM1;
-            	case MNEMONIC_RRM : return RRM1;
-            	case MNEMONIC_RISI : return RISI1;
-            	case MNEMONIC_L : return L1;
-            	case MNEMONIC_RL : return RL1;
-            	case LABEL : return G1;
-            	default : throw new UnsupportedInstructionException(INIT);
-            }
-        }
-    },
-    G1(true, null) { @Override
-    	public ParserState transition(Token t) throws UnsupportedInstructionException {
-            switch (t.getType()) {
-            	case MNEMONIC_R : return R1;
-            	case MNEMONIC_RR : return RR1;
-            	case MNEMONIC_RRR : return RRR1;
-            	case MNEMONIC_RI : return RI1;
-            	case MNEMONIC_RRI : return RRI1;
-            	case MNEMONIC_RM : return RM1;
-            	case MNEMONIC_RRM : return RRM1;
-            	case MNEMONIC_RISI : return RISI1;
-            	case MNEMONIC_L : return L1;
-            	case MNEMONIC_RL : return RL1;
-            	default : throw new UnsupportedInstructionException(G1);
-            }
-        }
-    },
-    R1(false, new TokenType[]{TokenType.REGISTER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return R2;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    R2(true, null) { @Override
-    	public ParserState transition(Token t) throws UnexpectedTokenException {
-            throw new UnexpectedTokenException();
-        }
-    },
-    RR1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.REGISTER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RR2;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RR2(false, new TokenType[]{TokenType.COMMA, TokenType.REGISTER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RR3;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RR3(false, new TokenType[]{TokenType.REGISTER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RR4;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RR4(true, null) { @Override
-    	public ParserState transition(Token t) throws UnexpectedTokenException {
-            throw new UnexpectedTokenException();
-        }
-    },
-    RRR1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.REGISTER, TokenType.COMMA, TokenType.REGISTER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RRR2;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRR2(false, new TokenType[]{TokenType.COMMA, TokenType.REGISTER, 
-    		TokenType.COMMA, TokenType.REGISTER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RRR3;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRR3(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.REGISTER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RRR4;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRR4(false, new TokenType[]{TokenType.COMMA, TokenType.REGISTER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RRR5;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRR5(false, new TokenType[]{TokenType.REGISTER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RRR6;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRR6(true, null) { @Override
-    	public ParserState transition(Token t) throws UnexpectedTokenException {
-            throw new UnexpectedTokenException();
-        }
-    },
-    RI1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RI2;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RI2(false, new TokenType[]{TokenType.COMMA, TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RI3;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RI3(false, new TokenType[]{TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case IMMEDIATE : return RI4;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RI4(true, null) { @Override
-    	public ParserState transition(Token t) throws UnexpectedTokenException {
-            throw new UnexpectedTokenException();
-        }
-    },
-    RRI1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.REGISTER, TokenType.COMMA, TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RRI2;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRI2(false, new TokenType[]{TokenType.COMMA, TokenType.REGISTER, 
-    		TokenType.COMMA, TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RRI3;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRI3(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RRI4;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRI4(false, new TokenType[]{TokenType.COMMA, TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RRI5;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRI5(false, new TokenType[]{TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case IMMEDIATE : return RRI6;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRI6(true, null) { @Override
-    	public ParserState transition(Token t) throws UnexpectedTokenException {
-            throw new UnexpectedTokenException();
-        }
-    },
-    RM1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.LBRACKET, TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RM2;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RM2(false, new TokenType[]{TokenType.COMMA, TokenType.LBRACKET, TokenType.REGISTER, 
-    		TokenType.COMMA, TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RM3;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RM3(false, new TokenType[]{TokenType.LBRACKET, TokenType.REGISTER, 
-    		TokenType.COMMA, TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case LBRACKET : return RM4;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RM4(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RM5;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RM5(false, new TokenType[]{TokenType.COMMA, TokenType.IMMEDIATE, 
-    		TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case RBRACKET : return RM6;
-            	case COMMA : return RM7;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RM6(true, null) { @Override
-    	public ParserState transition(Token t) throws UnexpectedTokenException {
-            throw new UnexpectedTokenException();
-        }
-    },
-    RM7(false, new TokenType[]{TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case IMMEDIATE : return RM8;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RM8(false, new TokenType[]{TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case RBRACKET : return RM6;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRM1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.REGISTER, 
-    		TokenType.COMMA, TokenType.LBRACKET, TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RRM2;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRM2(false, new TokenType[]{TokenType.COMMA, TokenType.REGISTER, 
-    		TokenType.COMMA, TokenType.LBRACKET, TokenType.REGISTER, 
-    		TokenType.COMMA, TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RRM3;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRM3(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.LBRACKET, TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RRM4;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRM4(false, new TokenType[]{TokenType.COMMA, TokenType.LBRACKET, TokenType.REGISTER, 
-    		TokenType.COMMA, TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RRM5;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRM5(false, new TokenType[]{TokenType.LBRACKET, TokenType.REGISTER, 
-    		TokenType.COMMA, TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case LBRACKET : return RRM6;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRM6(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RRM7;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRM7(false, new TokenType[]{TokenType.COMMA, TokenType.IMMEDIATE, 
-    		TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case RBRACKET : return RRM8;
-            	case COMMA : return RRM9;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRM8(true, null) { @Override
-    	public ParserState transition(Token t) throws UnexpectedTokenException {
-            throw new UnexpectedTokenException();
-        }
-    },
-    RRM9(false, new TokenType[]{TokenType.IMMEDIATE, TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case IMMEDIATE : return RRM10;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RRM10(false, new TokenType[]{TokenType.RBRACKET}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case RBRACKET : return RRM8;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RISI1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.IMMEDIATE, 
-    		TokenType.COMMA, TokenType.MNEMONIC_RRI, TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RISI2;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RISI2(false, new TokenType[]{TokenType.COMMA, TokenType.IMMEDIATE, 
-    		TokenType.COMMA, TokenType.MNEMONIC_RRI, TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RISI3;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RISI3(false, new TokenType[]{TokenType.IMMEDIATE, TokenType.COMMA, 
-    		TokenType.MNEMONIC_RRI, TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case IMMEDIATE : return RISI4;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RISI4(true, new TokenType[]{TokenType.COMMA, TokenType.MNEMONIC_RRI, TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RISI5;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RISI5(false, new TokenType[]{TokenType.MNEMONIC_RRI, TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case MNEMONIC_RRI : 
-            		if (t.getData().trim().equalsIgnoreCase("lsl") && !t.getData().trim().equals(t.getData())) {
-            			return RISI6;
-            		} else {
-            			throw new InvalidTokenException(expected[0], Mnemonic.LSL);
-            		}
-            	default : throw new InvalidTokenException(expected[0], Mnemonic.LSL);
-            }
-        }
-    },
-    RISI6(false, new TokenType[]{TokenType.IMMEDIATE}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case IMMEDIATE : return RISI7;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RISI7(true, null) { @Override
-    	public ParserState transition(Token t) throws UnexpectedTokenException {
-            throw new UnexpectedTokenException();
-        }
-    },
-    L1(false, new TokenType[]{TokenType.IDENTIFIER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case IDENTIFIER : return L2;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    L2(true, null) { @Override
-    	public ParserState transition(Token t) throws UnexpectedTokenException {
-            throw new UnexpectedTokenException();
-        }
-    },
-    L3(true, null) { @Override
-    	public ParserState transition(Token t) { return L3; }
-    },
-    RL1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, 
-    		TokenType.IDENTIFIER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case REGISTER : return RL2;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RL2(false, new TokenType[]{TokenType.COMMA, TokenType.IDENTIFIER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case COMMA : return RL3;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RL3(false, new TokenType[]{TokenType.IDENTIFIER}) { @Override
-    	public ParserState transition(Token t) throws InvalidTokenException {
-            switch (t.getType()) {
-            	case IDENTIFIER : return RL4;
-            	default : throw new InvalidTokenException(expected[0]);
-            }
-        }
-    },
-    RL4(true, null) { @Override
-    	public ParserState transition(Token t) throws UnexpectedTokenException {
-            throw new UnexpectedTokenException();
-        }
-    };
-    
+	INIT(false, null),
+	G1(true, null),
+	R1(false, new TokenType[]{TokenType.REGISTER}),
+	R2(true, null),
+	RR1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.REGISTER}),
+	RR2(false, new TokenType[]{TokenType.COMMA, TokenType.REGISTER}),
+	RR3(false, new TokenType[]{TokenType.REGISTER}),
+	RR4(true, null),
+	RRR1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.REGISTER, 
+			TokenType.COMMA, TokenType.REGISTER}),
+	RRR2(false, new TokenType[]{TokenType.COMMA, TokenType.REGISTER, TokenType.COMMA, 
+			TokenType.REGISTER}),
+	RRR3(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.REGISTER}),
+	RRR4(false, new TokenType[]{TokenType.COMMA, TokenType.REGISTER}),
+	RRR5(false, new TokenType[]{TokenType.REGISTER}),
+	RRR6(true, null),
+	RI1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.IMMEDIATE}),
+	RI2(false, new TokenType[]{TokenType.COMMA, TokenType.IMMEDIATE}),
+	RI3(false, new TokenType[]{TokenType.IMMEDIATE}),
+	RI4(true, null),
+	RRI1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.REGISTER, 
+			TokenType.COMMA, TokenType.IMMEDIATE}),
+	RRI2(false, new TokenType[]{TokenType.COMMA, TokenType.REGISTER, TokenType.COMMA, 
+			TokenType.IMMEDIATE}),
+	RRI3(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.IMMEDIATE}),
+	RRI4(false, new TokenType[]{TokenType.COMMA, TokenType.IMMEDIATE}),
+	RRI5(false, new TokenType[]{TokenType.IMMEDIATE}),
+	RRI6(true, null),
+	RM1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.LBRACKET, 
+			TokenType.REGISTER, TokenType.COMMA, TokenType.IMMEDIATE, 
+			TokenType.RBRACKET}),
+	RM2(false, new TokenType[]{TokenType.COMMA, TokenType.LBRACKET, TokenType.REGISTER, 
+			TokenType.COMMA, TokenType.IMMEDIATE, TokenType.RBRACKET}),
+	RM3(false, new TokenType[]{TokenType.LBRACKET, TokenType.REGISTER, TokenType.COMMA, 
+			TokenType.IMMEDIATE, TokenType.RBRACKET}),
+	RM4(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.IMMEDIATE, 
+			TokenType.RBRACKET}),
+	RM5(false, new TokenType[]{TokenType.COMMA, TokenType.IMMEDIATE, TokenType.RBRACKET}),
+	RM6(true, null),
+	RM7(false, new TokenType[]{TokenType.IMMEDIATE, TokenType.RBRACKET}),
+	RM8(false, new TokenType[]{TokenType.RBRACKET}),
+	RRM1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.REGISTER, 
+			TokenType.COMMA, TokenType.LBRACKET, TokenType.REGISTER, 
+			TokenType.COMMA, TokenType.IMMEDIATE, TokenType.RBRACKET}),
+	RRM2(false, new TokenType[]{TokenType.COMMA, TokenType.REGISTER, TokenType.COMMA, 
+			TokenType.LBRACKET, TokenType.REGISTER, TokenType.COMMA, 
+			TokenType.IMMEDIATE, TokenType.RBRACKET}),
+	RRM3(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.LBRACKET, 
+			TokenType.REGISTER, TokenType.COMMA, TokenType.IMMEDIATE, 
+			TokenType.RBRACKET}),
+	RRM4(false, new TokenType[]{TokenType.COMMA, TokenType.LBRACKET, TokenType.REGISTER, 
+			TokenType.COMMA, TokenType.IMMEDIATE, TokenType.RBRACKET}),
+	RRM5(false, new TokenType[]{TokenType.LBRACKET, TokenType.REGISTER, TokenType.COMMA, 
+			TokenType.IMMEDIATE, TokenType.RBRACKET}),
+	RRM6(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.IMMEDIATE, 
+			TokenType.RBRACKET}),
+	RRM7(false, new TokenType[]{TokenType.COMMA, TokenType.IMMEDIATE, TokenType.RBRACKET}),
+	RRM8(true, null),
+	RRM9(false, new TokenType[]{TokenType.IMMEDIATE, TokenType.RBRACKET}),
+	RRM10(false, new TokenType[]{TokenType.RBRACKET}),
+	RISI1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.IMMEDIATE, 
+			TokenType.COMMA, TokenType.MNEMONIC_RRI, TokenType.IMMEDIATE}),
+	RISI2(false, new TokenType[]{TokenType.COMMA, TokenType.IMMEDIATE, TokenType.COMMA, 
+			TokenType.MNEMONIC_RRI, TokenType.IMMEDIATE}),
+	RISI3(false, new TokenType[]{TokenType.IMMEDIATE, TokenType.COMMA, TokenType.MNEMONIC_RRI, 
+			TokenType.IMMEDIATE}),
+	RISI4(true, new TokenType[]{TokenType.COMMA, TokenType.MNEMONIC_RRI, TokenType.IMMEDIATE}),
+	RISI5(false, new TokenType[]{TokenType.MNEMONIC_RRI, TokenType.IMMEDIATE}),
+	RISI6(false, new TokenType[]{TokenType.IMMEDIATE}),
+	RISI7(true, null),
+	L1(false, new TokenType[]{TokenType.IDENTIFIER}),
+	L2(true, null),
+	L3(true, null),
+	RL1(false, new TokenType[]{TokenType.REGISTER, TokenType.COMMA, TokenType.IDENTIFIER}),
+	RL2(false, new TokenType[]{TokenType.COMMA, TokenType.IDENTIFIER}),
+	RL3(false, new TokenType[]{TokenType.IDENTIFIER}),
+	RL4(true, null);
+
+	/**
+	 * The error code returned by <code>transition</code> when the token is not a supported instruction mnemonic or label
+	 */
+	public static final int UNSUPPORTED_INSTRUCTION = -1;
+	
+	/**
+	 * The error code returned by <code>transition</code> when the token is not the one expected next
+	 */
+	public static final int INVALID_TOKEN = -2;
+	
+	/**
+	 * The error code returned by <code>transition</code> when no more tokens are expected
+	 */
+	public static final int UNEXPECTED_TOKEN = -3;
+	
+	// the entry for a MNEMONIC_RRI token in state RISI5, which is accepted only if it is the LSL shift
+	private static final int LSL_SHIFT = -4;
+	
+	private static final ParserState[] STATES = values();
+	private static final int[][] TRANSITIONS = new int[STATES.length][TokenType.values().length];
+	
+	static {
+		for (ParserState state : STATES) {
+			Arrays.fill(TRANSITIONS[state.ordinal()], state.accepting && state.expected == null ? UNEXPECTED_TOKEN : INVALID_TOKEN);
+		}
+		Arrays.fill(TRANSITIONS[INIT.ordinal()], UNSUPPORTED_INSTRUCTION);
+		Arrays.fill(TRANSITIONS[G1.ordinal()], UNSUPPORTED_INSTRUCTION);
+		Arrays.fill(TRANSITIONS[L3.ordinal()], L3.ordinal());
+		for (ParserState start : new ParserState[]{INIT, G1}) {
+			add(start, TokenType.MNEMONIC_R, R1);
+			add(start, TokenType.MNEMONIC_RR, RR1);
+			add(start, TokenType.MNEMONIC_RRR, RRR1);
+			add(start, TokenType.MNEMONIC_RI, RI1);
+			add(start, TokenType.MNEMONIC_RRI, RRI1);
+			add(start, TokenType.MNEMONIC_RM, RM1);
+			add(start, TokenType.MNEMONIC_RRM, RRM1);
+			add(start, TokenType.MNEMONIC_RISI, RISI1);
+			add(start, TokenType.MNEMONIC_L, L1);
+			add(start, TokenType.MNEMONIC_RL, RL1);
+		}
+		add(INIT, TokenType.LABEL, G1);
+		add(R1, TokenType.REGISTER, R2);
+
+		add(RR1, TokenType.REGISTER, RR2);
+		add(RR2, TokenType.COMMA, RR3);
+		add(RR3, TokenType.REGISTER, RR4);
+
+		add(RRR1, TokenType.REGISTER, RRR2);
+		add(RRR2, TokenType.COMMA, RRR3);
+		add(RRR3, TokenType.REGISTER, RRR4);
+		add(RRR4, TokenType.COMMA, RRR5);
+		add(RRR5, TokenType.REGISTER, RRR6);
+
+		add(RI1, TokenType.REGISTER, RI2);
+		add(RI2, TokenType.COMMA, RI3);
+		add(RI3, TokenType.IMMEDIATE, RI4);
+
+		add(RRI1, TokenType.REGISTER, RRI2);
+		add(RRI2, TokenType.COMMA, RRI3);
+		add(RRI3, TokenType.REGISTER, RRI4);
+		add(RRI4, TokenType.COMMA, RRI5);
+		add(RRI5, TokenType.IMMEDIATE, RRI6);
+
+		add(RM1, TokenType.REGISTER, RM2);
+		add(RM2, TokenType.COMMA, RM3);
+		add(RM3, TokenType.LBRACKET, RM4);
+		add(RM4, TokenType.REGISTER, RM5);
+		add(RM5, TokenType.RBRACKET, RM6);
+		add(RM5, TokenType.COMMA, RM7);
+		add(RM7, TokenType.IMMEDIATE, RM8);
+		add(RM8, TokenType.RBRACKET, RM6);
+
+		add(RRM1, TokenType.REGISTER, RRM2);
+		add(RRM2, TokenType.COMMA, RRM3);
+		add(RRM3, TokenType.REGISTER, RRM4);
+		add(RRM4, TokenType.COMMA, RRM5);
+		add(RRM5, TokenType.LBRACKET, RRM6);
+		add(RRM6, TokenType.REGISTER, RRM7);
+		add(RRM7, TokenType.RBRACKET, RRM8);
+		add(RRM7, TokenType.COMMA, RRM9);
+		add(RRM9, TokenType.IMMEDIATE, RRM10);
+		add(RRM10, TokenType.RBRACKET, RRM8);
+
+		add(RISI1, TokenType.REGISTER, RISI2);
+		add(RISI2, TokenType.COMMA, RISI3);
+		add(RISI3, TokenType.IMMEDIATE, RISI4);
+		add(RISI4, TokenType.COMMA, RISI5);
+		TRANSITIONS[RISI5.ordinal()][TokenType.MNEMONIC_RRI.ordinal()] = LSL_SHIFT;
+		add(RISI6, TokenType.IMMEDIATE, RISI7);
+
+		add(L1, TokenType.IDENTIFIER, L2);
+
+		add(RL1, TokenType.REGISTER, RL2);
+		add(RL2, TokenType.COMMA, RL3);
+		add(RL3, TokenType.IDENTIFIER, RL4);
+	}
+	
+	private static void add(ParserState from, TokenType type, ParserState to) {
+		TRANSITIONS[from.ordinal()][type.ordinal()] = to.ordinal();
+	}
+	
 	private ParserState(boolean accepting, TokenType[] expected) {
 		this.expected = expected;
 		this.accepting = accepting;
@@ -491,23 +205,37 @@ public enum ParserState {
 	 * The transition function for this parser state
 	 * 
 	 * @param next	the next token read by the parser
-	 * @return		the next parser state - the result of the transition function
-	 * 
-	 * @throws UnsupportedInstructionException
-	 * @throws InvalidTokenException
-	 * @throws UnexpectedTokenException
+	 * @return		the ordinal of the next parser state; or <code>UNSUPPORTED_INSTRUCTION</code>, 
+	 * 				<code>INVALID_TOKEN</code> or <code>UNEXPECTED_TOKEN</code> if <code>next</code> 
+	 * 				cannot be accepted in this state
+	 * @see #fromOrdinal(int)
+	 */
+	public int transition(Token next) {
+		int result = TRANSITIONS[ordinal()][next.getType().ordinal()];
+		if (result == LSL_SHIFT) {
+			// the shift must be separated from its amount
+			String shift = next.getData().trim();
+			return shift.equalsIgnoreCase("lsl") && !shift.equals(next.getData()) ? RISI6.ordinal() : INVALID_TOKEN;
+		}
+		return result;
+	}
+	
+	/**
+	 * @param ordinal	the ordinal of a parser state, as returned by <code>transition</code>
+	 * @return			the parser state
+	 */
+	public static ParserState fromOrdinal(int ordinal) {
+		return STATES[ordinal];
+	}
+	
+	/**
+	 * Whether the this state of the parser FSM is accepting
 	 */
-    public abstract ParserState transition(Token next) throws UnsupportedInstructionException, 
-    							InvalidTokenException, UnexpectedTokenException;
-    
-    /**
-     * Whether the this state of the parser FSM is accepting
-     */
-    public final boolean accepting;
-    
-    /**
-     * The token sequence required for the parser to reach an accepting state from this state 
-     */
-    public final TokenType[] expected;
-    
+	public final boolean accepting;
+	
+	/**
+	 * The token sequence required for the parser to reach an accepting state from this state 
+	 */
+	public final TokenType[] expected;
+	
 }
@@ -0,0 +1,79 @@
+package com.arm.legv8simulator.headless;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>BatchMetrics</code> accumulates the throughput of a <code>BatchRunner</code>. It is updated 
+ * concurrently by every worker.
+ * 
+ * @see BatchRunner
+ */
+public class BatchMetrics {
+	
+	BatchMetrics() {
+		startNanos = System.nanoTime();
+	}
+	
+	void record(long instructionsExecuted) {
+		programs.incrementAndGet();
+		instructions.addAndGet(instructionsExecuted);
+	}
+	
+	void finish() {
+		endNanos = System.nanoTime();
+	}
+	
+	/**
+	 * @return	the number of programs run
+	 */
+	public long getPrograms() {
+		return programs.get();
+	}
+	
+	/**
+	 * @return	the total number of instructions executed by every program
+	 */
+	public long getInstructions() {
+		return instructions.get();
+	}
+	
+	/**
+	 * @return	the wall-clock time of the batch in seconds, so far if it has not finished
+	 */
+	public double getSeconds() {
+		long end = endNanos != 0 ? endNanos : System.nanoTime();
+		return (end - startNanos) / 1e9;
+	}
+	
+	/**
+	 * @return	the number of programs run per second
+	 */
+	public double getProgramsPerSecond() {
+		return getPrograms() / getSeconds();
+	}
+	
+	/**
+	 * @return	the number of instructions executed per second, across all workers
+	 */
+	public double getInstructionsPerSecond() {
+		return getInstructions() / getSeconds();
+	}
+	
+	/**
+	 * @return	these metrics as a single line of JSON
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"programs\":").append(getPrograms());
+		json.append(",\"instructions\":").append(getInstructions());
+		json.append(",\"seconds\":").append(getSeconds());
+		json.append(",\"programsPerSecond\":").append(getProgramsPerSecond());
+		json.append(",\"instructionsPerSecond\":").append(getInstructionsPerSecond());
+		return json.append('}').toString();
+	}
+	
+	private final AtomicLong programs = new AtomicLong();
+	private final AtomicLong instructions = new AtomicLong();
+	private final long startNanos;
+	private volatile long endNanos = 0;
+}
@@ -0,0 +1,230 @@
+package com.arm.legv8simulator.headless;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.ExecutionEngine;
+
+/**
+ * <code>BatchRunner</code> assembles and executes many LEGv8 programs in parallel outside the web app, 
+ * e.g. to auto-grade submissions. It runs on the JVM only and is not part of the GWT module.
+ * <p>
+ * Each program is streamed from its file through the same <code>Lexer</code>, <code>Parser</code> and 
+ * <code>Decoder</code> path as in the browser by a <code>StreamingAssembler</code>, and executed with an 
+ * instruction and wall-clock budget on a fork-join pool. One JSON record per program, holding the final 
+ * registers, flags, PC and a memory digest, is written to the output as each program finishes; so records 
+ * are not in input order.
+ * <p>
+ * Usage: <code>BatchRunner [options] (file | directory | -)...</code> where <code>-</code> reads 
+ * program paths from standard input, one per line, and directories are searched for <code>.s</code> 
+ * files. Options are <code>--threads N</code>, <code>--max-instructions N</code>, 
+ * <code>--timeout-ms N</code>, <code>--engine INTERPRETER|PREDECODED</code> and <code>--cache DIR</code>, 
+ * which keeps assembled programs in a <code>ProgramCache</code> in the directory. Throughput metrics 
+ * are written to standard error as JSON when the batch completes.
+ * 
+ * @see ProgramRun
+ * @see StreamingAssembler
+ * @see ProgramCache
+ * @see BatchMetrics
+ */
+public class BatchRunner {
+	
+	public static final long DEFAULT_MAX_INSTRUCTIONS = 10000000L;
+	public static final long DEFAULT_TIMEOUT_MILLIS = 10000L;
+	
+	/**
+	 * @param threads			the number of worker threads
+	 * @param engine			the engine used to execute every program
+	 * @param maxInstructions	the instruction budget of each program, <code>CPU.UNLIMITED</code> for no limit
+	 * @param timeoutMillis		the wall-clock budget of each program in milliseconds, 0 for no limit
+	 * @param cache				the cache of assembled programs, <code>null</code> to assemble every program
+	 */
+	public BatchRunner(int threads, ExecutionEngine engine, long maxInstructions, long timeoutMillis, ProgramCache cache) {
+		this.threads = threads;
+		this.cache = cache;
+		this.engine = engine;
+		this.maxInstructions = maxInstructions;
+		this.timeoutMillis = timeoutMillis;
+	}
+	
+	/**
+	 * Runs every program, writing one JSON record per line to <code>out</code>. Programs are read 
+	 * from <code>programs</code> as workers become free, so it may be an unbounded stream.
+	 * 
+	 * @param programs	the program files to run
+	 * @param out		the destination of the JSON records
+	 * @return			the throughput of the batch
+	 * @throws InterruptedException
+	 */
+	public BatchMetrics run(Iterator<File> programs, Writer out) throws InterruptedException {
+		final PrintWriter records = new PrintWriter(out);
+		final BatchMetrics metrics = new BatchMetrics();
+		// bounds the number of programs read ahead of the workers
+		final Semaphore inFlight = new Semaphore(threads * 2);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			while (programs.hasNext()) {
+				final File file = programs.next();
+				inFlight.acquire();
+				pool.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							String record = runProgram(file, metrics);
+							synchronized (records) {
+								records.println(record);
+							}
+						} finally {
+							inFlight.release();
+						}
+					}
+				});
+			}
+		} finally {
+			pool.shutdown();
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			records.flush();
+			metrics.finish();
+		}
+		return metrics;
+	}
+	
+	private String runProgram(File file, BatchMetrics metrics) {
+		ProgramRun run = new ProgramRun(file.getPath(), file.toPath(), cache, engine, maxInstructions, timeoutMillis);
+		String record = run.execute();
+		metrics.record(run.getInstructionsExecuted());
+		return record;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutionEngine engine = ExecutionEngine.PREDECODED;
+		long maxInstructions = DEFAULT_MAX_INSTRUCTIONS;
+		long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+		ProgramCache cache = null;
+		ArrayList<File> files = new ArrayList<File>();
+		boolean readStdin = false;
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals("--threads")) {
+				threads = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--max-instructions")) {
+				maxInstructions = Long.parseLong(args[++i]);
+				if (maxInstructions <= 0) maxInstructions = CPU.UNLIMITED;
+			} else if (args[i].equals("--timeout-ms")) {
+				timeoutMillis = Long.parseLong(args[++i]);
+			} else if (args[i].equals("--engine")) {
+				engine = ExecutionEngine.valueOf(args[++i]);
+			} else if (args[i].equals("--cache")) {
+				cache = new ProgramCache(Paths.get(args[++i]));
+			} else if (args[i].equals("-")) {
+				readStdin = true;
+			} else if (args[i].startsWith("--")) {
+				System.err.println("Unknown option " + args[i]);
+				System.exit(2);
+			} else {
+				addPrograms(new File(args[i]), files);
+			}
+		}
+		Iterator<File> programs = files.iterator();
+		if (readStdin) {
+			programs = new Concatenation(programs, 
+					new LineIterator(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))));
+		}
+		Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+		BatchMetrics metrics = new BatchRunner(threads, engine, maxInstructions, timeoutMillis, cache).run(programs, out);
+		System.err.println(metrics.toJson());
+	}
+	
+	// adds a file, or every .s file under a directory in name order
+	private static void addPrograms(File file, ArrayList<File> files) {
+		if (!file.isDirectory()) {
+			files.add(file);
+			return;
+		}
+		File[] children = file.listFiles();
+		if (children == null) return;
+		Arrays.sort(children);
+		for (File child : children) {
+			if (child.isDirectory() || child.getName().endsWith(".s")) {
+				addPrograms(child, files);
+			}
+		}
+	}
+	
+	// the non-empty lines of a reader as files
+	private static final class LineIterator implements Iterator<File> {
+		
+		LineIterator(BufferedReader reader) {
+			this.reader = reader;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			while (next == null) {
+				String line;
+				try {
+					line = reader.readLine();
+				} catch (IOException ioe) {
+					line = null;
+				}
+				if (line == null) return false;
+				if (!line.trim().isEmpty()) {
+					next = new File(line.trim());
+				}
+			}
+			return true;
+		}
+		
+		@Override
+		public File next() {
+			hasNext();
+			File file = next;
+			next = null;
+			return file;
+		}
+		
+		private BufferedReader reader;
+		private File next;
+	}
+	
+	private static final class Concatenation implements Iterator<File> {
+		
+		Concatenation(Iterator<File> first, Iterator<File> second) {
+			this.first = first;
+			this.second = second;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return first.hasNext() || second.hasNext();
+		}
+		
+		@Override
+		public File next() {
+			return first.hasNext() ? first.next() : second.next();
+		}
+		
+		private Iterator<File> first;
+		private Iterator<File> second;
+	}
+	
+	private int threads;
+	private ProgramCache cache;
+	private ExecutionEngine engine;
+	private long maxInstructions;
+	private long timeoutMillis;
+}
@@ -0,0 +1,110 @@
+package com.arm.legv8simulator.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import com.arm.legv8simulator.client.branchprediction.BranchPredictor;
+import com.arm.legv8simulator.client.branchprediction.BranchPredictorModel;
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.TraceLevel;
+import com.arm.legv8simulator.client.executionmodes.AssembledProgram;
+import com.arm.legv8simulator.client.executionmodes.PipelineStatistics;
+import com.arm.legv8simulator.client.executionmodes.PipelinedSimulator;
+
+/**
+ * <code>BranchPredictorComparison</code> runs LEGv8 programs on the pipelined simulator once with each
+ * <code>BranchPredictorModel</code>, so that the models can be compared on the same workload. It runs on
+ * the JVM only and is not part of the GWT module.
+ * <p>
+ * Each program is assembled once and run to completion with a fresh, untrained predictor of every model.
+ * One JSON record per program and model, holding the status, cycles, instructions, CPI, branches,
+ * mispredictions and prediction accuracy of the run, is written to standard output.
+ * <p>
+ * Usage: <code>BranchPredictorComparison [options] file...</code>. Options are
+ * <code>--max-cycles N</code> and <code>--btb</code>, which wraps every model in a
+ * <code>BranchTargetBuffer</code> to predict <code>BR</code>.
+ *
+ * @see BranchPredictorModel
+ * @see PipelineStatistics
+ */
+public class BranchPredictorComparison {
+
+	public static final long DEFAULT_MAX_CYCLES = 10000000L;
+
+	public static void main(String[] args) throws IOException {
+		long maxCycles = DEFAULT_MAX_CYCLES;
+		boolean targetBuffer = false;
+		ArrayList<File> files = new ArrayList<File>();
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals("--max-cycles")) {
+				maxCycles = Long.parseLong(args[++i]);
+				if (maxCycles <= 0) maxCycles = CPU.UNLIMITED;
+			} else if (args[i].equals("--btb")) {
+				targetBuffer = true;
+			} else if (args[i].startsWith("--")) {
+				System.err.println("Unknown option " + args[i]);
+				System.exit(2);
+			} else {
+				files.add(new File(args[i]));
+			}
+		}
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		for (File file : files) {
+			AssembledProgram program;
+			try (FileChannel channel = FileChannel.open(file.toPath())) {
+				program = new StreamingAssembler(channel);
+			} catch (IOException ioe) {
+				StringBuilder json = new StringBuilder();
+				json.append("{\"program\":");
+				Json.string(json, file.getPath());
+				json.append(",\"status\":\"IO_ERROR\",\"message\":");
+				Json.string(json, String.valueOf(ioe.getMessage()));
+				out.println(json.append('}'));
+				continue;
+			}
+			for (BranchPredictorModel model : BranchPredictorModel.values()) {
+				BranchPredictor predictor = targetBuffer ? model.createWithTargetBuffer() : model.create();
+				out.println(compare(file.getPath(), program, model, predictor, maxCycles));
+			}
+			out.flush();
+		}
+		out.flush();
+	}
+
+	private static String compare(String name, AssembledProgram program, BranchPredictorModel model,
+			BranchPredictor predictor, long maxCycles) {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"program\":");
+		Json.string(json, name);
+		json.append(",\"model\":\"").append(model.name()).append('"');
+		json.append(",\"predictor\":");
+		Json.string(json, predictor.getName());
+		PipelinedSimulator sim = new PipelinedSimulator(program);
+		if (!sim.getCompileErrorMsgs().isEmpty()) {
+			return json.append(",\"status\":\"COMPILE_ERROR\"}").toString();
+		}
+		sim.setTraceLevel(TraceLevel.OFF, 0);
+		sim.setBranchPredictor(predictor);
+		PipelineStatistics stats;
+		try {
+			stats = sim.runToCompletion(maxCycles);
+		} catch (RuntimeException re) {
+			json.append(",\"status\":\"CRASH\",\"message\":");
+			Json.string(json, String.valueOf(re));
+			return json.append('}').toString();
+		}
+		json.append(",\"status\":\"").append(stats.getStatus().name()).append('"');
+		json.append(",\"cycles\":").append(stats.getCycles());
+		json.append(",\"instructions\":").append(stats.getInstructions());
+		json.append(",\"cpi\":").append(stats.getCPI());
+		json.append(",\"branches\":").append(stats.getBranches());
+		json.append(",\"mispredictions\":").append(stats.getMispredictions());
+		json.append(",\"accuracy\":").append(stats.getPredictionAccuracy());
+		return json.append('}').toString();
+	}
+}
@@ -0,0 +1,156 @@
+package com.arm.legv8simulator.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.TraceLevel;
+import com.arm.legv8simulator.client.executionmodes.AssembledProgram;
+import com.arm.legv8simulator.client.executionmodes.PipelineStatistics;
+import com.arm.legv8simulator.client.executionmodes.PipelinedSimulator;
+import com.arm.legv8simulator.client.memory.Cache;
+import com.arm.legv8simulator.client.memory.CacheConfiguration;
+import com.arm.legv8simulator.client.memory.CacheHierarchy;
+import com.arm.legv8simulator.client.memory.ReplacementPolicy;
+import com.arm.legv8simulator.client.memory.WritePolicy;
+
+/**
+ * <code>CacheSimulation</code> runs LEGv8 programs on the pipelined simulator with their loads and stores timed
+ * by a hierarchy of data caches, so that cache configurations can be compared on the same workload. It runs on
+ * the JVM only and is not part of the GWT module.
+ * <p>
+ * Each program is run to completion with empty caches. One JSON record per program, holding the status,
+ * cycles, instructions, CPI and memory stalls of the run, the accesses, hits, misses, miss rate and write backs
+ * of each level and the reads and writes that reached memory, is written to standard output.
+ * <p>
+ * Usage: <code>CacheSimulation [options] file...</code>. Options are <code>--l1 SIZE,WAYS,LINE,LATENCY</code>
+ * and <code>--l2 SIZE,WAYS,LINE,LATENCY</code>, with sizes in bytes and <code>--l2 none</code> for a single
+ * level, <code>--write-policy WRITE_BACK|WRITE_THROUGH</code> and <code>--replacement LRU|PLRU|RANDOM</code>,
+ * which apply to every level, <code>--memory-latency N</code> and <code>--max-cycles N</code>.
+ *
+ * @see CacheHierarchy
+ * @see PipelineStatistics
+ */
+public class CacheSimulation {
+
+	public static final int DEFAULT_MEMORY_LATENCY = 100;
+	public static final long DEFAULT_MAX_CYCLES = 10000000L;
+
+	public static void main(String[] args) throws IOException {
+		int[] l1 = geometry(CacheConfiguration.L1_DATA);
+		int[] l2 = geometry(CacheConfiguration.L2);
+		WritePolicy writePolicy = WritePolicy.WRITE_BACK;
+		ReplacementPolicy replacementPolicy = ReplacementPolicy.LRU;
+		int memoryLatency = DEFAULT_MEMORY_LATENCY;
+		long maxCycles = DEFAULT_MAX_CYCLES;
+		ArrayList<File> files = new ArrayList<File>();
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals("--l1")) {
+				l1 = parseGeometry(args[++i]);
+			} else if (args[i].equals("--l2")) {
+				i++;
+				l2 = args[i].equals("none") ? null : parseGeometry(args[i]);
+			} else if (args[i].equals("--write-policy")) {
+				writePolicy = WritePolicy.valueOf(args[++i]);
+			} else if (args[i].equals("--replacement")) {
+				replacementPolicy = ReplacementPolicy.valueOf(args[++i]);
+			} else if (args[i].equals("--memory-latency")) {
+				memoryLatency = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--max-cycles")) {
+				maxCycles = Long.parseLong(args[++i]);
+				if (maxCycles <= 0) maxCycles = CPU.UNLIMITED;
+			} else if (args[i].startsWith("--")) {
+				System.err.println("Unknown option " + args[i]);
+				System.exit(2);
+			} else {
+				files.add(new File(args[i]));
+			}
+		}
+		CacheConfiguration[] levels = new CacheConfiguration[l2 == null ? 1 : 2];
+		levels[0] = new CacheConfiguration(l1[0], l1[1], l1[2], l1[3], writePolicy, replacementPolicy);
+		if (l2 != null) {
+			levels[1] = new CacheConfiguration(l2[0], l2[1], l2[2], l2[3], writePolicy, replacementPolicy);
+		}
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		for (File file : files) {
+			AssembledProgram program;
+			try (FileChannel channel = FileChannel.open(file.toPath())) {
+				program = new StreamingAssembler(channel);
+			} catch (IOException ioe) {
+				StringBuilder json = new StringBuilder();
+				json.append("{\"program\":");
+				Json.string(json, file.getPath());
+				json.append(",\"status\":\"IO_ERROR\",\"message\":");
+				Json.string(json, String.valueOf(ioe.getMessage()));
+				out.println(json.append('}'));
+				continue;
+			}
+			out.println(run(file.getPath(), program, new CacheHierarchy(memoryLatency, levels), maxCycles));
+			out.flush();
+		}
+		out.flush();
+	}
+
+	private static int[] geometry(CacheConfiguration configuration) {
+		return new int[] {configuration.getSize(), configuration.getAssociativity(), configuration.getLineSize(),
+				configuration.getLatency()};
+	}
+
+	private static int[] parseGeometry(String arg) {
+		String[] fields = arg.split(",");
+		if (fields.length != 4) {
+			System.err.println("A cache is described by SIZE,WAYS,LINE,LATENCY, not " + arg);
+			System.exit(2);
+		}
+		int[] geometry = new int[4];
+		for (int i=0; i<4; i++) {
+			geometry[i] = Integer.parseInt(fields[i].trim());
+		}
+		return geometry;
+	}
+
+	private static String run(String name, AssembledProgram program, CacheHierarchy caches, long maxCycles) {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"program\":");
+		Json.string(json, name);
+		PipelinedSimulator sim = new PipelinedSimulator(program);
+		if (!sim.getCompileErrorMsgs().isEmpty()) {
+			return json.append(",\"status\":\"COMPILE_ERROR\"}").toString();
+		}
+		sim.setTraceLevel(TraceLevel.OFF, 0);
+		sim.setCacheHierarchy(caches);
+		PipelineStatistics stats;
+		try {
+			stats = sim.runToCompletion(maxCycles);
+		} catch (RuntimeException re) {
+			json.append(",\"status\":\"CRASH\",\"message\":");
+			Json.string(json, String.valueOf(re));
+			return json.append('}').toString();
+		}
+		json.append(",\"status\":\"").append(stats.getStatus().name()).append('"');
+		json.append(",\"cycles\":").append(stats.getCycles());
+		json.append(",\"instructions\":").append(stats.getInstructions());
+		json.append(",\"cpi\":").append(stats.getCPI());
+		json.append(",\"memoryStalls\":").append(stats.getMemoryStalls());
+		for (int i=0; i<caches.getLevels(); i++) {
+			Cache cache = caches.getLevel(i);
+			json.append(",\"l").append(i+1).append("\":{");
+			json.append("\"configuration\":");
+			Json.string(json, cache.getConfiguration().toString());
+			json.append(",\"accesses\":").append(cache.getAccesses());
+			json.append(",\"hits\":").append(cache.getHits());
+			json.append(",\"misses\":").append(cache.getMisses());
+			json.append(",\"missRate\":").append(cache.getMissRate());
+			json.append(",\"writeBacks\":").append(cache.getWriteBacks());
+			json.append('}');
+		}
+		json.append(",\"memoryReads\":").append(caches.getMemoryReads());
+		json.append(",\"memoryWrites\":").append(caches.getMemoryWrites());
+		return json.append('}').toString();
+	}
+}
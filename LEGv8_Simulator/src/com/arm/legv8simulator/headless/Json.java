@@ -0,0 +1,61 @@
+package com.arm.legv8simulator.headless;
+
+/**
+ * Helpers for writing the JSON emitted by the headless runner.
+ */
+final class Json {
+	
+	private Json() {}
+	
+	/**
+	 * Appends <code>value</code> to <code>json</code> as a quoted JSON string
+	 * 
+	 * @param json	the JSON being built
+	 * @param value	the string to append
+	 * @return		<code>json</code>
+	 */
+	static StringBuilder string(StringBuilder json, String value) {
+		json.append('"');
+		for (int i=0; i<value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"' :
+				json.append("\\\"");
+				break;
+			case '\\' :
+				json.append("\\\\");
+				break;
+			case '\n' :
+				json.append("\\n");
+				break;
+			case '\r' :
+				json.append("\\r");
+				break;
+			case '\t' :
+				json.append("\\t");
+				break;
+			default :
+				if (c < 0x20) {
+					json.append("\\u00");
+					json.append(Character.forDigit(c >> 4, 16));
+					json.append(Character.forDigit(c & 0xf, 16));
+				} else {
+					json.append(c);
+				}
+			}
+		}
+		return json.append('"');
+	}
+	
+	/**
+	 * Appends a 64-bit value as a quoted hexadecimal string, since JSON numbers cannot represent 
+	 * every <code>long</code> exactly
+	 * 
+	 * @param json	the JSON being built
+	 * @param value	the value to append
+	 * @return		<code>json</code>
+	 */
+	static StringBuilder hex(StringBuilder json, long value) {
+		return json.append("\"0x").append(Long.toHexString(value)).append('"');
+	}
+}
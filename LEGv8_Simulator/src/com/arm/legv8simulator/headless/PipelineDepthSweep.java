@@ -0,0 +1,130 @@
+package com.arm.legv8simulator.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import com.arm.legv8simulator.client.branchprediction.BranchPredictorModel;
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.TraceLevel;
+import com.arm.legv8simulator.client.executionmodes.AssembledProgram;
+import com.arm.legv8simulator.client.executionmodes.BranchResolution;
+import com.arm.legv8simulator.client.executionmodes.PipelineConfiguration;
+import com.arm.legv8simulator.client.executionmodes.PipelineStatistics;
+import com.arm.legv8simulator.client.executionmodes.PipelinedSimulator;
+
+/**
+ * <code>PipelineDepthSweep</code> runs LEGv8 programs on pipelines of increasing depth, so that the effect
+ * of the depth on CPI and throughput can be measured on the same workload. It runs on the JVM only and is
+ * not part of the GWT module.
+ * <p>
+ * At depth <code>k</code> every part of the five stage pipeline except write back is split into
+ * <code>k</code> stages, giving <code>4k+1</code> stages with the registers read in the last decode stage.
+ * The logic of the five stage pipeline is assumed to be divided evenly among the stages, plus a fixed latch
+ * overhead per stage, so the cycle time relative to that of the five stage pipeline is
+ * <code>(1-overhead)*5/stages + overhead</code>. The throughput is reported in instructions per five stage
+ * cycle.
+ * <p>
+ * One JSON record per program and depth is written to standard output. Usage:
+ * <code>PipelineDepthSweep [options] file...</code>. Options are <code>--max-depth K</code>,
+ * <code>--branch DECODE|EXECUTE|MEMORY</code>, <code>--predictor MODEL</code>, naming a
+ * <code>BranchPredictorModel</code>, <code>--overhead F</code>, the latch overhead as a fraction of the five
+ * stage cycle time, and <code>--max-cycles N</code>.
+ *
+ * @see PipelineConfiguration
+ * @see PipelineStatistics
+ */
+public class PipelineDepthSweep {
+
+	public static final int DEFAULT_MAX_DEPTH = 4;
+	public static final double DEFAULT_OVERHEAD = 0.1;
+	public static final long DEFAULT_MAX_CYCLES = 10000000L;
+
+	public static void main(String[] args) throws IOException {
+		int maxDepth = DEFAULT_MAX_DEPTH;
+		BranchResolution branchResolution = BranchResolution.DECODE;
+		BranchPredictorModel model = BranchPredictorModel.NOT_TAKEN;
+		double overhead = DEFAULT_OVERHEAD;
+		long maxCycles = DEFAULT_MAX_CYCLES;
+		ArrayList<File> files = new ArrayList<File>();
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals("--max-depth")) {
+				maxDepth = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--branch")) {
+				branchResolution = BranchResolution.valueOf(args[++i]);
+			} else if (args[i].equals("--predictor")) {
+				model = BranchPredictorModel.valueOf(args[++i]);
+			} else if (args[i].equals("--overhead")) {
+				overhead = Double.parseDouble(args[++i]);
+			} else if (args[i].equals("--max-cycles")) {
+				maxCycles = Long.parseLong(args[++i]);
+				if (maxCycles <= 0) maxCycles = CPU.UNLIMITED;
+			} else if (args[i].startsWith("--")) {
+				System.err.println("Unknown option " + args[i]);
+				System.exit(2);
+			} else {
+				files.add(new File(args[i]));
+			}
+		}
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		for (File file : files) {
+			AssembledProgram program;
+			try (FileChannel channel = FileChannel.open(file.toPath())) {
+				program = new StreamingAssembler(channel);
+			} catch (IOException ioe) {
+				StringBuilder json = new StringBuilder();
+				json.append("{\"program\":");
+				Json.string(json, file.getPath());
+				json.append(",\"status\":\"IO_ERROR\",\"message\":");
+				Json.string(json, String.valueOf(ioe.getMessage()));
+				out.println(json.append('}'));
+				continue;
+			}
+			for (int depth=1; depth<=maxDepth; depth++) {
+				PipelineConfiguration configuration =
+						new PipelineConfiguration(depth, depth, depth-1, depth, depth, branchResolution);
+				out.println(run(file.getPath(), program, configuration, model, overhead, maxCycles));
+			}
+			out.flush();
+		}
+		out.flush();
+	}
+
+	private static String run(String name, AssembledProgram program, PipelineConfiguration configuration,
+			BranchPredictorModel model, double overhead, long maxCycles) {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"program\":");
+		Json.string(json, name);
+		json.append(",\"stages\":").append(configuration.getStages());
+		json.append(",\"configuration\":");
+		Json.string(json, configuration.toString());
+		PipelinedSimulator sim = new PipelinedSimulator(program, configuration);
+		if (!sim.getCompileErrorMsgs().isEmpty()) {
+			return json.append(",\"status\":\"COMPILE_ERROR\"}").toString();
+		}
+		sim.setTraceLevel(TraceLevel.OFF, 0);
+		sim.setBranchPredictor(model.create());
+		PipelineStatistics stats;
+		try {
+			stats = sim.runToCompletion(maxCycles);
+		} catch (RuntimeException re) {
+			json.append(",\"status\":\"CRASH\",\"message\":");
+			Json.string(json, String.valueOf(re));
+			return json.append('}').toString();
+		}
+		double cycleTime = (1 - overhead) * PipelinedSimulator.PIPELINE_SIZE / configuration.getStages() + overhead;
+		json.append(",\"status\":\"").append(stats.getStatus().name()).append('"');
+		json.append(",\"cycles\":").append(stats.getCycles());
+		json.append(",\"instructions\":").append(stats.getInstructions());
+		json.append(",\"cpi\":").append(stats.getCPI());
+		json.append(",\"dataHazardStalls\":").append(stats.getDataHazardStalls());
+		json.append(",\"controlHazardFlushes\":").append(stats.getControlHazardFlushes());
+		json.append(",\"relativeCycleTime\":").append(cycleTime);
+		json.append(",\"throughput\":").append(stats.getInstructions() / (stats.getCycles() * cycleTime));
+		return json.append('}').toString();
+	}
+}
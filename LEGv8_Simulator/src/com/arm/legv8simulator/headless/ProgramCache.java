@@ -0,0 +1,237 @@
+package com.arm.legv8simulator.headless;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.executionmodes.AssembledProgram;
+import com.arm.legv8simulator.client.executionmodes.ProgramImage;
+
+/**
+ * A <code>ProgramCache</code> keeps assembled LEGv8 programs on disk, keyed by the SHA-256 digest of
+ * their source, so that a program run again unchanged is loaded without being lexed, parsed or decoded.
+ * It runs on the JVM only and is not part of the GWT module, and may be shared by several threads and
+ * processes.
+ * <p>
+ * Each entry is a file in the cache directory named after the digest, holding the
+ * <code>ProgramImage</code> of the program: the instructions as machine code words with their line
+ * numbers and control signal flags, the branch table and the compile errors. Entries are read through a 
+ * memory-mapped buffer and written to a temporary file which is then moved into place, so a reader never 
+ * sees a partly written entry. An entry that cannot be read, e.g. one written by another version or one the 
+ * process may not open, is treated as missing and replaced if possible.
+ *
+ * @see ProgramImage
+ * @see StreamingAssembler
+ */
+public class ProgramCache {
+
+	/**
+	 * @param directory	the directory holding the cache entries, created if it does not exist
+	 * @throws IOException	if the directory cannot be created
+	 */
+	public ProgramCache(Path directory) throws IOException {
+		this.directory = Files.createDirectories(directory);
+	}
+
+	/**
+	 * Assembles the UTF-8 program in <code>source</code>, or loads it from the cache if a program with
+	 * the same content has been assembled before
+	 *
+	 * @param source	the file holding the LEGv8 source code
+	 * @return			the assembled program; <code>getCode</code> returns an empty list if it was loaded
+	 * 					from the cache
+	 * @throws IOException	if reading <code>source</code> fails
+	 */
+	public AssembledProgram assemble(Path source) throws IOException {
+		try (FileChannel channel = FileChannel.open(source)) {
+			String key = digest(channel);
+			Path entry = directory.resolve(key + ENTRY_SUFFIX);
+			ProgramImage image = load(entry);
+			if (image != null) {
+				hits.incrementAndGet();
+				return image;
+			}
+			misses.incrementAndGet();
+			channel.position(0);
+			AssembledProgram program = new StreamingAssembler(channel);
+			try {
+				store(entry, ProgramImage.fromProgram(program));
+			} catch (IOException ioe) {
+				// the cache only saves work, a program that cannot be stored is still run
+			} catch (IllegalArgumentException iae) {
+				// a branch too far to encode, the program is assembled again next time
+			}
+			return program;
+		}
+	}
+
+	/**
+	 * @return	the number of programs loaded from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return	the number of programs assembled because they were not in the cache
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private static String digest(FileChannel channel) throws IOException {
+		MessageDigest sha;
+		try {
+			sha = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException(nsae);
+		}
+		if (channel.size() > 0) {
+			sha.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		StringBuilder key = new StringBuilder();
+		for (byte b : sha.digest()) {
+			key.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+		}
+		return key.toString();
+	}
+
+	/*
+	 * Returns the program held in the entry, or null if there is no readable entry. An entry that is missing 
+	 * or cannot be opened, e.g. because access to it is denied, is a miss like any other.
+	 */
+	private static ProgramImage load(Path entry) {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(entry)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException ioe) {
+			return null;
+		}
+		try {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+			int numInstructions = buffer.getInt();
+			if (numInstructions < 0 || numInstructions > buffer.remaining() / INSTRUCTION_ENTRY_SIZE) {
+				return null;
+			}
+			int[] text = new int[numInstructions];
+			int[] lineNumbers = new int[numInstructions];
+			boolean[] controlSignals = new boolean[numInstructions];
+			for (int i=0; i<numInstructions; i++) {
+				text[i] = buffer.getInt();
+				lineNumbers[i] = buffer.getInt();
+				controlSignals[i] = (buffer.get() & NO_CONTROL_SIGNALS) == 0;
+			}
+			int numLabels = buffer.getInt();
+			HashMap<String, Integer> branchTable = new HashMap<String, Integer>();
+			for (int i=0; i<numLabels; i++) {
+				String label = getString(buffer);
+				branchTable.put(label, buffer.getInt());
+			}
+			int numErrors = buffer.getInt();
+			if (numErrors < 0 || numErrors > buffer.remaining() / ERROR_ENTRY_SIZE) {
+				return null;
+			}
+			ArrayList<Error> compileErrors = new ArrayList<Error>(numErrors);
+			for (int i=0; i<numErrors; i++) {
+				int lineNumber = buffer.getInt();
+				compileErrors.add(new Error(getString(buffer), lineNumber));
+			}
+			return new ProgramImage(text, lineNumbers, controlSignals, branchTable, compileErrors);
+		} catch (BufferUnderflowException bue) {
+			return null;
+		} catch (IllegalArgumentException iae) {
+			return null;
+		}
+	}
+
+	private void store(Path entry, ProgramImage image) throws IOException {
+		int[] text = image.getText();
+		int[] lineNumbers = image.getLineNumbers();
+		boolean[] controlSignals = image.getControlSignals();
+		int size = 12 + text.length * INSTRUCTION_ENTRY_SIZE + 8;
+		ArrayList<byte[]> labels = new ArrayList<byte[]>();
+		ArrayList<Integer> targets = new ArrayList<Integer>();
+		for (Map.Entry<String, Integer> label : image.getBranchTable().entrySet()) {
+			labels.add(label.getKey().getBytes(StandardCharsets.UTF_8));
+			targets.add(label.getValue());
+			size += 8 + labels.get(labels.size()-1).length;
+		}
+		ArrayList<Error> compileErrors = image.getCompileErrors();
+		ArrayList<byte[]> messages = new ArrayList<byte[]>();
+		for (Error error : compileErrors) {
+			messages.add(error.getMsg().getBytes(StandardCharsets.UTF_8));
+			size += ERROR_ENTRY_SIZE + messages.get(messages.size()-1).length;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(text.length);
+		for (int i=0; i<text.length; i++) {
+			buffer.putInt(text[i]).putInt(lineNumbers[i]);
+			buffer.put(controlSignals[i] ? 0 : NO_CONTROL_SIGNALS);
+		}
+		buffer.putInt(labels.size());
+		for (int i=0; i<labels.size(); i++) {
+			buffer.putInt(labels.get(i).length).put(labels.get(i)).putInt(targets.get(i));
+		}
+		buffer.putInt(messages.size());
+		for (int i=0; i<messages.size(); i++) {
+			buffer.putInt(compileErrors.get(i).getLineNumber());
+			buffer.putInt(messages.get(i).length).put(messages.get(i));
+		}
+		buffer.flip();
+		Path temp = Files.createTempFile(directory, null, TEMP_SUFFIX);
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// "LGPC"
+	private static final int MAGIC = 0x4C475043;
+	// version 2 entries did not hold the compile errors
+	private static final int VERSION = 3;
+	// the machine code word, the line number and the flags
+	private static final int INSTRUCTION_ENTRY_SIZE = 9;
+	// the line number and the length of the message, which follows
+	private static final int ERROR_ENTRY_SIZE = 8;
+	// set for the pseudo instructions, BR and BL, which the Decoder gives no control signals
+	private static final byte NO_CONTROL_SIGNALS = 1;
+	private static final String ENTRY_SUFFIX = ".lpc";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final Path directory;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+}
@@ -0,0 +1,144 @@
+package com.arm.legv8simulator.headless;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.ExecutionEngine;
+import com.arm.legv8simulator.client.cpu.RunResult;
+import com.arm.legv8simulator.client.cpu.TraceLevel;
+import com.arm.legv8simulator.client.executionmodes.AssembledProgram;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+
+/**
+ * A <code>ProgramRun</code> assembles and executes a single LEGv8 program headless, with the CPU log 
+ * off, and formats the outcome as one line of JSON.
+ * <p>
+ * The <code>status</code> of the record is that of the <code>RunResult</code>, or 
+ * <code>COMPILE_ERROR</code> if the program did not assemble, <code>IO_ERROR</code> if it could not be 
+ * read, or <code>CRASH</code> if the simulator itself threw. Registers, the PC and the memory digest are 
+ * written as hexadecimal strings.
+ * 
+ * @see BatchRunner
+ */
+class ProgramRun {
+	
+	/**
+	 * @param name				the name of the program, written to the record
+	 * @param source			the file holding the LEGv8 source code
+	 * @param cache				the cache of assembled programs, <code>null</code> to always assemble
+	 * @param engine			the engine used to execute the program
+	 * @param maxInstructions	the instruction budget, <code>CPU.UNLIMITED</code> for no limit
+	 * @param timeoutMillis		the wall-clock budget in milliseconds, 0 for no limit
+	 */
+	ProgramRun(String name, Path source, ProgramCache cache, ExecutionEngine engine, long maxInstructions, long timeoutMillis) {
+		this.name = name;
+		this.source = source;
+		this.cache = cache;
+		this.engine = engine;
+		this.maxInstructions = maxInstructions;
+		this.timeoutMillis = timeoutMillis;
+	}
+	
+	/**
+	 * Assembles and executes the program
+	 * 
+	 * @return	the outcome as a single line of JSON, without a line terminator
+	 */
+	String execute() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"program\":");
+		Json.string(json, name);
+		AssembledProgram program;
+		try {
+			program = assemble();
+		} catch (IOException ioe) {
+			json.append(",\"status\":\"IO_ERROR\",\"message\":");
+			Json.string(json, String.valueOf(ioe.getMessage()));
+			return json.append('}').toString();
+		} catch (RuntimeException re) {
+			return crash(re);
+		}
+		try {
+			SingleCycleSimulator sim = new SingleCycleSimulator(program);
+			if (!sim.getCompileErrorMsgs().isEmpty()) {
+				json.append(",\"status\":\"COMPILE_ERROR\",\"errors\":[");
+				ArrayList<Error> errors = sim.getCompileErrorMsgs();
+				for (int i=0; i<errors.size(); i++) {
+					if (i > 0) json.append(',');
+					error(json, errors.get(i));
+				}
+				return json.append("]}").toString();
+			}
+			sim.setTraceLevel(TraceLevel.OFF, 0);
+			sim.setExecutionEngine(engine);
+			long deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : CPU.NO_DEADLINE;
+			RunResult result = sim.runCPU(maxInstructions, deadline);
+			instructionsExecuted = result.getInstructionsExecuted();
+			json.append(",\"status\":\"").append(result.getStatus().name()).append('"');
+			json.append(",\"instructions\":").append(instructionsExecuted);
+			if (result.getError() != null) {
+				json.append(",\"error\":");
+				error(json, result.getError());
+			}
+			json.append(",\"registers\":[");
+			for (int i=0; i<CPU.NUM_REGISTERS; i++) {
+				if (i > 0) json.append(',');
+				Json.hex(json, sim.getCPURegister(i));
+			}
+			json.append("],\"flags\":{\"N\":").append(sim.getCPUNflag());
+			json.append(",\"Z\":").append(sim.getCPUZflag());
+			json.append(",\"C\":").append(sim.getCPUCflag());
+			json.append(",\"V\":").append(sim.getCPUVflag());
+			json.append("},\"pc\":");
+			Json.hex(json, sim.getPC());
+			json.append(",\"memoryDigest\":");
+			Json.hex(json, sim.getMemoryDigest());
+			return json.append('}').toString();
+		} catch (RuntimeException re) {
+			return crash(re);
+		}
+	}
+	
+	private AssembledProgram assemble() throws IOException {
+		if (cache != null) {
+			return cache.assemble(source);
+		}
+		try (FileChannel channel = FileChannel.open(source)) {
+			return new StreamingAssembler(channel);
+		}
+	}
+	
+	private String crash(RuntimeException re) {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"program\":");
+		Json.string(json, name);
+		json.append(",\"status\":\"CRASH\",\"message\":");
+		Json.string(json, String.valueOf(re));
+		return json.append('}').toString();
+	}
+	
+	/**
+	 * @return	the number of instructions executed by the last call to <code>execute</code>
+	 */
+	long getInstructionsExecuted() {
+		return instructionsExecuted;
+	}
+	
+	private static void error(StringBuilder json, Error error) {
+		json.append("{\"line\":").append(error.getLineNumber()).append(",\"message\":");
+		Json.string(json, error.getMsg());
+		json.append('}');
+	}
+	
+	private String name;
+	private Path source;
+	private ProgramCache cache;
+	private ExecutionEngine engine;
+	private long maxInstructions;
+	private long timeoutMillis;
+	private long instructionsExecuted = 0;
+}
@@ -0,0 +1,228 @@
+package com.arm.legv8simulator.headless;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.executionmodes.AssembledProgram;
+import com.arm.legv8simulator.client.instruction.Decoder;
+import com.arm.legv8simulator.client.instruction.ImmediateOutOfBoundsException;
+import com.arm.legv8simulator.client.instruction.Instruction;
+import com.arm.legv8simulator.client.instruction.Mnemonic;
+import com.arm.legv8simulator.client.instruction.UndefinedLabelException;
+import com.arm.legv8simulator.client.lexer.TextLine;
+
+/**
+ * The <code>StreamingAssembler</code> assembles a LEGv8 program as it is read, for programs too large
+ * to hold as text lines, e.g. those generated by tools. It runs on the JVM only and is not part of
+ * the GWT module.
+ * <p>
+ * Each line is lexed, parsed and, unless it branches to a label, decoded as soon as it is read, then
+ * discarded. A branch is kept as a fix-up holding only its mnemonic and arguments until the whole
+ * program has been read, when it is decoded against the complete branch table. Lines are split and
+ * numbered exactly as in the text editor of the web app, so the instructions and compile errors
+ * are the same as those of a <code>LEGv8_Simulator</code> given the same source. The source lines
+ * themselves are not retained; <code>getCode</code> returns an empty list.
+ *
+ * @see AssembledProgram
+ */
+public class StreamingAssembler implements AssembledProgram {
+
+	/**
+	 * Assembles the program read from <code>source</code>. The reader is not closed.
+	 *
+	 * @param source	the LEGv8 source code
+	 * @throws IOException	if reading <code>source</code> fails
+	 */
+	public StreamingAssembler(Reader source) throws IOException {
+		StringBuilder line = new StringBuilder();
+		char[] buffer = new char[BUFFER_SIZE];
+		int read;
+		while ((read = source.read(buffer)) != -1) {
+			for (int i=0; i<read; i++) {
+				if (buffer[i] == '\n') {
+					assembleLine(line.toString().trim());
+					line.setLength(0);
+				} else {
+					line.append(buffer[i]);
+				}
+			}
+		}
+		// the text editor ignores a final unterminated line of a single character
+		if (line.length() > 1) {
+			assembleLine(line.toString().trim());
+		}
+		resolveFixUps();
+	}
+
+	/**
+	 * Assembles the UTF-8 program read from <code>source</code>, replacing malformed input. 
+	 * The channel is not closed.
+	 *
+	 * @param source	the LEGv8 source code
+	 * @throws IOException	if reading <code>source</code> fails
+	 */
+	public StreamingAssembler(ReadableByteChannel source) throws IOException {
+		this(Channels.newReader(source, StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE), -1));
+	}
+
+	/*
+	 * The first pass, performed on each line as it is read
+	 */
+	private void assembleLine(String source) {
+		int lineNumber = numLines++;
+		if (source.isEmpty()) {
+			return;
+		}
+		TextLine line = new TextLine(source);
+		line.tokenize();
+		if (line.getNumTokens() == 0) {
+			return;
+		}
+		String parseError = line.parse();
+		if (parseError != null) {
+			compileErrors.add(new Error(parseError, lineNumber));
+		}
+		if (line.getLabel() != null) {
+			branchTable.put(line.getLabel(), numMnemonics);
+		}
+		Mnemonic mnemonic = line.getMnemonic();
+		if (mnemonic == null) {
+			return;
+		}
+		numMnemonics++;
+		if (Decoder.getLabelArgument(mnemonic, line.getArgs()) != null) {
+			fixUps.add(new FixUp(mnemonic, line.getArgs(), lineNumber, cpuInstructions.size()));
+			cpuInstructions.add(null);
+			return;
+		}
+		try {
+			cpuInstructions.add(Decoder.getInstruction(mnemonic, line.getArgs(), lineNumber, branchTable));
+		} catch (UndefinedLabelException ule) {
+			decodeErrors.add(new Error(ule.getMessage(), lineNumber));
+		} catch (ImmediateOutOfBoundsException ioobe) {
+			decodeErrors.add(new Error(ioobe.getMessage(), lineNumber));
+		}
+	}
+
+	/*
+	 * The second pass, decoding the branches to labels once the branch table is complete
+	 */
+	private void resolveFixUps() {
+		ArrayList<Error> labelErrors = new ArrayList<Error>();
+		boolean unresolved = false;
+		for (FixUp fixUp : fixUps) {
+			try {
+				cpuInstructions.set(fixUp.index, Decoder.getInstruction(fixUp.mnemonic, fixUp.args, fixUp.lineNumber, branchTable));
+			} catch (UndefinedLabelException ule) {
+				labelErrors.add(new Error(ule.getMessage(), fixUp.lineNumber));
+				unresolved = true;
+			} catch (ImmediateOutOfBoundsException ioobe) {
+				labelErrors.add(new Error(ioobe.getMessage(), fixUp.lineNumber));
+				unresolved = true;
+			}
+		}
+		if (unresolved) {
+			// as in LEGv8_Simulator, instructions which failed to decode are left out of the program
+			ArrayList<Instruction> resolved = new ArrayList<Instruction>(cpuInstructions.size());
+			int next = 0;
+			for (int i=0; i<cpuInstructions.size(); i++) {
+				if (next < fixUps.size() && fixUps.get(next).index == i) {
+					if (cpuInstructions.get(i) != null) {
+						resolved.add(cpuInstructions.get(i));
+					}
+					next++;
+				} else {
+					resolved.add(cpuInstructions.get(i));
+				}
+			}
+			cpuInstructions = resolved;
+		}
+		mergeDecodeErrors(labelErrors);
+		fixUps = null;
+	}
+
+	/*
+	 * Compile errors are reported with all parse errors first, then decode errors in line order
+	 */
+	private void mergeDecodeErrors(ArrayList<Error> labelErrors) {
+		int i = 0;
+		int j = 0;
+		while (i < decodeErrors.size() || j < labelErrors.size()) {
+			if (j == labelErrors.size() || i < decodeErrors.size()
+					&& decodeErrors.get(i).getLineNumber() < labelErrors.get(j).getLineNumber()) {
+				compileErrors.add(decodeErrors.get(i++));
+			} else {
+				compileErrors.add(labelErrors.get(j++));
+			}
+		}
+		decodeErrors = null;
+	}
+
+	/**
+	 * @return	an empty list, the source lines are not retained
+	 */
+	@Override
+	public ArrayList<TextLine> getCode() {
+		return new ArrayList<TextLine>();
+	}
+
+	@Override
+	public ArrayList<Error> getCompileErrors() {
+		return compileErrors;
+	}
+
+	@Override
+	public HashMap<String, Integer> getBranchTable() {
+		return branchTable;
+	}
+
+	@Override
+	public ArrayList<Instruction> getInstructions() {
+		return cpuInstructions;
+	}
+
+	/**
+	 * @return	the number of lines read, as numbered in the text editor
+	 */
+	public int getNumLines() {
+		return numLines;
+	}
+
+	/*
+	 * A branch to a label whose instruction is decoded in the second pass
+	 */
+	private static class FixUp {
+
+		FixUp(Mnemonic mnemonic, ArrayList<String> args, int lineNumber, int index) {
+			this.mnemonic = mnemonic;
+			this.args = args;
+			this.lineNumber = lineNumber;
+			this.index = index;
+		}
+
+		final Mnemonic mnemonic;
+		final ArrayList<String> args;
+		final int lineNumber;
+		// the position of the instruction in the program
+		final int index;
+	}
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private int numLines = 0;
+	private int numMnemonics = 0;
+	private ArrayList<Error> compileErrors = new ArrayList<Error>();
+	private ArrayList<Error> decodeErrors = new ArrayList<Error>();
+	private HashMap<String, Integer> branchTable = new HashMap<String, Integer>();
+	private ArrayList<Instruction> cpuInstructions = new ArrayList<Instruction>();
+	private ArrayList<FixUp> fixUps = new ArrayList<FixUp>();
+}
@@ -0,0 +1,465 @@
+package com.arm.legv8simulator.jit;
+
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.CompiledBlock;
+import com.arm.legv8simulator.client.instruction.InstructionTable;
+import com.arm.legv8simulator.client.instruction.Mnemonic;
+import com.arm.legv8simulator.client.memory.Memory;
+
+/**
+ * <code>BlockCompiler</code> translates a basic block of LEGv8 instructions into a JVM class extending 
+ * <code>CompiledBlock</code>, which the JVM's own JIT compiler can then compile to native code.
+ * <p>
+ * Register numbers, immediates and branch targets become constants in the generated bytecode; 
+ * registers are read and written directly in the CPU register file so that its state is exact 
+ * whenever an instruction throws. The generated code follows the semantics of <code>CPU</code> 
+ * instruction by instruction, including writes to XZR being ignored.
+ * 
+ * @see BlockJit
+ * @see CompiledBlock
+ */
+class BlockCompiler {
+	
+	private static final String BLOCK = "com/arm/legv8simulator/client/cpu/CompiledBlock";
+	private static final String CPU_CLASS = "Lcom/arm/legv8simulator/client/cpu/CPU;";
+	private static final String MEMORY = "com/arm/legv8simulator/client/memory/Memory";
+	private static final String MEMORY_CLASS = "L" + MEMORY + ";";
+	private static final String MNEMONIC = "com/arm/legv8simulator/client/instruction/Mnemonic";
+	private static final String EXECUTE_DESCRIPTOR = "(" + CPU_CLASS + "[J" + MEMORY_CLASS + ")I";
+	
+	// local variable slots of the generated execute method
+	private static final int THIS = 0;
+	private static final int CPU_LOCAL = 1;
+	private static final int REGISTERS = 2;
+	private static final int MEMORY_LOCAL = 3;
+	private static final int RESULT = 4;
+	private static final int ADDRESS = 6;
+	private static final int MAX_LOCALS = 8;
+	private static final int MAX_STACK = 12;
+	
+	/**
+	 * @param namePrefix	the internal name prefix of generated classes, e.g. <code>a/b/Block</code>
+	 */
+	BlockCompiler(String namePrefix) {
+		this.namePrefix = namePrefix;
+		loader = new BlockClassLoader(CompiledBlock.class.getClassLoader());
+	}
+	
+	/**
+	 * @param program	the instructions of the LEGv8 assembly program
+	 * @param start		the index of the first instruction in the block
+	 * @param end		the index after the last instruction in the block, which is the only 
+	 * 					instruction of the block that may be a branch
+	 * @return			a new instance of the generated class
+	 */
+	CompiledBlock compile(InstructionTable program, int start, int end) {
+		String className = namePrefix + "$" + start + "_" + (numClasses++);
+		ClassFileWriter classFile = new ClassFileWriter(className, BLOCK);
+		
+		BytecodeWriter init = new BytecodeWriter(classFile, 1, 1);
+		init.aload(THIS);
+		init.invoke(BytecodeWriter.INVOKESPECIAL, BLOCK, "<init>", "()V");
+		init.op(BytecodeWriter.RETURN);
+		classFile.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", init);
+		
+		BytecodeWriter code = new BytecodeWriter(classFile, MAX_STACK, MAX_LOCALS);
+		boolean endsInBranch = false;
+		for (int i=start; i<end; i++) {
+			endsInBranch = emit(code, program.getMnemonic(i), program.getArgs(i), i);
+		}
+		if (!endsInBranch) {
+			code.pushInt(end);
+			code.op(BytecodeWriter.IRETURN);
+		}
+		classFile.addMethod(ClassFileWriter.ACC_PUBLIC, "execute", EXECUTE_DESCRIPTOR, code);
+		
+		try {
+			Class<?> blockClass = loader.define(className.replace('/', '.'), classFile.toByteArray());
+			return (CompiledBlock) blockClass.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException roe) {
+			throw new IllegalStateException("Could not load compiled block " + className, roe);
+		}
+	}
+	
+	/**
+	 * @param mnemonic	an instruction mnemonic
+	 * @return			<code>true</code> if <code>mnemonic</code> may change the flow of control
+	 */
+	static boolean isBranch(Mnemonic mnemonic) {
+		switch (mnemonic) {
+		case CBZ :
+		case CBNZ :
+		case BEQ :
+		case BNE :
+		case BHS :
+		case BLO :
+		case BHI :
+		case BLS :
+		case BGE :
+		case BLT :
+		case BGT :
+		case BLE :
+		case BMI :
+		case BPL :
+		case BVS :
+		case BVC :
+		case B :
+		case BR :
+		case BL :
+			return true;
+		default :
+			return false;
+		}
+	}
+	
+	/*
+	 * Emits the bytecode for a single instruction. Returns true if the instruction is a branch, 
+	 * in which case the emitted code returns the index of the next instruction.
+	 */
+	private static boolean emit(BytecodeWriter code, Mnemonic mnemonic, int[] a, int index) {
+		switch (mnemonic) {
+		case ADD :
+			registerOp(code, a[0], a[1], a[2], BytecodeWriter.LADD);
+			return false;
+		case SUB :
+			registerOp(code, a[0], a[1], a[2], BytecodeWriter.LSUB);
+			return false;
+		case AND :
+			registerOp(code, a[0], a[1], a[2], BytecodeWriter.LAND);
+			return false;
+		case ORR :
+			registerOp(code, a[0], a[1], a[2], BytecodeWriter.LOR);
+			return false;
+		case EOR :
+			registerOp(code, a[0], a[1], a[2], BytecodeWriter.LXOR);
+			return false;
+		case ADDI :
+			immediateOp(code, a[0], a[1], a[2], BytecodeWriter.LADD);
+			return false;
+		case SUBI :
+			immediateOp(code, a[0], a[1], a[2], BytecodeWriter.LSUB);
+			return false;
+		case ANDI :
+			immediateOp(code, a[0], a[1], a[2], BytecodeWriter.LAND);
+			return false;
+		case ORRI :
+			immediateOp(code, a[0], a[1], a[2], BytecodeWriter.LOR);
+			return false;
+		case EORI :
+			immediateOp(code, a[0], a[1], a[2], BytecodeWriter.LXOR);
+			return false;
+		case LSL :
+			shiftOp(code, a[0], a[1], a[2], BytecodeWriter.LSHL);
+			return false;
+		case LSR :
+			shiftOp(code, a[0], a[1], a[2], BytecodeWriter.LUSHR);
+			return false;
+		case ADDS :
+			flagsOp(code, a[0], a[1], a[2], false, BytecodeWriter.LADD, "ADDSetFlags");
+			return false;
+		case ADDIS :
+			flagsOp(code, a[0], a[1], a[2], true, BytecodeWriter.LADD, "ADDSetFlags");
+			return false;
+		case SUBS :
+			flagsOp(code, a[0], a[1], a[2], false, BytecodeWriter.LSUB, "SUBSetFlags");
+			return false;
+		case SUBIS :
+			flagsOp(code, a[0], a[1], a[2], true, BytecodeWriter.LSUB, "SUBSetFlags");
+			return false;
+		case ANDS :
+			flagsOp(code, a[0], a[1], a[2], false, BytecodeWriter.LAND, "ANDSetFlags");
+			return false;
+		case ANDIS :
+			flagsOp(code, a[0], a[1], a[2], true, BytecodeWriter.LAND, "ANDSetFlags");
+			return false;
+		case LDUR :
+			load(code, index, a[0], a[1], a[2], "loadDoubleword");
+			return false;
+		case LDURSW :
+			load(code, index, a[0], a[1], a[2], "loadSignedWord");
+			return false;
+		case LDURH :
+			// the CPU computes the LDURH address from the destination register
+			load(code, index, a[0], a[0], a[2], a[1], "loadHalfword");
+			return false;
+		case LDURB :
+			load(code, index, a[0], a[1], a[2], "loadByte");
+			return false;
+		case STUR :
+			store(code, index, a[0], a[1], a[2], "storeDoubleword", Memory.DOUBLEWORD_SIZE);
+			return false;
+		case STURW :
+			store(code, index, a[0], a[1], a[2], "storeWord", Memory.WORD_SIZE);
+			return false;
+		case STURH :
+			store(code, index, a[0], a[1], a[2], "storeHalfword", Memory.HALFWORD_SIZE);
+			return false;
+		case STURB :
+			store(code, index, a[0], a[1], a[2], "storeByte", Memory.BYTE_SIZE);
+			return false;
+		case LDXR :
+			setInstructionIndex(code, index+1);
+			checkSPAlignment(code, a[1]);
+			if (a[0] != CPU.XZR) {
+				code.aload(CPU_LOCAL);
+				code.aload(REGISTERS);
+				code.pushInt(a[0]);
+				address(code, a[1], a[2]);
+				code.aload(MEMORY_LOCAL);
+				code.invoke(BytecodeWriter.INVOKESTATIC, BLOCK, "loadExclusive", 
+						"(" + CPU_CLASS + "[JIJ" + MEMORY_CLASS + ")V");
+			}
+			return false;
+		case STXR :
+			setInstructionIndex(code, index+1);
+			checkSPAlignment(code, a[2]);
+			code.aload(CPU_LOCAL);
+			code.aload(REGISTERS);
+			code.pushInt(a[0]);
+			code.pushInt(a[1]);
+			address(code, a[2], a[3]);
+			code.aload(MEMORY_LOCAL);
+			code.invoke(BytecodeWriter.INVOKESTATIC, BLOCK, "storeExclusive", 
+					"(" + CPU_CLASS + "[JIIJ" + MEMORY_CLASS + ")V");
+			return false;
+		case MOVZ :
+			if (a[0] != CPU.XZR) {
+				code.aload(REGISTERS);
+				code.pushInt(a[0]);
+				code.pushLong(a[1] << a[2]);
+				code.op(BytecodeWriter.LASTORE);
+			}
+			return false;
+		case MOVK :
+			if (a[0] != CPU.XZR) {
+				code.aload(REGISTERS);
+				code.pushInt(a[0]);
+				loadRegister(code, a[0]);
+				code.pushLong(a[1] << a[2]);
+				code.op(BytecodeWriter.LOR);
+				code.op(BytecodeWriter.LASTORE);
+			}
+			return false;
+		case CBZ :
+			loadRegister(code, a[0]);
+			code.op(BytecodeWriter.LCONST_0);
+			code.op(BytecodeWriter.LCMP);
+			conditionalBranch(code, BytecodeWriter.IFNE, true, a[1], index+1);
+			return true;
+		case CBNZ :
+			loadRegister(code, a[0]);
+			code.op(BytecodeWriter.LCONST_0);
+			code.op(BytecodeWriter.LCMP);
+			conditionalBranch(code, BytecodeWriter.IFEQ, true, a[1], index+1);
+			return true;
+		case BEQ :
+		case BNE :
+		case BHS :
+		case BLO :
+		case BHI :
+		case BLS :
+		case BGE :
+		case BLT :
+		case BGT :
+		case BLE :
+		case BMI :
+		case BPL :
+		case BVS :
+		case BVC :
+			code.aload(CPU_LOCAL);
+			code.getStatic(MNEMONIC, mnemonic.name(), "L" + MNEMONIC + ";");
+			code.invoke(BytecodeWriter.INVOKESTATIC, BLOCK, "conditionHolds", 
+					"(" + CPU_CLASS + "L" + MNEMONIC + ";)Z");
+			// the CPU does not record a taken B.LT branch
+			conditionalBranch(code, BytecodeWriter.IFEQ, mnemonic != Mnemonic.BLT, a[0], index+1);
+			return true;
+		case B :
+			code.aload(CPU_LOCAL);
+			code.invoke(BytecodeWriter.INVOKESTATIC, BLOCK, "setBranchTaken", "(" + CPU_CLASS + ")V");
+			code.pushInt(a[0]);
+			code.op(BytecodeWriter.IRETURN);
+			return true;
+		case BR :
+			setInstructionIndex(code, index+1);
+			code.aload(CPU_LOCAL);
+			loadRegister(code, a[0]);
+			code.aload(MEMORY_LOCAL);
+			code.invoke(BytecodeWriter.INVOKESTATIC, BLOCK, "branchToRegister", 
+					"(" + CPU_CLASS + "J" + MEMORY_CLASS + ")I");
+			code.op(BytecodeWriter.IRETURN);
+			return true;
+		case BL :
+			code.aload(REGISTERS);
+			code.pushInt(CPU.LR);
+			code.pushLong((index+1) * CPU.INSTRUCTION_SIZE + Memory.TEXT_SEGMENT_OFFSET);
+			code.op(BytecodeWriter.LASTORE);
+			code.pushInt(a[0]);
+			code.op(BytecodeWriter.IRETURN);
+			return true;
+		default :
+			return false;
+		}
+	}
+	
+	// x[dest] = x[op1] OP x[op2]
+	private static void registerOp(BytecodeWriter code, int dest, int op1, int op2, int opcode) {
+		if (dest == CPU.XZR) return;
+		code.aload(REGISTERS);
+		code.pushInt(dest);
+		loadRegister(code, op1);
+		loadRegister(code, op2);
+		code.op(opcode);
+		code.op(BytecodeWriter.LASTORE);
+	}
+	
+	// x[dest] = x[op1] OP imm
+	private static void immediateOp(BytecodeWriter code, int dest, int op1, int imm, int opcode) {
+		if (dest == CPU.XZR) return;
+		code.aload(REGISTERS);
+		code.pushInt(dest);
+		loadRegister(code, op1);
+		code.pushLong(imm);
+		code.op(opcode);
+		code.op(BytecodeWriter.LASTORE);
+	}
+	
+	// x[dest] = x[op1] SHIFT imm
+	private static void shiftOp(BytecodeWriter code, int dest, int op1, int imm, int opcode) {
+		if (dest == CPU.XZR) return;
+		code.aload(REGISTERS);
+		code.pushInt(dest);
+		loadRegister(code, op1);
+		code.pushInt(imm);
+		code.op(opcode);
+		code.op(BytecodeWriter.LASTORE);
+	}
+	
+	/*
+	 * result = x[op1] OP op2; x[dest] = result; then the flags are set from the result and from the 
+	 * operand registers as read after the destination is written, as the CPU does.
+	 */
+	private static void flagsOp(BytecodeWriter code, int dest, int op1, int op2, boolean immediate, 
+			int opcode, String setFlags) {
+		loadRegister(code, op1);
+		operand(code, op2, immediate);
+		code.op(opcode);
+		code.lstore(RESULT);
+		if (dest != CPU.XZR) {
+			code.aload(REGISTERS);
+			code.pushInt(dest);
+			code.lload(RESULT);
+			code.op(BytecodeWriter.LASTORE);
+		}
+		code.aload(CPU_LOCAL);
+		code.lload(RESULT);
+		if (opcode == BytecodeWriter.LAND) {
+			code.invoke(BytecodeWriter.INVOKESTATIC, BLOCK, setFlags, "(" + CPU_CLASS + "J)V");
+		} else {
+			loadRegister(code, op1);
+			operand(code, op2, immediate);
+			code.invoke(BytecodeWriter.INVOKESTATIC, BLOCK, setFlags, "(" + CPU_CLASS + "JJJ)V");
+		}
+	}
+	
+	private static void load(BytecodeWriter code, int index, int dest, int base, int offset, String method) {
+		load(code, index, dest, base, offset, base, method);
+	}
+	
+	// x[dest] = memory.method(x[base] + offset), with the SP alignment checked if spReg is SP
+	private static void load(BytecodeWriter code, int index, int dest, int base, int offset, int spReg, 
+			String method) {
+		setInstructionIndex(code, index+1);
+		checkSPAlignment(code, spReg);
+		if (dest == CPU.XZR) return;
+		code.aload(REGISTERS);
+		code.pushInt(dest);
+		code.aload(MEMORY_LOCAL);
+		address(code, base, offset);
+		code.invoke(BytecodeWriter.INVOKEVIRTUAL, MEMORY, method, "(J)J");
+		code.op(BytecodeWriter.LASTORE);
+	}
+	
+	// memory.method(x[base] + offset, x[val]), then the exclusive access tag is cleared if overlapped
+	private static void store(BytecodeWriter code, int index, int val, int base, int offset, String method, 
+			int size) {
+		setInstructionIndex(code, index+1);
+		checkSPAlignment(code, base);
+		address(code, base, offset);
+		code.lstore(ADDRESS);
+		code.aload(MEMORY_LOCAL);
+		code.lload(ADDRESS);
+		loadRegister(code, val);
+		code.invoke(BytecodeWriter.INVOKEVIRTUAL, MEMORY, method, "(JJ)V");
+		code.aload(CPU_LOCAL);
+		code.lload(ADDRESS);
+		code.pushInt(size);
+		code.invoke(BytecodeWriter.INVOKESTATIC, BLOCK, "clearExclusiveAccessTag", "(" + CPU_CLASS + "JI)V");
+	}
+	
+	/*
+	 * Returns branchIndex if the branch is taken, i.e. the int on the stack compares with zero 
+	 * opposite to notTakenOpcode, and fallThrough otherwise.
+	 */
+	private static void conditionalBranch(BytecodeWriter code, int notTakenOpcode, boolean recordTaken, 
+			int branchIndex, int fallThrough) {
+		int notTaken = code.branch(notTakenOpcode);
+		if (recordTaken) {
+			code.aload(CPU_LOCAL);
+			code.invoke(BytecodeWriter.INVOKESTATIC, BLOCK, "setBranchTaken", "(" + CPU_CLASS + ")V");
+		}
+		code.pushInt(branchIndex);
+		code.op(BytecodeWriter.IRETURN);
+		code.bind(notTaken);
+		code.pushInt(fallThrough);
+		code.op(BytecodeWriter.IRETURN);
+	}
+	
+	// the index of the next instruction is set before anything that may throw, as the CPU does
+	private static void setInstructionIndex(BytecodeWriter code, int index) {
+		code.aload(CPU_LOCAL);
+		code.pushInt(index);
+		code.invoke(BytecodeWriter.INVOKESTATIC, BLOCK, "setInstructionIndex", "(" + CPU_CLASS + "I)V");
+	}
+	
+	private static void checkSPAlignment(BytecodeWriter code, int baseReg) {
+		if (baseReg != CPU.SP) return;
+		code.aload(REGISTERS);
+		code.invoke(BytecodeWriter.INVOKESTATIC, BLOCK, "checkSPAlignment", "([J)V");
+	}
+	
+	private static void address(BytecodeWriter code, int base, int offset) {
+		loadRegister(code, base);
+		code.pushLong(offset);
+		code.op(BytecodeWriter.LADD);
+	}
+	
+	private static void operand(BytecodeWriter code, int op2, boolean immediate) {
+		if (immediate) {
+			code.pushLong(op2);
+		} else {
+			loadRegister(code, op2);
+		}
+	}
+	
+	private static void loadRegister(BytecodeWriter code, int reg) {
+		code.aload(REGISTERS);
+		code.pushInt(reg);
+		code.op(BytecodeWriter.LALOAD);
+	}
+	
+	// one loader per compiler, so generated classes can be unloaded along with it
+	private static final class BlockClassLoader extends ClassLoader {
+		
+		BlockClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+		
+		Class<?> define(String name, byte[] classFile) {
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+	
+	private String namePrefix;
+	private BlockClassLoader loader;
+	private int numClasses = 0;
+}
@@ -0,0 +1,176 @@
+package com.arm.legv8simulator.jit;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.CompiledBlock;
+import com.arm.legv8simulator.client.cpu.ExecutionTier;
+import com.arm.legv8simulator.client.cpu.PredecodedProgram;
+import com.arm.legv8simulator.client.instruction.InstructionTable;
+import com.arm.legv8simulator.client.memory.Memory;
+
+/**
+ * <code>BlockJit</code> is an execution tier which compiles hot basic blocks of a LEGv8 program to 
+ * JVM bytecode. It runs only on the JVM, e.g. headless, and is not part of the GWT module.
+ * <p>
+ * The program is split into basic blocks at every label in the branch table and after every branch. 
+ * Each time execution enters a block its counter is incremented; once the counter reaches the compile 
+ * threshold the block is compiled by <code>BlockCompiler</code> and from then on executed in a single 
+ * call. All other instructions, including those reached by BR in the middle of a block, are executed 
+ * one at a time on a <code>PredecodedProgram</code>.
+ * <p>
+ * Registers, flags, memory and runtime errors, including their line numbers, are exactly as for 
+ * <code>CPU.run</code>. As with <code>PredecodedProgram</code>, nothing is written to the CPU log, so 
+ * single stepping and the pipeline view continue to use the interpreter.
+ * <p>
+ * The blocks compiled for a program, and their entry counts, are kept for later runs of the same program, 
+ * so a program run repeatedly is only compiled once, even by different simulators. Programs are told apart 
+ * by the instructions in their <code>InstructionTable</code>, which cannot change, and their branch table; 
+ * the most recently run programs are kept. A <code>BlockJit</code> must not be used by more than one thread 
+ * at a time.
+ * 
+ * @see BlockCompiler
+ * @see ExecutionTier
+ */
+public class BlockJit implements ExecutionTier {
+	
+	public static final int DEFAULT_COMPILE_THRESHOLD = 100;
+	
+	// keeps generated methods well below the JVM's limits on method size
+	private static final int MAX_BLOCK_LENGTH = 256;
+	
+	private static final String CLASS_NAME_PREFIX = "com/arm/legv8simulator/jit/Block";
+	
+	// the number of programs whose compiled blocks are kept
+	private static final int MAX_CACHED_PROGRAMS = 16;
+	
+	public BlockJit() {
+		this(DEFAULT_COMPILE_THRESHOLD);
+	}
+	
+	/**
+	 * @param compileThreshold	the number of times a block is entered before it is compiled. 
+	 * 							0 compiles every block on first entry.
+	 */
+	public BlockJit(int compileThreshold) {
+		this.compileThreshold = compileThreshold;
+	}
+	
+	@Override
+	public Error run(CPU cpu, InstructionTable table, HashMap<String, Integer> branchTable, Memory memory) {
+		CompiledProgram compiled = compiledProgram(table, branchTable);
+		PredecodedProgram program = compiled.program;
+		BlockCompiler compiler = compiled.compiler;
+		int numInstructions = program.size();
+		int[] blockEnds = compiled.blockEnds;
+		int[] entryCounts = compiled.entryCounts;
+		CompiledBlock[] blocks = compiled.blocks;
+		Error error;
+		while (cpu.getInstructionIndex() < numInstructions) {
+			int index = cpu.getInstructionIndex();
+			CompiledBlock block = blocks[index];
+			if (block == null && blockEnds[index] != 0 && entryCounts[index]++ >= compileThreshold) {
+				block = compiler.compile(table, index, blockEnds[index]);
+				blocks[index] = block;
+				numCompiledBlocks++;
+			}
+			if (block != null) {
+				error = cpu.executeBlock(block, program, memory);
+			} else {
+				error = cpu.executeInstruction(program, memory);
+			}
+			if (error != null) {
+				return error;
+			}
+		}
+		return null;
+	}
+	
+	/*
+	 * Returns the blocks compiled so far for the program, starting afresh if it has not been run or its 
+	 * labels have changed since
+	 */
+	private CompiledProgram compiledProgram(InstructionTable table, HashMap<String, Integer> branchTable) {
+		CompiledProgram compiled = programs.get(table);
+		if (compiled == null || !compiled.branchTable.equals(branchTable)) {
+			compiled = new CompiledProgram(table, branchTable);
+			programs.put(table, compiled);
+		}
+		return compiled;
+	}
+	
+	/**
+	 * @return	the number of blocks compiled by this tier in all calls to <code>run</code>
+	 */
+	public int getNumCompiledBlocks() {
+		return numCompiledBlocks;
+	}
+	
+	/*
+	 * Returns, for the first instruction of each basic block, the index after its last instruction. 
+	 * The entry for every other instruction is 0. Blocks start at index 0, at each label and after 
+	 * each branch, and end with the first branch or before the start of the next block.
+	 */
+	private static int[] findBlocks(InstructionTable table, HashMap<String, Integer> branchTable) {
+		int numInstructions = table.size();
+		boolean[] leaders = new boolean[numInstructions+1];
+		leaders[0] = true;
+		for (Integer target : branchTable.values()) {
+			if (target < numInstructions) {
+				leaders[target] = true;
+			}
+		}
+		for (int i=0; i<numInstructions; i++) {
+			if (BlockCompiler.isBranch(table.getMnemonic(i))) {
+				leaders[i+1] = true;
+			}
+		}
+		int[] blockEnds = new int[numInstructions];
+		int start = 0;
+		for (int i=1; i<=numInstructions; i++) {
+			if (leaders[i] || i == numInstructions || i-start == MAX_BLOCK_LENGTH) {
+				if (start < numInstructions) {
+					blockEnds[start] = i;
+				}
+				start = i;
+			}
+		}
+		return blockEnds;
+	}
+	
+	// the state kept between runs of a program; the compiler's class loader holds the generated classes
+	private static final class CompiledProgram {
+		
+		CompiledProgram(InstructionTable table, HashMap<String, Integer> branchTable) {
+			this.branchTable = new HashMap<String, Integer>(branchTable);
+			program = new PredecodedProgram(table);
+			compiler = new BlockCompiler(CLASS_NAME_PREFIX);
+			blockEnds = findBlocks(table, branchTable);
+			entryCounts = new int[table.size()];
+			blocks = new CompiledBlock[table.size()];
+		}
+		
+		final HashMap<String, Integer> branchTable;
+		final PredecodedProgram program;
+		final BlockCompiler compiler;
+		final int[] blockEnds;
+		final int[] entryCounts;
+		final CompiledBlock[] blocks;
+	}
+	
+	private int compileThreshold;
+	private int numCompiledBlocks = 0;
+	// the most recently run programs, least recently run first
+	private final LinkedHashMap<InstructionTable, CompiledProgram> programs = 
+			new LinkedHashMap<InstructionTable, CompiledProgram>(MAX_CACHED_PROGRAMS, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<InstructionTable, CompiledProgram> eldest) {
+			return size() > MAX_CACHED_PROGRAMS;
+		}
+	};
+}
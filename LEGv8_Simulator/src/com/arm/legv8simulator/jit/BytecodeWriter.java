@@ -0,0 +1,168 @@
+package com.arm.legv8simulator.jit;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * <code>BytecodeWriter</code> assembles the body of a single method. Only the instructions needed 
+ * by <code>BlockCompiler</code> are provided. Branches are forward only: <code>branch</code> returns 
+ * the position of a branch whose target is later fixed with <code>bind</code>.
+ * 
+ * @see ClassFileWriter
+ */
+class BytecodeWriter {
+	
+	static final int LCONST_0 = 0x09;
+	static final int LALOAD = 0x2f;
+	static final int LASTORE = 0x50;
+	static final int LADD = 0x61;
+	static final int LSUB = 0x65;
+	static final int LSHL = 0x79;
+	static final int LUSHR = 0x7d;
+	static final int LAND = 0x7f;
+	static final int LOR = 0x81;
+	static final int LXOR = 0x83;
+	static final int LCMP = 0x94;
+	static final int IFEQ = 0x99;
+	static final int IFNE = 0x9a;
+	static final int IRETURN = 0xac;
+	static final int RETURN = 0xb1;
+	static final int GETSTATIC = 0xb2;
+	static final int INVOKEVIRTUAL = 0xb6;
+	static final int INVOKESPECIAL = 0xb7;
+	static final int INVOKESTATIC = 0xb8;
+	
+	private static final int ICONST_0 = 0x03;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int LDC_W = 0x13;
+	private static final int LDC2_W = 0x14;
+	private static final int LLOAD = 0x16;
+	private static final int ALOAD = 0x19;
+	private static final int LSTORE = 0x37;
+	
+	/**
+	 * @param classFile	the class whose constant pool is used by this method
+	 * @param maxStack	the maximum depth of the operand stack
+	 * @param maxLocals	the number of local variable slots, including the parameters
+	 */
+	BytecodeWriter(ClassFileWriter classFile, int maxStack, int maxLocals) {
+		this.classFile = classFile;
+		this.maxStack = maxStack;
+		this.maxLocals = maxLocals;
+		code = new ByteArrayOutputStream();
+	}
+	
+	void op(int opcode) {
+		code.write(opcode);
+	}
+	
+	void aload(int local) {
+		code.write(ALOAD);
+		code.write(local);
+	}
+	
+	void lload(int local) {
+		code.write(LLOAD);
+		code.write(local);
+	}
+	
+	void lstore(int local) {
+		code.write(LSTORE);
+		code.write(local);
+	}
+	
+	void pushInt(int value) {
+		if (value >= -1 && value <= 5) {
+			code.write(ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			code.write(BIPUSH);
+			code.write(value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			code.write(SIPUSH);
+			writeShort(value);
+		} else {
+			code.write(LDC_W);
+			writeShort(classFile.intConstant(value));
+		}
+	}
+	
+	void pushLong(long value) {
+		if (value == 0) {
+			code.write(LCONST_0);
+		} else {
+			code.write(LDC2_W);
+			writeShort(classFile.longConstant(value));
+		}
+	}
+	
+	void invoke(int opcode, String owner, String name, String descriptor) {
+		code.write(opcode);
+		writeShort(classFile.methodRef(owner, name, descriptor));
+	}
+	
+	void getStatic(String owner, String name, String descriptor) {
+		code.write(GETSTATIC);
+		writeShort(classFile.fieldRef(owner, name, descriptor));
+	}
+	
+	/**
+	 * @param opcode	a conditional branch instruction
+	 * @return			the position of the branch, to be passed to <code>bind</code>
+	 */
+	int branch(int opcode) {
+		int position = code.size();
+		code.write(opcode);
+		writeShort(0);
+		return position;
+	}
+	
+	/**
+	 * Sets the target of a previously emitted branch to the current position
+	 * 
+	 * @param branchPosition	the value returned by <code>branch</code>
+	 */
+	void bind(int branchPosition) {
+		if (bindings == null) {
+			bindings = new int[4];
+		} else if (numBindings == bindings.length) {
+			int[] newBindings = new int[bindings.length * 2];
+			System.arraycopy(bindings, 0, newBindings, 0, numBindings);
+			bindings = newBindings;
+		}
+		bindings[numBindings++] = branchPosition;
+		bindings[numBindings++] = code.size();
+	}
+	
+	int getMaxStack() {
+		return maxStack;
+	}
+	
+	int getMaxLocals() {
+		return maxLocals;
+	}
+	
+	/**
+	 * @return	the bytecode of the method with every branch offset filled in
+	 */
+	byte[] toByteArray() {
+		byte[] bytes = code.toByteArray();
+		for (int i=0; i<numBindings; i+=2) {
+			int offset = bindings[i+1] - bindings[i];
+			bytes[bindings[i]+1] = (byte) (offset >> 8);
+			bytes[bindings[i]+2] = (byte) offset;
+		}
+		return bytes;
+	}
+	
+	private void writeShort(int value) {
+		code.write(value >> 8);
+		code.write(value);
+	}
+	
+	private ClassFileWriter classFile;
+	private ByteArrayOutputStream code;
+	private int maxStack;
+	private int maxLocals;
+	private int[] bindings;
+	private int numBindings = 0;
+}
@@ -0,0 +1,235 @@
+package com.arm.legv8simulator.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A minimal writer for Java class files: a constant pool, a superclass and a list of methods, with no 
+ * fields, interfaces or debug attributes. It is just enough for the classes generated by 
+ * <code>BlockCompiler</code>.
+ * <p>
+ * Classes are written as version 49 (Java 5) class files, which are verified by type inference, so no 
+ * stack map frames have to be computed for the branches in generated code.
+ * 
+ * @see BlockCompiler
+ * @see BytecodeWriter
+ */
+class ClassFileWriter {
+	
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+	
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final int MAJOR_VERSION = 49;
+	
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	
+	/**
+	 * @param className		the internal name of the class to write, e.g. <code>a/b/C</code>
+	 * @param superName		the internal name of its superclass
+	 */
+	ClassFileWriter(String className, String superName) {
+		constantPool = new ByteArrayOutputStream();
+		pool = new DataOutputStream(constantPool);
+		constants = new HashMap<String, Integer>();
+		methods = new ArrayList<byte[]>();
+		poolCount = 1;
+		thisClass = classRef(className);
+		superClass = classRef(superName);
+	}
+	
+	/**
+	 * Adds a method to the class
+	 * 
+	 * @param access		the access flags of the method
+	 * @param name			the name of the method
+	 * @param descriptor	the method descriptor, e.g. <code>(J)V</code>
+	 * @param code			the bytecode of the method body
+	 */
+	void addMethod(int access, String name, String descriptor, BytecodeWriter code) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		byte[] body = code.toByteArray();
+		try {
+			out.writeShort(access);
+			out.writeShort(utf8(name));
+			out.writeShort(utf8(descriptor));
+			out.writeShort(1);
+			out.writeShort(utf8("Code"));
+			out.writeInt(12 + body.length);
+			out.writeShort(code.getMaxStack());
+			out.writeShort(code.getMaxLocals());
+			out.writeInt(body.length);
+			out.write(body);
+			out.writeShort(0);	// no exception table
+			out.writeShort(0);	// no attributes
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+		methods.add(bytes.toByteArray());
+	}
+	
+	/**
+	 * @return	the complete class file
+	 */
+	byte[] toByteArray() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(0);
+			out.writeShort(MAJOR_VERSION);
+			out.writeShort(poolCount);
+			out.write(constantPool.toByteArray());
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0);	// interfaces
+			out.writeShort(0);	// fields
+			out.writeShort(methods.size());
+			for (byte[] method : methods) {
+				out.write(method);
+			}
+			out.writeShort(0);	// attributes
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+		return bytes.toByteArray();
+	}
+	
+	/*
+	 * Each of the following returns the constant pool index of a constant, adding it to the pool 
+	 * the first time it is requested.
+	 */
+	
+	int utf8(String value) {
+		String key = "U" + value;
+		Integer index = constants.get(key);
+		if (index != null) {
+			return index;
+		}
+		try {
+			pool.writeByte(CONSTANT_UTF8);
+			pool.writeUTF(value);
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+		return add(key, 1);
+	}
+	
+	int intConstant(int value) {
+		String key = "I" + value;
+		Integer index = constants.get(key);
+		if (index != null) {
+			return index;
+		}
+		try {
+			pool.writeByte(CONSTANT_INTEGER);
+			pool.writeInt(value);
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+		return add(key, 1);
+	}
+	
+	int longConstant(long value) {
+		String key = "J" + value;
+		Integer index = constants.get(key);
+		if (index != null) {
+			return index;
+		}
+		try {
+			pool.writeByte(CONSTANT_LONG);
+			pool.writeLong(value);
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+		// long constants take up two entries in the pool
+		return add(key, 2);
+	}
+	
+	int classRef(String internalName) {
+		String key = "C" + internalName;
+		Integer index = constants.get(key);
+		if (index != null) {
+			return index;
+		}
+		int name = utf8(internalName);
+		try {
+			pool.writeByte(CONSTANT_CLASS);
+			pool.writeShort(name);
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+		return add(key, 1);
+	}
+	
+	int methodRef(String owner, String name, String descriptor) {
+		return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+	}
+	
+	int fieldRef(String owner, String name, String descriptor) {
+		return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+	}
+	
+	private int memberRef(int tag, String owner, String name, String descriptor) {
+		String key = tag + owner + "." + name + descriptor;
+		Integer index = constants.get(key);
+		if (index != null) {
+			return index;
+		}
+		int ownerIndex = classRef(owner);
+		int nameAndType = nameAndType(name, descriptor);
+		try {
+			pool.writeByte(tag);
+			pool.writeShort(ownerIndex);
+			pool.writeShort(nameAndType);
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+		return add(key, 1);
+	}
+	
+	private int nameAndType(String name, String descriptor) {
+		String key = "N" + name + " " + descriptor;
+		Integer index = constants.get(key);
+		if (index != null) {
+			return index;
+		}
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		try {
+			pool.writeByte(CONSTANT_NAME_AND_TYPE);
+			pool.writeShort(nameIndex);
+			pool.writeShort(descriptorIndex);
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+		return add(key, 1);
+	}
+	
+	private int add(String key, int slots) {
+		int index = poolCount;
+		poolCount += slots;
+		constants.put(key, index);
+		return index;
+	}
+	
+	private ByteArrayOutputStream constantPool;
+	private DataOutputStream pool;
+	private HashMap<String, Integer> constants;
+	private ArrayList<byte[]> methods;
+	private int poolCount;
+	private int thisClass;
+	private int superClass;
+}
@@ -0,0 +1,135 @@
+package com.arm.legv8simulator;
+
+import java.util.ArrayList;
+
+import com.arm.legv8simulator.client.executionmodes.LEGv8_Simulator;
+import com.arm.legv8simulator.client.lexer.TextLine;
+
+/**
+ * LEGv8 programs, and helpers to load and compare them, shared by the tests
+ */
+public final class TestPrograms {
+	
+	/**
+	 * A loop of arithmetic and logical instructions run 1000 times, followed by flag setting 
+	 * instructions and a conditional branch
+	 */
+	public static final String ARITHMETIC_LOOP = 
+			"	MOVZ X1, #1000\n" + 
+			"	MOVZ X2, #0\n" + 
+			"	ADDI X3, XZR, #3\n" + 
+			"loop:	ADD X2, X2, X3\n" + 
+			"	EORI X4, X2, #255\n" + 
+			"	ORR X5, X4, X2\n" + 
+			"	AND X6, X5, X3\n" + 
+			"	LSL X7, X6, #3\n" + 
+			"	LSR X8, X7, #1\n" + 
+			"	SUB X9, X8, X6\n" + 
+			"	SUBIS X1, X1, #1\n" + 
+			"	B.NE loop\n" + 
+			"	ANDS X10, X2, X3\n" + 
+			"	ADDS X11, X2, X3\n" + 
+			"	MOVK X12, #7, LSL #16\n" + 
+			"	CBZ X1, done\n" + 
+			"	ADDI X13, X13, #1\n" + 
+			"done:	ORRI X14, X13, #9\n";
+	
+	/**
+	 * Fills part of the heap with figures of every size, copies it and uses the stack, which is only 
+	 * quadword aligned 12 bytes below its base
+	 */
+	public static final String MEMORY_COPY = 
+			"	MOVZ X9, #4096, LSL #16\n" + 
+			"	ADDI X10, X9, #1024\n" + 
+			"	MOVZ X1, #64\n" + 
+			"	SUBI X2, XZR, #5\n" + 
+			"fill:	STUR X2, [X9, #0]\n" + 
+			"	STURW X2, [X9, #8]\n" + 
+			"	STURH X1, [X9, #12]\n" + 
+			"	STURB X2, [X9, #14]\n" + 
+			"	ADDI X9, X9, #16\n" + 
+			"	SUBI X2, X2, #3\n" + 
+			"	SUBIS X1, X1, #1\n" + 
+			"	CBNZ X1, fill\n" + 
+			"	MOVZ X9, #4096, LSL #16\n" + 
+			"	MOVZ X1, #64\n" + 
+			"copy:	LDUR X3, [X9, #0]\n" + 
+			"	LDURSW X4, [X9, #8]\n" + 
+			"	LDURB X5, [X9, #14]\n" + 
+			"	STUR X3, [X10, #0]\n" + 
+			"	STUR X4, [X10, #8]\n" + 
+			"	ADD X7, X7, X5\n" + 
+			"	ADDI X9, X9, #16\n" + 
+			"	ADDI X10, X10, #16\n" + 
+			"	SUBI X1, X1, #1\n" + 
+			"	CBNZ X1, copy\n" + 
+			"	SUBI SP, SP, #12\n" + 
+			"	STUR X7, [SP, #0]\n" + 
+			"	LDUR X11, [SP, #0]\n";
+	
+	/**
+	 * Counts down a counter in memory with a read-modify-write sequence, then loads from an address 
+	 * outside the stack and heap
+	 */
+	public static final String SEGMENT_FAULT = 
+			"	MOVZ X9, #4096, LSL #16\n" + 
+			"	MOVZ X1, #20\n" + 
+			"	SUBI X5, XZR, #1\n" + 
+			"	STUR X1, [X9, #0]\n" + 
+			"count:	LDUR X2, [X9, #0]\n" + 
+			"	ADD X2, X2, X5\n" + 
+			"	STUR X2, [X9, #0]\n" + 
+			"	CBNZ X2, count\n" + 
+			"	LDUR X3, [XZR, #0]\n" + 
+			"	ADDI X4, X4, #1\n";
+	
+	/**
+	 * Calls a function with BL and loops in it on a conditional branch
+	 */
+	public static final String CALL = 
+			"	MOVZ X0, #5\n" + 
+			"	BL func\n" + 
+			"	ADDI X1, X1, #1\n" + 
+			"	B end\n" + 
+			"func:	ADDI X2, X2, #1\n" + 
+			"	SUBIS X0, X0, #1\n" + 
+			"	B.GT func\n" + 
+			"	ADDI X3, X3, #7\n" + 
+			"end:	ADDI X4, X4, #1\n";
+	
+	public static final String[] ALL = {ARITHMETIC_LOOP, MEMORY_COPY, SEGMENT_FAULT, CALL};
+	
+	private TestPrograms() {}
+	
+	/**
+	 * @param source	LEGv8 source code
+	 * @return			the lines of <code>source</code>, as the text editor would supply them
+	 */
+	public static ArrayList<TextLine> code(String source) {
+		ArrayList<TextLine> code = new ArrayList<TextLine>();
+		for (String line : source.split("\n")) {
+			code.add(new TextLine(line.trim()));
+		}
+		return code;
+	}
+	
+	/**
+	 * @param sim	a simulator
+	 * @return		the registers, flags, PC, memory digest and runtime error of <code>sim</code>
+	 */
+	public static String state(LEGv8_Simulator sim) {
+		StringBuilder state = new StringBuilder();
+		for (int i=0; i<32; i++) {
+			state.append('X').append(i).append('=').append(Long.toHexString(sim.getCPURegister(i))).append(' ');
+		}
+		state.append("NZCV=").append(sim.getCPUNflag()).append(sim.getCPUZflag()).append(sim.getCPUCflag())
+				.append(sim.getCPUVflag());
+		state.append(" PC=").append(Long.toHexString(sim.getPC()));
+		state.append(" memory=").append(Long.toHexString(sim.getMemoryDigest()));
+		if (sim.getRuntimeErrorMsg() != null) {
+			state.append(" error=").append(sim.getRuntimeErrorMsg().getLineNumber()).append(':')
+					.append(sim.getRuntimeErrorMsg().getMsg());
+		}
+		return state.toString();
+	}
+}
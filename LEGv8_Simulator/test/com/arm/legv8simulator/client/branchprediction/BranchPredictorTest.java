@@ -0,0 +1,178 @@
+package com.arm.legv8simulator.client.branchprediction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.executionmodes.PipelineStatistics;
+import com.arm.legv8simulator.client.executionmodes.PipelinedSimulator;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+
+public class BranchPredictorTest {
+	
+	private static final int NOT_TAKEN = BranchPredictor.NOT_TAKEN;
+	private static final long MAX_CYCLES = 1000000;
+	
+	// calls a function which returns with BR ten times
+	private static final String RETURNS =
+			"	MOVZ X0, #10\n" +
+			"loop:	BL func\n" +
+			"	SUBIS X0, X0, #1\n" +
+			"	B.NE loop\n" +
+			"	B end\n" +
+			"func:	ADDI X1, X1, #1\n" +
+			"	BR X30\n" +
+			"end:	ADDI X2, X1, #0\n";
+	
+	@Test
+	public void staticPredictors() {
+		BranchPredictor notTaken = new NotTakenPredictor();
+		BranchPredictor btfn = new BackwardTakenPredictor();
+		for (int i=0; i<3; i++) {
+			assertEquals(NOT_TAKEN, notTaken.predict(10, 3));
+			assertEquals(NOT_TAKEN, notTaken.predict(3, 10));
+			assertEquals(3, btfn.predict(10, 3));
+			assertEquals(NOT_TAKEN, btfn.predict(3, 10));
+			notTaken.update(10, true, 3);
+			btfn.update(3, true, 10);
+		}
+	}
+	
+	@Test
+	public void oneBitPredictsTheLastOutcome() {
+		BranchPredictor predictor = new OneBitPredictor(16);
+		assertEquals(NOT_TAKEN, predictor.predict(5, 2));
+		predictor.update(5, true, 2);
+		assertEquals(2, predictor.predict(5, 2));
+		predictor.update(5, false, 2);
+		assertEquals(NOT_TAKEN, predictor.predict(5, 2));
+		// branches whose indices have the same low bits share an entry
+		predictor.update(21, true, 2);
+		assertEquals(2, predictor.predict(5, 2));
+	}
+	
+	@Test
+	public void twoBitCountersSaturate() {
+		BranchPredictor predictor = new TwoBitPredictor(16);
+		// weakly not taken
+		assertEquals(NOT_TAKEN, predictor.predict(5, 2));
+		predictor.update(5, true, 2);
+		assertEquals(2, predictor.predict(5, 2));
+		for (int i=0; i<5; i++) {
+			predictor.update(5, true, 2);
+		}
+		// strongly taken, so a single branch not taken does not change the prediction
+		predictor.update(5, false, 2);
+		assertEquals(2, predictor.predict(5, 2));
+		predictor.update(5, false, 2);
+		assertEquals(NOT_TAKEN, predictor.predict(5, 2));
+	}
+	
+	@Test
+	public void gshareLearnsPatternsTheCountersCannot() {
+		BranchPredictor gshare = new GsharePredictor(4);
+		BranchPredictor twoBit = new TwoBitPredictor(16);
+		int gshareMisses = 0;
+		int twoBitMisses = 0;
+		for (int i=0; i<100; i++) {
+			boolean taken = i % 2 == 0;
+			int expected = taken ? 2 : NOT_TAKEN;
+			if (i >= 50) {
+				gshareMisses += gshare.predict(5, 2) == expected ? 0 : 1;
+				twoBitMisses += twoBit.predict(5, 2) == expected ? 0 : 1;
+			}
+			gshare.update(5, taken, 2);
+			twoBit.update(5, taken, 2);
+		}
+		assertEquals(0, gshareMisses);
+		assertTrue(twoBitMisses >= 25);
+	}
+	
+	@Test
+	public void targetBufferPredictsRegisterBranches() {
+		BranchPredictor predictor = new BranchTargetBuffer(new BackwardTakenPredictor(), 8);
+		assertEquals(NOT_TAKEN, predictor.predict(5, -1));
+		predictor.update(5, true, 40);
+		assertEquals(40, predictor.predict(5, -1));
+		// branches with known targets are left to the direction predictor
+		assertEquals(2, predictor.predict(5, 2));
+		assertEquals(NOT_TAKEN, predictor.predict(5, 9));
+		// a branch mapped to the same entry replaces it
+		predictor.update(13, true, 50);
+		assertEquals(NOT_TAKEN, predictor.predict(5, -1));
+		assertEquals(50, predictor.predict(13, -1));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void tableSizesMustBePowersOfTwo() {
+		new TwoBitPredictor(12);
+	}
+	
+	@Test
+	public void mispredictionsOfTheLoops() {
+		// the loop branch is taken 999 times, then the forward CBZ once
+		assertMispredictions(TestPrograms.ARITHMETIC_LOOP, new long[] {1000, 2, 3, 3, 13});
+		// BL, then the backward B.GT is taken 4 times
+		assertMispredictions(TestPrograms.CALL, new long[] {5, 2, 3, 3, 4});
+	}
+	
+	@Test
+	public void predictorsDoNotChangeTheResults() {
+		for (String source : new String[] {TestPrograms.ARITHMETIC_LOOP, TestPrograms.MEMORY_COPY,
+				TestPrograms.CALL, RETURNS}) {
+			SingleCycleSimulator expected = new SingleCycleSimulator(TestPrograms.code(source));
+			expected.runCPU();
+			long instructions = -1;
+			for (BranchPredictorModel model : BranchPredictorModel.values()) {
+				PipelinedSimulator sim = simulator(source, model.createWithTargetBuffer());
+				PipelineStatistics statistics = sim.runToCompletion(MAX_CYCLES);
+				assertEquals(TestPrograms.state(expected), TestPrograms.state(sim));
+				if (instructions >= 0) {
+					assertEquals(instructions, statistics.getInstructions());
+				}
+				instructions = statistics.getInstructions();
+			}
+		}
+	}
+	
+	@Test
+	public void targetBufferPredictsReturns() {
+		for (BranchPredictorModel model : BranchPredictorModel.values()) {
+			PipelineStatistics without = simulator(RETURNS, model.create()).runToCompletion(MAX_CYCLES);
+			PipelineStatistics with = simulator(RETURNS, model.createWithTargetBuffer()).runToCompletion(MAX_CYCLES);
+			assertEquals(31, with.getBranches());
+			// only the first return is mispredicted
+			assertEquals(without.getMispredictions() - 9, with.getMispredictions());
+			assertTrue(with.getCycles() < without.getCycles());
+		}
+	}
+	
+	/*
+	 * Checks the mispredictions of each model, in the order of BranchPredictorModel, and that every
+	 * misprediction costs a cycle
+	 */
+	private static void assertMispredictions(String source, long[] mispredictions) {
+		BranchPredictorModel[] models = BranchPredictorModel.values();
+		PipelineStatistics first = null;
+		for (int i=0; i<models.length; i++) {
+			PipelineStatistics statistics = simulator(source, models[i].create()).runToCompletion(MAX_CYCLES);
+			assertEquals(models[i].name(), mispredictions[i], statistics.getMispredictions());
+			assertEquals(statistics.getMispredictions(), statistics.getControlHazardFlushes());
+			if (first == null) {
+				first = statistics;
+			} else {
+				assertEquals(first.getBranches(), statistics.getBranches());
+				assertEquals(first.getCycles() - first.getMispredictions(),
+						statistics.getCycles() - statistics.getMispredictions());
+			}
+		}
+	}
+	
+	private static PipelinedSimulator simulator(String source, BranchPredictor predictor) {
+		PipelinedSimulator sim = new PipelinedSimulator(TestPrograms.code(source));
+		sim.setBranchPredictor(predictor);
+		return sim;
+	}
+}
@@ -0,0 +1,59 @@
+package com.arm.legv8simulator.client.cpu;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.executionmodes.LEGv8_Simulator;
+import com.arm.legv8simulator.client.executionmodes.PipelinedSimulator;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+import com.arm.legv8simulator.client.memory.Memory;
+import com.arm.legv8simulator.jit.BlockJit;
+
+public class BranchAndLinkTest {
+
+	// calls a function that returns with BR X30, and leaves if entered a second time
+	private static final String CALL_AND_RETURN =
+			"	MOVZ X0, #3\n" +
+			"	BL func\n" +
+			"	ADDI X1, X1, #1\n" +
+			"	B end\n" +
+			"func:	CBNZ X2, end\n" +
+			"	ADDI X2, X2, #1\n" +
+			"	BR X30\n" +
+			"end:	ADDI X3, X3, #1\n";
+
+	// the address of the instruction after BL
+	private static final long RETURN_ADDRESS = Memory.TEXT_SEGMENT_OFFSET + 2 * CPU.INSTRUCTION_SIZE;
+
+	@Test
+	public void theLinkRegisterHoldsTheAddressOfTheNextInstruction() {
+		SingleCycleSimulator sim = new SingleCycleSimulator(TestPrograms.code(CALL_AND_RETURN));
+		sim.executeInstruction();
+		sim.executeInstruction();
+		assertEquals(RETURN_ADDRESS, sim.getCPURegister(CPU.LR));
+		assertEquals(Memory.TEXT_SEGMENT_OFFSET + 4 * CPU.INSTRUCTION_SIZE, sim.getPC());
+		sim.runCPU();
+		assertReturned(sim);
+	}
+
+	@Test
+	public void everyEngineReturnsFromTheCall() {
+		SingleCycleSimulator predecoded = new SingleCycleSimulator(TestPrograms.code(CALL_AND_RETURN));
+		predecoded.setExecutionEngine(ExecutionEngine.PREDECODED);
+		predecoded.runCPU();
+		assertReturned(predecoded);
+		SingleCycleSimulator compiled = new SingleCycleSimulator(TestPrograms.code(CALL_AND_RETURN));
+		compiled.runCPU(new BlockJit(0));
+		assertReturned(compiled);
+		PipelinedSimulator pipelined = new PipelinedSimulator(TestPrograms.code(CALL_AND_RETURN));
+		pipelined.runToCompletion(CPU.UNLIMITED);
+		assertReturned(pipelined);
+	}
+
+	private static void assertReturned(LEGv8_Simulator sim) {
+		assertEquals(RETURN_ADDRESS, sim.getCPURegister(CPU.LR));
+		assertEquals("1 1 1", sim.getCPURegister(1) + " " + sim.getCPURegister(2) + " " + sim.getCPURegister(3));
+	}
+}
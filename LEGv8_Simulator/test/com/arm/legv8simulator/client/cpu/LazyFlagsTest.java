@@ -0,0 +1,162 @@
+package com.arm.legv8simulator.client.cpu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.executionmodes.Checkpoint;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+
+public class LazyFlagsTest {
+
+	// operands either side of where the carry and overflow flags change
+	private static final long[] VALUES = {
+		0, 1, 2, -1, -2,
+		Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1, Long.MAX_VALUE - 1,
+		0x7FFFFFFFL, 0x80000000L, 0xFFFFFFFFL, -0x80000000L, 0x4000000000000000L
+	};
+
+	private static final int[] IMMEDIATES = {0, 1, 4095};
+
+	private static final int ADD = 0;
+	private static final int SUB = 1;
+	private static final int AND = 2;
+
+	// the flags are read after each instruction, and read again after a branch on them
+	private static final String CONDITIONS =
+			"	B.VS overflow\n" +
+			"	ADDI X7, X7, #1\n" +
+			"overflow:	B.HS carry\n" +
+			"	ADDI X8, X8, #1\n" +
+			"carry:	B.GE greater\n" +
+			"	ADDI X9, X9, #1\n" +
+			"greater:	ADDI X10, X10, #1\n";
+
+	@Test
+	public void registerFormsSetTheFlagsAsWhenEvaluatedEagerly() {
+		for (long a : VALUES) {
+			for (long b : VALUES) {
+				assertFlags("ADDS X3, X1, X2", ADD, a, b);
+				assertFlags("SUBS X3, X1, X2", SUB, a, b);
+				assertFlags("ANDS X3, X1, X2", AND, a, b);
+				// the result is discarded, as by CMP
+				assertFlags("SUBS XZR, X1, X2", SUB, a, b);
+			}
+		}
+	}
+
+	@Test
+	public void immediateFormsSetTheFlagsAsWhenEvaluatedEagerly() {
+		for (long a : VALUES) {
+			for (int immediate : IMMEDIATES) {
+				assertFlags("ADDIS X3, X1, #" + immediate, ADD, a, immediate);
+				assertFlags("SUBIS X3, X1, #" + immediate, SUB, a, immediate);
+				assertFlags("ANDIS X3, X1, #" + immediate, AND, a, immediate);
+			}
+		}
+	}
+
+	@Test
+	public void pendingFlagsAreKeptBySavingAndRestoring() {
+		String source = "	ADDS X3, X1, X2\n" + CONDITIONS;
+		for (long a : VALUES) {
+			for (long b : VALUES) {
+				SingleCycleSimulator sim = simulator(source, a, b);
+				sim.executeInstruction();
+				String flags = eager(ADD, a, b);
+				byte[] bytes = sim.saveCheckpoint().toByteArray();
+				// restored over flags still pending from another instruction
+				SingleCycleSimulator restored = simulator("	ANDS X3, X1, X2\n" + CONDITIONS, 0, 0);
+				restored.executeInstruction();
+				restored.restoreCheckpoint(Checkpoint.fromByteArray(bytes));
+				assertEquals(a + " " + b, flags, flags(restored));
+				sim.runCPU();
+				restored.runCPU();
+				assertEquals(TestPrograms.state(sim), TestPrograms.state(restored));
+			}
+		}
+	}
+
+	@Test
+	public void steppingBackPutsBackPendingFlags() {
+		String source =
+				"	ADDS X3, X1, X2\n" +
+				"	ANDS X4, X1, X2\n" +
+				"	SUBS X5, X1, X2\n" + CONDITIONS;
+		for (long a : VALUES) {
+			for (long b : VALUES) {
+				SingleCycleSimulator sim = simulator(source, a, b);
+				sim.executeInstruction();
+				sim.executeInstruction();
+				sim.executeInstruction();
+				assertEquals(eager(SUB, a, b), flags(sim));
+				assertTrue(sim.stepBack());
+				assertEquals(eager(AND, a, b), flags(sim));
+				assertTrue(sim.stepBack());
+				assertEquals(eager(ADD, a, b), flags(sim));
+				sim.executeInstruction();
+				sim.executeInstruction();
+				sim.runCPU();
+				SingleCycleSimulator straight = simulator(source, a, b);
+				straight.runCPU();
+				assertEquals(TestPrograms.state(straight), TestPrograms.state(sim));
+			}
+		}
+	}
+
+	/*
+	 * Executes the instruction with X1 holding a and X2 holding b, starting from flags that are all set,
+	 * then checks the flags and the branches taken on them
+	 */
+	private static void assertFlags(String instruction, int operation, long a, long b) {
+		String source = "	" + instruction + "\n" + CONDITIONS;
+		SingleCycleSimulator sim = simulator(source, a, b);
+		sim.executeInstruction();
+		String expected = eager(operation, a, b);
+		assertEquals(instruction + " " + a + " " + b, expected, flags(sim));
+		sim.runCPU();
+		assertEquals(instruction + " " + a + " " + b, expected, flags(sim));
+		assertEquals(expected.charAt(3) == 'V' ? 0 : 1, sim.getCPURegister(7));
+		assertEquals(expected.charAt(2) == 'C' ? 0 : 1, sim.getCPURegister(8));
+		assertEquals((expected.charAt(0) == 'N') == (expected.charAt(3) == 'V') ? 0 : 1, sim.getCPURegister(9));
+	}
+
+	private static SingleCycleSimulator simulator(String source, long a, long b) {
+		SingleCycleSimulator sim = new SingleCycleSimulator(TestPrograms.code(source));
+		long[] registers = new long[CPU.NUM_REGISTERS];
+		registers[1] = a;
+		registers[2] = b;
+		sim.restoreCheckpoint(new Checkpoint(new CPUSnapshot(registers, true, true, true, true, 0, 0, false, false),
+				sim.saveCheckpoint().getMemorySnapshot()));
+		return sim;
+	}
+
+	/*
+	 * The flags as the CPU set them when each flag-setting instruction executed, before they were
+	 * evaluated only when read, including the int shift used to test the sign bit for overflow
+	 */
+	private static String eager(int operation, long a, long b) {
+		long result = operation == ADD ? a + b : operation == SUB ? a - b : a & b;
+		boolean C = false;
+		boolean V = false;
+		if (operation != AND) {
+			C = ((MSB(~result) + MSB(a) + MSB(b)) & 2L) != 0;
+			V = (((a^~b) & (a^result)) & (1<<63)) != 0;
+		}
+		return flags(result < 0, result == 0, C, V);
+	}
+
+	private static long MSB(long value) {
+		return value >>> 63;
+	}
+
+	private static String flags(SingleCycleSimulator sim) {
+		return flags(sim.getCPUNflag(), sim.getCPUZflag(), sim.getCPUCflag(), sim.getCPUVflag());
+	}
+
+	private static String flags(boolean N, boolean Z, boolean C, boolean V) {
+		return (N ? "N" : "-") + (Z ? "Z" : "-") + (C ? "C" : "-") + (V ? "V" : "-");
+	}
+}
@@ -0,0 +1,89 @@
+package com.arm.legv8simulator.client.cpu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+
+public class PredecodedProgramTest {
+	
+	@Test
+	public void readModifyWriteSequencesAreFused() {
+		assertFused(true, 
+				"	LDUR X2, [X9, #8]\n" + 
+				"	ADD X2, X2, X5\n" + 
+				"	STUR X2, [X9, #8]\n");
+		assertFused(true, 
+				"	LDUR X2, [X9, #8]\n" + 
+				"	ADD X3, X5, X2\n" + 
+				"	STUR X3, [X9, #8]\n");
+	}
+	
+	@Test
+	public void otherLoadAddStoreSequencesAreNotFused() {
+		// the ADD does not use the loaded register
+		assertFused(false, 
+				"	LDUR X2, [X9, #8]\n" + 
+				"	ADD X3, X4, X5\n" + 
+				"	STUR X3, [X9, #8]\n");
+		// the sum is stored to another address
+		assertFused(false, 
+				"	LDUR X2, [X9, #8]\n" + 
+				"	ADD X2, X2, X5\n" + 
+				"	STUR X2, [X9, #16]\n");
+		assertFused(false, 
+				"	LDUR X2, [X9, #8]\n" + 
+				"	ADD X2, X2, X5\n" + 
+				"	STUR X2, [X10, #8]\n");
+		// another register is stored
+		assertFused(false, 
+				"	LDUR X2, [X9, #8]\n" + 
+				"	ADD X3, X2, X5\n" + 
+				"	STUR X2, [X9, #8]\n");
+		// the load or the ADD changes the base register
+		assertFused(false, 
+				"	LDUR X9, [X9, #8]\n" + 
+				"	ADD X2, X9, X5\n" + 
+				"	STUR X2, [X9, #8]\n");
+		assertFused(false, 
+				"	LDUR X2, [X9, #8]\n" + 
+				"	ADD X9, X2, X5\n" + 
+				"	STUR X9, [X9, #8]\n");
+		// XZR is loaded or summed into
+		assertFused(false, 
+				"	LDUR XZR, [X9, #8]\n" + 
+				"	ADD X2, XZR, X5\n" + 
+				"	STUR X2, [X9, #8]\n");
+		assertFused(false, 
+				"	LDUR X2, [X9, #8]\n" + 
+				"	ADD XZR, X2, X5\n" + 
+				"	STUR XZR, [X9, #8]\n");
+	}
+	
+	@Test
+	public void superinstructionsRunAsTheirInstructions() {
+		for (String source : TestPrograms.ALL) {
+			SingleCycleSimulator interpreted = new SingleCycleSimulator(TestPrograms.code(source));
+			interpreted.runCPU();
+			SingleCycleSimulator predecoded = new SingleCycleSimulator(TestPrograms.code(source));
+			predecoded.setExecutionEngine(ExecutionEngine.PREDECODED);
+			predecoded.runCPU();
+			assertEquals(TestPrograms.state(interpreted), TestPrograms.state(predecoded));
+		}
+	}
+	
+	private static void assertFused(boolean fused, String source) {
+		SingleCycleSimulator sim = new SingleCycleSimulator(TestPrograms.code(source));
+		assertEquals(0, sim.getCompileErrorMsgs().size());
+		PredecodedProgram program = new PredecodedProgram(sim.getProgram());
+		if (fused) {
+			assertNotSame(source, program.getOperation(0), program.getSuperinstruction(0));
+		} else {
+			assertSame(source, program.getOperation(0), program.getSuperinstruction(0));
+		}
+	}
+}
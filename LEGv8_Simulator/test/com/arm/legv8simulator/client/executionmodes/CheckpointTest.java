@@ -0,0 +1,130 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.CPUSnapshot;
+import com.arm.legv8simulator.client.memory.Memory;
+import com.arm.legv8simulator.client.memory.MemorySnapshot;
+import com.arm.legv8simulator.client.memory.SegmentFaultException;
+
+public class CheckpointTest {
+
+	private static final long HEAP = Memory.DYNAMIC_DATA_SEGMENT_OFFSET;
+	private static final int DOUBLEWORDS = Memory.PAGE_SIZE / Memory.DOUBLEWORD_SIZE;
+	// header, CPU state, static data segment offset and number of pages
+	private static final int FIXED_SIZE = 8 + CPU.NUM_REGISTERS * 8 + 1 + 4 + 8 + 8 + 4;
+	// page number and bitmap
+	private static final int PAGE_SIZE = 8 + DOUBLEWORDS / 8;
+
+	@Test
+	public void checkpointsRoundTrip() throws SegmentFaultException {
+		Memory memory = new Memory(10);
+		// partially populated: the first and last doublewords and either side of a bitmap word
+		memory.storeDoubleword(HEAP, -1);
+		memory.storeByte(HEAP + 63*8 + 7, 0x80);
+		memory.storeHalfword(HEAP + 64*8, 0x1234);
+		memory.storeDoubleword(HEAP + Memory.PAGE_SIZE - 8, 0x8000000000000001L);
+		// a full page further on
+		long full = HEAP + 16*Memory.PAGE_SIZE;
+		for (int i=0; i<DOUBLEWORDS; i++) {
+			memory.storeDoubleword(full + i*8, i+1);
+		}
+		long[] registers = new long[CPU.NUM_REGISTERS];
+		for (int i=0; i<registers.length; i++) {
+			registers[i] = (long) i << 58 | i;
+		}
+		Checkpoint checkpoint = new Checkpoint(
+				new CPUSnapshot(registers, true, false, true, false, 7, HEAP + 8, true, false), memory.snapshot());
+		byte[] bytes = checkpoint.toByteArray();
+		assertEquals("LGCK", new String(Arrays.copyOf(bytes, 4)));
+		assertEquals(FIXED_SIZE + 2*PAGE_SIZE + 4*8 + DOUBLEWORDS*8, bytes.length);
+		Checkpoint read = Checkpoint.fromByteArray(bytes);
+		CPUSnapshot cpu = read.getCPUSnapshot();
+		for (int i=0; i<registers.length; i++) {
+			assertEquals(registers[i], cpu.getRegister(i));
+		}
+		assertEquals("true false true false", cpu.getNflag() + " " + cpu.getZflag() + " " + cpu.getCflag()
+				+ " " + cpu.getVflag());
+		assertEquals(7, cpu.getInstructionIndex());
+		assertEquals(HEAP + 8, cpu.getTaggedAddress());
+		assertEquals(true, cpu.getBranchTaken());
+		assertEquals(false, cpu.getSTXRSucceed());
+		MemorySnapshot expected = checkpoint.getMemorySnapshot();
+		MemorySnapshot actual = read.getMemorySnapshot();
+		assertEquals(expected.getStaticDataSegmentOffset(), actual.getStaticDataSegmentOffset());
+		assertArrayEquals(expected.getPageNumbers(), actual.getPageNumbers());
+		for (long pageNumber : expected.getPageNumbers()) {
+			assertArrayEquals(expected.getPage(pageNumber), actual.getPage(pageNumber));
+		}
+		assertArrayEquals(bytes, read.toByteArray());
+		// the memory read back holds the same figures
+		Memory restored = new Memory(10);
+		restored.restore(actual);
+		assertEquals(memory.digest(), restored.digest());
+		assertEquals(0x80, restored.loadByte(HEAP + 63*8 + 7));
+		assertEquals(0, restored.loadDoubleword(HEAP + 8));
+	}
+
+	@Test
+	public void restoredCheckpointsRunAsTheOriginal() {
+		for (String source : TestPrograms.ALL) {
+			SingleCycleSimulator sim = new SingleCycleSimulator(TestPrograms.code(source));
+			// part way through the program
+			for (int i=0; i<40 && i<sim.getProgram().size(); i++) {
+				sim.executeInstruction();
+			}
+			byte[] bytes = sim.saveCheckpoint().toByteArray();
+			String state = TestPrograms.state(sim);
+			sim.runCPU();
+			SingleCycleSimulator other = new SingleCycleSimulator(TestPrograms.code(source));
+			other.restoreCheckpoint(Checkpoint.fromByteArray(bytes));
+			assertEquals(state, TestPrograms.state(other));
+			other.runCPU();
+			assertEquals(TestPrograms.state(sim), TestPrograms.state(other));
+		}
+	}
+
+	@Test
+	public void restoringACheckpointLeavesItUnchanged() {
+		SingleCycleSimulator sim = new SingleCycleSimulator(TestPrograms.code(TestPrograms.MEMORY_COPY));
+		for (int i=0; i<100; i++) {
+			sim.executeInstruction();
+		}
+		Checkpoint checkpoint = sim.saveCheckpoint();
+		byte[] bytes = checkpoint.toByteArray();
+		String state = TestPrograms.state(sim);
+		sim.runCPU();
+		sim.restoreCheckpoint(checkpoint);
+		assertEquals(state, TestPrograms.state(sim));
+		sim.runCPU();
+		assertArrayEquals(bytes, checkpoint.toByteArray());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void checkpointsMustStartWithTheMagicNumber() {
+		byte[] bytes = new SingleCycleSimulator(TestPrograms.code(TestPrograms.CALL)).saveCheckpoint().toByteArray();
+		bytes[0] = 'X';
+		Checkpoint.fromByteArray(bytes);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void truncatedCheckpointsAreRejected() {
+		SingleCycleSimulator sim = new SingleCycleSimulator(TestPrograms.code(TestPrograms.MEMORY_COPY));
+		sim.runCPU();
+		byte[] bytes = sim.saveCheckpoint().toByteArray();
+		Checkpoint.fromByteArray(Arrays.copyOf(bytes, bytes.length - 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void checkpointsOnlyRestoreIntoTheSameProgram() {
+		Checkpoint checkpoint = new SingleCycleSimulator(TestPrograms.code(TestPrograms.CALL)).saveCheckpoint();
+		new SingleCycleSimulator(TestPrograms.code(TestPrograms.MEMORY_COPY)).restoreCheckpoint(checkpoint);
+	}
+}
@@ -0,0 +1,59 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.ControlUnitConfiguration;
+import com.arm.legv8simulator.client.cpu.RunStatus;
+
+public class ControlSignalsTest {
+
+	// instructions with "don't care" control signals, each followed by instructions that depend on it
+	private static final String DONT_CARES =
+			"	MOVZ X9, #4096, LSL #16\n" +
+			"	ADDI X1, X9, #8\n" +
+			"	STUR X1, [X9, #0]\n" +
+			"	LDUR X2, [X9, #0]\n" +
+			"	STURB X2, [X9, #9]\n" +
+			"	LDURB X3, [X9, #9]\n" +
+			"	CBZ X3, skip\n" +
+			"	SUBS X4, X3, X1\n" +
+			"	B.EQ skip\n" +
+			"	ADDI X5, X4, #1\n" +
+			"	B skip\n" +
+			"	ADDI X6, X6, #1\n" +
+			"skip:	CBNZ X4, end\n" +
+			"	ADDI X7, X7, #1\n" +
+			"end:	ADD X8, X1, X3\n";
+
+	@Test
+	public void loadsStoresAndBranchesHaveDontCareSignals() {
+		assertNull(ControlUnitConfiguration.RM_STORE.memToReg);
+		assertNull(ControlUnitConfiguration.RM_LOAD.reg2Loc);
+		assertNull(ControlUnitConfiguration.L.aluOp);
+		assertNull(ControlUnitConfiguration.L_COND.aluSrc);
+		assertNull(ControlUnitConfiguration.RL.memToReg);
+	}
+
+	@Test
+	public void dontCareSignalsAreNotAsserted() {
+		SingleCycleSimulator expected = new SingleCycleSimulator(TestPrograms.code(DONT_CARES));
+		expected.runCPU();
+		// clocked with the pipeline log written, as in the web app
+		PipelinedSimulator clocked = new PipelinedSimulator(TestPrograms.code(DONT_CARES));
+		while (clocked.getInstructionIndex() < clocked.getProgram().size()) {
+			clocked.clock();
+		}
+		for (int i=0; i<PipelinedSimulator.PIPELINE_SIZE; i++) {
+			clocked.clock();
+		}
+		assertEquals(TestPrograms.state(expected), TestPrograms.state(clocked));
+		PipelinedSimulator run = new PipelinedSimulator(TestPrograms.code(DONT_CARES));
+		assertEquals(RunStatus.COMPLETED, run.runToCompletion(CPU.UNLIMITED).getStatus());
+		assertEquals(TestPrograms.state(expected), TestPrograms.state(run));
+	}
+}
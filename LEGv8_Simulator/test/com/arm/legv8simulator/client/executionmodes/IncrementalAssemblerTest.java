@@ -0,0 +1,155 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.lexer.TextLine;
+
+public class IncrementalAssemblerTest {
+
+	// lines the random edits are made of, including ones with compile errors and repeated branches
+	private static final String[] LINES = {
+		"",
+		"ADDI X1, X1, #1",
+		"SUBIS X2, X2, #1",
+		"B.NE loop",
+		"CBZ X1, done",
+		"B done",
+		"BL func",
+		"loop: ADD X3, X3, X1",
+		"func: ORR X4, X3, X2",
+		"done: LSL X5, X4, #2",
+		"ADDI X6, X6, #5000",
+		"ADD X1, X2",
+		"B nowhere",
+		"STUR X1, [X9, #8]",
+		"// a comment"
+	};
+
+	@Test
+	public void reassemblingTheTestProgramsMatchesAFreshAssembly() {
+		IncrementalAssembler assembler = new IncrementalAssembler();
+		for (String source : TestPrograms.ALL) {
+			assertAssemblesAsFresh(assembler, lines(source));
+		}
+		for (String source : TestPrograms.ALL) {
+			assertAssemblesAsFresh(assembler, lines(source));
+		}
+	}
+
+	@Test
+	public void insertingALineShiftsTheLinesAfterIt() {
+		IncrementalAssembler assembler = new IncrementalAssembler();
+		ArrayList<String> lines = lines(TestPrograms.CALL);
+		assertAssemblesAsFresh(assembler, lines);
+		lines.add(0, "");
+		assertAssemblesAsFresh(assembler, lines);
+		// one more instruction, so every label after it refers to the next index
+		lines.add(2, "ADDI X9, X9, #1");
+		assertAssemblesAsFresh(assembler, lines);
+		lines.remove(0);
+		lines.remove(1);
+		assertAssemblesAsFresh(assembler, lines);
+	}
+
+	@Test
+	public void editingALabelRedecodesTheBranchesToIt() {
+		IncrementalAssembler assembler = new IncrementalAssembler();
+		ArrayList<String> lines = lines(TestPrograms.CALL);
+		assertAssemblesAsFresh(assembler, lines);
+		int func = lines.indexOf("func:	ADDI X2, X2, #1");
+		lines.set(func, "ADDI X2, X2, #1");
+		lines.set(func + 1, "func: SUBIS X0, X0, #1");
+		assertAssemblesAsFresh(assembler, lines);
+		// the label is undefined, then defined again
+		lines.set(func + 1, "SUBIS X0, X0, #1");
+		assertAssemblesAsFresh(assembler, lines);
+		lines.set(func, "func:	ADDI X2, X2, #1");
+		assertAssemblesAsFresh(assembler, lines);
+	}
+
+	@Test
+	public void linesWithErrorsAreReportedEachTimeTheyAppear() {
+		IncrementalAssembler assembler = new IncrementalAssembler();
+		ArrayList<String> lines = lines(TestPrograms.ARITHMETIC_LOOP);
+		lines.add(2, "ADD X1, X2");
+		lines.add(5, "ADDI X1, X1, #5000");
+		assertAssemblesAsFresh(assembler, lines);
+		assertEquals(2, assembler.getCompileErrors().size());
+		lines.remove(2);
+		assertAssemblesAsFresh(assembler, lines);
+		assertEquals(1, assembler.getCompileErrors().size());
+		// the line was dropped from the cache, and is reported again at its new position
+		lines.add(7, "ADD X1, X2");
+		lines.add(8, "ADD X1, X2");
+		assertAssemblesAsFresh(assembler, lines);
+		assertEquals(3, assembler.getCompileErrors().size());
+	}
+
+	@Test
+	public void randomEditsMatchAFreshAssembly() {
+		Random random = new Random(11);
+		for (int sequence=0; sequence<200; sequence++) {
+			IncrementalAssembler assembler = new IncrementalAssembler();
+			ArrayList<String> lines = new ArrayList<String>();
+			for (int edit=0; edit<30; edit++) {
+				int position = random.nextInt(lines.size() + 1);
+				int kind = lines.isEmpty() ? 0 : random.nextInt(3);
+				if (kind == 0) {
+					lines.add(position, LINES[random.nextInt(LINES.length)]);
+				} else if (kind == 1) {
+					lines.remove(Math.min(position, lines.size() - 1));
+				} else {
+					lines.set(Math.min(position, lines.size() - 1), LINES[random.nextInt(LINES.length)]);
+				}
+				assertAssemblesAsFresh(assembler, lines);
+			}
+		}
+	}
+
+	/*
+	 * Reassembles the lines and checks that the instructions, compile errors and formatted lines are those 
+	 * of a simulator assembling them from scratch
+	 */
+	private static void assertAssemblesAsFresh(IncrementalAssembler assembler, ArrayList<String> lines) {
+		assembler.assemble(lines);
+		SingleCycleSimulator fresh = new SingleCycleSimulator(code(lines));
+		SingleCycleSimulator incremental = new SingleCycleSimulator(assembler);
+		assertEquals(lines.toString(), fresh.getProgram(), incremental.getProgram());
+		assertEquals(lines.toString(), errors(fresh.getCompileErrorMsgs()), errors(assembler.getCompileErrors()));
+		assertEquals(lines.size(), assembler.getCode().size());
+		for (int i=0; i<lines.size(); i++) {
+			assertEquals(fresh.getCode().get(i).getLine(), assembler.getCode().get(i).getLine());
+		}
+	}
+
+	private static String errors(ArrayList<Error> errors) {
+		StringBuilder s = new StringBuilder();
+		for (Error error : errors) {
+			s.append(error.getLineNumber()).append(':').append(error.getMsg()).append('\n');
+		}
+		return s.toString();
+	}
+
+	private static ArrayList<String> lines(String source) {
+		ArrayList<String> lines = new ArrayList<String>();
+		for (String line : source.split("\n")) {
+			lines.add(line.trim());
+		}
+		return lines;
+	}
+
+	private static ArrayList<TextLine> code(ArrayList<String> lines) {
+		ArrayList<TextLine> code = new ArrayList<TextLine>();
+		for (String line : lines) {
+			code.add(new TextLine(line));
+		}
+		return code;
+	}
+}
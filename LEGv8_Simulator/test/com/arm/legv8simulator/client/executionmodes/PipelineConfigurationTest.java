@@ -0,0 +1,145 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.cpu.RunStatus;
+
+public class PipelineConfigurationTest {
+	
+	private static final long MAX_CYCLES = 1000000;
+	
+	private static final PipelineConfiguration DEEP =
+			new PipelineConfiguration(2, 2, 1, 2, 3, BranchResolution.EXECUTE);
+	
+	private static final PipelineConfiguration[] CONFIGURATIONS = {
+		PipelineConfiguration.FIVE_STAGE,
+		new PipelineConfiguration(1, 1, 0, 1, 1, BranchResolution.DECODE),
+		new PipelineConfiguration(1, 1, 0, 1, 1, BranchResolution.EXECUTE),
+		new PipelineConfiguration(1, 1, 0, 1, 1, BranchResolution.MEMORY),
+		new PipelineConfiguration(1, 1, 0, 1, 3, BranchResolution.DECODE),
+		new PipelineConfiguration(2, 2, 0, 2, 3, BranchResolution.EXECUTE),
+		DEEP
+	};
+	
+	@Test
+	public void stagesOfTheFiveStagePipeline() {
+		PipelineConfiguration five = PipelineConfiguration.FIVE_STAGE;
+		assertEquals(5, five.getStages());
+		assertEquals(1, five.getDecodeStage());
+		assertEquals(1, five.getRegisterReadStage());
+		assertEquals(2, five.getExecuteStage());
+		assertEquals(2, five.getALUResultStage());
+		assertEquals(3, five.getMemoryStage());
+		assertEquals(3, five.getMemoryResultStage());
+		assertEquals(4, five.getWriteBackStage());
+		assertEquals(1, five.getBranchStage());
+	}
+	
+	@Test
+	public void stagesOfADeeperPipeline() {
+		assertEquals(10, DEEP.getStages());
+		assertEquals(2, DEEP.getDecodeStage());
+		assertEquals(3, DEEP.getRegisterReadStage());
+		assertEquals(4, DEEP.getExecuteStage());
+		assertEquals(5, DEEP.getALUResultStage());
+		assertEquals(6, DEEP.getMemoryStage());
+		assertEquals(8, DEEP.getMemoryResultStage());
+		assertEquals(9, DEEP.getWriteBackStage());
+		assertEquals(5, DEEP.getBranchStage());
+		assertEquals(8, new PipelineConfiguration(2, 2, 1, 2, 3, BranchResolution.MEMORY).getBranchStage());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void everyPartNeedsAStage() {
+		new PipelineConfiguration(1, 1, 0, 0, 1, BranchResolution.EXECUTE);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void registersAreReadInADecodeStage() {
+		new PipelineConfiguration(1, 2, 2, 1, 1, BranchResolution.DECODE);
+	}
+	
+	@Test
+	public void statisticsOfTheFiveStagePipeline() {
+		PipelineStatistics loop = run(TestPrograms.ARITHMETIC_LOOP, PipelineConfiguration.FIVE_STAGE);
+		assertEquals(RunStatus.COMPLETED, loop.getStatus());
+		assertEquals(9008, loop.getInstructions());
+		assertEquals(10013, loop.getCycles());
+		assertEquals(0, loop.getDataHazardStalls());
+		assertEquals(1000, loop.getControlHazardFlushes());
+		assertEquals(6001, loop.getEXForwards());
+		assertEquals(1001, loop.getMEMForwards());
+		// each of the 20 loads is used by the next instruction
+		PipelineStatistics fault = run(TestPrograms.SEGMENT_FAULT, PipelineConfiguration.FIVE_STAGE);
+		assertEquals(RunStatus.FAULT, fault.getStatus());
+		assertEquals(85, fault.getInstructions());
+		assertEquals(20, fault.getLoadUseStalls());
+		assertEquals(143, fault.getCycles());
+	}
+	
+	@Test
+	public void equalConfigurationsGiveTheSameStatistics() {
+		PipelineConfiguration five = new PipelineConfiguration(1, 1, 0, 1, 1, BranchResolution.DECODE);
+		assertEquals(PipelineConfiguration.FIVE_STAGE, five);
+		assertEquals(PipelineConfiguration.FIVE_STAGE.hashCode(), five.hashCode());
+		assertFalse(PipelineConfiguration.FIVE_STAGE.equals(
+				new PipelineConfiguration(1, 1, 0, 1, 1, BranchResolution.EXECUTE)));
+		for (String source : TestPrograms.ALL) {
+			assertEquals(statistics(run(source, PipelineConfiguration.FIVE_STAGE)), statistics(run(source, five)));
+		}
+	}
+	
+	@Test
+	public void everyConfigurationGivesTheSameResults() {
+		for (String source : TestPrograms.ALL) {
+			PipelinedSimulator expected = new PipelinedSimulator(TestPrograms.code(source));
+			PipelineStatistics expectedStatistics = expected.runToCompletion(MAX_CYCLES);
+			for (PipelineConfiguration configuration : CONFIGURATIONS) {
+				PipelinedSimulator sim = new PipelinedSimulator(TestPrograms.code(source), configuration);
+				PipelineStatistics statistics = sim.runToCompletion(MAX_CYCLES);
+				assertEquals(configuration.toString(), TestPrograms.state(expected), TestPrograms.state(sim));
+				assertEquals(expectedStatistics.getStatus(), statistics.getStatus());
+				assertEquals(expectedStatistics.getInstructions(), statistics.getInstructions());
+				assertEquals(expectedStatistics.getBranches(), statistics.getBranches());
+				// instructions fetched after a mispredicted branch are flushed when it is resolved
+				assertEquals(statistics.getMispredictions() * configuration.getBranchStage(),
+						statistics.getControlHazardFlushes());
+			}
+		}
+	}
+	
+	@Test
+	public void deeperPipelinesTakeMoreCycles() {
+		PipelineConfiguration[] deeper = {
+			new PipelineConfiguration(1, 1, 0, 1, 1, BranchResolution.EXECUTE),
+			new PipelineConfiguration(1, 1, 0, 1, 3, BranchResolution.EXECUTE),
+			DEEP
+		};
+		for (String source : TestPrograms.ALL) {
+			long cycles = 0;
+			for (PipelineConfiguration configuration : deeper) {
+				PipelineStatistics statistics = run(source, configuration);
+				assertTrue(configuration.toString(), statistics.getCycles() > cycles);
+				cycles = statistics.getCycles();
+			}
+		}
+	}
+	
+	private static String statistics(PipelineStatistics statistics) {
+		return statistics.getStatus() + " cycles=" + statistics.getCycles() + " instructions=" 
+				+ statistics.getInstructions() + " stalls=" + statistics.getDataHazardStalls() + "," 
+				+ statistics.getLoadUseStalls() + "," + statistics.getMemoryStalls() + " flushes=" 
+				+ statistics.getControlHazardFlushes() + " forwards=" + statistics.getEXForwards() + "," 
+				+ statistics.getMEMForwards() + " mispredictions=" + statistics.getMispredictions() + "/" 
+				+ statistics.getBranches();
+	}
+	
+	private static PipelineStatistics run(String source, PipelineConfiguration configuration) {
+		return new PipelinedSimulator(TestPrograms.code(source), configuration).runToCompletion(MAX_CYCLES);
+	}
+}
@@ -0,0 +1,139 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.cpu.RunStatus;
+import com.arm.legv8simulator.client.instruction.InstructionTable;
+
+public class PipelineStateTest {
+	
+	private static final long MAX_CYCLES = 1000000;
+	
+	// every instruction changes the register it writes
+	private static final String WRITES =
+			"	MOVZ X9, #4096, LSL #16\n" +
+			"	MOVZ X4, #7\n" +
+			"	ADDI X1, X9, #8\n" +
+			"	STUR X1, [X9, #0]\n" +
+			"	LDUR X2, [X9, #0]\n" +
+			"	LDXR X3, [X9, #0]\n" +
+			"	STXR X3, X4, [X9]\n" +
+			"	BL func\n" +
+			"func:	SUBS X5, X1, X9\n" +
+			"	B.NE next\n" +
+			"next:	CBNZ X5, last\n" +
+			"last:	LSL X6, X5, #2\n" +
+			"	STURW X6, [X9, #8]\n";
+	
+	@Test
+	public void destinationRegistersAreTheOnlyOnesWritten() {
+		SingleCycleSimulator sim = new SingleCycleSimulator(TestPrograms.code(WRITES));
+		InstructionTable program = sim.getProgram();
+		while (sim.getInstructionIndex() < program.size()) {
+			int index = sim.getInstructionIndex();
+			long[] before = registers(sim);
+			sim.executeInstruction();
+			long[] after = registers(sim);
+			int destination = program.getDestinationRegister(index);
+			for (int i=0; i<before.length; i++) {
+				assertEquals(program.getMnemonic(index) + " X" + i,
+						i == destination, before[i] != after[i]);
+			}
+		}
+	}
+	
+	@Test
+	public void visibleStateFollowsWriteBack() {
+		for (String source : new String[] {TestPrograms.ARITHMETIC_LOOP, TestPrograms.MEMORY_COPY,
+				TestPrograms.CALL, WRITES}) {
+			ArrayList<String> states = singleCycleStates(source);
+			PipelinedSimulator sim = new PipelinedSimulator(TestPrograms.code(source));
+			int state = 0;
+			while (sim.getInstructionIndex() < sim.getProgram().size()) {
+				sim.clock();
+				state = find(states, state, sim);
+			}
+			// drains the pipeline
+			for (int i=0; i<PipelinedSimulator.PIPELINE_SIZE; i++) {
+				sim.clock();
+				state = find(states, state, sim);
+			}
+			assertEquals(states.get(states.size()-1), visibleState(sim));
+		}
+	}
+	
+	@Test
+	public void instructionsReusedWhileRunningDoNotChangeTheResults() {
+		for (String source : new String[] {TestPrograms.ARITHMETIC_LOOP, TestPrograms.MEMORY_COPY,
+				TestPrograms.CALL, WRITES}) {
+			ArrayList<String> states = singleCycleStates(source);
+			PipelinedSimulator sim = new PipelinedSimulator(TestPrograms.code(source));
+			// clocks that can be undone before and between the runs, which do not reuse their instructions
+			for (int i=0; i<20; i++) {
+				sim.clock();
+			}
+			sim.stepBack();
+			long cycles = 0;
+			PipelineStatistics statistics;
+			do {
+				statistics = sim.runToCompletion(7);
+				cycles += statistics.getCycles();
+				sim.clock();
+				sim.stepBack();
+			} while (statistics.getStatus() == RunStatus.BUDGET_EXHAUSTED);
+			assertEquals(states.get(states.size()-1), visibleState(sim));
+			assertEquals(new PipelinedSimulator(TestPrograms.code(source)).runToCompletion(MAX_CYCLES).getCycles(),
+					cycles + 19);
+		}
+	}
+	
+	/*
+	 * The index of the first state from the specified one on that matches the registers and flags shown
+	 * by the pipeline. The state shown only ever moves forward through the states of the single cycle
+	 * simulator.
+	 */
+	private static int find(ArrayList<String> states, int from, PipelinedSimulator sim) {
+		String visible = visibleState(sim);
+		for (int i=from; i<states.size(); i++) {
+			if (states.get(i).equals(visible)) {
+				return i;
+			}
+		}
+		fail("no state after " + from + " matches " + visible);
+		return -1;
+	}
+	
+	private static ArrayList<String> singleCycleStates(String source) {
+		SingleCycleSimulator sim = new SingleCycleSimulator(TestPrograms.code(source));
+		ArrayList<String> states = new ArrayList<String>();
+		states.add(visibleState(sim));
+		while (sim.getInstructionIndex() < sim.getProgram().size()) {
+			sim.executeInstruction();
+			states.add(visibleState(sim));
+		}
+		return states;
+	}
+	
+	private static String visibleState(LEGv8_Simulator sim) {
+		StringBuilder state = new StringBuilder();
+		for (long register : registers(sim)) {
+			state.append(Long.toHexString(register)).append(' ');
+		}
+		return state.append(sim.getCPUNflag()).append(sim.getCPUZflag()).append(sim.getCPUCflag())
+				.append(sim.getCPUVflag()).toString();
+	}
+	
+	private static long[] registers(LEGv8_Simulator sim) {
+		long[] registers = new long[32];
+		for (int i=0; i<registers.length; i++) {
+			registers[i] = sim.getCPURegister(i);
+		}
+		return registers;
+	}
+}
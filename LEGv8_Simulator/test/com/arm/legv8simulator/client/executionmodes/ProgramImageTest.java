@@ -0,0 +1,80 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.instruction.Instruction;
+
+public class ProgramImageTest {
+	
+	@Test
+	public void imagesRunAsTheirSource() {
+		for (String source : TestPrograms.ALL) {
+			IncrementalAssembler assembler = assemble(source);
+			ProgramImage image = ProgramImage.fromProgram(assembler);
+			SingleCycleSimulator fromSource = new SingleCycleSimulator(assembler);
+			SingleCycleSimulator fromImage = new SingleCycleSimulator(image);
+			assertEquals(fromSource.getProgram(), fromImage.getProgram());
+			fromSource.runCPU();
+			fromImage.runCPU();
+			assertEquals(TestPrograms.state(fromSource), TestPrograms.state(fromImage));
+		}
+	}
+	
+	@Test
+	public void imagesKeepWhichInstructionsHaveControlSignals() {
+		IncrementalAssembler assembler = assemble(
+				"	CMP X1, X2\n" + 
+				"	MOV X3, X1\n" + 
+				"	ADD X4, X3, X2\n" + 
+				"	BL done\n" + 
+				"done:	BR X30\n");
+		ProgramImage image = ProgramImage.fromProgram(assembler);
+		assertArrayEquals(new boolean[] {false, false, true, false, false}, image.getControlSignals());
+		ArrayList<Instruction> source = assembler.getInstructions();
+		ArrayList<Instruction> decoded = image.getInstructions();
+		for (int i=0; i<source.size(); i++) {
+			assertEquals(source.get(i).getMnemonic(), decoded.get(i).getMnemonic());
+			assertTrue(Arrays.equals(source.get(i).getArgs(), decoded.get(i).getArgs()));
+			assertEquals(source.get(i).getControlSignals(), decoded.get(i).getControlSignals());
+		}
+	}
+	
+	@Test
+	public void imagesKeepTheCompileErrors() {
+		IncrementalAssembler assembler = assemble(
+				"	ADDI X1, X1, #1\n" + 
+				"	ADD X1, X2\n" + 
+				"	B nowhere\n" + 
+				"	SUBI X2, X2, #1\n");
+		ProgramImage image = ProgramImage.fromProgram(assembler);
+		assertEquals(2, image.getCompileErrors().size());
+		for (int i=0; i<2; i++) {
+			Error expected = assembler.getCompileErrors().get(i);
+			assertEquals(expected.getLineNumber(), image.getCompileErrors().get(i).getLineNumber());
+			assertEquals(expected.getMsg(), image.getCompileErrors().get(i).getMsg());
+		}
+		// the instructions which failed to decode are left out, as when assembling from source
+		assertEquals(new SingleCycleSimulator(assembler).getProgram(), new SingleCycleSimulator(image).getProgram());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unsupportedWordsAreRejected() {
+		new ProgramImage(new int[] {0}, new int[] {0}, new boolean[] {true}, new HashMap<String, Integer>());
+	}
+	
+	private static IncrementalAssembler assemble(String source) {
+		IncrementalAssembler assembler = new IncrementalAssembler();
+		assembler.assemble(new ArrayList<String>(Arrays.asList(source.split("\n"))));
+		return assembler;
+	}
+}
@@ -0,0 +1,115 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.cpu.RunStatus;
+
+public class RunToCompletionTest {
+
+	// budgets that run out at the start, in the middle and at the end of the programs
+	private static final long[] BUDGETS = {1, 2, 7, 100, 9000};
+
+	@Test
+	public void programsThatFinishAreCompleted() {
+		for (String source : new String[] {TestPrograms.ARITHMETIC_LOOP, TestPrograms.MEMORY_COPY,
+				TestPrograms.CALL}) {
+			SingleCycleSimulator expected = new SingleCycleSimulator(TestPrograms.code(source));
+			long executed = 0;
+			while (expected.getInstructionIndex() < expected.getProgram().size()) {
+				expected.executeInstruction();
+				executed++;
+			}
+			PipelinedSimulator sim = new PipelinedSimulator(TestPrograms.code(source));
+			PipelineStatistics statistics = sim.runToCompletion(CPU.UNLIMITED);
+			assertEquals(RunStatus.COMPLETED, statistics.getStatus());
+			assertNull(statistics.getError());
+			assertEquals(executed, statistics.getInstructions());
+			assertEquals((double) statistics.getCycles() / executed, statistics.getCPI(), 0);
+			assertEquals(TestPrograms.state(expected), TestPrograms.state(sim));
+			// there is nothing left to clock
+			PipelineStatistics again = sim.runToCompletion(CPU.UNLIMITED);
+			assertEquals(RunStatus.COMPLETED, again.getStatus());
+			assertEquals(0, again.getCycles());
+			assertEquals(TestPrograms.state(expected), TestPrograms.state(sim));
+		}
+	}
+
+	@Test
+	public void runtimeErrorsAreFaults() {
+		SingleCycleSimulator expected = new SingleCycleSimulator(TestPrograms.code(TestPrograms.SEGMENT_FAULT));
+		expected.runCPU();
+		PipelinedSimulator sim = new PipelinedSimulator(TestPrograms.code(TestPrograms.SEGMENT_FAULT));
+		PipelineStatistics statistics = sim.runToCompletion(CPU.UNLIMITED);
+		assertEquals(RunStatus.FAULT, statistics.getStatus());
+		assertEquals(expected.getRuntimeErrorMsg().getLineNumber(), statistics.getError().getLineNumber());
+		assertEquals(expected.getRuntimeErrorMsg().getMsg(), statistics.getError().getMsg());
+		assertEquals(statistics.getError(), sim.getRuntimeErrorMsg());
+	}
+
+	@Test
+	public void exhaustedBudgetsStopAfterThatManyCycles() {
+		for (String source : TestPrograms.ALL) {
+			PipelineStatistics whole = run(source, CPU.UNLIMITED);
+			for (long budget : BUDGETS) {
+				PipelineStatistics statistics = run(source, budget);
+				if (budget < whole.getCycles()) {
+					assertEquals(RunStatus.BUDGET_EXHAUSTED, statistics.getStatus());
+					assertEquals(budget, statistics.getCycles());
+					assertNull(statistics.getError());
+				} else {
+					assertEquals(statistics(whole), statistics(statistics));
+				}
+			}
+			assertEquals(RunStatus.BUDGET_EXHAUSTED, run(source, 0).getStatus());
+			assertEquals(0, run(source, 0).getCycles());
+		}
+	}
+
+	@Test
+	public void resumingAfterTheBudgetRunsOutAddsUpToOneRun() {
+		for (String source : TestPrograms.ALL) {
+			PipelinedSimulator expected = new PipelinedSimulator(TestPrograms.code(source));
+			PipelineStatistics whole = expected.runToCompletion(CPU.UNLIMITED);
+			for (long budget : BUDGETS) {
+				PipelinedSimulator sim = new PipelinedSimulator(TestPrograms.code(source));
+				long[] total = new long[counters(whole).length];
+				PipelineStatistics statistics;
+				do {
+					statistics = sim.runToCompletion(budget);
+					long[] counters = counters(statistics);
+					for (int i=0; i<total.length; i++) {
+						total[i] += counters[i];
+					}
+				} while (statistics.getStatus() == RunStatus.BUDGET_EXHAUSTED);
+				assertEquals(whole.getStatus(), statistics.getStatus());
+				assertArrayEquals(budget + "", counters(whole), total);
+				assertEquals(TestPrograms.state(expected), TestPrograms.state(sim));
+			}
+		}
+	}
+
+	private static PipelineStatistics run(String source, long maxCycles) {
+		return new PipelinedSimulator(TestPrograms.code(source)).runToCompletion(maxCycles);
+	}
+
+	private static String statistics(PipelineStatistics statistics) {
+		StringBuilder s = new StringBuilder(statistics.getStatus().toString());
+		for (long counter : counters(statistics)) {
+			s.append(' ').append(counter);
+		}
+		return s.toString();
+	}
+
+	private static long[] counters(PipelineStatistics statistics) {
+		return new long[] {statistics.getCycles(), statistics.getInstructions(), statistics.getDataHazardStalls(),
+				statistics.getLoadUseStalls(), statistics.getMemoryStalls(), statistics.getControlHazardFlushes(),
+				statistics.getEXForwards(), statistics.getMEMForwards(), statistics.getBranches(),
+				statistics.getMispredictions()};
+	}
+}
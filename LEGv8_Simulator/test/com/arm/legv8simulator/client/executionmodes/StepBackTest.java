@@ -0,0 +1,187 @@
+package com.arm.legv8simulator.client.executionmodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+
+public class StepBackTest {
+	
+	private static final int STEPS = 300;
+	// the line of the first instruction of the loop in TestPrograms.ARITHMETIC_LOOP
+	private static final int LOOP_LINE = 3;
+	// a line of TestPrograms.ARITHMETIC_LOOP only reached once the loop has finished
+	private static final int LAST_LINE = 17;
+	
+	@Test
+	public void steppingBackRestoresEveryState() {
+		for (String source : TestPrograms.ALL) {
+			for (boolean pipelined : new boolean[] {false, true}) {
+				LEGv8_Simulator sim = simulator(source, pipelined);
+				ArrayList<String> states = new ArrayList<String>();
+				run(sim, STEPS, states, new ArrayList<Integer>());
+				for (int step=states.size()-2; step>=0; step--) {
+					assertTrue(sim.stepBack());
+					assertEquals(step, sim.getStepCount());
+					assertEquals(states.get(step), state(sim));
+				}
+				assertFalse(sim.stepBack());
+			}
+		}
+	}
+	
+	@Test
+	public void runningBackWithinTheHistoryWindow() {
+		for (boolean pipelined : new boolean[] {false, true}) {
+			LEGv8_Simulator sim = simulator(TestPrograms.ARITHMETIC_LOOP, pipelined);
+			ArrayList<String> states = new ArrayList<String>();
+			ArrayList<Integer> indices = new ArrayList<Integer>();
+			assertRunsBack(sim, LOOP_LINE, states, indices);
+			assertRunsBack(sim, LOOP_LINE - 1, states, indices);
+		}
+	}
+	
+	@Test
+	public void runningBackBeyondTheHistoryWindowReplaysFromACheckpoint() {
+		for (boolean pipelined : new boolean[] {false, true}) {
+			LEGv8_Simulator sim = simulator(TestPrograms.ARITHMETIC_LOOP, pipelined);
+			ArrayList<String> states = new ArrayList<String>();
+			ArrayList<Integer> indices = new ArrayList<Integer>();
+			sim.setHistoryWindow(4);
+			sim.setCheckpointInterval(7);
+			assertRunsBack(sim, LOOP_LINE + 5, states, indices);
+			assertRunsBack(sim, 0, states, indices);
+			// the steps replayed can be undone, and the rest taken again
+			assertRunsBack(sim, LOOP_LINE + 5, states, indices);
+		}
+	}
+	
+	@Test
+	public void runningBackThroughThinnedCheckpoints() {
+		for (boolean pipelined : new boolean[] {false, true}) {
+			LEGv8_Simulator sim = simulator(TestPrograms.ARITHMETIC_LOOP, pipelined);
+			ArrayList<String> states = new ArrayList<String>();
+			ArrayList<Integer> indices = new ArrayList<Integer>();
+			sim.setHistoryWindow(1);
+			sim.setCheckpointInterval(1);
+			assertRunsBack(sim, LOOP_LINE, states, indices);
+			assertTrue(sim.getCheckpointInterval() > 1);
+			assertRunsBack(sim, 1, states, indices);
+		}
+	}
+	
+	@Test
+	public void runningBackToALineNeverReachedChangesNothing() {
+		for (boolean pipelined : new boolean[] {false, true}) {
+			LEGv8_Simulator sim = simulator(TestPrograms.ARITHMETIC_LOOP, pipelined);
+			sim.setHistoryWindow(4);
+			run(sim, STEPS, new ArrayList<String>(), new ArrayList<Integer>());
+			String before = state(sim);
+			assertFalse(sim.runBackTo(LAST_LINE));
+			assertEquals(STEPS, sim.getStepCount());
+			assertEquals(4, sim.getHistorySize());
+			assertEquals(before, state(sim));
+		}
+	}
+	
+	@Test
+	public void longRunsKeepOnlyTheHistoryWindowAndCheckpoints() {
+		String source = 
+				"	MOVZ X1, #0\n" + 
+				"loop:	ADDI X1, X1, #1\n" + 
+				"	B loop\n";
+		for (boolean pipelined : new boolean[] {false, true}) {
+			LEGv8_Simulator sim = simulator(source, pipelined);
+			sim.setHistoryWindow(16);
+			sim.setCheckpointInterval(10);
+			String first = TestPrograms.state(sim);
+			for (int i=0; i<200000; i++) {
+				step(sim);
+				assertTrue(sim.getHistorySize() <= 16);
+				assertTrue(sim.getCheckpointCount() <= 65);
+			}
+			assertEquals(200000, sim.getStepCount());
+			// the first line is only reached by the first step
+			assertTrue(sim.runBackTo(0));
+			assertEquals(0, sim.getStepCount());
+			assertEquals(first, TestPrograms.state(sim));
+		}
+	}
+	
+	@Test
+	public void runningTheProgramForgetsTheStepsTaken() {
+		LEGv8_Simulator sim = simulator(TestPrograms.ARITHMETIC_LOOP, false);
+		run(sim, STEPS, new ArrayList<String>(), new ArrayList<Integer>());
+		sim.runCPU();
+		assertEquals(0, sim.getStepCount());
+		assertFalse(sim.stepBack());
+		assertFalse(sim.runBackTo(LOOP_LINE));
+	}
+	
+	/*
+	 * Takes STEPS more steps, runs back to the specified line and checks that the state is the one
+	 * recorded before the last step whose instruction is on the line. The states and indices of the
+	 * steps taken so far are kept in the lists.
+	 */
+	private static void assertRunsBack(LEGv8_Simulator sim, int lineNumber, ArrayList<String> states,
+			ArrayList<Integer> indices) {
+		if (!states.isEmpty()) {
+			states.remove(states.size()-1);
+		}
+		run(sim, STEPS, states, indices);
+		int expected = indices.size()-1;
+		while (sim.getProgram().getLineNumber(indices.get(expected)) != lineNumber) {
+			expected--;
+		}
+		assertTrue(sim.runBackTo(lineNumber));
+		assertEquals(expected, sim.getStepCount());
+		assertEquals(states.get(expected), state(sim));
+		states.subList(expected+1, states.size()).clear();
+		indices.subList(expected, indices.size()).clear();
+	}
+	
+	private static LEGv8_Simulator simulator(String source, boolean pipelined) {
+		if (pipelined) {
+			return new PipelinedSimulator(TestPrograms.code(source));
+		}
+		return new SingleCycleSimulator(TestPrograms.code(source));
+	}
+	
+	/*
+	 * Takes up to the specified number of steps, adding the state and index of the next instruction
+	 * before each step, followed by the state after the last
+	 */
+	private static void run(LEGv8_Simulator sim, int steps, ArrayList<String> states,
+			ArrayList<Integer> indices) {
+		for (int i=0; i<steps && sim.getRuntimeErrorMsg() == null
+				&& sim.getInstructionIndex() < sim.getProgram().size(); i++) {
+			states.add(state(sim));
+			indices.add(sim.getInstructionIndex());
+			step(sim);
+		}
+		states.add(state(sim));
+	}
+	
+	private static void step(LEGv8_Simulator sim) {
+		if (sim instanceof PipelinedSimulator) {
+			((PipelinedSimulator) sim).clock();
+		} else {
+			((SingleCycleSimulator) sim).executeInstruction();
+		}
+	}
+	
+	private static String state(LEGv8_Simulator sim) {
+		String state = TestPrograms.state(sim) + " index=" + sim.getInstructionIndex()
+				+ " line=" + sim.getCurrentLineNumber();
+		if (sim instanceof PipelinedSimulator) {
+			return state + " log=" + ((PipelinedSimulator) sim).getPipelineLog();
+		}
+		SingleCycleSimulator single = (SingleCycleSimulator) sim;
+		return state + " executed=" + single.getPreviousInsIndex() + "," + single.getCurrentInsIndex();
+	}
+}
@@ -0,0 +1,63 @@
+package com.arm.legv8simulator.client.instruction;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+
+public class InstructionTableTest {
+
+	// one instruction of each kind, with the register it writes or -1 if it writes none
+	private static final String[][] DESTINATIONS = {
+		{"ADD X1, X2, X3", "1"},
+		{"SUBIS X4, X5, #1", "4"},
+		{"LDUR X6, [X7, #8]", "6"},
+		{"LDXR X8, [X9, #0]", "8"},
+		{"MOVZ X10, #1, LSL 16", "10"},
+		{"STXR X11, X12, [X13]", "12"},
+		{"STUR X14, [X15, #8]", "-1"},
+		{"STURW X14, [X15, #8]", "-1"},
+		{"STURH X14, [X15, #8]", "-1"},
+		{"STURB X14, [X15, #8]", "-1"},
+		{"CBZ X16, end", "-1"},
+		{"CBNZ X16, end", "-1"},
+		{"B end", "-1"},
+		{"B.NE end", "-1"},
+		{"B.GE end", "-1"},
+		{"BR X30", "-1"},
+		{"BL end", Integer.toString(CPU.LR)},
+	};
+
+	@Test
+	public void destinationRegisterOfEachKindOfInstruction() {
+		StringBuilder source = new StringBuilder();
+		for (String[] destination : DESTINATIONS) {
+			source.append(destination[0]).append('\n');
+		}
+		source.append("end:	ADD X17, X17, X17\n");
+		InstructionTable table = new SingleCycleSimulator(TestPrograms.code(source.toString())).getProgram();
+		assertEquals(DESTINATIONS.length + 1, table.size());
+		for (int i=0; i<DESTINATIONS.length; i++) {
+			assertEquals(DESTINATIONS[i][0], Integer.parseInt(DESTINATIONS[i][1]), table.getDestinationRegister(i));
+		}
+		assertEquals(17, table.getDestinationRegister(DESTINATIONS.length));
+	}
+
+	@Test
+	public void storeExclusiveWritesItsOutcomeRegister() {
+		// the value stored is read from the rd field, and whether the store succeeded is written to rm
+		SingleCycleSimulator sim = new SingleCycleSimulator(TestPrograms.code(
+				"SUBI X3, SP, #12\n" +
+				"STXR X1, X2, [X3]\n"));
+		InstructionTable table = sim.getProgram();
+		assertEquals(1, table.getRd(1));
+		assertEquals(2, table.getRm(1));
+		assertEquals(2, table.getDestinationRegister(1));
+		// the address was not tagged by a load exclusive, so the store fails
+		sim.runCPU();
+		assertEquals(1, sim.getCPURegister(2));
+	}
+}
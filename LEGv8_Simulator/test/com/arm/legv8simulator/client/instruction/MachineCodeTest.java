@@ -0,0 +1,115 @@
+package com.arm.legv8simulator.client.instruction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+
+public class MachineCodeTest {
+	
+	// every instruction, with operands at the limits of their fields, and the three pseudo instructions
+	private static final String EVERY_INSTRUCTION = 
+			"start:	ADD X1, X2, X3\n" + 
+			"	ADDS X1, X2, X3\n" + 
+			"	ADDI X1, X2, #4095\n" + 
+			"	ADDIS X1, X2, #3\n" + 
+			"	SUB X1, X2, X3\n" + 
+			"	SUBS X1, X2, X3\n" + 
+			"	SUBI X1, X2, #3\n" + 
+			"	SUBIS X1, X2, #3\n" + 
+			"	AND X1, X2, X3\n" + 
+			"	ANDS X1, X2, X3\n" + 
+			"	ANDI X1, X2, #3\n" + 
+			"	ANDIS X1, X2, #3\n" + 
+			"	ORR X1, X2, X3\n" + 
+			"	ORRI X1, X2, #3\n" + 
+			"	EOR X1, X2, X3\n" + 
+			"	EORI X1, X2, #3\n" + 
+			"	LSL X1, X2, #63\n" + 
+			"	LSR X1, X2, #1\n" + 
+			"	LDUR X1, [X2, #-256]\n" + 
+			"	STUR X1, [SP, #255]\n" + 
+			"	LDURSW X1, [X2, #8]\n" + 
+			"	STURW X1, [X2, #8]\n" + 
+			"	LDURH X1, [X2, #8]\n" + 
+			"	STURH X1, [X2, #8]\n" + 
+			"	LDURB X1, [X2, #8]\n" + 
+			"	STURB X1, [X2, #8]\n" + 
+			"	LDXR X1, [X2, #0]\n" + 
+			"	STXR X1, X2, [X3]\n" + 
+			"	MOVZ X1, #65535, LSL #48\n" + 
+			"	MOVK X1, #1, LSL #16\n" + 
+			"	CBZ X1, start\n" + 
+			"	CBNZ X1, end\n" + 
+			"	B.EQ start\n" + 
+			"	B.NE end\n" + 
+			"	B.HS start\n" + 
+			"	B.LO start\n" + 
+			"	B.HI start\n" + 
+			"	B.LS start\n" + 
+			"	B.GE start\n" + 
+			"	B.LT start\n" + 
+			"	B.GT start\n" + 
+			"	B.LE start\n" + 
+			"	B.MI start\n" + 
+			"	B.PL start\n" + 
+			"	B.VS start\n" + 
+			"	B.VC start\n" + 
+			"	B start\n" + 
+			"	BR X30\n" + 
+			"	BL end\n" + 
+			"	CMP X1, X2\n" + 
+			"	MOV X1, X2\n" + 
+			"end:	ADD XZR, XZR, XZR\n";
+	
+	@Test
+	public void encodingsMatchTheArchitecture() {
+		InstructionTable program = assemble(
+				"	ADD X1, X2, X3\n" + 
+				"	ADDI X1, X2, #4095\n" + 
+				"	LDUR X1, [X2, #-256]\n" + 
+				"	MOVZ X1, #65535, LSL #48\n" + 
+				"	BR X30\n");
+		assertEquals(0x8b030041, MachineCode.encode(program.getInstruction(0), 0));
+		assertEquals(0x913ffc41, MachineCode.encode(program.getInstruction(1), 1));
+		assertEquals(0xf8500041, MachineCode.encode(program.getInstruction(2), 2));
+		assertEquals(0xd2ffffe1, MachineCode.encode(program.getInstruction(3), 3));
+		assertEquals(0xd61f03c0, MachineCode.encode(program.getInstruction(4), 4));
+	}
+	
+	@Test
+	public void everyInstructionDecodesToItself() {
+		InstructionTable program = assemble(EVERY_INSTRUCTION);
+		for (int i=0; i<program.size(); i++) {
+			Instruction instruction = program.getInstruction(i);
+			Instruction decoded = MachineCode.decode(MachineCode.encode(instruction, i), i, instruction.getLineNumber());
+			assertNotNull(instruction.getMnemonic().toString(), decoded);
+			assertEquals(instruction.getMnemonic(), decoded.getMnemonic());
+			assertArrayEquals(instruction.getMnemonic().toString(), instruction.getArgs(), decoded.getArgs());
+			assertEquals(instruction.getLineNumber(), decoded.getLineNumber());
+		}
+	}
+	
+	@Test
+	public void unsupportedWordsDecodeToNull() {
+		assertNull(MachineCode.decode(0, 0, 0));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void branchesOutOfRangeAreRejected() {
+		// the offset does not fit in the 19 bits of the CB format
+		MachineCode.encode(new Instruction(Mnemonic.CBZ, new int[] {1, 1 << 20}, 0, null), 0);
+	}
+	
+	private static InstructionTable assemble(String source) {
+		SingleCycleSimulator sim = new SingleCycleSimulator(TestPrograms.code(source));
+		assertTrue(sim.getCompileErrorMsgs().toString(), sim.getCompileErrorMsgs().isEmpty());
+		return sim.getProgram();
+	}
+}
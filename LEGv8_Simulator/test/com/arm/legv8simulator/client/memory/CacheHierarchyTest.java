@@ -0,0 +1,161 @@
+package com.arm.legv8simulator.client.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.cpu.CPU;
+import com.arm.legv8simulator.client.executionmodes.PipelineStatistics;
+import com.arm.legv8simulator.client.executionmodes.PipelinedSimulator;
+
+public class CacheHierarchyTest {
+	
+	private static final int MEMORY_LATENCY = 20;
+	
+	// 8 sets of 2 lines of 16 bytes, so addresses 128 bytes apart map to the same set
+	private static final CacheConfiguration SMALL =
+			new CacheConfiguration(256, 2, 16, 1, WritePolicy.WRITE_BACK, ReplacementPolicy.LRU);
+	private static final CacheConfiguration SMALL_WRITE_THROUGH =
+			new CacheConfiguration(256, 2, 16, 1, WritePolicy.WRITE_THROUGH, ReplacementPolicy.LRU);
+	private static final CacheConfiguration LARGE =
+			new CacheConfiguration(4096, 4, 16, 10, WritePolicy.WRITE_BACK, ReplacementPolicy.LRU);
+	
+	private static final long A = 0x1000;
+	private static final long B = A + 128;
+	private static final long C = A + 256;
+	
+	@Test
+	public void missesFetchTheLine() {
+		CacheHierarchy caches = new CacheHierarchy(MEMORY_LATENCY, SMALL);
+		assertEquals(1 + MEMORY_LATENCY, caches.load(A, 8));
+		assertEquals(1, caches.load(A + 8, 8));
+		assertEquals(1, caches.store(A + 15, 1));
+		Cache cache = caches.getLevel(0);
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(3, cache.getAccesses());
+		assertEquals(1, caches.getMemoryReads());
+		assertEquals(2 + 1 + MEMORY_LATENCY, caches.getCycles());
+	}
+	
+	@Test
+	public void accessesSpanningTwoLinesTakeTwoAccesses() {
+		CacheHierarchy caches = new CacheHierarchy(MEMORY_LATENCY, SMALL);
+		assertEquals(2 * (1 + MEMORY_LATENCY), caches.load(A + 12, 8));
+		assertEquals(2, caches.getLevel(0).getMisses());
+		assertEquals(2, caches.load(A + 12, 8));
+	}
+	
+	@Test
+	public void leastRecentlyUsedLineIsEvicted() {
+		CacheHierarchy caches = new CacheHierarchy(MEMORY_LATENCY, SMALL);
+		caches.load(A, 8);
+		caches.load(B, 8);
+		caches.load(A, 8);
+		// evicts B, which was used less recently than A
+		caches.load(C, 8);
+		assertEquals(1, caches.load(A, 8));
+		assertEquals(1 + MEMORY_LATENCY, caches.load(B, 8));
+		assertEquals(4, caches.getLevel(0).getMisses());
+	}
+	
+	@Test
+	public void writeBackWritesDirtyLinesWhenEvicted() {
+		CacheHierarchy caches = new CacheHierarchy(MEMORY_LATENCY, SMALL);
+		// write allocate
+		assertEquals(1 + MEMORY_LATENCY, caches.store(A, 8));
+		assertEquals(1, caches.store(A, 8));
+		assertEquals(0, caches.getMemoryWrites());
+		caches.load(B, 8);
+		caches.load(C, 8);
+		assertEquals(1, caches.getLevel(0).getWriteBacks());
+		assertEquals(1, caches.getMemoryWrites());
+		assertEquals(3, caches.getMemoryReads());
+	}
+	
+	@Test
+	public void writeThroughWritesEveryStore() {
+		CacheHierarchy caches = new CacheHierarchy(MEMORY_LATENCY, SMALL_WRITE_THROUGH);
+		// no write allocate, and the store is buffered
+		assertEquals(1, caches.store(A, 8));
+		assertEquals(1 + MEMORY_LATENCY, caches.load(A, 8));
+		assertEquals(1, caches.store(A, 8));
+		assertEquals(2, caches.getMemoryWrites());
+		assertEquals(1, caches.getMemoryReads());
+		assertEquals(0, caches.getLevel(0).getWriteBacks());
+	}
+	
+	@Test
+	public void missesAreFetchedFromTheNextLevel() {
+		CacheHierarchy caches = new CacheHierarchy(MEMORY_LATENCY, SMALL, LARGE);
+		assertEquals(1 + 10 + MEMORY_LATENCY, caches.load(A, 8));
+		caches.load(B, 8);
+		caches.load(C, 8);
+		// evicted from the first level only
+		assertEquals(1 + 10, caches.load(A, 8));
+		assertEquals(1, caches.getLevel(1).getHits());
+		assertEquals(3, caches.getLevel(1).getMisses());
+		assertEquals(3, caches.getMemoryReads());
+	}
+	
+	@Test
+	public void clearEmptiesEveryLevel() {
+		CacheHierarchy caches = new CacheHierarchy(MEMORY_LATENCY, SMALL, LARGE);
+		caches.store(A, 8);
+		caches.clear();
+		assertEquals(0, caches.getLevel(0).getAccesses());
+		assertEquals(0, caches.getLevel(1).getAccesses());
+		assertEquals(0, caches.getCycles());
+		assertEquals(1 + 10 + MEMORY_LATENCY, caches.load(A, 8));
+		assertEquals(0, caches.getMemoryWrites());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void sizesMustBePowersOfTwo() {
+		new CacheConfiguration(3000, 2, 16, 1, WritePolicy.WRITE_BACK, ReplacementPolicy.LRU);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void pseudoLeastRecentlyUsedLimitsTheWays() {
+		new CacheConfiguration(128 * 16, 128, 16, 1, WritePolicy.WRITE_BACK, ReplacementPolicy.PLRU);
+	}
+	
+	@Test
+	public void missesStallThePipeline() {
+		for (String source : TestPrograms.ALL) {
+			PipelinedSimulator expected = new PipelinedSimulator(TestPrograms.code(source));
+			PipelineStatistics expectedStatistics = expected.runToCompletion(CPU.UNLIMITED);
+			for (CacheHierarchy caches : new CacheHierarchy[] {
+					new CacheHierarchy(100, CacheConfiguration.L1_DATA),
+					new CacheHierarchy(100, CacheConfiguration.L1_DATA, CacheConfiguration.L2)}) {
+				PipelinedSimulator sim = new PipelinedSimulator(TestPrograms.code(source));
+				sim.setCacheHierarchy(caches);
+				PipelineStatistics statistics = sim.runToCompletion(CPU.UNLIMITED);
+				assertEquals(TestPrograms.state(expected), TestPrograms.state(sim));
+				assertEquals(expectedStatistics.getInstructions(), statistics.getInstructions());
+				assertEquals(expectedStatistics.getEXForwards(), statistics.getEXForwards());
+				assertEquals(expectedStatistics.getMEMForwards(), statistics.getMEMForwards());
+				assertEquals(expectedStatistics.getDataHazardStalls(), statistics.getDataHazardStalls());
+				// every access takes a cycle of the memory stage, any more stall the pipeline
+				assertEquals(caches.getCycles() - caches.getLevel(0).getAccesses(), statistics.getMemoryStalls());
+				assertEquals(expectedStatistics.getCycles() + statistics.getMemoryStalls(), statistics.getCycles());
+			}
+		}
+	}
+	
+	@Test
+	public void accessesOfTheMemoryCopy() {
+		PipelinedSimulator sim = new PipelinedSimulator(TestPrograms.code(TestPrograms.MEMORY_COPY));
+		CacheHierarchy caches = new CacheHierarchy(100, CacheConfiguration.L1_DATA);
+		sim.setCacheHierarchy(caches);
+		sim.runToCompletion(CPU.UNLIMITED);
+		Cache cache = caches.getLevel(0);
+		// 4 stores per figure filled, 3 loads and 2 stores per figure copied, and 2 on the stack
+		assertEquals(64*4 + 64*5 + 2, cache.getAccesses());
+		// the 16 lines filled, the 16 lines copied to and the line of the stack, all written by a store first
+		assertEquals(33, cache.getMisses());
+		assertEquals(33, caches.getMemoryReads());
+		assertEquals(0, caches.getMemoryWrites());
+	}
+}
@@ -0,0 +1,154 @@
+package com.arm.legv8simulator.client.memory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MemorySnapshotTest {
+
+	private static final long A = Memory.DYNAMIC_DATA_SEGMENT_OFFSET;
+	// in the page after A
+	private static final long B = A + Memory.PAGE_SIZE;
+	private static final long PAGE_A = A / Memory.PAGE_SIZE;
+	private static final long PAGE_B = B / Memory.PAGE_SIZE;
+
+	@Test
+	public void figuresAreStoredBigEndian() throws SegmentFaultException {
+		Memory memory = new Memory(4);
+		memory.storeDoubleword(A, 0x0102030405060708L);
+		assertEquals(0x01, memory.loadByte(A));
+		assertEquals(0x0304, memory.loadHalfword(A + 2));
+		assertEquals(0x05060708, memory.loadSignedWord(A + 4));
+		// unaligned, across two doublewords
+		memory.storeWord(A + 6, 0xAABBCCDDL);
+		assertEquals(0x010203040506AABBL, memory.loadDoubleword(A));
+		assertEquals(0xCCDD000000000000L, memory.loadDoubleword(A + 8));
+		assertEquals(0, memory.loadDoubleword(B));
+	}
+
+	@Test(expected = SegmentFaultException.class)
+	public void accessesOutsideTheStackAndHeapFault() throws SegmentFaultException {
+		new Memory(4).loadByte(A - 1);
+	}
+
+	@Test
+	public void writesAfterASnapshotDoNotChangeIt() throws SegmentFaultException {
+		Memory memory = new Memory(4);
+		memory.storeDoubleword(A, 1);
+		// the page is cached as the last one written, so it must not be written to directly afterwards
+		MemorySnapshot snapshot = memory.snapshot();
+		memory.storeDoubleword(A, 2);
+		memory.storeByte(A + 15, 3);
+		memory.storeDoubleword(B, 4);
+		assertEquals(1, snapshot.getPage(PAGE_A)[0]);
+		assertEquals(0, snapshot.getPage(PAGE_A)[1]);
+		assertNull(snapshot.getPage(PAGE_B));
+		assertArrayEquals(new long[] {PAGE_A}, snapshot.getPageNumbers());
+		assertEquals(2, memory.loadDoubleword(A));
+		assertEquals(3, memory.loadDoubleword(A + 8));
+		// the copy of a page returned is not the page itself
+		snapshot.getPage(PAGE_A)[0] = 5;
+		assertEquals(1, snapshot.getPage(PAGE_A)[0]);
+	}
+
+	@Test
+	public void restoringAndWritingDoesNotChangeAnotherSnapshot() throws SegmentFaultException {
+		Memory memory = new Memory(4);
+		memory.storeDoubleword(A, 1);
+		MemorySnapshot first = memory.snapshot();
+		memory.storeDoubleword(A, 2);
+		memory.storeDoubleword(B, 2);
+		MemorySnapshot second = memory.snapshot();
+		memory.restore(first);
+		assertEquals(1, memory.loadDoubleword(A));
+		assertEquals(0, memory.loadDoubleword(B));
+		memory.storeDoubleword(A, 3);
+		memory.storeDoubleword(B, 3);
+		assertEquals(1, first.getPage(PAGE_A)[0]);
+		assertNull(first.getPage(PAGE_B));
+		assertEquals(2, second.getPage(PAGE_A)[0]);
+		assertEquals(2, second.getPage(PAGE_B)[0]);
+		memory.restore(second);
+		assertEquals(2, memory.loadDoubleword(A));
+		assertEquals(2, memory.loadDoubleword(B));
+	}
+
+	@Test
+	public void memoriesRestoredFromOneSnapshotAreIndependent() throws SegmentFaultException {
+		Memory memory = new Memory(4);
+		memory.storeDoubleword(A, 1);
+		MemorySnapshot snapshot = memory.snapshot();
+		Memory other = new Memory(4);
+		other.restore(snapshot);
+		memory.restore(snapshot);
+		memory.storeDoubleword(A, 2);
+		other.storeDoubleword(A, 3);
+		assertEquals(2, memory.loadDoubleword(A));
+		assertEquals(3, other.loadDoubleword(A));
+		assertEquals(1, snapshot.getPage(PAGE_A)[0]);
+	}
+
+	@Test
+	public void digestsDependOnlyOnTheData() throws SegmentFaultException {
+		Memory memory = new Memory(4);
+		memory.storeDoubleword(A, 1);
+		memory.storeDoubleword(B, 2);
+		Memory other = new Memory(4);
+		other.storeDoubleword(B, 2);
+		other.storeWord(A + 8, 0);
+		other.storeDoubleword(A, 1);
+		assertEquals(memory.digest(), other.digest());
+		other.storeByte(B + 7, 3);
+		assertNotEquals(memory.digest(), other.digest());
+	}
+
+	@Test
+	public void tablesGrowAndKeepEveryPage() {
+		PageTable table = new PageTable();
+		long[][] pages = new long[100][];
+		for (int i=0; i<pages.length; i++) {
+			pages[i] = new long[1];
+			// page numbers that collide in the low bits
+			table.put(i * 64L, pages[i]);
+		}
+		assertEquals(100, table.size());
+		for (int i=0; i<pages.length; i++) {
+			assertSame(pages[i], table.get(i * 64L));
+			assertTrue(table.owns(i * 64L));
+		}
+		assertNull(table.get(1));
+		long[] pageNumbers = table.pageNumbers();
+		for (int i=1; i<pageNumbers.length; i++) {
+			assertTrue(pageNumbers[i-1] < pageNumbers[i]);
+		}
+	}
+
+	@Test
+	public void sharedTablesOwnNoPages() {
+		PageTable table = new PageTable();
+		long[] page = new long[1];
+		table.put(7, page);
+		PageTable shared = table.share();
+		assertSame(page, shared.get(7));
+		assertFalse(shared.owns(7));
+		long[] copy = new long[1];
+		shared.put(7, copy);
+		shared.put(8, new long[1]);
+		assertTrue(shared.owns(7));
+		assertSame(copy, shared.get(7));
+		assertSame(page, table.get(7));
+		assertNull(table.get(8));
+		assertEquals(1, table.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void snapshotPagesMustBeWhole() {
+		new MemorySnapshot(A, new long[] {PAGE_A}, new long[][] {new long[3]});
+	}
+}
@@ -0,0 +1,83 @@
+package com.arm.legv8simulator.client.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.client.lexer.TextLine;
+import com.arm.legv8simulator.client.lexer.Token;
+import com.arm.legv8simulator.client.lexer.TokenType;
+
+/*
+ * The expected messages are those of the parser before its transitions were held in a table
+ */
+public class ParserTest {
+	
+	private static final String[] VALID_LINES = {
+			"ADD X1, X2, X3",
+			"add x1, x2, x3",
+			"loop: SUBI X1, X1, #1",
+			"LDUR X1, [X2, #8]",
+			"STXR X1, X2, [X3]",
+			"STXR X1, X2, [X3, #0]",
+			"MOVZ X1, #5, LSL #16",
+			"MOVK X1, #5",
+			"B.EQ done",
+			"BR X30",
+			"CBZ X1, loop",
+			"label:",
+			"LSL X1, X2, #3",
+			"ADD X1, X2, X3 // comment"
+	};
+	
+	private static final String[][] ERRORS = {
+			{"MOVZ X1, #5, LSR #16", "Invalid token: expected 'LSL', found 'LSR '"},
+			{"MOVZ X1, #5, LSL", "Missing tokens: 'IMMEDIATE' "},
+			{"ADD X1, X2", "Missing tokens: ',' 'REGISTER' "},
+			{"ADD X1, X2,", "Missing token: 'REGISTER' "},
+			{"ADD X1 X2, X3", "Invalid token: expected ',', found 'X2'"},
+			{"ADD X1, X2, #3", "Invalid token: expected 'REGISTER', found '#3'"},
+			{"ADDI X1, X2, X3", "Invalid token: expected 'IMMEDIATE', found 'X3'"},
+			{"FOO X1, X2, X3", "Unsupported instruction: 'FOO'"},
+			{"ADDX X1, X2, X3", "Unsupported instruction: 'ADDX'"},
+			{"B.XX done", "Missing token: 'IDENTIFIER' "},
+			{"LDUR X1, [X2, #8", "Missing token: ']' "},
+			{"LDUR X1, X2, #8]", "Invalid token: expected '[', found 'X2'"},
+			{"ADD X1, X2, X3, X4", "Unexpected token: ','. Remove this token."},
+			{"label: label2:", "Unsupported instruction: 'label2:'"},
+			{"ADD", "Missing tokens: 'REGISTER' ',' 'REGISTER' ',' 'REGISTER' "},
+			{", X1", "Unsupported instruction: ',X1'"},
+			{"X1, X2", "Unsupported instruction: 'X1,'"}
+	};
+	
+	@Test
+	public void validLinesParse() {
+		for (String line : VALID_LINES) {
+			assertNull(line, parse(line));
+		}
+	}
+	
+	@Test
+	public void errorMessagesAreUnchanged() {
+		for (String[] error : ERRORS) {
+			assertEquals(error[0], error[1], parse(error[0]));
+		}
+	}
+	
+	@Test
+	public void transitionsGiveTheNextStateOrAnErrorCode() {
+		int next = ParserState.INIT.transition(new Token(TokenType.MNEMONIC_RRR, "ADD"));
+		assertEquals(ParserState.RRR1, ParserState.fromOrdinal(next));
+		assertEquals(ParserState.INVALID_TOKEN, ParserState.RRR1.transition(new Token(TokenType.IMMEDIATE, "#3")));
+		assertEquals(ParserState.UNEXPECTED_TOKEN, ParserState.RRR6.transition(new Token(TokenType.COMMA, ",")));
+		assertEquals(ParserState.UNSUPPORTED_INSTRUCTION, 
+				ParserState.INIT.transition(new Token(TokenType.IDENTIFIER, "FOO")));
+	}
+	
+	private static String parse(String line) {
+		TextLine text = new TextLine(line);
+		text.tokenize();
+		return text.parse();
+	}
+}
@@ -0,0 +1,129 @@
+package com.arm.legv8simulator.headless;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.executionmodes.AssembledProgram;
+import com.arm.legv8simulator.client.executionmodes.ProgramImage;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+
+public class ProgramCacheTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void unchangedProgramsAreLoadedFromTheCache() throws IOException {
+		Path cacheDirectory = folder.newFolder("cache").toPath();
+		for (String source : TestPrograms.ALL) {
+			Path file = write("program.s", source);
+			ProgramCache cache = new ProgramCache(cacheDirectory);
+			AssembledProgram assembled = cache.assemble(file);
+			AssembledProgram loaded = cache.assemble(file);
+			assertEquals(1, cache.getMisses());
+			assertEquals(1, cache.getHits());
+			assertTrue(loaded instanceof ProgramImage);
+			assertEquals(run(assembled), run(loaded));
+			// the entry outlives the cache that wrote it
+			ProgramCache reopened = new ProgramCache(cacheDirectory);
+			assertEquals(run(assembled), run(reopened.assemble(file)));
+			assertEquals(1, reopened.getHits());
+		}
+	}
+	
+	@Test
+	public void changedProgramsAreAssembledAgain() throws IOException {
+		ProgramCache cache = new ProgramCache(folder.newFolder("cache").toPath());
+		cache.assemble(write("program.s", TestPrograms.CALL));
+		AssembledProgram changed = cache.assemble(write("program.s", TestPrograms.CALL + "	ADDI X5, X5, #1\n"));
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, cache.getHits());
+		assertFalse(changed instanceof ProgramImage);
+	}
+	
+	@Test
+	public void programsWithCompileErrorsAreCachedWithThem() throws IOException {
+		ProgramCache cache = new ProgramCache(folder.newFolder("cache").toPath());
+		String source = "	ADD X1, X2\n	ADDI X1, X1, #1\n	B nowhere\n";
+		Path file = write("program.s", source);
+		String expected = errors(new SingleCycleSimulator(TestPrograms.code(source)).getCompileErrorMsgs());
+		assertEquals(expected, errors(cache.assemble(file).getCompileErrors()));
+		AssembledProgram loaded = cache.assemble(file);
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+		assertTrue(loaded instanceof ProgramImage);
+		assertEquals(expected, errors(loaded.getCompileErrors()));
+		assertEquals(1, loaded.getInstructions().size());
+	}
+	
+	@Test
+	public void entriesThatCannotBeOpenedAreMisses() throws IOException {
+		Path cacheDirectory = folder.newFolder("cache").toPath();
+		Path file = write("program.s", TestPrograms.CALL);
+		ProgramCache cache = new ProgramCache(cacheDirectory);
+		String expected = run(cache.assemble(file));
+		// replaces the entry with a directory, which can be neither read nor replaced
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDirectory)) {
+			for (Path entry : entries) {
+				Files.delete(entry);
+				Files.createDirectory(entry);
+				Files.createFile(entry.resolve("file"));
+			}
+		}
+		assertEquals(expected, run(cache.assemble(file)));
+		assertEquals(expected, run(cache.assemble(file)));
+		assertEquals(3, cache.getMisses());
+		assertEquals(0, cache.getHits());
+	}
+	
+	@Test
+	public void unreadableEntriesAreReplaced() throws IOException {
+		Path cacheDirectory = folder.newFolder("cache").toPath();
+		ProgramCache cache = new ProgramCache(cacheDirectory);
+		Path file = write("program.s", TestPrograms.MEMORY_COPY);
+		String expected = run(cache.assemble(file));
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDirectory)) {
+			for (Path entry : entries) {
+				Files.write(entry, new byte[] {1, 2, 3});
+			}
+		}
+		assertEquals(expected, run(cache.assemble(file)));
+		assertEquals(2, cache.getMisses());
+		assertEquals(expected, run(cache.assemble(file)));
+		assertEquals(1, cache.getHits());
+	}
+	
+	private Path write(String name, String source) throws IOException {
+		Path file = folder.getRoot().toPath().resolve(name);
+		Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+	
+	private static String errors(ArrayList<Error> compileErrors) {
+		StringBuilder errors = new StringBuilder();
+		for (Error error : compileErrors) {
+			errors.append(error.getLineNumber()).append(':').append(error.getMsg()).append('\n');
+		}
+		return errors.toString();
+	}
+	
+	private static String run(AssembledProgram program) {
+		SingleCycleSimulator sim = new SingleCycleSimulator(program);
+		sim.runCPU();
+		return TestPrograms.state(sim);
+	}
+}
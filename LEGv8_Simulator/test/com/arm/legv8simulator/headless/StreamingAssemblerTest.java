@@ -0,0 +1,196 @@
+package com.arm.legv8simulator.headless;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.Error;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+import com.arm.legv8simulator.client.instruction.InstructionTable;
+import com.arm.legv8simulator.client.lexer.TextLine;
+
+public class StreamingAssemblerTest {
+
+	// the number of characters the assembler reads at a time
+	private static final int BUFFER_SIZE = 8192;
+
+	@Test
+	public void theTestProgramsAssembleAsInTheEditor() throws IOException {
+		for (String source : TestPrograms.ALL) {
+			StreamingAssembler assembler = assertAssemblesAsInTheEditor(source);
+			SingleCycleSimulator expected = new SingleCycleSimulator(editorLines(source));
+			SingleCycleSimulator streamed = new SingleCycleSimulator(assembler);
+			expected.runCPU();
+			streamed.runCPU();
+			assertEquals(TestPrograms.state(expected), TestPrograms.state(streamed));
+			assertEquals(source.split("\n").length, assembler.getNumLines());
+		}
+	}
+
+	@Test
+	public void forwardBranchesAreFixedUp() throws IOException {
+		StreamingAssembler assembler = assertAssemblesAsInTheEditor(
+				"	CBZ X1, skip\n" +
+				"	B.EQ skip\n" +
+				"	BL func\n" +
+				"	ADDI X1, X1, #1\n" +
+				"skip:	B end\n" +
+				"func:	BR X30\n" +
+				"end:	ADDI X2, X2, #2\n");
+		assertEquals(7, assembler.getInstructions().size());
+		assertEquals(Integer.valueOf(4), assembler.getBranchTable().get("skip"));
+		assertEquals(Integer.valueOf(6), assembler.getBranchTable().get("end"));
+	}
+
+	@Test
+	public void errorsAreOrderedAsInTheEditor() throws IOException {
+		// parse errors first, then the decode and label errors merged in line order
+		StreamingAssembler assembler = assertAssemblesAsInTheEditor(
+				"	B nowhere\n" +
+				"	ADDI X1, X1, #5000\n" +
+				"	ADD X1, X2\n" +
+				"	CBZ X1, missing\n" +
+				"	SUBI X2, X2, #9000\n" +
+				"	B.NE end\n" +
+				"	ORR X1\n" +
+				"end:	ADDI X3, X3, #1\n");
+		assertEquals("2 6 0 1 3 4", lineNumbers(assembler.getCompileErrors()));
+		// the instructions that failed to decode are left out
+		assertEquals(2, assembler.getInstructions().size());
+	}
+
+	@Test
+	public void aFinalLineOfOneCharacterIsDropped() throws IOException {
+		String program = "	ADDI X1, X1, #1\n";
+		assertTrue(assertAssemblesAsInTheEditor(program + "B").getCompileErrors().isEmpty());
+		assertEquals(1, assertAssemblesAsInTheEditor(program + "B ").getCompileErrors().size());
+		assertEquals(1, assertAssemblesAsInTheEditor(program + "B\n").getCompileErrors().size());
+		assertEquals(2, assertAssemblesAsInTheEditor(program + "\nB").getNumLines());
+		assertEquals(1, assertAssemblesAsInTheEditor(program + "\nB").getInstructions().size());
+	}
+
+	@Test
+	public void linesSpanningTheBufferAssembleAsInTheEditor() throws IOException {
+		for (int padding=0; padding<40; padding+=3) {
+			String source = generate(3000, padding);
+			assertTrue(source.length() > 4 * BUFFER_SIZE);
+			StreamingAssembler assembler = assertAssemblesAsInTheEditor(source);
+			StreamingAssembler chunked = new StreamingAssembler(new ChunkedReader(new StringReader(source), 7));
+			assertEquals(new InstructionTable(assembler.getInstructions()), 
+					new InstructionTable(chunked.getInstructions()));
+			assertEquals(errors(assembler.getCompileErrors()), errors(chunked.getCompileErrors()));
+		}
+	}
+
+	@Test
+	public void channelsAreReadAsUTF8() throws IOException {
+		String source = "// \u00e9t\u00e9\n" + TestPrograms.CALL;
+		StreamingAssembler assembler = new StreamingAssembler(Channels.newChannel(
+				new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8))));
+		assertEquals(new SingleCycleSimulator(editorLines(source)).getProgram(),
+				new SingleCycleSimulator(assembler).getProgram());
+	}
+
+	/*
+	 * Streams the source and checks that the instructions and compile errors are those of a simulator given
+	 * the lines the text editor splits it into
+	 */
+	private static StreamingAssembler assertAssemblesAsInTheEditor(String source) throws IOException {
+		StreamingAssembler assembler = new StreamingAssembler(new StringReader(source));
+		SingleCycleSimulator expected = new SingleCycleSimulator(editorLines(source));
+		assertEquals(expected.getProgram(), new SingleCycleSimulator(assembler).getProgram());
+		assertEquals(errors(expected.getCompileErrorMsgs()), errors(assembler.getCompileErrors()));
+		return assembler;
+	}
+
+	/*
+	 * A program of branches back and forward to labels, padded with comments so that its lines fall
+	 * differently across the buffer, with a compile error every 500 lines
+	 */
+	private static String generate(int lines, int padding) {
+		StringBuilder source = new StringBuilder();
+		for (int i=0; i<padding; i++) {
+			source.append('/');
+		}
+		source.append('\n');
+		for (int i=0; i<lines; i++) {
+			if (i % 10 == 0) {
+				source.append("l").append(i).append(":\t");
+			}
+			if (i % 500 == 499) {
+				source.append("ADDI X1, X1, #5000");
+			} else if (i % 10 == 3) {
+				source.append("CBZ X1, l").append(i + 7 < lines ? i + 7 : 0);
+			} else if (i % 10 == 7) {
+				source.append("B.NE l").append(i - 7);
+			} else {
+				source.append("ADDI X").append(i % 28).append(", X").append(i % 28).append(", #").append(i);
+			}
+			source.append("\t// line ").append(i).append('\n');
+		}
+		return source.toString();
+	}
+
+	/*
+	 * The lines of the text as the text editor of the web app splits them, which drops a final line of
+	 * a single character
+	 */
+	private static ArrayList<TextLine> editorLines(String text) {
+		ArrayList<TextLine> lines = new ArrayList<TextLine>();
+		int current = 0;
+		while (current+1 < text.length()) {
+			int newLine = text.indexOf('\n', current);
+			if (newLine == -1) {
+				lines.add(new TextLine(text.substring(current).trim()));
+				current = text.length();
+			} else {
+				lines.add(new TextLine(text.substring(current, newLine).trim()));
+				current = newLine+1;
+			}
+		}
+		return lines;
+	}
+
+	private static String errors(ArrayList<Error> errors) {
+		StringBuilder s = new StringBuilder();
+		for (Error error : errors) {
+			s.append(error.getLineNumber()).append(':').append(error.getMsg()).append('\n');
+		}
+		return s.toString();
+	}
+
+	private static String lineNumbers(ArrayList<Error> errors) {
+		StringBuilder s = new StringBuilder();
+		for (Error error : errors) {
+			s.append(s.length() == 0 ? "" : " ").append(error.getLineNumber());
+		}
+		return s.toString();
+	}
+
+	// returns at most a fixed number of characters from each read
+	private static class ChunkedReader extends FilterReader {
+
+		ChunkedReader(Reader in, int chunk) {
+			super(in);
+			this.chunk = chunk;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			return super.read(buffer, offset, Math.min(length, chunk));
+		}
+
+		private final int chunk;
+	}
+}
@@ -0,0 +1,51 @@
+package com.arm.legv8simulator.jit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.arm.legv8simulator.TestPrograms;
+import com.arm.legv8simulator.client.executionmodes.SingleCycleSimulator;
+
+public class BlockJitTest {
+	
+	@Test
+	public void compiledBlocksMatchTheInterpreter() {
+		for (String source : TestPrograms.ALL) {
+			SingleCycleSimulator interpreted = new SingleCycleSimulator(TestPrograms.code(source));
+			interpreted.runCPU();
+			for (int threshold : new int[] {0, 1, BlockJit.DEFAULT_COMPILE_THRESHOLD}) {
+				SingleCycleSimulator compiled = new SingleCycleSimulator(TestPrograms.code(source));
+				compiled.runCPU(new BlockJit(threshold));
+				assertEquals(TestPrograms.state(interpreted), TestPrograms.state(compiled));
+			}
+		}
+	}
+	
+	@Test
+	public void hotBlocksAreCompiledOnce() {
+		BlockJit jit = new BlockJit();
+		SingleCycleSimulator first = new SingleCycleSimulator(TestPrograms.code(TestPrograms.ARITHMETIC_LOOP));
+		first.runCPU(jit);
+		int compiled = jit.getNumCompiledBlocks();
+		assertTrue(compiled > 0);
+		SingleCycleSimulator second = new SingleCycleSimulator(TestPrograms.code(TestPrograms.ARITHMETIC_LOOP));
+		second.runCPU(jit);
+		assertEquals(compiled, jit.getNumCompiledBlocks());
+		assertEquals(TestPrograms.state(first), TestPrograms.state(second));
+	}
+	
+	@Test
+	public void otherProgramsAreCompiledSeparately() {
+		BlockJit jit = new BlockJit(0);
+		new SingleCycleSimulator(TestPrograms.code(TestPrograms.ARITHMETIC_LOOP)).runCPU(jit);
+		int compiled = jit.getNumCompiledBlocks();
+		SingleCycleSimulator other = new SingleCycleSimulator(TestPrograms.code(TestPrograms.MEMORY_COPY));
+		other.runCPU(jit);
+		assertTrue(jit.getNumCompiledBlocks() > compiled);
+		SingleCycleSimulator interpreted = new SingleCycleSimulator(TestPrograms.code(TestPrograms.MEMORY_COPY));
+		interpreted.runCPU();
+		assertEquals(TestPrograms.state(interpreted), TestPrograms.state(other));
+	}
+}